@@ -0,0 +1,98 @@
+package com.example;
+
+import akka.actor.typed.Behavior;
+import akka.actor.typed.BehaviorInterceptor;
+import akka.actor.typed.MailboxSelector;
+import akka.actor.typed.Props;
+import akka.actor.typed.TypedActorContext;
+import akka.actor.typed.javadsl.Behaviors;
+import com.example.metrics.Histogram;
+import com.example.metrics.Metrics;
+
+/**
+ * 为 Actor 加上邮箱长度、排队时间和按消息类型的处理耗时统计.
+ *
+ * <p>关闭时 {@link #instrument} 原样返回行为, {@link #props} 只追加 {@code
+ * akka-http-example.mailboxes.<actor>-mailbox} 配置的 {@link BoundedRequestMailbox}, 不引入任何额外开销.
+ * 开启时邮箱使用 {@code akka-http-example.instrumentation.<actor>-mailbox} 配置的 {@link
+ * InstrumentedMailbox}, 行为外包一层计时的拦截器.
+ */
+public final class ActorInstrumentation {
+
+  private ActorInstrumentation() {}
+
+  // actor 为指标的标签, 如 cache_actor
+  public static <T> Behavior<T> instrument(
+      InstrumentationSettings settings, String actor, Class<T> type, Behavior<T> behavior) {
+    if (!settings.enabled) {
+      return behavior;
+    }
+    return Behaviors.setup(
+        context -> {
+          Metrics metrics = Metrics.get(context.getSystem());
+          return Behaviors.intercept(
+              () -> new ProcessingTimeInterceptor<>(type, metrics, actor, settings.sampleEvery),
+              behavior);
+        });
+  }
+
+  /**
+   * 在 props 之后追加该 actor 使用的邮箱: 开启统计时为统计邮箱(容量由其配置块的 mailbox-capacity 决定),
+   * 否则 mailboxCapacity 大于 0 时为有界邮箱(容量同样由其配置块决定). 有界邮箱满时只把发送方等待回复的
+   * 命令转为死信, 不阻塞发送方.
+   */
+  public static Props props(
+      InstrumentationSettings settings, String actor, int mailboxCapacity, Props props) {
+    String mailbox = actor.replace('_', '-') + "-mailbox";
+    if (settings.enabled) {
+      return props.withNext(
+          MailboxSelector.fromConfig("akka-http-example.instrumentation." + mailbox));
+    }
+    if (mailboxCapacity > 0) {
+      return props.withNext(MailboxSelector.fromConfig("akka-http-example.mailboxes." + mailbox));
+    }
+    return props;
+  }
+
+  // 按消息类型分别创建的耗时直方图, 每种类型只在第一次出现时查表
+  static ClassValue<Histogram> byMessageType(
+      Metrics metrics, String name, String help, String actor) {
+    return new ClassValue<Histogram>() {
+      @Override
+      protected Histogram computeValue(Class<?> type) {
+        String message = type.getSimpleName().isEmpty() ? type.getName() : type.getSimpleName();
+        return metrics.timer(name, help, "actor", actor, "message", message);
+      }
+    };
+  }
+
+  private static final class ProcessingTimeInterceptor<T> extends BehaviorInterceptor<T, T> {
+
+    private final ClassValue<Histogram> processingTime;
+    private final int sampleEvery;
+    private int untilSample;
+
+    ProcessingTimeInterceptor(Class<T> type, Metrics metrics, String actor, int sampleEvery) {
+      super(type);
+      this.processingTime =
+          byMessageType(
+              metrics, "actor_message_processing_seconds", "Actor 处理一条消息的耗时", actor);
+      this.sampleEvery = sampleEvery;
+    }
+
+    @Override
+    public Behavior<T> aroundReceive(TypedActorContext<T> ctx, T msg, ReceiveTarget<T> target) {
+      if (untilSample > 0) {
+        untilSample--;
+        return target.apply(ctx, msg);
+      }
+      untilSample = sampleEvery - 1;
+      long start = System.nanoTime();
+      try {
+        return target.apply(ctx, msg);
+      } finally {
+        processingTime.get(msg.getClass()).record(System.nanoTime() - start);
+      }
+    }
+  }
+}
@@ -0,0 +1,95 @@
+package com.example;
+
+import com.example.admission.AimdLimit;
+import com.example.admission.ConcurrencyLimit;
+import com.example.admission.VegasLimit;
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+
+// 准入控制配置, 对应 reference.conf 中的 akka-http-example.admission 配置块
+public class AdmissionSettings {
+
+  public enum LimitAlgorithm {
+    VEGAS,
+    AIMD
+  }
+
+  // 关闭时路由不限制并发
+  public final boolean enabled;
+  public final LimitAlgorithm limitAlgorithm;
+  public final int initialLimit;
+  public final int minLimit;
+  public final int maxLimit;
+  public final int probeInterval;
+  public final Duration latencyThreshold;
+  public final double backoffRatio;
+  // 503 响应中的 Retry-After, 以秒为单位
+  public final long retryAfterSeconds;
+
+  public AdmissionSettings(
+      boolean enabled,
+      LimitAlgorithm limitAlgorithm,
+      int initialLimit,
+      int minLimit,
+      int maxLimit,
+      int probeInterval,
+      Duration latencyThreshold,
+      double backoffRatio,
+      long retryAfterSeconds) {
+    if (minLimit <= 0 || minLimit > maxLimit) {
+      throw new IllegalArgumentException("min-limit 必须大于 0 且不大于 max-limit");
+    }
+    if (retryAfterSeconds < 0) {
+      throw new IllegalArgumentException("retry-after 不能为负数");
+    }
+    this.enabled = enabled;
+    this.limitAlgorithm = limitAlgorithm;
+    this.initialLimit = initialLimit;
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.probeInterval = probeInterval;
+    this.latencyThreshold = latencyThreshold;
+    this.backoffRatio = backoffRatio;
+    this.retryAfterSeconds = retryAfterSeconds;
+  }
+
+  public static AdmissionSettings create(Config config) {
+    Config admission = config.getConfig("akka-http-example.admission");
+    Duration retryAfter = admission.getDuration("retry-after");
+    return new AdmissionSettings(
+        admission.getBoolean("enabled"),
+        parseLimitAlgorithm(admission.getString("limit-algorithm")),
+        admission.getInt("initial-limit"),
+        admission.getInt("min-limit"),
+        admission.getInt("max-limit"),
+        admission.getInt("probe-interval"),
+        admission.getDuration("aimd.latency-threshold"),
+        admission.getDouble("aimd.backoff-ratio"),
+        // 向上取整到秒
+        (retryAfter.toMillis() + 999) / 1000);
+  }
+
+  // 每次调用创建一个新的上限, 各自独立调整
+  public ConcurrencyLimit createLimit() {
+    switch (limitAlgorithm) {
+      case AIMD:
+        return new AimdLimit(
+            initialLimit, minLimit, maxLimit, backoffRatio, latencyThreshold.toNanos());
+      case VEGAS:
+      default:
+        return new VegasLimit(initialLimit, minLimit, maxLimit, probeInterval);
+    }
+  }
+
+  private static LimitAlgorithm parseLimitAlgorithm(String value) {
+    switch (value) {
+      case "vegas":
+        return LimitAlgorithm.VEGAS;
+      case "aimd":
+        return LimitAlgorithm.AIMD;
+      default:
+        throw new IllegalArgumentException("未知的 limit-algorithm: " + value);
+    }
+  }
+}
@@ -0,0 +1,93 @@
+package com.example;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.DeadLetter;
+import akka.dispatch.Envelope;
+import akka.dispatch.MailboxType;
+import akka.dispatch.MessageQueue;
+import akka.dispatch.MultipleConsumerSemantics;
+import akka.dispatch.ProducesMessageQueue;
+import com.typesafe.config.Config;
+import scala.Option;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 只丢弃请求的有界邮箱. 消息数量达到配置块中的 mailbox-capacity 后, 发送方等待回复的命令
+ * ({@link CacheActor.Request#awaitsReply()}) 直接转为死信, 发送方超时后得知失败; 其余消息
+ * (定时器、pipeToSelf 的结果、不等待回复的写入)总是入队, 因此消息数量可能暂时超过容量.
+ * 与 Akka 的 NonBlockingBoundedMailbox 一样不阻塞发送方.
+ */
+public class BoundedRequestMailbox
+    implements MailboxType, ProducesMessageQueue<BoundedRequestMailbox.BoundedRequestQueue> {
+
+  private final int capacity;
+
+  public BoundedRequestMailbox(ActorSystem.Settings settings, Config config) {
+    this.capacity = config.getInt("mailbox-capacity");
+  }
+
+  @Override
+  public MessageQueue create(Option<ActorRef> owner, Option<ActorSystem> system) {
+    return new BoundedRequestQueue(capacity, system.get().deadLetters());
+  }
+
+  // 邮箱已满时可以丢弃的消息
+  static boolean sheddable(Object message) {
+    return message instanceof CacheActor.Request && ((CacheActor.Request) message).awaitsReply();
+  }
+
+  static final class BoundedRequestQueue implements MessageQueue, MultipleConsumerSemantics {
+
+    private final ConcurrentLinkedQueue<Envelope> queue = new ConcurrentLinkedQueue<>();
+    // ConcurrentLinkedQueue.size() 需要遍历队列, 单独计数用于容量判断
+    private final AtomicInteger count = new AtomicInteger();
+    private final int capacity;
+    private final ActorRef deadLetters;
+
+    BoundedRequestQueue(int capacity, ActorRef deadLetters) {
+      this.capacity = capacity;
+      this.deadLetters = deadLetters;
+    }
+
+    @Override
+    public void enqueue(ActorRef receiver, Envelope handle) {
+      if (count.get() >= capacity && sheddable(handle.message())) {
+        deadLetters.tell(
+            new DeadLetter(handle.message(), handle.sender(), receiver), handle.sender());
+        return;
+      }
+      count.incrementAndGet();
+      queue.add(handle);
+    }
+
+    @Override
+    public Envelope dequeue() {
+      Envelope envelope = queue.poll();
+      if (envelope != null) {
+        count.decrementAndGet();
+      }
+      return envelope;
+    }
+
+    @Override
+    public int numberOfMessages() {
+      return count.get();
+    }
+
+    @Override
+    public boolean hasMessages() {
+      return !queue.isEmpty();
+    }
+
+    @Override
+    public void cleanUp(ActorRef owner, MessageQueue deadLetters) {
+      Envelope envelope;
+      while ((envelope = dequeue()) != null) {
+        deadLetters.enqueue(owner, envelope);
+      }
+    }
+  }
+}
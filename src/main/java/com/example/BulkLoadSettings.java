@@ -0,0 +1,33 @@
+package com.example;
+
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+
+// 批量导入相关配置, 对应 reference.conf (可在 application.conf 中覆盖) 中的 akka-http-example.bulk-load 配置块
+public class BulkLoadSettings {
+
+  public final int batchSize;
+  public final int parallelism;
+  public final int maxLineLength;
+  public final Duration ackTimeout;
+
+  public BulkLoadSettings(int batchSize, int parallelism, int maxLineLength, Duration ackTimeout) {
+    if (batchSize <= 0 || parallelism <= 0 || maxLineLength <= 0) {
+      throw new IllegalArgumentException("batch-size、parallelism 和 max-line-length 必须大于 0");
+    }
+    this.batchSize = batchSize;
+    this.parallelism = parallelism;
+    this.maxLineLength = maxLineLength;
+    this.ackTimeout = ackTimeout;
+  }
+
+  public static BulkLoadSettings create(Config config) {
+    Config bulkLoad = config.getConfig("akka-http-example.bulk-load");
+    return new BulkLoadSettings(
+        bulkLoad.getInt("batch-size"),
+        bulkLoad.getInt("parallelism"),
+        (int) Math.min(Integer.MAX_VALUE, bulkLoad.getBytes("max-line-length")),
+        bulkLoad.getDuration("ack-timeout"));
+  }
+}
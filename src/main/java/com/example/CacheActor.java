@@ -1,22 +1,64 @@
 package com.example;
 
+import akka.Done;
 import akka.actor.typed.ActorRef;
 import akka.actor.typed.Behavior;
+import akka.actor.typed.PostStop;
+import akka.actor.typed.PreRestart;
+import akka.actor.typed.SupervisorStrategy;
 import akka.actor.typed.javadsl.AbstractBehavior;
 import akka.actor.typed.javadsl.ActorContext;
+import akka.actor.typed.javadsl.AskPattern;
 import akka.actor.typed.javadsl.Behaviors;
 import akka.actor.typed.javadsl.Receive;
+import akka.actor.typed.javadsl.TimerScheduler;
+import akka.pattern.StatusReply;
 
+import com.example.cache.CacheSnapshot;
+import com.example.cache.CacheValue;
+import com.example.cache.LocalCache;
+import com.example.cache.NegativeCache;
+import com.example.cache.ReadView;
+import com.example.cache.SlabStore;
+import com.example.metrics.Counter;
+import com.example.metrics.Metrics;
+
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+import java.util.function.Function;
 
 public class CacheActor extends AbstractBehavior<CacheActor.Command> {
 
   // 定义命令接口
   public interface Command {}
 
+  // 请求-回复的命令. 有界邮箱已满时只丢弃 awaitsReply() 为 true 的命令, 发送方超时后得知失败;
+  // 其余消息(定时器、pipeToSelf 的结果、不等待回复的写入)总是入队, 不会丢失已经确认的写入或滞留内部状态
+  public interface Request extends Command {
+    default boolean awaitsReply() {
+      return true;
+    }
+  }
+
+  // 携带键的命令, 分区模式下按键的一致性哈希路由到对应的 CacheActor
+  public interface KeyedCommand extends Command {
+    String key();
+  }
+
   // 获取缓存值的命令
-  public static class Get implements Command {
+  public static class Get implements KeyedCommand, Request {
     public final String key;
     public final ActorRef<Value> replyTo;
 
@@ -24,55 +66,466 @@ public class CacheActor extends AbstractBehavior<CacheActor.Command> {
       this.key = key;
       this.replyTo = replyTo;
     }
+
+    @Override
+    public String key() {
+      return key;
+    }
   }
 
-  // 设置缓存值的命令
-  public static class Put implements Command {
+  // 设置缓存值的命令, ttl 为 null 表示永不过期;
+  // replyTo 只用于发给 RedisActor 的写入, 不为 null 时在写入 Redis(或进入 write-behind 队列)后回复,
+  // write-behind 待写入的数据已达上限时回复错误
+  public static class Put implements KeyedCommand, Request {
+    // 允许的最长 ttl, 换算为纳秒后与时钟相加也不会溢出; 路由拒绝超出的值, 其余来源按此截断
+    public static final Duration MAX_TTL = Duration.ofDays(3650);
+
     public final String key;
-    public final String value;
+    public final CacheValue value;
+    public final Duration ttl;
+    public final ActorRef<StatusReply<Done>> replyTo;
 
+    // 写入 UTF-8 文本值
     public Put(String key, String value) {
+      this(key, CacheValue.of(value));
+    }
+
+    public Put(String key, CacheValue value) {
+      this(key, value, null);
+    }
+
+    public Put(String key, CacheValue value, Duration ttl) {
+      this(key, value, ttl, null);
+    }
+
+    public Put(
+        String key, CacheValue value, Duration ttl, ActorRef<StatusReply<Done>> replyTo) {
       this.key = key;
       this.value = value;
+      this.ttl = ttl;
+      this.replyTo = replyTo;
+    }
+
+    @Override
+    public String key() {
+      return key;
+    }
+
+    @Override
+    public boolean awaitsReply() {
+      return replyTo != null;
     }
   }
 
-  // 缓存值的响应
+  // 缓存值的响应, value 为 null 表示两级缓存中都不存在
   public static class Value {
-    public final String value;
+    // Redis 不可用且本地没有可返回的值, 无法确定键是否存在
+    public static final Value UNAVAILABLE = new Value(null, null, false, true);
 
-    public Value(String value) {
+    public final CacheValue value;
+    // RedisActor 回复时为键在存储中剩余的存活时间, null 表示永不过期(或不是来自存储)
+    public final Duration ttl;
+    // value 来自已过期的本地条目: Redis 查询失败或熔断时按 stale-if-error 返回
+    public final boolean stale;
+    public final boolean unavailable;
+
+    public Value(CacheValue value) {
+      this(value, null, false, false);
+    }
+
+    public Value(CacheValue value, Duration ttl) {
+      this(value, ttl, false, false);
+    }
+
+    private Value(CacheValue value, Duration ttl, boolean stale, boolean unavailable) {
       this.value = value;
+      this.ttl = ttl;
+      this.stale = stale;
+      this.unavailable = unavailable;
+    }
+
+    public static Value stale(CacheValue value) {
+      return new Value(value, null, true, false);
+    }
+  }
+
+  // 批量获取的命令, 只包含属于同一个分区的键. 本地命中和负缓存命中合并为一条 Entries 立即回复,
+  // 需要查询 Redis 的键在结果返回后各自回复一条 Entries, 每个键恰好回复一次
+  public static class MultiGet implements Request {
+    public final List<String> keys;
+    public final ActorRef<Entries> replyTo;
+
+    public MultiGet(List<String> keys, ActorRef<Entries> replyTo) {
+      this.keys = keys;
+      this.replyTo = replyTo;
+    }
+  }
+
+  // 批量设置的命令, 只包含属于同一个分区的键.
+  // replyTo 不为 null 时, 在所有键都写入 Redis 确认(或失败、超时)后回复, 调用方可以据此反压
+  public static class MultiPut implements Request {
+    public final List<Put> puts;
+    public final ActorRef<MultiPutResult> replyTo;
+
+    public MultiPut(List<Put> puts) {
+      this(puts, null);
+    }
+
+    public MultiPut(List<Put> puts, ActorRef<MultiPutResult> replyTo) {
+      this.puts = puts;
+      this.replyTo = replyTo;
+    }
+
+    @Override
+    public boolean awaitsReply() {
+      return replyTo != null;
+    }
+  }
+
+  // 发给 RedisActor 的批量写入, 每个工作者一次写入存储(Redis 引擎为一次流水线).
+  // replyTo 不为 null 时在写入存储(或进入 write-behind 队列)后回复未能写入的键数量
+  public static class PutAll implements Request {
+    public final List<Put> puts;
+    public final ActorRef<MultiPutResult> replyTo;
+
+    public PutAll(List<Put> puts, ActorRef<MultiPutResult> replyTo) {
+      this.puts = puts;
+      this.replyTo = replyTo;
+    }
+
+    @Override
+    public boolean awaitsReply() {
+      return replyTo != null;
+    }
+  }
+
+  // MultiPut 的确认: failures 为未能写入 Redis(失败、超时或熔断期间暂存队列已满)的键数量,
+  // 这些键只更新了本地缓存
+  public static final class MultiPutResult {
+    public static final MultiPutResult ALL_WRITTEN = new MultiPutResult(0);
+
+    public final int failures;
+
+    public MultiPutResult(int failures) {
+      this.failures = failures;
+    }
+  }
+
+  // 键值对, value 为 null 表示两级缓存中都不存在; unavailable 表示 Redis 不可用, 无法确定
+  public static class Entry {
+    public final String key;
+    public final CacheValue value;
+    public final boolean unavailable;
+
+    public Entry(String key, CacheValue value) {
+      this(key, value, false);
+    }
+
+    public Entry(String key, CacheValue value, boolean unavailable) {
+      this.key = key;
+      this.value = value;
+      this.unavailable = unavailable;
+    }
+  }
+
+  // 批量获取的响应
+  public static class Entries {
+    public final List<Entry> entries;
+
+    public Entries(List<Entry> entries) {
+      this.entries = entries;
+    }
+  }
+
+  // 导出本地缓存中全部未过期条目的命令, 用于写入快照
+  public static class ExportEntries implements Command {
+    public final ActorRef<ExportedEntries> replyTo;
+
+    public ExportEntries(ActorRef<ExportedEntries> replyTo) {
+      this.replyTo = replyTo;
+    }
+  }
+
+  // 按从冷到热的顺序排列的条目, 过期时刻已换算为墙上时间
+  public static class ExportedEntries {
+    public final List<CacheSnapshot.Entry> entries;
+
+    public ExportedEntries(List<CacheSnapshot.Entry> entries) {
+      this.entries = entries;
+    }
+  }
+
+  // 从快照恢复的条目, 只写入本地缓存而不写入 Redis; 本地已有的键以本地为准.
+  // 只包含属于同一个分区的键, 处理完后回复 replyTo
+  public static class Restore implements Command {
+    public final List<Put> puts;
+    public final ActorRef<Done> replyTo;
+
+    public Restore(List<Put> puts, ActorRef<Done> replyTo) {
+      this.puts = puts;
+      this.replyTo = replyTo;
     }
   }
 
   // 模拟缓存故障的命令
   public static class SimulateFailure implements Command {}
 
+  // 获取本地缓存统计信息的命令
+  public static class GetStats implements Command {
+    public final ActorRef<Stats> replyTo;
+
+    public GetStats(ActorRef<Stats> replyTo) {
+      this.replyTo = replyTo;
+    }
+  }
+
+  // 本地缓存统计信息
+  public static class Stats {
+    public final long size;
+    public final long weightedSize;
+    public final long hitCount;
+    public final long missCount;
+    public final long evictionCount;
+    public final long evictionWeight;
+    public final long expirationCount;
+    public final long redisLookupCount;
+    public final long coalescedCount;
+    public final long negativeHitCount;
+
+    public Stats(
+        long size,
+        long weightedSize,
+        long hitCount,
+        long missCount,
+        long evictionCount,
+        long evictionWeight,
+        long expirationCount,
+        long redisLookupCount,
+        long coalescedCount,
+        long negativeHitCount) {
+      this.size = size;
+      this.weightedSize = weightedSize;
+      this.hitCount = hitCount;
+      this.missCount = missCount;
+      this.evictionCount = evictionCount;
+      this.evictionWeight = evictionWeight;
+      this.expirationCount = expirationCount;
+      this.redisLookupCount = redisLookupCount;
+      this.coalescedCount = coalescedCount;
+      this.negativeHitCount = negativeHitCount;
+    }
+  }
+
+  // 定时推进过期时间轮的内部命令
+  private enum ExpireEntries implements Command {
+    INSTANCE
+  }
+
+  // 把无锁读取记录的访问应用到淘汰策略的内部命令
+  private enum DrainReads implements Command {
+    INSTANCE
+  }
+
+  // Redis 查询结果, failure 不为 null 表示查询失败或超时
   private static class RedisResponse implements Command {
     public final Value value;
     public final String key;
-    public final ActorRef<Value> originalReplyTo;
+    public final Throwable failure;
 
-    public RedisResponse(Value value, String key, ActorRef<Value> originalReplyTo) {
+    public RedisResponse(Value value, String key, Throwable failure) {
       this.value = value;
       this.key = key;
-      this.originalReplyTo = originalReplyTo;
+      this.failure = failure;
+    }
+  }
+
+  // MultiPut 中写入 Redis 的部分的结果, failures 已包括失败或超时的键
+  private static class RedisWriteAck implements Command {
+    public final ActorRef<MultiPutResult> replyTo;
+    public final int failures;
+    public final Throwable failure;
+
+    public RedisWriteAck(ActorRef<MultiPutResult> replyTo, int failures, Throwable failure) {
+      this.replyTo = replyTo;
+      this.failures = failures;
+      this.failure = failure;
+    }
+  }
+
+  // 熔断期间暂存的写入在恢复后写入 Redis 的结果
+  private static class QueuedWriteResult implements Command {
+    public final Put put;
+    public final Throwable failure;
+
+    public QueuedWriteResult(Put put, Throwable failure) {
+      this.put = put;
+      this.failure = failure;
     }
   }
 
-  private final Map<String, String> cache = new HashMap<>();
+  // RedisActor 回复 Value.UNAVAILABLE 或拒绝写入时作为失败计入熔断器; rejected 为被拒绝的写入数量
+  private static final class RedisUnavailableException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    final int rejected;
+
+    RedisUnavailableException() {
+      this(0);
+    }
+
+    RedisUnavailableException(int rejected) {
+      super("Redis 不可用", null, false, false);
+      this.rejected = rejected;
+    }
+  }
+
+  /**
+   * 分区的数据: 在受监管的行为之外创建, Actor 因异常重启时原样保留, 重启后的实例继续使用,
+   * 不会因为一次故障清空本地缓存而把全部读取压到 Redis 上. 正在进行的 Redis 查询和写入确认的结果是发给
+   * 自己的消息, 在重启后仍会送达并回复原来的等待者.
+   */
+  private static final class PartitionState {
+    final LocalCache cache;
+    final NegativeCache negativeCache;
+    // 已经发出但尚未处理的 DrainReads, 避免读线程重复发送
+    final AtomicBoolean drainScheduled = new AtomicBoolean();
+    // 正在向 Redis 查询的键, 以及等待该查询结果的所有请求者的回复方式
+    final Map<String, List<Consumer<Value>>> inFlight = new HashMap<>();
+    // 熔断期间暂存、尚未写入 Redis 的写入, 同一个键只保留最后一次; 只在 write-policy = queue 时使用
+    final Map<String, Put> queuedWrites = new LinkedHashMap<>();
+    long redisLookupCount;
+    long coalescedCount;
+    long negativeHitCount;
+    long restartCount;
+
+    PartitionState(CacheSettings settings, CircuitBreakerSettings breakerSettings) {
+      this.cache =
+          new LocalCache(settings.maxEntries, settings.maxBytes, createSlabStore(settings));
+      if (breakerSettings.enabled) {
+        cache.retainExpired(breakerSettings.staleIfError.toNanos());
+      }
+      this.negativeCache =
+          new NegativeCache(settings.negativeMaxEntries, settings.negativeTtl.toNanos());
+    }
+  }
+
+  private final PartitionState state;
+  private final LocalCache cache;
+  private final ReadView readView;
+  private final NegativeCache negativeCache;
   private final ActorContext<Command> context;
   private final ActorRef<Command> redisActor;
+  private final Duration redisLookupTimeout;
+  private final Map<String, List<Consumer<Value>>> inFlight;
+  private final Counter localHits;
+  private final Counter localMisses;
+  private final Counter negativeHits;
+  private final Counter redisHits;
+  private final Counter redisMisses;
+  private final Counter redisAskTimeouts;
+  private final RedisCircuitBreaker breaker;
+  private final Map<String, Put> queuedWrites;
+  private final boolean queueWrites;
+  private final int maxQueuedWrites;
+  private final Counter staleHits;
+  private final Counter queuedWritesDropped;
 
-  private CacheActor(ActorContext<Command> context, ActorRef<Command> redisActor) {
+  private CacheActor(
+      ActorContext<Command> context,
+      TimerScheduler<Command> timers,
+      ActorRef<Command> redisActor,
+      CacheSettings settings,
+      ReadView readView,
+      PartitionState state) {
     super(context);
     this.context = context;
     this.redisActor = redisActor;
+    this.redisLookupTimeout = settings.redisLookupTimeout;
+    this.state = state;
+    this.cache = state.cache;
+    this.negativeCache = state.negativeCache;
+    this.inFlight = state.inFlight;
+    this.queuedWrites = state.queuedWrites;
+    this.readView = readView;
+    if (readView != null) {
+      // 重启后 self 不变, 重新注册与第一次注册等价
+      ActorRef<Command> self = context.getSelf();
+      AtomicBoolean drainScheduled = state.drainScheduled;
+      cache.onReadBufferFull(
+          () -> {
+            if (drainScheduled.compareAndSet(false, true)) {
+              self.tell(DrainReads.INSTANCE);
+            }
+          });
+      readView.attach(cache);
+    }
+    // 所有分区共享同一组计数器
+    Metrics metrics = Metrics.get(context.getSystem());
+    this.localHits = metrics.counter("cache_local_hits_total", "本地缓存命中次数(包括路由的无锁读取)");
+    this.localMisses = metrics.counter("cache_local_misses_total", "本地缓存未命中次数");
+    this.negativeHits = metrics.counter("cache_negative_hits_total", "负缓存命中, 未查询 Redis 的次数");
+    this.redisHits = metrics.counter("cache_redis_hits_total", "本地未命中后在 Redis 中找到值的查询次数");
+    this.redisMisses = metrics.counter("cache_redis_misses_total", "本地未命中且 Redis 中也不存在的查询次数");
+    this.redisAskTimeouts =
+        metrics.counter("ask_timeouts_total", "ask 等待回复超时的次数", "target", "redis_actor");
+    this.staleHits =
+        metrics.counter("cache_stale_hits_total", "Redis 不可用时返回过期本地值的次数");
+    this.queuedWritesDropped =
+        metrics.counter("redis_queued_writes_dropped_total", "熔断期间暂存队列已满, 未能写入 Redis 的写入数量");
+    this.breaker = RedisCircuitBreaker.get(context.getSystem());
+    CircuitBreakerSettings breakerSettings = breaker.settings;
+    this.queueWrites =
+        breakerSettings.enabled
+            && breakerSettings.writePolicy == CircuitBreakerSettings.WritePolicy.QUEUE;
+    this.maxQueuedWrites = breakerSettings.maxQueuedWrites;
+    // 整个分区只使用一个定时器推进时间轮, 而不是为每个键单独调度
+    timers.startTimerWithFixedDelay(ExpireEntries.INSTANCE, settings.expiryTickInterval);
+  }
+
+  private static SlabStore createSlabStore(CacheSettings settings) {
+    if (!settings.offHeap) {
+      return null;
+    }
+    if (settings.slabDirectory.isEmpty()) {
+      return SlabStore.direct(settings.maxBytes, settings.slabSize);
+    }
+    return SlabStore.mapped(
+        settings.maxBytes, settings.slabSize, Paths.get(settings.slabDirectory));
   }
 
+  // 使用配置中的容量创建单个分区
   public static Behavior<Command> create(ActorRef<Command> redisActor) {
-    return Behaviors.setup(context -> new CacheActor(context, redisActor));
+    return Behaviors.setup(
+        context ->
+            create(redisActor, CacheSettings.create(context.getSystem().settings().config())));
+  }
+
+  // settings 中的容量即为该分区的容量, 分区模式下由调用方通过 perPartition() 换算
+  public static Behavior<Command> create(ActorRef<Command> redisActor, CacheSettings settings) {
+    return create(redisActor, settings, null);
+  }
+
+  /**
+   * readView 不为 null 时把本地缓存挂载到它上面, 供其他线程无锁读取.
+   *
+   * <p>处理消息时抛出异常会重启分区而不是停止它: 引用和邮箱保持不变, 本地缓存等数据保存在受监管的行为之外,
+   * 重启后继续使用.
+   */
+  public static Behavior<Command> create(
+      ActorRef<Command> redisActor, CacheSettings settings, ReadView readView) {
+    return Behaviors.setup(
+        outer -> {
+          PartitionState state =
+              new PartitionState(settings, RedisCircuitBreaker.get(outer.getSystem()).settings);
+          return Behaviors.supervise(
+                  Behaviors.<Command>setup(
+                      context ->
+                          Behaviors.withTimers(
+                              timers ->
+                                  new CacheActor(
+                                      context, timers, redisActor, settings, readView, state))))
+              .onFailure(SupervisorStrategy.restart());
+        });
   }
 
   @Override
@@ -80,46 +533,398 @@ public class CacheActor extends AbstractBehavior<CacheActor.Command> {
     return newReceiveBuilder()
         .onMessage(Get.class, this::onGet)
         .onMessage(Put.class, this::onPut)
+        .onMessage(MultiGet.class, this::onMultiGet)
+        .onMessage(MultiPut.class, this::onMultiPut)
+        .onMessage(ExportEntries.class, this::onExportEntries)
+        .onMessage(Restore.class, this::onRestore)
+        .onMessage(RedisWriteAck.class, this::onRedisWriteAck)
+        .onMessage(QueuedWriteResult.class, this::onQueuedWriteResult)
         .onMessage(SimulateFailure.class, this::onSimulateFailure)
         .onMessage(RedisResponse.class, this::onRedisResponse)
+        .onMessage(GetStats.class, this::onGetStats)
+        .onMessageEquals(ExpireEntries.INSTANCE, this::onExpireEntries)
+        .onMessageEquals(DrainReads.INSTANCE, this::onDrainReads)
+        .onSignal(PreRestart.class, signal -> onPreRestart())
+        .onSignal(PostStop.class, signal -> onPostStop())
         .build();
   }
 
+  // 本地缓存保持挂载, 重启期间的无锁读取照常命中
+  private Behavior<Command> onPreRestart() {
+    state.restartCount++;
+    context
+        .getLog()
+        .warn("CacheActor 第 {} 次重启, 保留 {} 个本地条目", state.restartCount, cache.size());
+    return this;
+  }
+
+  private Behavior<Command> onPostStop() {
+    if (readView != null) {
+      readView.detach(cache);
+    }
+    return this;
+  }
+
   private Behavior<Command> onGet(Get command) {
-    String value = cache.get(command.key);
+    CacheValue value = cache.get(command.key);
     if (value != null) {
       // Found in local cache, reply immediately
+      localHits.increment();
       command.replyTo.tell(new Value(value));
       return this;
+    }
+    localMisses.increment();
+    if (negativeCache.contains(command.key)) {
+      // 最近确认过两级缓存中都不存在, 不再查询 Redis
+      state.negativeHitCount++;
+      negativeHits.increment();
+      command.replyTo.tell(new Value(null));
     } else {
-      // Not found in local cache, query Redis
-      ActorRef<Value> responseAdapter =
-          context.messageAdapter(
-              Value.class,
-              valueFromRedis -> new RedisResponse(valueFromRedis, command.key, command.replyTo));
-      redisActor.tell(new Get(command.key, responseAdapter));
-      return this;
+      lookupInRedis(command.key, command.replyTo::tell);
+    }
+    return this;
+  }
+
+  private Behavior<Command> onMultiGet(MultiGet command) {
+    List<Entry> answered = new ArrayList<>(command.keys.size());
+    for (String key : command.keys) {
+      CacheValue value = cache.get(key);
+      if (value != null) {
+        localHits.increment();
+        answered.add(new Entry(key, value));
+        continue;
+      }
+      localMisses.increment();
+      if (negativeCache.contains(key)) {
+        state.negativeHitCount++;
+        negativeHits.increment();
+        answered.add(new Entry(key, null));
+      } else {
+        ActorRef<Entries> replyTo = command.replyTo;
+        lookupInRedis(
+            key,
+            reply ->
+                replyTo.tell(
+                    new Entries(
+                        Collections.singletonList(
+                            new Entry(key, reply.value, reply.unavailable)))));
+      }
+    }
+    if (!answered.isEmpty()) {
+      command.replyTo.tell(new Entries(answered));
     }
+    return this;
+  }
+
+  // Not found in local cache, query Redis; 同一个键已有查询在进行中时只等待它的结果
+  private void lookupInRedis(String key, Consumer<Value> waiter) {
+    List<Consumer<Value>> waiting = inFlight.get(key);
+    if (waiting != null) {
+      waiting.add(waiter);
+      state.coalescedCount++;
+      return;
+    }
+    waiting = new ArrayList<>(2);
+    waiting.add(waiter);
+    inFlight.put(key, waiting);
+    state.redisLookupCount++;
+    context.pipeToSelf(
+        askRedis(
+            replyTo -> new Get(key, replyTo),
+            (Value value) -> {
+              if (value.unavailable) {
+                throw new RedisUnavailableException();
+              }
+              return value;
+            }),
+        (valueFromRedis, failure) -> new RedisResponse(valueFromRedis, key, failure));
+  }
+
+  // 经过熔断器向 RedisActor 发出 ask; 熔断打开时立即失败, check 抛出异常时也计为一次失败
+  private <T> CompletionStage<T> askRedis(
+      akka.japi.function.Function<ActorRef<T>, Command> message, Function<T, T> check) {
+    return breaker.call(
+        () ->
+            AskPattern.ask(redisActor, message, redisLookupTimeout, context.getSystem().scheduler())
+                .thenApply(check));
+  }
+
+  // 写入 Redis 并等待确认; RedisActor 拒绝写入时与不可用一样计为一次失败
+  private CompletionStage<Done> writeToRedis(Put put) {
+    return askRedis(
+            replyTo -> new Put(put.key, put.value, put.ttl, replyTo),
+            (StatusReply<Done> reply) -> {
+              if (reply.isError()) {
+                throw new RedisUnavailableException();
+              }
+              return reply;
+            })
+        .thenApply(StatusReply::getValue);
+  }
+
+  // 批量写入 Redis, 结果为被拒绝的键数量; 有键被拒绝时同样计为一次失败
+  private CompletionStage<MultiPutResult> writeAllToRedis(List<Put> puts) {
+    return askRedis(
+        replyTo -> new PutAll(puts, replyTo),
+        (MultiPutResult result) -> {
+          if (result.failures > 0) {
+            throw new RedisUnavailableException(result.failures);
+          }
+          return result;
+        });
+  }
+
+  private static Throwable unwrap(Throwable failure) {
+    return failure instanceof CompletionException && failure.getCause() != null
+        ? failure.getCause()
+        : failure;
   }
 
   private Behavior<Command> onRedisResponse(RedisResponse response) {
-    if (response.value.value != null) {
-      // Found in Redis, update local cache and reply
-      cache.put(response.key, response.value.value);
-      context.getLog().info("本地缓存已从 Redis 更新: {} = {}", response.key, response.value.value);
-      response.originalReplyTo.tell(response.value);
+    List<Consumer<Value>> waiting = inFlight.remove(response.key);
+    if (waiting == null) {
+      return this;
+    }
+    Value reply;
+    if (response.failure != null) {
+      Throwable failure = unwrap(response.failure);
+      if (failure instanceof TimeoutException) {
+        redisAskTimeouts.increment();
+      }
+      if (!breaker.settings.enabled) {
+        // 不回复等待者, 与之前一样由调用方的 ask 超时; 之后的请求会重新查询
+        context
+            .getLog()
+            .warn("Redis 查询失败: {}, 放弃 {} 个等待者", response.key, waiting.size(), failure);
+        return this;
+      }
+      CacheValue stale = cache.peekStale(response.key);
+      if (stale != null) {
+        staleHits.increment();
+        reply = Value.stale(stale);
+      } else {
+        reply = Value.UNAVAILABLE;
+      }
+      context
+          .getLog()
+          .debug("Redis 查询失败: {}, 返回{}", response.key, stale != null ? "过期的本地值" : "不可用", failure);
     } else {
-      // Not found in Redis either, reply with null
-      response.originalReplyTo.tell(new Value(null));
+      CacheValue local = cache.peek(response.key);
+      if (local != null) {
+        // 查询期间本地已被 Put 更新, 以本地的新值为准, 避免被 Redis 中的旧值覆盖
+        reply = new Value(local);
+      } else if (response.value.value != null) {
+        // Found in Redis, update local cache and reply; 本地副本与 Redis 中的键同时过期
+        redisHits.increment();
+        Duration ttl = response.value.ttl;
+        cache.put(response.key, response.value.value, ttlNanos(ttl));
+        context.getLog().info("本地缓存已从 Redis 更新: {} = {}", response.key, response.value.value);
+        reply = response.value;
+      } else {
+        // Not found in Redis either, remember the miss and reply with null
+        redisMisses.increment();
+        negativeCache.add(response.key);
+        // 保留期内的过期条目已被 Redis 确认不存在, 不应再作为过期值返回
+        cache.remove(response.key);
+        reply = response.value;
+      }
+    }
+    for (Consumer<Value> waiter : waiting) {
+      waiter.accept(reply);
     }
     return this;
   }
 
   private Behavior<Command> onPut(Put command) {
     // Put the value in both RedisActor and local cache
-    redisActor.tell(command);
-    cache.put(command.key, command.value);
-    context.getLog().info("本地缓存已更新: {} = {}", command.key, command.value);
+    if (shouldQueue(command.key)) {
+      queueWrite(command);
+    } else {
+      redisActor.tell(command);
+    }
+    putLocally(command);
+    context.getLog().debug("本地缓存已更新: {}", command.key);
+    return this;
+  }
+
+  private Behavior<Command> onMultiPut(MultiPut command) {
+    if (command.replyTo == null) {
+      List<Put> writes = new ArrayList<>(command.puts.size());
+      for (Put put : command.puts) {
+        putLocally(put);
+        if (shouldQueue(put.key)) {
+          queueWrite(put);
+        } else {
+          writes.add(put);
+        }
+      }
+      // 与单个 Put 一样不等待确认, 但整批只发一条 PutAll
+      if (!writes.isEmpty()) {
+        redisActor.tell(new PutAll(writes, null));
+      }
+      return this;
+    }
+    if (command.puts.isEmpty()) {
+      command.replyTo.tell(MultiPutResult.ALL_WRITTEN);
+      return this;
+    }
+    int queueFailures = 0;
+    List<Put> writes = new ArrayList<>(command.puts.size());
+    for (Put put : command.puts) {
+      putLocally(put);
+      if (shouldQueue(put.key)) {
+        // 进入暂存队列即确认, 与 write-behind 相同; 队列已满时计为失败
+        if (!queueWrite(put)) {
+          queueFailures++;
+        }
+      } else {
+        writes.add(put);
+      }
+    }
+    if (writes.isEmpty()) {
+      command.replyTo.tell(new MultiPutResult(queueFailures));
+      return this;
+    }
+    // 整批作为一条 PutAll 发给 RedisActor, 由工作者合并为一次批量写入
+    int failuresSoFar = queueFailures;
+    context.pipeToSelf(
+        writeAllToRedis(writes),
+        (result, failure) ->
+            new RedisWriteAck(
+                command.replyTo,
+                failuresSoFar + (failure == null ? 0 : rejected(failure, writes.size())),
+                failure));
+    return this;
+  }
+
+  // 写入失败时未能写入的键数量: RedisActor 拒绝了其中一部分时为被拒绝的数量, 否则为整批
+  private static int rejected(Throwable failure, int size) {
+    Throwable cause = unwrap(failure);
+    if (cause instanceof RedisUnavailableException
+        && ((RedisUnavailableException) cause).rejected > 0) {
+      return ((RedisUnavailableException) cause).rejected;
+    }
+    return size;
+  }
+
+  // 熔断期间的写入, 以及同一个键已有暂存写入时的后续写入, 都进入暂存队列以保证顺序
+  private boolean shouldQueue(String key) {
+    return queueWrites && (breaker.isOpen() || queuedWrites.containsKey(key));
+  }
+
+  // 队列已满而只更新了本地缓存时返回 false
+  private boolean queueWrite(Put put) {
+    if (queuedWrites.remove(put.key) == null && queuedWrites.size() >= maxQueuedWrites) {
+      queuedWritesDropped.increment();
+      context.getLog().warn("熔断期间暂存的写入已达上限 {}, 只更新本地缓存: {}", maxQueuedWrites, put.key);
+      return false;
+    }
+    queuedWrites.put(put.key, new Put(put.key, put.value, put.ttl));
+    return true;
+  }
+
+  // 熔断关闭或半开后把暂存的写入发给 RedisActor; 半开时只有一个会作为探测发出, 其余立即失败并重新暂存
+  private void flushQueuedWrites() {
+    if (queuedWrites.isEmpty() || breaker.isOpen()) {
+      return;
+    }
+    List<Put> writes = new ArrayList<>(queuedWrites.values());
+    queuedWrites.clear();
+    context.getLog().info("Redis 已恢复, 写入 {} 个暂存的键", writes.size());
+    for (Put put : writes) {
+      context.pipeToSelf(
+          writeToRedis(put),
+          (done, failure) -> new QueuedWriteResult(put, failure));
+    }
+  }
+
+  private Behavior<Command> onQueuedWriteResult(QueuedWriteResult result) {
+    Put put = result.put;
+    // 期间已有更新的写入时不再重试旧值
+    if (result.failure != null
+        && !queuedWrites.containsKey(put.key)
+        && put.value.equals(cache.peek(put.key))) {
+      queueWrite(put);
+    }
+    return this;
+  }
+
+  private Behavior<Command> onRedisWriteAck(RedisWriteAck ack) {
+    if (ack.failure != null && unwrap(ack.failure) instanceof TimeoutException) {
+      redisAskTimeouts.increment();
+    }
+    if (ack.failures > 0) {
+      // 本地缓存已经更新, 未能确认写入 Redis 的数量回复给调用方
+      context.getLog().warn("批量写入中有 {} 个键未能确认写入 Redis", ack.failures);
+    }
+    ack.replyTo.tell(new MultiPutResult(ack.failures));
+    return this;
+  }
+
+  private void putLocally(Put command) {
+    negativeCache.invalidate(command.key);
+    cache.put(command.key, command.value, ttlNanos(command.ttl));
+  }
+
+  // null 表示永不过期(0), 超过 Put.MAX_TTL 的值按 MAX_TTL 截断, 避免 toNanos 溢出
+  private static long ttlNanos(Duration ttl) {
+    if (ttl == null) {
+      return 0;
+    }
+    return ttl.compareTo(Put.MAX_TTL) > 0 ? Put.MAX_TTL.toNanos() : ttl.toNanos();
+  }
+
+  private Behavior<Command> onExpireEntries() {
+    cache.expire();
+    flushQueuedWrites();
+    return this;
+  }
+
+  private Behavior<Command> onDrainReads() {
+    state.drainScheduled.set(false);
+    cache.drainReads();
+    return this;
+  }
+
+  private Behavior<Command> onGetStats(GetStats command) {
+    command.replyTo.tell(
+        new Stats(
+            cache.size(),
+            cache.weightedSize(),
+            cache.hitCount(),
+            cache.missCount(),
+            cache.evictionCount(),
+            cache.evictionWeight(),
+            cache.expirationCount(),
+            state.redisLookupCount,
+            state.coalescedCount,
+            state.negativeHitCount));
+    return this;
+  }
+
+  private Behavior<Command> onExportEntries(ExportEntries command) {
+    List<CacheSnapshot.Entry> entries = new ArrayList<>(cache.size());
+    long nowMillis = System.currentTimeMillis();
+    cache.forEach(
+        (key, value, ttlNanos) ->
+            entries.add(
+                new CacheSnapshot.Entry(
+                    key,
+                    value,
+                    ttlNanos == 0
+                        ? 0
+                        : nowMillis + Math.max(1, TimeUnit.NANOSECONDS.toMillis(ttlNanos)))));
+    command.replyTo.tell(new ExportedEntries(entries));
+    return this;
+  }
+
+  private Behavior<Command> onRestore(Restore command) {
+    for (Put put : command.puts) {
+      if (!cache.containsKey(put.key)) {
+        putLocally(put);
+      }
+    }
+    command.replyTo.tell(Done.getInstance());
     return this;
   }
 
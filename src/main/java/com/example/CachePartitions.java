@@ -0,0 +1,75 @@
+package com.example;
+
+import akka.actor.typed.ActorRef;
+import com.example.cache.CacheValue;
+import com.example.cache.ReadView;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+// 本地缓存分区的不可变视图: 各个 CacheActor 分区的引用、可选的无锁读取句柄以及用于按键路由的一致性哈希环
+public final class CachePartitions {
+
+  private final List<ActorRef<CacheActor.Command>> partitions;
+  private final List<ReadView> readViews;
+  private final ConsistentHashRing ring;
+
+  public CachePartitions(List<ActorRef<CacheActor.Command>> partitions) {
+    this(partitions, null);
+  }
+
+  // readViews 为 null 表示未启用无锁读取, 否则与 partitions 一一对应
+  public CachePartitions(
+      List<ActorRef<CacheActor.Command>> partitions, List<ReadView> readViews) {
+    if (readViews != null && readViews.size() != partitions.size()) {
+      throw new IllegalArgumentException("readViews 的数量必须与分区数量一致");
+    }
+    this.partitions = Collections.unmodifiableList(partitions);
+    this.readViews = readViews == null ? null : Collections.unmodifiableList(readViews);
+    this.ring = new ConsistentHashRing(partitions.size());
+  }
+
+  // 返回负责该键的 CacheActor 分区
+  public ActorRef<CacheActor.Command> forKey(String key) {
+    return partitions.get(ring.partitionFor(key));
+  }
+
+  // 按负责的分区对元素分组, 用于把批量请求拆分为每个分区一条命令
+  public <T> Map<ActorRef<CacheActor.Command>, List<T>> groupByPartition(
+      Collection<T> items, Function<T, String> keyOf) {
+    Map<ActorRef<CacheActor.Command>, List<T>> groups = new LinkedHashMap<>();
+    for (T item : items) {
+      groups.computeIfAbsent(forKey(keyOf.apply(item)), partition -> new ArrayList<>()).add(item);
+    }
+    return groups;
+  }
+
+  // 在调用线程上无锁读取负责该键的分区的本地缓存; 未启用、未命中或已过期时返回 null
+  public CacheValue readLocal(String key) {
+    if (readViews == null) {
+      return null;
+    }
+    return readViews.get(ring.partitionFor(key)).get(key);
+  }
+
+  // 与 readLocal 相同, 但返回由值派生并保存在本地缓存条目上的对象, 同一个值的后续读取直接复用
+  public <T> T readLocal(String key, Class<T> type, Function<CacheValue, T> derive) {
+    if (readViews == null) {
+      return null;
+    }
+    return readViews.get(ring.partitionFor(key)).get(key, type, derive);
+  }
+
+  public List<ActorRef<CacheActor.Command>> all() {
+    return partitions;
+  }
+
+  public int size() {
+    return partitions.size();
+  }
+}
@@ -0,0 +1,258 @@
+package com.example;
+
+import akka.Done;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.AskPattern;
+import akka.japi.Pair;
+import akka.stream.KillSwitches;
+import akka.stream.UniqueKillSwitch;
+import akka.stream.javadsl.Keep;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import com.example.cache.CacheValue;
+import com.example.metrics.Metrics;
+import com.example.store.RedisValueCodec;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 启动时在后台从 Redis 预热本地缓存: 按 MATCH 模式逐页 SCAN, 每页的值和剩余存活时间通过一次流水线的
+ * MGET 和 PTTL 读取, 再按键路由为 {@link CacheActor.Restore} 写入各个分区(不覆盖已有的键, 不写回 Redis).
+ *
+ * <p>整个过程是一个按 rate 限速的 Akka Streams 流, SCAN 和 MGET 运行在阻塞 I/O 调度器上并使用单独的连接,
+ * 不占用 RedisActor 工作者的连接池. 扫描的键数量达到本地缓存容量后停止.
+ *
+ * <p>目标数量为 DBSIZE 与本地缓存容量中较小的一个; 预热的键数量达到目标的 ready-fill-ratio,
+ * 或者扫描结束(包括失败)后 {@link Status#ready} 为 true, 负载均衡器可以据此开始转发流量.
+ * MATCH 只匹配部分键时 DBSIZE 偏大, 此时以扫描结束为准.
+ */
+public final class CachePrewarmer {
+
+  public enum State {
+    DISABLED,
+    RUNNING,
+    DONE,
+    FAILED
+  }
+
+  // 预热进度
+  public static final class Status {
+    public static final Status DISABLED = new Status(State.DISABLED, 0, 0, 0, true);
+
+    public final State state;
+    public final long scanned;
+    public final long loaded;
+    public final long target;
+    public final boolean ready;
+
+    Status(State state, long scanned, long loaded, long target, boolean ready) {
+      this.state = state;
+      this.scanned = scanned;
+      this.loaded = loaded;
+      this.target = target;
+      this.ready = ready;
+    }
+  }
+
+  private final ActorSystem<?> system;
+  private final CachePartitions partitions;
+  private final PrewarmSettings settings;
+  private final RedisSettings redisSettings;
+  private final long capacity;
+  private final Duration restoreTimeout;
+  private final AtomicLong scanned = new AtomicLong();
+  private final AtomicLong loaded = new AtomicLong();
+  // DBSIZE 返回之前为 -1
+  private final AtomicLong target = new AtomicLong(-1);
+  private volatile State state = State.RUNNING;
+  private UniqueKillSwitch killSwitch;
+
+  private CachePrewarmer(
+      ActorSystem<?> system,
+      CachePartitions partitions,
+      PrewarmSettings settings,
+      RedisSettings redisSettings,
+      long capacity,
+      Duration restoreTimeout) {
+    this.system = system;
+    this.partitions = partitions;
+    this.settings = settings;
+    this.redisSettings = redisSettings;
+    this.capacity = capacity;
+    this.restoreTimeout = restoreTimeout;
+    Metrics metrics = Metrics.get(system);
+    metrics.gauge("cache_prewarm_scanned_keys", "预热时已扫描的键数量", scanned::get);
+    metrics.gauge("cache_prewarm_loaded_keys", "预热时已写入本地缓存的键数量", loaded::get);
+    metrics.gauge("cache_prewarm_target_keys", "预热的目标键数量", () -> Math.max(0, target.get()));
+  }
+
+  /** 开始后台预热, capacity 为所有分区的本地缓存总容量. */
+  static CachePrewarmer start(
+      ActorSystem<?> system,
+      CachePartitions partitions,
+      PrewarmSettings settings,
+      RedisSettings redisSettings,
+      CacheSettings cacheSettings) {
+    CachePrewarmer prewarmer =
+        new CachePrewarmer(
+            system,
+            partitions,
+            settings,
+            redisSettings,
+            cacheSettings.maxEntries,
+            cacheSettings.redisLookupTimeout);
+    prewarmer.run();
+    return prewarmer;
+  }
+
+  private void run() {
+    Source<List<CacheActor.Put>, ?> pages =
+        // unfoldResource 默认运行在阻塞 I/O 调度器上
+        Source.unfoldResource(Scan::new, Scan::nextPage, Scan::close);
+    if (settings.rate > 0) {
+      pages = pages.throttle(settings.rate, Duration.ofSeconds(1), page -> page.size());
+    }
+    Pair<UniqueKillSwitch, CompletionStage<Done>> materialized =
+        pages
+            .mapAsync(partitions.size(), this::restore)
+            .viaMat(KillSwitches.single(), Keep.right())
+            .toMat(Sink.ignore(), Keep.both())
+            .run(system);
+    killSwitch = materialized.first();
+    materialized
+        .second()
+        .whenComplete(
+            (done, failure) -> {
+              if (failure != null) {
+                state = State.FAILED;
+                system.log().warn("从 Redis 预热本地缓存失败, 已写入 {} 个键", loaded.get(), failure);
+              } else {
+                state = State.DONE;
+                system
+                    .log()
+                    .info("从 Redis 预热本地缓存完成: 扫描 {} 个键, 写入 {} 个", scanned.get(), loaded.get());
+              }
+            });
+  }
+
+  // 停止尚未完成的预热
+  void stop() {
+    killSwitch.shutdown();
+  }
+
+  Status status() {
+    State current = state;
+    long loadedKeys = loaded.get();
+    long targetKeys = target.get();
+    long readyAt = (long) Math.ceil(targetKeys * settings.readyFillRatio);
+    boolean ready = current != State.RUNNING || (targetKeys >= 0 && loadedKeys >= readyAt);
+    return new Status(current, scanned.get(), loadedKeys, Math.max(0, targetKeys), ready);
+  }
+
+  private CompletionStage<Integer> restore(List<CacheActor.Put> puts) {
+    CompletableFuture<?>[] acks =
+        partitions.groupByPartition(puts, put -> put.key).entrySet().stream()
+            .map(
+                group ->
+                    AskPattern.<CacheActor.Command, Done>ask(
+                            group.getKey(),
+                            replyTo -> new CacheActor.Restore(group.getValue(), replyTo),
+                            restoreTimeout,
+                            system.scheduler())
+                        .toCompletableFuture())
+            .toArray(CompletableFuture[]::new);
+    return CompletableFuture.allOf(acks)
+        .thenApply(
+            done -> {
+              loaded.addAndGet(puts.size());
+              return puts.size();
+            });
+  }
+
+  // 一次预热使用的连接和扫描位置, 依次扫描每个 MATCH 模式
+  private final class Scan {
+    private final Jedis jedis;
+    private int pattern;
+    private byte[] cursor = ScanParams.SCAN_POINTER_START_BINARY;
+
+    Scan() {
+      this.jedis = new Jedis(redisSettings.host, redisSettings.port);
+      target.set(Math.min(jedis.dbSize(), capacity));
+    }
+
+    // 返回下一页有值的键, 所有模式都扫描完或已达到本地缓存容量时返回 empty
+    Optional<List<CacheActor.Put>> nextPage() {
+      while (pattern < settings.match.size() && scanned.get() < capacity) {
+        ScanParams params =
+            new ScanParams()
+                .match(settings.match.get(pattern).getBytes(StandardCharsets.UTF_8))
+                .count(settings.scanCount);
+        ScanResult<byte[]> result = jedis.scan(cursor, params);
+        if (result.isCompleteIteration()) {
+          pattern++;
+          cursor = ScanParams.SCAN_POINTER_START_BINARY;
+        } else {
+          cursor = result.getCursorAsBytes();
+        }
+        List<byte[]> keys = result.getResult();
+        if (!keys.isEmpty()) {
+          // 一页中多出容量的键不再读取
+          long remaining = capacity - scanned.get();
+          if (keys.size() > remaining) {
+            keys = keys.subList(0, (int) remaining);
+          }
+          scanned.addAndGet(keys.size());
+          return Optional.of(fetch(keys));
+        }
+      }
+      return Optional.empty();
+    }
+
+    private List<CacheActor.Put> fetch(List<byte[]> keys) {
+      Pipeline pipeline = jedis.pipelined();
+      List<Response<List<byte[]>>> values = new ArrayList<>();
+      for (int from = 0; from < keys.size(); from += settings.mgetSize) {
+        List<byte[]> chunk = keys.subList(from, Math.min(keys.size(), from + settings.mgetSize));
+        values.add(pipeline.mget(chunk.toArray(new byte[0][])));
+      }
+      List<Response<Long>> ttls = new ArrayList<>(keys.size());
+      for (byte[] key : keys) {
+        ttls.add(pipeline.pttl(key));
+      }
+      pipeline.sync();
+      List<CacheActor.Put> puts = new ArrayList<>(keys.size());
+      int index = 0;
+      for (Response<List<byte[]>> chunk : values) {
+        for (byte[] encoded : chunk.get()) {
+          long ttlMillis = ttls.get(index).get();
+          String key = new String(keys.get(index), StandardCharsets.UTF_8);
+          index++;
+          CacheValue value = RedisValueCodec.decode(encoded);
+          // SCAN 之后已被删除或已过期的键(PTTL 为 -2)跳过; -1 表示永不过期
+          if (value == null || ttlMillis == -2 || ttlMillis == 0) {
+            continue;
+          }
+          puts.add(
+              new CacheActor.Put(key, value, ttlMillis > 0 ? Duration.ofMillis(ttlMillis) : null));
+        }
+      }
+      return puts;
+    }
+
+    void close() {
+      jedis.close();
+    }
+  }
+}
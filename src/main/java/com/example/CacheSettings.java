@@ -0,0 +1,190 @@
+package com.example;
+
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+
+// 缓存相关配置, 对应 reference.conf (可在 application.conf 中覆盖) 中的 akka-http-example.cache 配置块
+public class CacheSettings {
+
+  public final int partitions;
+  public final long maxEntries;
+  public final long maxBytes;
+  public final Duration expiryTickInterval;
+  public final Duration redisLookupTimeout;
+  public final int negativeMaxEntries;
+  public final Duration negativeTtl;
+  // HTTP 路由是否直接无锁读取本地缓存, 只有未命中才发送消息给 CacheActor
+  public final boolean lockFreeReads;
+  // 本地缓存的值是否保存在堆外的 slab 中
+  public final boolean offHeap;
+  public final int slabSize;
+  // 为空时 slab 使用直接内存, 否则使用该目录下的内存映射文件
+  public final String slabDirectory;
+  // 每个 CacheActor 分区邮箱的容量, 超出的消息转为死信; 0 表示不限制
+  public final int mailboxCapacity;
+
+  public CacheSettings(
+      int partitions,
+      long maxEntries,
+      long maxBytes,
+      Duration expiryTickInterval,
+      Duration redisLookupTimeout,
+      int negativeMaxEntries,
+      Duration negativeTtl,
+      boolean lockFreeReads,
+      boolean offHeap,
+      int slabSize,
+      String slabDirectory,
+      int mailboxCapacity) {
+    if (partitions <= 0) {
+      throw new IllegalArgumentException("partitions 必须大于 0: " + partitions);
+    }
+    if (maxEntries <= 0 || maxBytes <= 0) {
+      throw new IllegalArgumentException("max-entries 和 max-bytes 必须大于 0");
+    }
+    if (expiryTickInterval.isZero() || expiryTickInterval.isNegative()) {
+      throw new IllegalArgumentException("expiry-tick-interval 必须大于 0");
+    }
+    if (offHeap && slabSize < 64) {
+      throw new IllegalArgumentException("off-heap.slab-size 不能小于 64 字节: " + slabSize);
+    }
+    if (mailboxCapacity < 0) {
+      throw new IllegalArgumentException("mailbox-capacity 不能为负数: " + mailboxCapacity);
+    }
+    if (negativeMaxEntries <= 0 || negativeTtl.isNegative()) {
+      throw new IllegalArgumentException("negative.max-entries 必须大于 0, negative.ttl 不能为负数");
+    }
+    this.partitions = partitions;
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    this.expiryTickInterval = expiryTickInterval;
+    this.redisLookupTimeout = redisLookupTimeout;
+    this.negativeMaxEntries = negativeMaxEntries;
+    this.negativeTtl = negativeTtl;
+    this.lockFreeReads = lockFreeReads;
+    this.offHeap = offHeap;
+    this.slabSize = slabSize;
+    this.slabDirectory = slabDirectory;
+    this.mailboxCapacity = mailboxCapacity;
+  }
+
+  public static CacheSettings create(Config config) {
+    Config cache = config.getConfig("akka-http-example.cache");
+    int partitions = cache.getInt("partitions");
+    if (partitions <= 0) {
+      // 0 表示按 CPU 核数分区
+      partitions = Runtime.getRuntime().availableProcessors();
+    }
+    return new CacheSettings(
+        partitions,
+        cache.getLong("max-entries"),
+        cache.getBytes("max-bytes"),
+        cache.getDuration("expiry-tick-interval"),
+        cache.getDuration("redis-lookup-timeout"),
+        cache.getInt("negative.max-entries"),
+        cache.getDuration("negative.ttl"),
+        cache.getBoolean("lock-free-reads"),
+        cache.getBoolean("off-heap.enabled"),
+        (int) Math.min(Integer.MAX_VALUE, cache.getBytes("off-heap.slab-size")),
+        cache.getString("off-heap.directory"),
+        cache.getInt("mailbox-capacity"));
+  }
+
+  public CacheSettings withPartitions(int partitions) {
+    return new CacheSettings(
+        partitions,
+        maxEntries,
+        maxBytes,
+        expiryTickInterval,
+        redisLookupTimeout,
+        negativeMaxEntries,
+        negativeTtl,
+        lockFreeReads,
+        offHeap,
+        slabSize,
+        slabDirectory,
+        mailboxCapacity);
+  }
+
+  public CacheSettings withMaxEntries(long maxEntries) {
+    return new CacheSettings(
+        partitions,
+        maxEntries,
+        maxBytes,
+        expiryTickInterval,
+        redisLookupTimeout,
+        negativeMaxEntries,
+        negativeTtl,
+        lockFreeReads,
+        offHeap,
+        slabSize,
+        slabDirectory,
+        mailboxCapacity);
+  }
+
+  public CacheSettings withMaxBytes(long maxBytes) {
+    return new CacheSettings(
+        partitions,
+        maxEntries,
+        maxBytes,
+        expiryTickInterval,
+        redisLookupTimeout,
+        negativeMaxEntries,
+        negativeTtl,
+        lockFreeReads,
+        offHeap,
+        slabSize,
+        slabDirectory,
+        mailboxCapacity);
+  }
+
+  public CacheSettings withLockFreeReads(boolean lockFreeReads) {
+    return new CacheSettings(
+        partitions,
+        maxEntries,
+        maxBytes,
+        expiryTickInterval,
+        redisLookupTimeout,
+        negativeMaxEntries,
+        negativeTtl,
+        lockFreeReads,
+        offHeap,
+        slabSize,
+        slabDirectory,
+        mailboxCapacity);
+  }
+
+  public CacheSettings withOffHeap(boolean offHeap) {
+    return new CacheSettings(
+        partitions,
+        maxEntries,
+        maxBytes,
+        expiryTickInterval,
+        redisLookupTimeout,
+        negativeMaxEntries,
+        negativeTtl,
+        lockFreeReads,
+        offHeap,
+        slabSize,
+        slabDirectory,
+        mailboxCapacity);
+  }
+
+  // 单个分区使用的配置: 总容量平均分配到各个分区
+  public CacheSettings perPartition() {
+    return new CacheSettings(
+        1,
+        Math.max(1, (maxEntries + partitions - 1) / partitions),
+        Math.max(1, (maxBytes + partitions - 1) / partitions),
+        expiryTickInterval,
+        redisLookupTimeout,
+        Math.max(1, (negativeMaxEntries + partitions - 1) / partitions),
+        negativeTtl,
+        lockFreeReads,
+        offHeap,
+        slabSize,
+        slabDirectory,
+        mailboxCapacity);
+  }
+}
@@ -0,0 +1,226 @@
+package com.example;
+
+import akka.Done;
+import akka.actor.CoordinatedShutdown;
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.DispatcherSelector;
+import akka.actor.typed.javadsl.AskPattern;
+import akka.stream.javadsl.Source;
+import com.example.cache.CacheSnapshot;
+import com.example.metrics.Metrics;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 本地缓存的快照, 用于部署后的热启动. {@link #start()} 在 HTTP 绑定之前从快照文件恢复各个分区,
+ * 之后按 interval 定期写入快照, 并在 CoordinatedShutdown 的 before-actor-system-terminate 阶段
+ * (HTTP 已解绑、分区仍在运行)写入最后一次快照.
+ *
+ * <p>快照包含所有分区的条目, 恢复时按键重新路由, 因此分区数量可以在两次部署之间变化.
+ * 写入时各分区只复制条目的引用, 编码和文件 I/O 都在阻塞 I/O 调度器上进行, 不占用分区的处理时间.
+ *
+ * <p>最近一次写入的条目数量、文件大小、耗时以及恢复的条目数量和耗时在 /metrics 中以 cache_snapshot_* 输出.
+ */
+public final class CacheSnapshotter {
+
+  private static final String BLOCKING_DISPATCHER = "akka.actor.default-blocking-io-dispatcher";
+
+  private final ActorSystem<?> system;
+  private final CachePartitions partitions;
+  private final SnapshotSettings settings;
+  private final Executor blockingExecutor;
+  // 正在进行的写入, 定期写入和关闭时的写入不会同时进行
+  private final AtomicReference<CompletableFuture<Long>> writing = new AtomicReference<>();
+  private final AtomicLong writtenEntries = new AtomicLong();
+  private final AtomicLong writtenBytes = new AtomicLong();
+  private final AtomicLong writeMillis = new AtomicLong();
+  private final AtomicLong loadedEntries = new AtomicLong();
+  private final AtomicLong loadMillis = new AtomicLong();
+
+  public CacheSnapshotter(
+      ActorSystem<?> system, CachePartitions partitions, SnapshotSettings settings) {
+    this.system = system;
+    this.partitions = partitions;
+    this.settings = settings;
+    this.blockingExecutor = system.dispatchers().lookup(DispatcherSelector.blocking());
+    Metrics metrics = Metrics.get(system);
+    metrics.gauge("cache_snapshot_entries", "最近一次写入快照的条目数量", writtenEntries::get);
+    metrics.gauge("cache_snapshot_bytes", "最近一次写入的快照文件大小", writtenBytes::get);
+    metrics.gauge("cache_snapshot_write_milliseconds", "最近一次写入快照的耗时", writeMillis::get);
+    metrics.gauge("cache_snapshot_loaded_entries", "启动时从快照恢复的条目数量", loadedEntries::get);
+    metrics.gauge("cache_snapshot_load_milliseconds", "启动时从快照恢复的耗时", loadMillis::get);
+  }
+
+  /**
+   * 从快照恢复后开始定期写入, 并注册关闭时的写入. 返回的结果在恢复完成后完成, 值为恢复的条目数量;
+   * 快照不存在或无法读取时以空缓存启动, 结果为 0.
+   */
+  public CompletionStage<Long> start() {
+    return load()
+        .exceptionally(
+            failure -> {
+              system.log().warn("无法从快照 {} 恢复本地缓存, 以空缓存启动", settings.path, failure);
+              return 0L;
+            })
+        .thenApply(
+            loaded -> {
+              schedule();
+              return loaded;
+            });
+  }
+
+  // 读取快照并按键写入对应分区的本地缓存, 已过期的条目被跳过; 返回恢复的条目数量
+  public CompletionStage<Long> load() {
+    if (!Files.exists(settings.path)) {
+      system.log().info("快照 {} 不存在, 以空缓存启动", settings.path);
+      return CompletableFuture.completedFuture(0L);
+    }
+    long start = System.nanoTime();
+    CacheSnapshot.Reader reader;
+    try {
+      reader = CacheSnapshot.Reader.open(settings.path);
+    } catch (IOException e) {
+      return CompletableFuture.failedFuture(e);
+    }
+    return Source.fromIterator(() -> reader)
+        // 读取映射的文件会在缺页时阻塞, 解码放在阻塞 I/O 调度器上
+        .async(BLOCKING_DISPATCHER)
+        .grouped(settings.batchSize)
+        .mapAsync(partitions.size(), this::restoreBatch)
+        .runFold(0L, Long::sum, system)
+        .whenComplete(
+            (loaded, failure) -> {
+              closeQuietly(reader);
+              if (failure != null) {
+                return;
+              }
+              long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+              loadedEntries.set(loaded);
+              loadMillis.set(elapsed);
+              system
+                  .log()
+                  .info(
+                      "已从快照 {} ({} 字节) 恢复 {} / {} 个条目, 耗时 {} ms",
+                      settings.path,
+                      reader.fileSize(),
+                      loaded,
+                      reader.count(),
+                      elapsed);
+            });
+  }
+
+  /**
+   * 导出所有分区的条目并写入快照文件, 返回写入的条目数量. 已有写入在进行时返回它的结果, 不会重复写入.
+   */
+  public CompletionStage<Long> write() {
+    CompletableFuture<Long> result = new CompletableFuture<>();
+    CompletableFuture<Long> running = writing.compareAndExchange(null, result);
+    if (running != null) {
+      return running;
+    }
+    long start = System.nanoTime();
+    List<CompletableFuture<CacheActor.ExportedEntries>> exports =
+        new ArrayList<>(partitions.size());
+    for (ActorRef<CacheActor.Command> partition : partitions.all()) {
+      exports.add(
+          AskPattern.<CacheActor.Command, CacheActor.ExportedEntries>ask(
+                  partition, CacheActor.ExportEntries::new, settings.timeout, system.scheduler())
+              .toCompletableFuture());
+    }
+    CompletableFuture.allOf(exports.toArray(new CompletableFuture<?>[0]))
+        .thenApplyAsync(done -> writeFile(exports, start), blockingExecutor)
+        .whenComplete(
+            (written, failure) -> {
+              writing.set(null);
+              if (failure != null) {
+                system.log().warn("写入本地缓存快照 {} 失败", settings.path, failure);
+                result.completeExceptionally(failure);
+              } else {
+                result.complete(written);
+              }
+            });
+    return result;
+  }
+
+  private long writeFile(List<CompletableFuture<CacheActor.ExportedEntries>> exports, long start) {
+    try (CacheSnapshot.Writer writer = CacheSnapshot.Writer.create(settings.path)) {
+      for (CompletableFuture<CacheActor.ExportedEntries> export : exports) {
+        for (CacheSnapshot.Entry entry : export.join().entries) {
+          writer.write(entry);
+        }
+      }
+      long count = writer.count();
+      long bytes = writer.commit();
+      long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+      writtenEntries.set(count);
+      writtenBytes.set(bytes);
+      writeMillis.set(elapsed);
+      system
+          .log()
+          .info("本地缓存快照已写入 {}: {} 个条目, {} 字节, 耗时 {} ms", settings.path, count, bytes, elapsed);
+      return count;
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  private CompletionStage<Long> restoreBatch(List<CacheSnapshot.Entry> batch) {
+    long nowMillis = System.currentTimeMillis();
+    List<CacheActor.Put> puts = new ArrayList<>(batch.size());
+    for (CacheSnapshot.Entry entry : batch) {
+      if (entry.expireAtMillis == 0) {
+        puts.add(new CacheActor.Put(entry.key, entry.value));
+      } else if (entry.expireAtMillis > nowMillis) {
+        puts.add(
+            new CacheActor.Put(
+                entry.key, entry.value, Duration.ofMillis(entry.expireAtMillis - nowMillis)));
+      }
+    }
+    CompletableFuture<?>[] acks =
+        partitions.groupByPartition(puts, put -> put.key).entrySet().stream()
+            .map(
+                group ->
+                    AskPattern.<CacheActor.Command, Done>ask(
+                            group.getKey(),
+                            replyTo -> new CacheActor.Restore(group.getValue(), replyTo),
+                            settings.timeout,
+                            system.scheduler())
+                        .toCompletableFuture())
+            .toArray(CompletableFuture<?>[]::new);
+    return CompletableFuture.allOf(acks).thenApply(done -> (long) puts.size());
+  }
+
+  private void schedule() {
+    if (!settings.interval.isZero()) {
+      system
+          .scheduler()
+          .scheduleWithFixedDelay(
+              settings.interval, settings.interval, this::write, system.executionContext());
+    }
+    CoordinatedShutdown.get(system)
+        .addTask(
+            CoordinatedShutdown.PhaseBeforeActorSystemTerminate(),
+            "cache-snapshot",
+            () -> write().handle((written, failure) -> Done.getInstance()));
+  }
+
+  private static void closeQuietly(CacheSnapshot.Reader reader) {
+    try {
+      reader.close();
+    } catch (IOException e) {
+      // 忽略
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.example;
+
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+
+// Redis 熔断器配置, 对应 reference.conf 中的 akka-http-example.redis.circuit-breaker 配置块
+public class CircuitBreakerSettings {
+
+  // 熔断期间 Put 的处理方式
+  public enum WritePolicy {
+    // 更新本地缓存, 把写入暂存在 CacheActor 中, 恢复后再写入 Redis
+    QUEUE,
+    // 路由直接返回 503, 不更新本地缓存
+    REFUSE
+  }
+
+  public static final CircuitBreakerSettings DISABLED =
+      new CircuitBreakerSettings(
+          false,
+          1,
+          Duration.ofSeconds(3),
+          Duration.ofSeconds(1),
+          Duration.ofSeconds(1),
+          WritePolicy.QUEUE,
+          1,
+          Duration.ZERO);
+
+  // 关闭时所有调用直接执行, 失败时不返回过期的值
+  public final boolean enabled;
+  public final int maxFailures;
+  public final Duration callTimeout;
+  public final Duration resetTimeout;
+  // 半开探测失败后重置时间按指数增长的上限
+  public final Duration maxResetTimeout;
+  public final WritePolicy writePolicy;
+  // 每个分区最多暂存的写入数量, 同一个键只保留最后一次写入
+  public final int maxQueuedWrites;
+  // 过期的本地条目再保留多久, 熔断期间可以返回它们
+  public final Duration staleIfError;
+
+  public CircuitBreakerSettings(
+      boolean enabled,
+      int maxFailures,
+      Duration callTimeout,
+      Duration resetTimeout,
+      Duration maxResetTimeout,
+      WritePolicy writePolicy,
+      int maxQueuedWrites,
+      Duration staleIfError) {
+    if (maxFailures <= 0 || maxQueuedWrites <= 0) {
+      throw new IllegalArgumentException("max-failures 和 max-queued-writes 必须大于 0");
+    }
+    if (resetTimeout.isZero() || resetTimeout.isNegative() || staleIfError.isNegative()) {
+      throw new IllegalArgumentException("reset-timeout 必须大于 0, stale-if-error 不能为负数");
+    }
+    this.enabled = enabled;
+    this.maxFailures = maxFailures;
+    this.callTimeout = callTimeout;
+    this.resetTimeout = resetTimeout;
+    this.maxResetTimeout = maxResetTimeout;
+    this.writePolicy = writePolicy;
+    this.maxQueuedWrites = maxQueuedWrites;
+    this.staleIfError = staleIfError;
+  }
+
+  public static CircuitBreakerSettings create(Config config) {
+    Config breaker = config.getConfig("akka-http-example.redis.circuit-breaker");
+    return new CircuitBreakerSettings(
+        breaker.getBoolean("enabled"),
+        breaker.getInt("max-failures"),
+        breaker.getDuration("call-timeout"),
+        breaker.getDuration("reset-timeout"),
+        breaker.getDuration("max-reset-timeout"),
+        parseWritePolicy(breaker.getString("write-policy")),
+        breaker.getInt("max-queued-writes"),
+        breaker.getDuration("stale-if-error"));
+  }
+
+  private static WritePolicy parseWritePolicy(String value) {
+    switch (value) {
+      case "queue":
+        return WritePolicy.QUEUE;
+      case "refuse":
+        return WritePolicy.REFUSE;
+      default:
+        throw new IllegalArgumentException("未知的 write-policy: " + value);
+    }
+  }
+}
@@ -0,0 +1,108 @@
+package com.example;
+
+import java.util.Arrays;
+
+/**
+ * 一致性哈希环, 将键映射到 [0, partitions) 之间的分区编号.
+ *
+ * <p>每个分区在环上放置若干虚拟节点, 查找时对排好序的哈希点做二分查找, 不产生任何对象分配.
+ * 实例不可变, 可以在多个线程间共享.
+ */
+public final class ConsistentHashRing {
+
+  // 每个分区的虚拟节点数量, 越大分布越均匀
+  public static final int DEFAULT_VIRTUAL_NODES = 160;
+
+  private final int partitions;
+  private final int[] points;
+  private final int[] owners;
+
+  public ConsistentHashRing(int partitions) {
+    this(partitions, DEFAULT_VIRTUAL_NODES);
+  }
+
+  public ConsistentHashRing(int partitions, int virtualNodes) {
+    if (partitions <= 0) {
+      throw new IllegalArgumentException("partitions 必须大于 0: " + partitions);
+    }
+    if (virtualNodes <= 0) {
+      throw new IllegalArgumentException("virtualNodes 必须大于 0: " + virtualNodes);
+    }
+    this.partitions = partitions;
+
+    int size = partitions * virtualNodes;
+    long[] packed = new long[size];
+    int i = 0;
+    for (int partition = 0; partition < partitions; partition++) {
+      for (int vnode = 0; vnode < virtualNodes; vnode++) {
+        int point = hash("partition-" + partition + "#" + vnode);
+        // 高 32 位存哈希点, 低 32 位存分区编号, 排序结果即哈希点的有符号顺序
+        packed[i++] = ((long) point << 32) | partition;
+      }
+    }
+    Arrays.sort(packed);
+
+    this.points = new int[size];
+    this.owners = new int[size];
+    for (i = 0; i < size; i++) {
+      points[i] = (int) (packed[i] >>> 32);
+      owners[i] = (int) packed[i];
+    }
+  }
+
+  public int partitions() {
+    return partitions;
+  }
+
+  // 返回键所属的分区编号
+  public int partitionFor(String key) {
+    if (partitions == 1) {
+      return 0;
+    }
+    int h = hash(key);
+    // 找到第一个 >= h 的哈希点, 越过末尾则回绕到环首
+    int low = 0;
+    int high = points.length - 1;
+    while (low <= high) {
+      int mid = (low + high) >>> 1;
+      if (points[mid] < h) {
+        low = mid + 1;
+      } else {
+        high = mid - 1;
+      }
+    }
+    return owners[low == points.length ? 0 : low];
+  }
+
+  // MurmurHash3 (x86_32) 的字符版本, 两个 char 组成一个 32 位块
+  static int hash(CharSequence key) {
+    final int c1 = 0xcc9e2d51;
+    final int c2 = 0x1b873593;
+    int h = 0x9747b28c;
+    int length = key.length();
+    int i = 0;
+    for (; i + 1 < length; i += 2) {
+      int k = key.charAt(i) | (key.charAt(i + 1) << 16);
+      k *= c1;
+      k = Integer.rotateLeft(k, 15);
+      k *= c2;
+      h ^= k;
+      h = Integer.rotateLeft(h, 13);
+      h = h * 5 + 0xe6546b64;
+    }
+    if (i < length) {
+      int k = key.charAt(i);
+      k *= c1;
+      k = Integer.rotateLeft(k, 15);
+      k *= c2;
+      h ^= k;
+    }
+    h ^= length * 2;
+    h ^= h >>> 16;
+    h *= 0x85ebca6b;
+    h ^= h >>> 13;
+    h *= 0xc2b2ae35;
+    h ^= h >>> 16;
+    return h;
+  }
+}
@@ -1,6 +1,7 @@
 package com.example;
 
 import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.AskPattern;
 import akka.http.javadsl.Http;
 import akka.http.javadsl.ServerBinding;
 import akka.http.javadsl.server.Route;
@@ -14,20 +15,40 @@ public class HttpServer {
     ActorSystem<SupervisorActor.Command> system =
         ActorSystem.create(SupervisorActor.create(), "HttpServer");
 
+    // 在接受请求之前从快照恢复本地缓存
+    SnapshotSettings snapshotSettings = SnapshotSettings.create(system.settings().config());
+    if (snapshotSettings.enabled) {
+      CachePartitions partitions =
+          AskPattern.<SupervisorActor.Command, CachePartitions>ask(
+                  system,
+                  SupervisorActor.GetCachePartitions::new,
+                  snapshotSettings.timeout,
+                  system.scheduler())
+              .toCompletableFuture()
+              .join();
+      CacheSnapshotter snapshotter = new CacheSnapshotter(system, partitions, snapshotSettings);
+      snapshotter.start().toCompletableFuture().join();
+    }
+
     // 创建路由
     SimpleHttpRoutes routes = new SimpleHttpRoutes(system, system);
     Route route = routes.createRoute();
 
-    // 启动 HTTP 服务器
-    final Http http = Http.get(system);
-    final CompletionStage<ServerBinding> binding = http.newServerAt("localhost", 8080).bind(route);
+    // 按 akka-http-example.server 配置启动 HTTP 服务器
+    HttpServerSettings serverSettings = HttpServerSettings.create(system.settings().config());
+    final CompletionStage<ServerBinding> binding = bind(system, serverSettings, route);
 
     // 打印服务器启动信息
     binding
         .thenAccept(
             serverBinding ->
                 System.out.println(
-                    "服务器现在运行在 http://localhost:" + serverBinding.localAddress() + "/"))
+                    "服务器现在运行在 http://"
+                        + serverBinding.localAddress().getHostString()
+                        + ":"
+                        + serverBinding.localAddress().getPort()
+                        + "/"
+                        + (serverSettings.http2 ? " (HTTP/1.1 和 h2c)" : "")))
         .exceptionally(
             failure -> {
               System.err.println("服务器绑定失败: " + failure.getMessage());
@@ -38,4 +59,13 @@ public class HttpServer {
     // 保持应用程序运行
     system.getWhenTerminated().toCompletableFuture().join();
   }
+
+  /** 按 settings 在 akka.http.server 配置的基础上绑定 route. */
+  public static CompletionStage<ServerBinding> bind(
+      ActorSystem<?> system, HttpServerSettings settings, Route route) {
+    return Http.get(system)
+        .newServerAt(settings.host, settings.port)
+        .adaptSettings(settings::applyTo)
+        .bind(route);
+  }
 }
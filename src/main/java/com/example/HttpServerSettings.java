@@ -0,0 +1,134 @@
+package com.example;
+
+import akka.http.javadsl.settings.ServerSettings;
+import com.typesafe.config.Config;
+import scala.concurrent.duration.FiniteDuration;
+
+import java.time.Duration;
+
+// HTTP 服务器的监听地址和连接配置, 对应 reference.conf 中的 akka-http-example.server 配置块
+public class HttpServerSettings {
+
+  public final String host;
+  public final int port;
+  // 明文端口上同时接受 HTTP/1.1 和 h2c (Upgrade 升级和 prior knowledge 直连)
+  public final boolean http2;
+  // 每个 HTTP/2 连接上同时处理的请求(流)数量上限
+  public final int maxConcurrentStreams;
+  // 每个 HTTP/1.1 连接上同时处理的流水线请求数量, 1 表示不使用流水线
+  public final int pipeliningLimit;
+  public final int maxConnections;
+  // 监听套接字的等待队列长度
+  public final int backlog;
+  // 0 表示不限制
+  public final Duration idleTimeout;
+  // 0 表示不限制
+  public final Duration requestTimeout;
+
+  public HttpServerSettings(
+      String host,
+      int port,
+      boolean http2,
+      int maxConcurrentStreams,
+      int pipeliningLimit,
+      int maxConnections,
+      int backlog,
+      Duration idleTimeout,
+      Duration requestTimeout) {
+    if (port < 0 || port > 65535) {
+      throw new IllegalArgumentException("server.port 必须在 0 到 65535 之间: " + port);
+    }
+    if (maxConcurrentStreams <= 0 || pipeliningLimit <= 0 || maxConnections <= 0 || backlog <= 0) {
+      throw new IllegalArgumentException(
+          "server.http2.max-concurrent-streams、pipelining-limit、max-connections 和 backlog 必须大于 0");
+    }
+    if (idleTimeout.isNegative() || requestTimeout.isNegative()) {
+      throw new IllegalArgumentException("server.idle-timeout 和 request-timeout 不能为负数");
+    }
+    this.host = host;
+    this.port = port;
+    this.http2 = http2;
+    this.maxConcurrentStreams = maxConcurrentStreams;
+    this.pipeliningLimit = pipeliningLimit;
+    this.maxConnections = maxConnections;
+    this.backlog = backlog;
+    this.idleTimeout = idleTimeout;
+    this.requestTimeout = requestTimeout;
+  }
+
+  public static HttpServerSettings create(Config config) {
+    Config server = config.getConfig("akka-http-example.server");
+    return new HttpServerSettings(
+        server.getString("host"),
+        server.getInt("port"),
+        server.getBoolean("http2.enabled"),
+        server.getInt("http2.max-concurrent-streams"),
+        server.getInt("pipelining-limit"),
+        server.getInt("max-connections"),
+        server.getInt("backlog"),
+        server.getDuration("idle-timeout"),
+        server.getDuration("request-timeout"));
+  }
+
+  public HttpServerSettings withHost(String host) {
+    return new HttpServerSettings(
+        host,
+        port,
+        http2,
+        maxConcurrentStreams,
+        pipeliningLimit,
+        maxConnections,
+        backlog,
+        idleTimeout,
+        requestTimeout);
+  }
+
+  public HttpServerSettings withPort(int port) {
+    return new HttpServerSettings(
+        host,
+        port,
+        http2,
+        maxConcurrentStreams,
+        pipeliningLimit,
+        maxConnections,
+        backlog,
+        idleTimeout,
+        requestTimeout);
+  }
+
+  public HttpServerSettings withHttp2(boolean http2) {
+    return new HttpServerSettings(
+        host,
+        port,
+        http2,
+        maxConcurrentStreams,
+        pipeliningLimit,
+        maxConnections,
+        backlog,
+        idleTimeout,
+        requestTimeout);
+  }
+
+  /** 在 akka.http.server 的配置上应用本配置块, 其余设置保持不变. */
+  public ServerSettings applyTo(ServerSettings settings) {
+    return settings
+        .withPreviewServerSettings(settings.getPreviewServerSettings().withEnableHttp2(http2))
+        .withHttp2Settings(
+            settings.getHttp2Settings().withMaxConcurrentStreams(maxConcurrentStreams))
+        .withPipeliningLimit(pipeliningLimit)
+        .withMaxConnections(maxConnections)
+        .withBacklog(backlog)
+        .withTimeouts(
+            settings
+                .getTimeouts()
+                .withIdleTimeout(toScala(idleTimeout))
+                .withRequestTimeout(toScala(requestTimeout)));
+  }
+
+  private static scala.concurrent.duration.Duration toScala(Duration duration) {
+    if (duration.isZero()) {
+      return scala.concurrent.duration.Duration.Inf();
+    }
+    return FiniteDuration.fromNanos(duration.toNanos());
+  }
+}
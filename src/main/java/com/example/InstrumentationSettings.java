@@ -0,0 +1,28 @@
+package com.example;
+
+import com.typesafe.config.Config;
+
+// Actor 邮箱和消息处理耗时统计的配置, 对应 reference.conf 中的 akka-http-example.instrumentation 配置块
+public class InstrumentationSettings {
+
+  public static final InstrumentationSettings DISABLED = new InstrumentationSettings(false, 1);
+
+  // 关闭时不替换邮箱也不包装行为, 没有任何额外开销
+  public final boolean enabled;
+  // 每 sampleEvery 条消息统计一条的排队和处理耗时; 邮箱长度始终精确统计
+  public final int sampleEvery;
+
+  public InstrumentationSettings(boolean enabled, int sampleEvery) {
+    if (sampleEvery <= 0) {
+      throw new IllegalArgumentException("sample-every 必须大于 0: " + sampleEvery);
+    }
+    this.enabled = enabled;
+    this.sampleEvery = sampleEvery;
+  }
+
+  public static InstrumentationSettings create(Config config) {
+    Config instrumentation = config.getConfig("akka-http-example.instrumentation");
+    return new InstrumentationSettings(
+        instrumentation.getBoolean("actors"), instrumentation.getInt("sample-every"));
+  }
+}
@@ -0,0 +1,143 @@
+package com.example;
+
+import akka.actor.ActorRef;
+import akka.actor.ActorSystem;
+import akka.actor.DeadLetter;
+import akka.actor.typed.javadsl.Adapter;
+import akka.dispatch.Envelope;
+import akka.dispatch.MailboxType;
+import akka.dispatch.MessageQueue;
+import akka.dispatch.MultipleConsumerSemantics;
+import akka.dispatch.ProducesMessageQueue;
+import com.example.metrics.Counter;
+import com.example.metrics.Gauge;
+import com.example.metrics.Histogram;
+import com.example.metrics.Metrics;
+import com.typesafe.config.Config;
+import scala.Option;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 统计邮箱长度和消息排队时间的邮箱. 配置块中的 actor 作为指标的 actor 标签,
+ * 使用同一配置块的多个 Actor (分区、工作者) 的邮箱长度合计到同一个 Gauge 中.
+ *
+ * <p>配置块中的 mailbox-capacity 大于 0 时为有界邮箱: 与 {@link BoundedRequestMailbox} 相同,
+ * 消息数量达到容量后只把发送方等待回复的命令转为死信, 并计入 actor_mailbox_dropped_total.
+ *
+ * <p>排队时间按消息类型记录, 通过 {@code akka-http-example.instrumentation.sample-every} 抽样.
+ * 定时器和 ask 回复在邮箱中是 Akka 内部的包装类型, 以包装类型的名称记录.
+ */
+public class InstrumentedMailbox
+    implements MailboxType, ProducesMessageQueue<InstrumentedMailbox.InstrumentedMessageQueue> {
+
+  private final String actor;
+  private final int sampleEvery;
+  private final int capacity;
+
+  public InstrumentedMailbox(ActorSystem.Settings settings, Config config) {
+    this.actor = config.getString("actor");
+    this.sampleEvery = InstrumentationSettings.create(settings.config()).sampleEvery;
+    this.capacity = config.getInt("mailbox-capacity");
+  }
+
+  @Override
+  public MessageQueue create(Option<ActorRef> owner, Option<ActorSystem> system) {
+    Metrics metrics = Metrics.get(Adapter.toTyped(system.get()));
+    ActorRef deadLetters = system.get().deadLetters();
+    return new InstrumentedMessageQueue(metrics, actor, sampleEvery, capacity, deadLetters);
+  }
+
+  static final class InstrumentedMessageQueue
+      implements MessageQueue, MultipleConsumerSemantics {
+
+    private final ConcurrentLinkedQueue<Queued> queue = new ConcurrentLinkedQueue<>();
+    // ConcurrentLinkedQueue.size() 需要遍历队列, 单独计数用于容量判断
+    private final AtomicInteger count = new AtomicInteger();
+    private final Gauge depth;
+    private final Counter dropped;
+    private final ClassValue<Histogram> waitTime;
+    private final int sampleEvery;
+    // 0 表示不限制
+    private final int capacity;
+    private final ActorRef deadLetters;
+
+    InstrumentedMessageQueue(
+        Metrics metrics, String actor, int sampleEvery, int capacity, ActorRef deadLetters) {
+      this.depth = metrics.gauge("actor_mailbox_depth", "Actor 邮箱中等待处理的消息数量", "actor", actor);
+      this.dropped =
+          metrics.counter("actor_mailbox_dropped_total", "邮箱已满而转为死信的消息数量", "actor", actor);
+      this.waitTime =
+          ActorInstrumentation.byMessageType(
+              metrics, "actor_mailbox_wait_seconds", "消息在邮箱中的排队时间", actor);
+      this.sampleEvery = sampleEvery;
+      this.capacity = capacity;
+      this.deadLetters = deadLetters;
+    }
+
+    @Override
+    public void enqueue(ActorRef receiver, Envelope handle) {
+      if (capacity > 0) {
+        if (count.get() >= capacity && BoundedRequestMailbox.sheddable(handle.message())) {
+          dropped.increment();
+          deadLetters.tell(
+              new DeadLetter(handle.message(), handle.sender(), receiver), handle.sender());
+          return;
+        }
+        count.incrementAndGet();
+      }
+      boolean sampled = sampleEvery == 1 || ThreadLocalRandom.current().nextInt(sampleEvery) == 0;
+      queue.add(new Queued(handle, sampled ? System.nanoTime() : 0));
+      depth.increment();
+    }
+
+    @Override
+    public Envelope dequeue() {
+      Queued queued = queue.poll();
+      if (queued == null) {
+        return null;
+      }
+      if (capacity > 0) {
+        count.decrementAndGet();
+      }
+      depth.decrement();
+      if (queued.enqueuedAt != 0) {
+        waitTime
+            .get(queued.envelope.message().getClass())
+            .record(System.nanoTime() - queued.enqueuedAt);
+      }
+      return queued.envelope;
+    }
+
+    @Override
+    public int numberOfMessages() {
+      return capacity > 0 ? count.get() : queue.size();
+    }
+
+    @Override
+    public boolean hasMessages() {
+      return !queue.isEmpty();
+    }
+
+    @Override
+    public void cleanUp(ActorRef owner, MessageQueue deadLetters) {
+      Envelope envelope;
+      while ((envelope = dequeue()) != null) {
+        deadLetters.enqueue(owner, envelope);
+      }
+    }
+  }
+
+  private static final class Queued {
+    final Envelope envelope;
+    // 未被抽样的消息为 0
+    final long enqueuedAt;
+
+    Queued(Envelope envelope, long enqueuedAt) {
+      this.envelope = envelope;
+      this.enqueuedAt = enqueuedAt;
+    }
+  }
+}
@@ -0,0 +1,57 @@
+package com.example;
+
+import com.typesafe.config.Config;
+
+import java.util.List;
+
+// 启动时从 Redis 预热本地缓存的配置, 对应 reference.conf 中的 akka-http-example.cache.prewarm 配置块
+public class PrewarmSettings {
+
+  public final boolean enabled;
+  // SCAN 的 MATCH 模式, 依次扫描
+  public final List<String> match;
+  // 每次 SCAN 的 COUNT 提示, 也大致是每一页的键数量
+  public final int scanCount;
+  // 每条 MGET 的最大键数量, 一页的 MGET 和 PTTL 通过一次流水线发送
+  public final int mgetSize;
+  // 每秒最多预热的键数量, 0 表示不限制
+  public final int rate;
+  // 预热的键数量达到目标的该比例后就绪
+  public final double readyFillRatio;
+
+  public PrewarmSettings(
+      boolean enabled,
+      List<String> match,
+      int scanCount,
+      int mgetSize,
+      int rate,
+      double readyFillRatio) {
+    if (match.isEmpty()) {
+      throw new IllegalArgumentException("prewarm.match 不能为空");
+    }
+    if (scanCount <= 0 || mgetSize <= 0 || rate < 0) {
+      throw new IllegalArgumentException("prewarm.scan-count 和 mget-size 必须大于 0, rate 不能为负数");
+    }
+    if (readyFillRatio < 0 || readyFillRatio > 1) {
+      throw new IllegalArgumentException(
+          "prewarm.ready-fill-ratio 必须在 0 到 1 之间: " + readyFillRatio);
+    }
+    this.enabled = enabled;
+    this.match = List.copyOf(match);
+    this.scanCount = scanCount;
+    this.mgetSize = mgetSize;
+    this.rate = rate;
+    this.readyFillRatio = readyFillRatio;
+  }
+
+  public static PrewarmSettings create(Config config) {
+    Config prewarm = config.getConfig("akka-http-example.cache.prewarm");
+    return new PrewarmSettings(
+        prewarm.getBoolean("enabled"),
+        prewarm.getStringList("match"),
+        prewarm.getInt("scan-count"),
+        prewarm.getInt("mget-size"),
+        prewarm.getInt("rate"),
+        prewarm.getDouble("ready-fill-ratio"));
+  }
+}
@@ -1,77 +1,489 @@
 package com.example;
 
+import akka.actor.typed.ActorRef;
 import akka.actor.typed.Behavior;
+import akka.actor.typed.DispatcherSelector;
+import akka.actor.typed.PostStop;
+import akka.actor.typed.Props;
+import akka.actor.typed.SupervisorStrategy;
 import akka.actor.typed.javadsl.AbstractBehavior;
 import akka.actor.typed.javadsl.ActorContext;
+import akka.actor.typed.javadsl.AskPattern;
 import akka.actor.typed.javadsl.Behaviors;
 import akka.actor.typed.javadsl.Receive;
-import redis.clients.jedis.Jedis;
-import redis.clients.jedis.exceptions.JedisConnectionException;
+import akka.actor.typed.javadsl.TimerScheduler;
+import akka.pattern.StatusReply;
+import com.example.metrics.Counter;
+import com.example.metrics.Histogram;
+import com.example.metrics.Metrics;
+import com.example.store.BackingStore;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 第二级存储的工作者: 由 SupervisorActor 按配置创建多个, 共享同一个 {@link BackingStore}, 运行在专用的阻塞调度器上.
+ * 负责把 Get 合并为批量读取、按写入模式写入存储; 存储引擎(redis、memory、file)由 akka-http-example.store
+ * 选择, 名称和 redis_* 指标沿用默认的 Redis 引擎.
+ */
 public class RedisActor extends AbstractBehavior<CacheActor.Command> {
 
+  // 触发批量读取的内部命令
+  private enum FlushGets implements CacheActor.Command {
+    INSTANCE
+  }
+
+  // 触发 write-behind 批量写入的内部命令
+  private enum FlushWrites implements CacheActor.Command {
+    INSTANCE
+  }
+
   private final ActorContext<CacheActor.Command> context;
-  private Jedis jedis;
+  private final TimerScheduler<CacheActor.Command> timers;
+  private final RedisSettings settings;
+  private final BackingStore store;
+
+  // 等待合并为一次 MGET 的 Get 命令
+  private final List<CacheActor.Get> pendingGets = new ArrayList<>();
+  private long firstPendingAt;
+  private final Histogram batchSizeHistogram;
+  private final Histogram batchLingerHistogram;
+
+  /**
+   * write-behind 模式下已确认但尚未写入存储的数据: 在受监管的行为之外创建, 工作者因异常重启时原样保留,
+   * 重启后的实例继续写入, 不会丢失已经向调用方确认的写入.
+   */
+  private static final class PendingWrites {
+    // 同一个键只保留最后一次写入
+    final Map<String, CacheActor.Put> writes = new LinkedHashMap<>();
+    // 批量写入连续失败时下一次重试的等待时间, 没有失败时为 null
+    Duration backoff;
+  }
+
+  private final PendingWrites pending;
+  private final Map<String, CacheActor.Put> pendingWrites;
+  private final Counter writeRetriesCounter;
+  private final Counter writesRejectedCounter;
+  private final Histogram writeBatchSizeHistogram;
+  private final Counter mergedWritesCounter;
+  // 存储操作的耗时, Redis 引擎包括从连接池借用连接的时间
+  private final Histogram getLatency;
+  private final Histogram mgetLatency;
+  private final Histogram setLatency;
+  private final Histogram pipelineLatency;
 
-  private RedisActor(ActorContext<CacheActor.Command> context) {
+  private RedisActor(
+      ActorContext<CacheActor.Command> context,
+      TimerScheduler<CacheActor.Command> timers,
+      BackingStore store,
+      RedisSettings settings,
+      PendingWrites pending) {
     super(context);
     this.context = context;
-    try {
-      this.jedis = new Jedis("127.0.0.1", 6379);
-      context.getLog().info("成功连接到 Redis");
-    } catch (JedisConnectionException e) {
-      context.getLog().error("无法连接到 Redis", e);
-      // 连接失败时，抛出异常以触发父Actor的监管策略
-      throw new RuntimeException("无法连接到 Redis", e);
+    this.timers = timers;
+    this.store = store;
+    this.settings = settings;
+    this.pending = pending;
+    this.pendingWrites = pending.writes;
+    Metrics metrics = Metrics.get(context.getSystem());
+    this.batchSizeHistogram =
+        metrics.histogram("redis_get_batch_size", "每次 MGET 合并的 Get 数量");
+    this.batchLingerHistogram =
+        metrics.timer(
+            "redis_get_batch_linger_seconds", "批次中第一个 Get 入队到 MGET 发出的等待时间");
+    this.writeBatchSizeHistogram =
+        metrics.histogram("redis_write_batch_size", "write-behind 每次批量写入的键数量");
+    this.mergedWritesCounter =
+        metrics.counter("redis_write_behind_merged_total", "write-behind 中被同一键的后续写入覆盖的次数");
+    this.getLatency = commandLatency(metrics, "get");
+    this.mgetLatency = commandLatency(metrics, "mget");
+    this.setLatency = commandLatency(metrics, "set");
+    this.pipelineLatency = commandLatency(metrics, "pipeline");
+    this.writeRetriesCounter =
+        metrics.counter("redis_write_behind_retries_total", "write-behind 批量写入失败后安排重试的次数");
+    this.writesRejectedCounter =
+        metrics.counter(
+            "redis_write_behind_rejected_total", "存储不可用且待写入数据已达上限时拒绝的写入数量");
+    // 重启前未写完的数据: 继续按退避时间重试, 或立即写入
+    if (!pendingWrites.isEmpty()) {
+      if (pending.backoff != null) {
+        timers.startSingleTimer(FlushWrites.INSTANCE, pending.backoff);
+      } else {
+        context.getSelf().tell(FlushWrites.INSTANCE);
+      }
     }
   }
 
-  public static Behavior<CacheActor.Command> create() {
-    return Behaviors.setup(RedisActor::new);
+  private static Histogram commandLatency(Metrics metrics, String command) {
+    return metrics.timer(
+        "redis_command_duration_seconds", "Redis 命令耗时", "command", command);
+  }
+
+  /**
+   * 单个受监管的工作者, 存储由调用方创建和关闭. 处理消息时抛出异常会重启工作者,
+   * write-behind 待写入的数据保存在受监管的行为之外, 重启后继续写入.
+   */
+  public static Behavior<CacheActor.Command> create(BackingStore store, RedisSettings settings) {
+    return Behaviors.setup(
+        outer -> {
+          PendingWrites pending = new PendingWrites();
+          return Behaviors.supervise(
+                  Behaviors.<CacheActor.Command>setup(
+                      context ->
+                          Behaviors.withTimers(
+                              timers -> new RedisActor(context, timers, store, settings, pending))))
+              .onFailure(SupervisorStrategy.restart());
+        });
+  }
+
+  /**
+   * 由 settings.workers 个受监管工作者组成的池. 按键的一致性哈希路由, 同一个键的读写总由同一个工作者按顺序处理;
+   * PutAll 按工作者拆分, 每个工作者的部分仍是一次批量写入; SimulateFailure 广播给所有工作者.
+   * 工作者运行在 settings.dispatcher 指定的调度器上.
+   */
+  public static Behavior<CacheActor.Command> createPool(
+      BackingStore store, RedisSettings settings) {
+    return createPool(store, settings, InstrumentationSettings.DISABLED);
+  }
+
+  // instrumentation 开启时各工作者使用统计邮箱, 并记录每种消息的处理耗时
+  public static Behavior<CacheActor.Command> createPool(
+      BackingStore store, RedisSettings settings, InstrumentationSettings instrumentation) {
+    Behavior<CacheActor.Command> worker =
+        ActorInstrumentation.instrument(
+            instrumentation,
+            "redis_actor",
+            CacheActor.Command.class,
+            create(store, settings));
+    Props props =
+        ActorInstrumentation.props(
+            instrumentation,
+            "redis_actor",
+            settings.mailboxCapacity,
+            DispatcherSelector.fromConfig(settings.dispatcher));
+    return Behaviors.setup(
+        context -> {
+          List<ActorRef<CacheActor.Command>> workers = new ArrayList<>(settings.workers);
+          for (int i = 0; i < settings.workers; i++) {
+            workers.add(context.spawn(worker, "worker-" + i, props));
+          }
+          Duration timeout =
+              CacheSettings.create(context.getSystem().settings().config()).redisLookupTimeout;
+          return new Pool(context, workers, timeout);
+        });
+  }
+
+  // 工作者池: 与 Routers.pool 的一致性哈希路由相同, 另外把 PutAll 按工作者拆分并合并各部分的回复
+  private static final class Pool extends AbstractBehavior<CacheActor.Command> {
+
+    private final List<ActorRef<CacheActor.Command>> workers;
+    private final ConsistentHashRing ring;
+    // 等待各工作者回复 PutAll 的时间, 超时的部分计为未能写入
+    private final Duration timeout;
+
+    Pool(
+        ActorContext<CacheActor.Command> context,
+        List<ActorRef<CacheActor.Command>> workers,
+        Duration timeout) {
+      super(context);
+      this.workers = workers;
+      this.ring = new ConsistentHashRing(workers.size());
+      this.timeout = timeout;
+    }
+
+    @Override
+    public Receive<CacheActor.Command> createReceive() {
+      return newReceiveBuilder()
+          .onMessage(CacheActor.KeyedCommand.class, this::onKeyed)
+          .onMessage(CacheActor.PutAll.class, this::onPutAll)
+          .onMessage(CacheActor.SimulateFailure.class, this::onBroadcast)
+          .build();
+    }
+
+    private Behavior<CacheActor.Command> onKeyed(CacheActor.KeyedCommand command) {
+      workers.get(ring.partitionFor(command.key())).tell(command);
+      return this;
+    }
+
+    private Behavior<CacheActor.Command> onBroadcast(CacheActor.Command command) {
+      for (ActorRef<CacheActor.Command> worker : workers) {
+        worker.tell(command);
+      }
+      return this;
+    }
+
+    private Behavior<CacheActor.Command> onPutAll(CacheActor.PutAll command) {
+      Map<Integer, List<CacheActor.Put>> groups = new LinkedHashMap<>();
+      for (CacheActor.Put put : command.puts) {
+        groups.computeIfAbsent(ring.partitionFor(put.key), i -> new ArrayList<>()).add(put);
+      }
+      if (groups.size() <= 1 || command.replyTo == null) {
+        groups.forEach(
+            (i, puts) -> workers.get(i).tell(new CacheActor.PutAll(puts, command.replyTo)));
+        return this;
+      }
+      // 各工作者的回复在池之外合并, 池本身不保存任何状态
+      List<CompletableFuture<Integer>> replies = new ArrayList<>(groups.size());
+      groups.forEach(
+          (i, puts) ->
+              replies.add(
+                  AskPattern.<CacheActor.Command, CacheActor.MultiPutResult>ask(
+                          workers.get(i),
+                          replyTo -> new CacheActor.PutAll(puts, replyTo),
+                          timeout,
+                          getContext().getSystem().scheduler())
+                      .handle((result, failure) -> failure == null ? result.failures : puts.size())
+                      .toCompletableFuture()));
+      CompletableFuture.allOf(replies.toArray(new CompletableFuture<?>[0]))
+          .thenRun(
+              () -> {
+                int failures = 0;
+                for (CompletableFuture<Integer> reply : replies) {
+                  failures += reply.join();
+                }
+                command.replyTo.tell(new CacheActor.MultiPutResult(failures));
+              });
+      return this;
+    }
   }
 
   @Override
   public Receive<CacheActor.Command> createReceive() {
     return newReceiveBuilder()
         .onMessage(CacheActor.Get.class, this::onGet)
+        .onMessageEquals(FlushGets.INSTANCE, this::onFlushGets)
         .onMessage(CacheActor.Put.class, this::onPut)
+        .onMessage(CacheActor.PutAll.class, this::onPutAll)
+        .onMessageEquals(FlushWrites.INSTANCE, this::onFlushWrites)
         .onMessage(CacheActor.SimulateFailure.class, this::onSimulateFailure)
-        .onSignal(
-            akka.actor.typed.PreRestart.class,
-            signal -> {
-              if (jedis != null) {
-                jedis.close();
-                context.getLog().info("Redis 连接已关闭");
-              }
-              return this;
-            })
+        .onSignal(PostStop.class, signal -> onStopped())
         .build();
   }
 
+  // 重启时待写入的数据保留给新的实例; 只有真正停止时才尽量写出
+  private Behavior<CacheActor.Command> onStopped() {
+    if (!pendingWrites.isEmpty()) {
+      try {
+        store.putAll(toWrites());
+        pendingWrites.clear();
+      } catch (RuntimeException e) {
+        context.getLog().error("停止前写入 {} 个待写入的键失败, 这些写入已丢失", pendingWrites.size(), e);
+      }
+    }
+    return this;
+  }
+
   private Behavior<CacheActor.Command> onGet(CacheActor.Get command) {
+    pendingGets.add(command);
+    if (pendingGets.size() >= settings.batchMaxSize) {
+      timers.cancel(FlushGets.INSTANCE);
+      flushGets();
+    } else if (pendingGets.size() == 1) {
+      firstPendingAt = System.nanoTime();
+      if (settings.batchLinger.isZero()) {
+        // 给自己发一条消息: 邮箱中排在它前面的 Get 都会先被收集进同一批
+        context.getSelf().tell(FlushGets.INSTANCE);
+      } else {
+        timers.startSingleTimer(FlushGets.INSTANCE, settings.batchLinger);
+      }
+    }
+    return this;
+  }
+
+  private Behavior<CacheActor.Command> onFlushGets() {
+    flushGets();
+    return this;
+  }
+
+  private void flushGets() {
+    if (pendingGets.isEmpty()) {
+      return;
+    }
+    int size = pendingGets.size();
+    List<String> keys = new ArrayList<>(size);
+    for (CacheActor.Get get : pendingGets) {
+      keys.add(get.key);
+    }
+    batchSizeHistogram.record(size);
+    long start = System.nanoTime();
+    batchLingerHistogram.record(start - firstPendingAt);
     try {
-      String value = jedis.get(command.key);
-      command.replyTo.tell(new CacheActor.Value(value));
-    } catch (JedisConnectionException e) {
+      List<BackingStore.Read> values = store.getEntries(keys);
+      (size == 1 ? getLatency : mgetLatency).record(System.nanoTime() - start);
+      for (int i = 0; i < size; i++) {
+        CacheActor.Get get = pendingGets.get(i);
+        CacheActor.Put pendingWrite = pendingWrites.get(get.key);
+        // 尚未写入存储的新值优先, 保证读到自己的写入
+        if (pendingWrite != null) {
+          get.replyTo.tell(new CacheActor.Value(pendingWrite.value, pendingWrite.ttl));
+        } else {
+          get.replyTo.tell(new CacheActor.Value(values.get(i).value, values.get(i).ttl));
+        }
+      }
+    } catch (RuntimeException e) {
+      // 除了 BackingStoreException 之外的异常(存储实现的缺陷等)同样回复不可用, 不让等待者等到 ask 超时
       context.getLog().error("Redis get 操作失败", e);
+      // 立即通知等待者, 让 CacheActor 的熔断器记录失败, 而不是等到 ask 超时
+      for (CacheActor.Get get : pendingGets) {
+        get.replyTo.tell(CacheActor.Value.UNAVAILABLE);
+      }
       // 通知父Actor失败
       throw new RuntimeException("Redis get 操作失败", e);
+    } finally {
+      pendingGets.clear();
     }
-    return this;
   }
 
   private Behavior<CacheActor.Command> onPut(CacheActor.Put command) {
+    if (settings.writeMode == RedisSettings.WriteMode.WRITE_BEHIND) {
+      boolean accepted = addPendingWrite(command);
+      // write-behind 模式下进入待写入队列即确认, 队列有上限, 写入压力仍会反压到调用方
+      if (command.replyTo != null) {
+        command.replyTo.tell(
+            accepted ? StatusReply.ack() : StatusReply.error("待写入的数据已达上限, 存储暂时不可用"));
+      }
+      return this;
+    }
+    long start = System.nanoTime();
     try {
-      jedis.set(command.key, command.value);
-      context.getLog().info("Redis 缓存已更新: {} = {}", command.key, command.value);
-    } catch (JedisConnectionException e) {
+      store.put(command.key, command.value, command.ttl);
+      setLatency.record(System.nanoTime() - start);
+      context.getLog().debug("Redis 缓存已更新: {}", command.key);
+      if (command.replyTo != null) {
+        command.replyTo.tell(StatusReply.ack());
+      }
+    } catch (RuntimeException e) {
       context.getLog().error("Redis set 操作失败", e);
+      if (command.replyTo != null) {
+        command.replyTo.tell(StatusReply.error("Redis set 操作失败"));
+      }
       // 通知父Actor失败
       throw new RuntimeException("Redis set 操作失败", e);
     }
     return this;
   }
 
+  /**
+   * 批量写入: write-through 时一次写入存储, 失败时回复整批失败而不重启工作者, 由 CacheActor 计入熔断器;
+   * write-behind 时逐个进入待写入队列, 回复被拒绝的键数量.
+   */
+  private Behavior<CacheActor.Command> onPutAll(CacheActor.PutAll command) {
+    int failures = 0;
+    if (settings.writeMode == RedisSettings.WriteMode.WRITE_BEHIND) {
+      for (CacheActor.Put put : command.puts) {
+        if (!addPendingWrite(put)) {
+          failures++;
+        }
+      }
+    } else {
+      // 存储要求同一批中的键互不相同, 同一个键只保留最后一次写入
+      Map<String, CacheActor.Put> latest = new LinkedHashMap<>();
+      for (CacheActor.Put put : command.puts) {
+        latest.remove(put.key);
+        latest.put(put.key, put);
+      }
+      List<BackingStore.Write> writes = new ArrayList<>(latest.size());
+      for (CacheActor.Put put : latest.values()) {
+        writes.add(new BackingStore.Write(put.key, put.value, put.ttl));
+      }
+      long start = System.nanoTime();
+      try {
+        store.putAll(writes);
+        pipelineLatency.record(System.nanoTime() - start);
+        context.getLog().debug("Redis 批量写入 {} 个键", writes.size());
+      } catch (RuntimeException e) {
+        context.getLog().error("Redis 批量写入 {} 个键失败", writes.size(), e);
+        failures = command.puts.size();
+      }
+    }
+    if (command.replyTo != null) {
+      command.replyTo.tell(new CacheActor.MultiPutResult(failures));
+    }
+    return this;
+  }
+
+  // 进入 write-behind 待写入队列; 存储不可用且已达上限而被拒绝时返回 false
+  private boolean addPendingWrite(CacheActor.Put put) {
+    if (pending.backoff != null
+        && pendingWrites.size() >= settings.writeBehindMaxBatch
+        && !pendingWrites.containsKey(put.key)) {
+      // 存储不可用期间待写入的数据不超过 max-batch: 已确认的写入保留, 新的键不再确认
+      writesRejectedCounter.increment();
+      context.getLog().warn("待写入的键已达上限 {}, 拒绝写入: {}", pendingWrites.size(), put.key);
+      return false;
+    }
+    if (pendingWrites.remove(put.key) != null) {
+      mergedWritesCounter.increment();
+    }
+    pendingWrites.put(put.key, put);
+    if (pending.backoff != null) {
+      // 上一次批量写入失败, 重试的定时器已经启动, 不再同步写入
+    } else if (pendingWrites.size() >= settings.writeBehindMaxBatch) {
+      // 达到上限时同步写完这一批, 在此期间后续消息留在邮箱中
+      timers.cancel(FlushWrites.INSTANCE);
+      flushWrites();
+    } else if (pendingWrites.size() == 1) {
+      if (settings.writeBehindFlushInterval.isZero()) {
+        context.getSelf().tell(FlushWrites.INSTANCE);
+      } else {
+        timers.startSingleTimer(FlushWrites.INSTANCE, settings.writeBehindFlushInterval);
+      }
+    }
+    return true;
+  }
+
+  private Behavior<CacheActor.Command> onFlushWrites() {
+    flushWrites();
+    return this;
+  }
+
+  /**
+   * 一次批量写入, Redis 引擎中不带 TTL 的键合并为一条 MSET, 全部通过一次流水线发送.
+   * 失败时不抛出异常: 数据保留在待写入队列中, 按指数退避重试, 直到存储恢复.
+   */
+  private void flushWrites() {
+    if (pendingWrites.isEmpty()) {
+      return;
+    }
+    long start = System.nanoTime();
+    try {
+      store.putAll(toWrites());
+      pipelineLatency.record(System.nanoTime() - start);
+      writeBatchSizeHistogram.record(pendingWrites.size());
+      context.getLog().debug("Redis 批量写入 {} 个键", pendingWrites.size());
+      pendingWrites.clear();
+      pending.backoff = null;
+    } catch (RuntimeException e) {
+      // 任何异常都按退避重试: 抛出会重启工作者, 重启后立即重试, 没有任何间隔
+      Duration backoff =
+          pending.backoff == null
+              ? settings.writeBehindMinBackoff
+              : min(pending.backoff.multipliedBy(2), settings.writeBehindMaxBackoff);
+      pending.backoff = backoff;
+      writeRetriesCounter.increment();
+      context
+          .getLog()
+          .error("Redis 批量写入 {} 个键失败, {} 后重试", pendingWrites.size(), backoff, e);
+      timers.startSingleTimer(FlushWrites.INSTANCE, backoff);
+    }
+  }
+
+  private List<BackingStore.Write> toWrites() {
+    List<BackingStore.Write> writes = new ArrayList<>(pendingWrites.size());
+    for (CacheActor.Put put : pendingWrites.values()) {
+      writes.add(new BackingStore.Write(put.key, put.value, put.ttl));
+    }
+    return writes;
+  }
+
+  private static Duration min(Duration a, Duration b) {
+    return a.compareTo(b) <= 0 ? a : b;
+  }
+
   private Behavior<CacheActor.Command> onSimulateFailure(CacheActor.SimulateFailure command) {
     context.getLog().info("模拟 Redis 故障");
     throw new RuntimeException("模拟 Redis 故障");
@@ -0,0 +1,87 @@
+package com.example;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Extension;
+import akka.actor.typed.ExtensionId;
+import akka.actor.typed.javadsl.Adapter;
+import akka.pattern.CircuitBreaker;
+import com.example.metrics.Counter;
+import com.example.metrics.Metrics;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * 每个 ActorSystem 一份的 Redis 熔断器, 所有 CacheActor 分区和路由共用, 配置见 {@link
+ * CircuitBreakerSettings}. 关闭熔断时 {@link #call} 直接执行调用, {@link #isOpen()} 总是 false.
+ *
+ * <p>状态在 /metrics 中以 redis_circuit_breaker_state 输出: 0 关闭, 1 半开, 2 打开.
+ */
+public final class RedisCircuitBreaker implements Extension {
+
+  public static final ExtensionId<RedisCircuitBreaker> ID =
+      new ExtensionId<RedisCircuitBreaker>() {
+        @Override
+        public RedisCircuitBreaker createExtension(ActorSystem<?> system) {
+          return new RedisCircuitBreaker(
+              system, CircuitBreakerSettings.create(system.settings().config()));
+        }
+      };
+
+  public final CircuitBreakerSettings settings;
+  // 关闭熔断时为 null
+  private final CircuitBreaker breaker;
+
+  private RedisCircuitBreaker(ActorSystem<?> system, CircuitBreakerSettings settings) {
+    this.settings = settings;
+    Metrics metrics = Metrics.get(system);
+    metrics.gauge("redis_circuit_breaker_state", "Redis 熔断器状态: 0 关闭, 1 半开, 2 打开", this::state);
+    if (!settings.enabled) {
+      this.breaker = null;
+      return;
+    }
+    Counter opened = metrics.counter("redis_circuit_breaker_opened_total", "Redis 熔断器打开的次数");
+    this.breaker =
+        CircuitBreaker.create(
+                Adapter.toClassic(system).scheduler(),
+                settings.maxFailures,
+                settings.callTimeout,
+                settings.resetTimeout)
+            .withExponentialBackoff(settings.maxResetTimeout)
+            .addOnOpenListener(
+                () -> {
+                  opened.increment();
+                  system.log().warn("Redis 熔断器已打开, 本地未命中将立即返回");
+                })
+            .addOnHalfOpenListener(() -> system.log().info("Redis 熔断器半开, 放行一次探测"))
+            .addOnCloseListener(() -> system.log().info("Redis 熔断器已关闭"));
+  }
+
+  public static RedisCircuitBreaker get(ActorSystem<?> system) {
+    return ID.apply(system);
+  }
+
+  // 打开时立即以 CircuitBreakerOpenException 失败, 否则执行 body 并记录成功、失败或超时
+  public <T> CompletionStage<T> call(Callable<CompletionStage<T>> body) {
+    if (breaker != null) {
+      return breaker.callWithCircuitBreakerCS(body);
+    }
+    try {
+      return body.call();
+    } catch (Exception e) {
+      return CompletableFuture.failedFuture(e);
+    }
+  }
+
+  public boolean isOpen() {
+    return breaker != null && breaker.isOpen();
+  }
+
+  private long state() {
+    if (breaker == null || breaker.isClosed()) {
+      return 0;
+    }
+    return breaker.isHalfOpen() ? 1 : 2;
+  }
+}
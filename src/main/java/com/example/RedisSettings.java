@@ -0,0 +1,143 @@
+package com.example;
+
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+
+// Redis 相关配置, 对应 reference.conf (可在 application.conf 中覆盖) 中的 akka-http-example.redis 配置块
+public class RedisSettings {
+
+  // Put 写入 Redis 的方式
+  public enum WriteMode {
+    WRITE_THROUGH,
+    WRITE_BEHIND
+  }
+
+  public final String host;
+  public final int port;
+  // 并行的 RedisActor 工作者数量, 也是连接池的最大连接数
+  public final int workers;
+  // 工作者所在调度器的配置路径
+  public final String dispatcher;
+  public final int batchMaxSize;
+  public final Duration batchLinger;
+  public final WriteMode writeMode;
+  public final int writeBehindMaxBatch;
+  public final Duration writeBehindFlushInterval;
+  // 批量写入失败后第一次重试的等待时间, 之后每次失败加倍, 最多到 writeBehindMaxBackoff
+  public final Duration writeBehindMinBackoff;
+  public final Duration writeBehindMaxBackoff;
+  // 每个工作者邮箱的容量, 超出的消息转为死信; 0 表示不限制
+  public final int mailboxCapacity;
+
+  public RedisSettings(
+      String host,
+      int port,
+      int workers,
+      String dispatcher,
+      int batchMaxSize,
+      Duration batchLinger,
+      WriteMode writeMode,
+      int writeBehindMaxBatch,
+      Duration writeBehindFlushInterval,
+      Duration writeBehindMinBackoff,
+      Duration writeBehindMaxBackoff,
+      int mailboxCapacity) {
+    if (workers <= 0) {
+      throw new IllegalArgumentException("workers 必须大于 0: " + workers);
+    }
+    if (batchMaxSize <= 0) {
+      throw new IllegalArgumentException("batch.max-size 必须大于 0: " + batchMaxSize);
+    }
+    if (batchLinger.isNegative()) {
+      throw new IllegalArgumentException("batch.linger 不能为负数");
+    }
+    if (writeBehindMaxBatch <= 0) {
+      throw new IllegalArgumentException("write-behind.max-batch 必须大于 0: " + writeBehindMaxBatch);
+    }
+    if (writeBehindFlushInterval.isNegative()) {
+      throw new IllegalArgumentException("write-behind.flush-interval 不能为负数");
+    }
+    if (writeBehindMinBackoff.isNegative()
+        || writeBehindMinBackoff.isZero()
+        || writeBehindMaxBackoff.compareTo(writeBehindMinBackoff) < 0) {
+      throw new IllegalArgumentException(
+          "write-behind.min-backoff 必须大于 0, 且不能大于 write-behind.max-backoff");
+    }
+    if (mailboxCapacity < 0) {
+      throw new IllegalArgumentException("mailbox-capacity 不能为负数: " + mailboxCapacity);
+    }
+    this.host = host;
+    this.port = port;
+    this.workers = workers;
+    this.dispatcher = dispatcher;
+    this.batchMaxSize = batchMaxSize;
+    this.batchLinger = batchLinger;
+    this.writeMode = writeMode;
+    this.writeBehindMaxBatch = writeBehindMaxBatch;
+    this.writeBehindFlushInterval = writeBehindFlushInterval;
+    this.writeBehindMinBackoff = writeBehindMinBackoff;
+    this.writeBehindMaxBackoff = writeBehindMaxBackoff;
+    this.mailboxCapacity = mailboxCapacity;
+  }
+
+  public static RedisSettings create(Config config) {
+    Config redis = config.getConfig("akka-http-example.redis");
+    return new RedisSettings(
+        redis.getString("host"),
+        redis.getInt("port"),
+        redis.getInt("workers"),
+        redis.getString("dispatcher"),
+        redis.getInt("batch.max-size"),
+        redis.getDuration("batch.linger"),
+        parseWriteMode(redis.getString("write-mode")),
+        redis.getInt("write-behind.max-batch"),
+        redis.getDuration("write-behind.flush-interval"),
+        redis.getDuration("write-behind.min-backoff"),
+        redis.getDuration("write-behind.max-backoff"),
+        redis.getInt("mailbox-capacity"));
+  }
+
+  public RedisSettings withWriteMode(WriteMode writeMode) {
+    return new RedisSettings(
+        host,
+        port,
+        workers,
+        dispatcher,
+        batchMaxSize,
+        batchLinger,
+        writeMode,
+        writeBehindMaxBatch,
+        writeBehindFlushInterval,
+        writeBehindMinBackoff,
+        writeBehindMaxBackoff,
+        mailboxCapacity);
+  }
+
+  public RedisSettings withWorkers(int workers) {
+    return new RedisSettings(
+        host,
+        port,
+        workers,
+        dispatcher,
+        batchMaxSize,
+        batchLinger,
+        writeMode,
+        writeBehindMaxBatch,
+        writeBehindFlushInterval,
+        writeBehindMinBackoff,
+        writeBehindMaxBackoff,
+        mailboxCapacity);
+  }
+
+  private static WriteMode parseWriteMode(String value) {
+    switch (value) {
+      case "write-through":
+        return WriteMode.WRITE_THROUGH;
+      case "write-behind":
+        return WriteMode.WRITE_BEHIND;
+      default:
+        throw new IllegalArgumentException("未知的 write-mode: " + value);
+    }
+  }
+}
@@ -6,7 +6,9 @@ import akka.http.javadsl.server.AllDirectives;
 import akka.http.javadsl.server.Route;
 import com.example.routing.HelloRouteDefinition;
 import com.example.routing.CacheRouteDefinition;
+import com.example.routing.MetricsRouteDefinition;
 import com.example.routing.PostRouteDefinition;
+import com.example.routing.ReadinessRouteDefinition;
 
 import java.time.Duration;
 
@@ -24,9 +26,12 @@ public class SimpleHttpRoutes extends AllDirectives {
   }
 
   public Route createRoute() {
+    MetricsRouteDefinition metrics = new MetricsRouteDefinition(system);
     return concat(
-        new HelloRouteDefinition().createRoute(),
-        new CacheRouteDefinition(system, supervisor).createRoute(),
-        new PostRouteDefinition(system).createRoute());
+        metrics.timed("hello", new HelloRouteDefinition().createRoute()),
+        metrics.timed("cache", new CacheRouteDefinition(system, supervisor).createRoute()),
+        metrics.timed("post", new PostRouteDefinition(system).createRoute()),
+        new ReadinessRouteDefinition(system, supervisor).createRoute(),
+        metrics.createRoute());
   }
 }
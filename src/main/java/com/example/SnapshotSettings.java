@@ -0,0 +1,49 @@
+package com.example;
+
+import com.typesafe.config.Config;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+
+// 本地缓存快照配置, 对应 reference.conf 中的 akka-http-example.cache.snapshot 配置块
+public class SnapshotSettings {
+
+  public final boolean enabled;
+  public final Path path;
+  // 定期写入快照的间隔, 0 表示只在关闭时写入
+  public final Duration interval;
+  // 恢复时每批写入本地缓存的条目数量
+  public final int batchSize;
+  // 导出和恢复时等待分区回复的超时时间
+  public final Duration timeout;
+
+  public SnapshotSettings(
+      boolean enabled, Path path, Duration interval, int batchSize, Duration timeout) {
+    if (interval.isNegative()) {
+      throw new IllegalArgumentException("snapshot.interval 不能为负数: " + interval);
+    }
+    if (batchSize <= 0) {
+      throw new IllegalArgumentException("snapshot.batch-size 必须大于 0: " + batchSize);
+    }
+    this.enabled = enabled;
+    this.path = path;
+    this.interval = interval;
+    this.batchSize = batchSize;
+    this.timeout = timeout;
+  }
+
+  public static SnapshotSettings create(Config config) {
+    Config snapshot = config.getConfig("akka-http-example.cache.snapshot");
+    return new SnapshotSettings(
+        snapshot.getBoolean("enabled"),
+        Paths.get(snapshot.getString("path")),
+        snapshot.getDuration("interval"),
+        snapshot.getInt("batch-size"),
+        snapshot.getDuration("timeout"));
+  }
+
+  public SnapshotSettings withPath(Path path) {
+    return new SnapshotSettings(enabled, path, interval, batchSize, timeout);
+  }
+}
@@ -0,0 +1,119 @@
+package com.example;
+
+import com.example.store.BackingStore;
+import com.example.store.InMemoryStore;
+import com.example.store.LogStructuredStore;
+import com.example.store.RedisStore;
+import com.typesafe.config.Config;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+// 第二级存储引擎的配置, 对应 reference.conf 中的 akka-http-example.store 配置块
+public class StoreSettings {
+
+  public enum Engine {
+    REDIS,
+    MEMORY,
+    FILE
+  }
+
+  public final Engine engine;
+  // memory 引擎的最大条目数量
+  public final int memoryMaxEntries;
+  // file 引擎的段文件目录
+  public final Path fileDirectory;
+  public final int fileSegmentSize;
+  public final double fileCompactionThreshold;
+  public final boolean fileForceWrites;
+
+  public StoreSettings(
+      Engine engine,
+      int memoryMaxEntries,
+      Path fileDirectory,
+      int fileSegmentSize,
+      double fileCompactionThreshold,
+      boolean fileForceWrites) {
+    if (memoryMaxEntries <= 0) {
+      throw new IllegalArgumentException("store.memory.max-entries 必须大于 0: " + memoryMaxEntries);
+    }
+    if (fileCompactionThreshold <= 0 || fileCompactionThreshold > 1) {
+      throw new IllegalArgumentException(
+          "store.file.compaction-threshold 必须在 0 到 1 之间: " + fileCompactionThreshold);
+    }
+    this.engine = engine;
+    this.memoryMaxEntries = memoryMaxEntries;
+    this.fileDirectory = fileDirectory;
+    this.fileSegmentSize = fileSegmentSize;
+    this.fileCompactionThreshold = fileCompactionThreshold;
+    this.fileForceWrites = fileForceWrites;
+  }
+
+  public static StoreSettings create(Config config) {
+    Config store = config.getConfig("akka-http-example.store");
+    long segmentSize = store.getBytes("file.segment-size");
+    if (segmentSize <= 0 || segmentSize > Integer.MAX_VALUE) {
+      throw new IllegalArgumentException("store.file.segment-size 必须在 1 字节到 2g 之间: " + segmentSize);
+    }
+    return new StoreSettings(
+        parseEngine(store.getString("engine")),
+        store.getInt("memory.max-entries"),
+        Paths.get(store.getString("file.directory")),
+        (int) segmentSize,
+        store.getDouble("file.compaction-threshold"),
+        store.getBoolean("file.force-writes"));
+  }
+
+  public StoreSettings withEngine(Engine engine) {
+    return new StoreSettings(
+        engine,
+        memoryMaxEntries,
+        fileDirectory,
+        fileSegmentSize,
+        fileCompactionThreshold,
+        fileForceWrites);
+  }
+
+  public StoreSettings withFileDirectory(Path fileDirectory) {
+    return new StoreSettings(
+        engine,
+        memoryMaxEntries,
+        fileDirectory,
+        fileSegmentSize,
+        fileCompactionThreshold,
+        fileForceWrites);
+  }
+
+  // 创建所选的引擎, redis 引擎使用 redisSettings 中的地址, 连接数与工作者数量相同
+  public BackingStore createStore(RedisSettings redisSettings) {
+    switch (engine) {
+      case MEMORY:
+        return new InMemoryStore(memoryMaxEntries);
+      case FILE:
+        try {
+          return LogStructuredStore.open(
+              fileDirectory, fileSegmentSize, fileCompactionThreshold, fileForceWrites);
+        } catch (IOException e) {
+          throw new UncheckedIOException("无法打开存储目录 " + fileDirectory, e);
+        }
+      case REDIS:
+      default:
+        return new RedisStore(redisSettings.host, redisSettings.port, redisSettings.workers);
+    }
+  }
+
+  private static Engine parseEngine(String value) {
+    switch (value) {
+      case "redis":
+        return Engine.REDIS;
+      case "memory":
+        return Engine.MEMORY;
+      case "file":
+        return Engine.FILE;
+      default:
+        throw new IllegalArgumentException("未知的 store.engine: " + value);
+    }
+  }
+}
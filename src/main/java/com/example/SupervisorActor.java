@@ -2,11 +2,20 @@ package com.example;
 
 import akka.actor.typed.ActorRef;
 import akka.actor.typed.Behavior;
+import akka.actor.typed.PostStop;
+import akka.actor.typed.PreRestart;
+import akka.actor.typed.Props;
 import akka.actor.typed.SupervisorStrategy;
 import akka.actor.typed.javadsl.AbstractBehavior;
 import akka.actor.typed.javadsl.ActorContext;
 import akka.actor.typed.javadsl.Behaviors;
 import akka.actor.typed.javadsl.Receive;
+import com.example.cache.ReadView;
+import com.example.store.BackingStore;
+import com.typesafe.config.Config;
+
+import java.util.ArrayList;
+import java.util.List;
 
 public class SupervisorActor extends AbstractBehavior<SupervisorActor.Command> {
 
@@ -22,33 +31,128 @@ public class SupervisorActor extends AbstractBehavior<SupervisorActor.Command> {
     }
   }
 
-  // 获取CacheActor引用的命令
+  // 获取CacheActor引用的命令, 指定键时返回负责该键的分区, 否则返回第一个分区
   public static class GetCacheActorRef implements Command {
+    public final String key;
     public final ActorRef<ActorRef<CacheActor.Command>> replyTo;
 
     public GetCacheActorRef(ActorRef<ActorRef<CacheActor.Command>> replyTo) {
+      this(null, replyTo);
+    }
+
+    public GetCacheActorRef(String key, ActorRef<ActorRef<CacheActor.Command>> replyTo) {
+      this.key = key;
+      this.replyTo = replyTo;
+    }
+  }
+
+  // 获取全部CacheActor分区的命令, 调用方可以自行按键路由而不必每次经过SupervisorActor
+  public static class GetCachePartitions implements Command {
+    public final ActorRef<CachePartitions> replyTo;
+
+    public GetCachePartitions(ActorRef<CachePartitions> replyTo) {
+      this.replyTo = replyTo;
+    }
+  }
+
+  // 获取启动预热进度的命令, 未开启预热时回复 CachePrewarmer.Status.DISABLED
+  public static class GetPrewarmStatus implements Command {
+    public final ActorRef<CachePrewarmer.Status> replyTo;
+
+    public GetPrewarmStatus(ActorRef<CachePrewarmer.Status> replyTo) {
       this.replyTo = replyTo;
     }
   }
 
   private final ActorContext<Command> context;
-  private ActorRef<CacheActor.Command> cacheActor;
+  private final CachePartitions cachePartitions;
+  private final BackingStore store;
+  // 未开启预热时为 null
+  private final CachePrewarmer prewarmer;
   private ActorRef<CacheActor.Command> redisActor;
 
-  private SupervisorActor(ActorContext<Command> context) {
+  private SupervisorActor(
+      ActorContext<Command> context,
+      CacheSettings settings,
+      RedisSettings redisSettings,
+      InstrumentationSettings instrumentation,
+      PrewarmSettings prewarmSettings,
+      StoreSettings storeSettings) {
     super(context);
     this.context = context;
-    // 必须先创建并监管RedisActor
+    // 必须先创建第二级存储和RedisActor工作者池, 每个工作者各自受监管
+    this.store = storeSettings.createStore(redisSettings);
     this.redisActor =
         context.spawn(
-            Behaviors.supervise(RedisActor.create()).onFailure(SupervisorStrategy.restart()),
-            "redis-actor");
-    // 再创建CacheActor子Actor,并传入redisActor的引用
-    this.cacheActor = context.spawn(CacheActor.create(redisActor), "cache-actor");
+            RedisActor.createPool(store, redisSettings, instrumentation), "redis-actor");
+    // 再创建CacheActor分区,并传入redisActor的引用
+    CacheSettings partitionSettings = settings.perPartition();
+    List<ActorRef<CacheActor.Command>> partitions = new ArrayList<>(settings.partitions);
+    List<ReadView> readViews = settings.lockFreeReads ? new ArrayList<>() : null;
+    for (int i = 0; i < settings.partitions; i++) {
+      ReadView readView = null;
+      if (readViews != null) {
+        readView = new ReadView();
+        readViews.add(readView);
+      }
+      Behavior<CacheActor.Command> partition =
+          ActorInstrumentation.instrument(
+              instrumentation,
+              "cache_actor",
+              CacheActor.Command.class,
+              CacheActor.create(redisActor, partitionSettings, readView));
+      partitions.add(
+          context.spawn(
+              partition,
+              "cache-actor-" + i,
+              ActorInstrumentation.props(
+                  instrumentation, "cache_actor", settings.mailboxCapacity, Props.empty())));
+    }
+    this.cachePartitions = new CachePartitions(partitions, readViews);
+    context
+        .getLog()
+        .info(
+            "已创建 {} 个 CacheActor 分区, 每个分区最多 {} 个条目 / {} 字节; {} 个 RedisActor 工作者, 存储引擎 {}",
+            settings.partitions,
+            partitionSettings.maxEntries,
+            partitionSettings.maxBytes,
+            redisSettings.workers,
+            storeSettings.engine);
+    // 在后台预热, 不阻塞分区处理请求; 预热通过 SCAN 进行, 只支持 Redis 引擎
+    boolean prewarm = prewarmSettings.enabled;
+    if (prewarm && storeSettings.engine != StoreSettings.Engine.REDIS) {
+      context.getLog().warn("启动预热只支持 redis 存储引擎, 当前为 {}, 已跳过", storeSettings.engine);
+      prewarm = false;
+    }
+    this.prewarmer =
+        prewarm
+            ? CachePrewarmer.start(
+                context.getSystem(), cachePartitions, prewarmSettings, redisSettings, settings)
+            : null;
   }
 
   public static Behavior<Command> create() {
-    return Behaviors.supervise(Behaviors.setup(SupervisorActor::new))
+    return create(null);
+  }
+
+  // 指定分区数量创建, 为 null 时从配置中读取
+  public static Behavior<Command> create(Integer partitions) {
+    return Behaviors.supervise(
+            Behaviors.<Command>setup(
+                context -> {
+                  Config config = context.getSystem().settings().config();
+                  CacheSettings settings = CacheSettings.create(config);
+                  if (partitions != null) {
+                    settings = settings.withPartitions(partitions);
+                  }
+                  return new SupervisorActor(
+                      context,
+                      settings,
+                      RedisSettings.create(config),
+                      InstrumentationSettings.create(config),
+                      PrewarmSettings.create(config),
+                      StoreSettings.create(config));
+                }))
         .onFailure(SupervisorStrategy.restart());
   }
 
@@ -57,16 +161,64 @@ public class SupervisorActor extends AbstractBehavior<SupervisorActor.Command> {
     return newReceiveBuilder()
         .onMessage(ForwardToCache.class, this::onForwardToCache)
         .onMessage(GetCacheActorRef.class, this::onGetCacheActorRef)
+        .onMessage(GetCachePartitions.class, this::onGetCachePartitions)
+        .onMessage(GetPrewarmStatus.class, this::onGetPrewarmStatus)
+        .onSignal(PreRestart.class, signal -> onStopping())
+        .onSignal(PostStop.class, signal -> onStopping())
         .build();
   }
 
+  private Behavior<Command> onStopping() {
+    if (prewarmer != null) {
+      prewarmer.stop();
+    }
+    // 子Actor此时已经停止, 可以安全关闭存储(Redis 引擎关闭连接池, file 引擎把活跃段写入磁盘)
+    store.close();
+    return this;
+  }
+
   private Behavior<Command> onForwardToCache(ForwardToCache command) {
-    cacheActor.tell(command.cacheCommand);
+    if (command.cacheCommand instanceof CacheActor.KeyedCommand) {
+      String key = ((CacheActor.KeyedCommand) command.cacheCommand).key();
+      cachePartitions.forKey(key).tell(command.cacheCommand);
+    } else if (command.cacheCommand instanceof CacheActor.MultiGet) {
+      // 批量命令按键拆分, 每个相关分区一条
+      CacheActor.MultiGet multiGet = (CacheActor.MultiGet) command.cacheCommand;
+      cachePartitions
+          .groupByPartition(multiGet.keys, key -> key)
+          .forEach(
+              (partition, keys) ->
+                  partition.tell(new CacheActor.MultiGet(keys, multiGet.replyTo)));
+    } else if (command.cacheCommand instanceof CacheActor.MultiPut) {
+      CacheActor.MultiPut multiPut = (CacheActor.MultiPut) command.cacheCommand;
+      cachePartitions
+          .groupByPartition(multiPut.puts, put -> put.key)
+          .forEach((partition, puts) -> partition.tell(new CacheActor.MultiPut(puts)));
+    } else {
+      // 不带键的命令(如 SimulateFailure)广播给所有分区
+      for (ActorRef<CacheActor.Command> partition : cachePartitions.all()) {
+        partition.tell(command.cacheCommand);
+      }
+    }
     return this;
   }
 
   private Behavior<Command> onGetCacheActorRef(GetCacheActorRef command) {
-    command.replyTo.tell(cacheActor);
+    if (command.key == null) {
+      command.replyTo.tell(cachePartitions.all().get(0));
+    } else {
+      command.replyTo.tell(cachePartitions.forKey(command.key));
+    }
+    return this;
+  }
+
+  private Behavior<Command> onGetCachePartitions(GetCachePartitions command) {
+    command.replyTo.tell(cachePartitions);
+    return this;
+  }
+
+  private Behavior<Command> onGetPrewarmStatus(GetPrewarmStatus command) {
+    command.replyTo.tell(prewarmer != null ? prewarmer.status() : CachePrewarmer.Status.DISABLED);
     return this;
   }
 }
@@ -0,0 +1,42 @@
+package com.example;
+
+import akka.dispatch.DispatcherPrerequisites;
+import akka.dispatch.ExecutorServiceConfigurator;
+import akka.dispatch.ExecutorServiceFactory;
+import com.typesafe.config.Config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * 为每个任务创建一个虚拟线程的调度器执行器, 用于运行 Jedis 这类阻塞 I/O 的 Actor.
+ *
+ * <p>项目以 Java 11 为编译目标, 因此通过反射调用 {@code Executors.newVirtualThreadPerTaskExecutor};
+ * 运行在 Java 21 以下时创建调度器会直接失败.
+ */
+public class VirtualThreadExecutorConfigurator extends ExecutorServiceConfigurator {
+
+  public VirtualThreadExecutorConfigurator(Config config, DispatcherPrerequisites prerequisites) {
+    super(config, prerequisites);
+  }
+
+  @Override
+  public ExecutorServiceFactory createExecutorServiceFactory(
+      String id, ThreadFactory threadFactory) {
+    Method factoryMethod;
+    try {
+      factoryMethod = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+    } catch (NoSuchMethodException e) {
+      throw new IllegalStateException("调度器 " + id + " 需要 Java 21 及以上的虚拟线程支持", e);
+    }
+    return () -> {
+      try {
+        return (ExecutorService) factoryMethod.invoke(null);
+      } catch (ReflectiveOperationException e) {
+        throw new IllegalStateException("无法创建虚拟线程执行器: " + id, e);
+      }
+    };
+  }
+}
@@ -0,0 +1,57 @@
+package com.example.admission;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 按自适应并发上限准入请求. 正在处理的请求数达到 {@link ConcurrencyLimit#limit()} 时
+ * {@link #tryAcquire()} 立即返回 null, 调用方应直接拒绝请求(如返回 503), 而不是让它排队等待超时.
+ *
+ * <p>拒绝路径只有一次原子自增和自减, 不分配对象也不加锁.
+ */
+public final class AdmissionController {
+
+  private final ConcurrencyLimit limit;
+  private final AtomicInteger inFlight = new AtomicInteger();
+
+  public AdmissionController(ConcurrencyLimit limit) {
+    this.limit = limit;
+  }
+
+  // 准入时返回许可, 请求完成后必须调用一次 Permit.release; 超出上限时返回 null
+  public Permit tryAcquire() {
+    int current = inFlight.incrementAndGet();
+    if (current > limit.limit()) {
+      inFlight.decrementAndGet();
+      return null;
+    }
+    return new Permit(current, System.nanoTime());
+  }
+
+  public int limit() {
+    return limit.limit();
+  }
+
+  public int inFlight() {
+    return inFlight.get();
+  }
+
+  public final class Permit {
+    private final int inFlightAtStart;
+    private final long startNanos;
+    private final AtomicBoolean released = new AtomicBoolean();
+
+    private Permit(int inFlightAtStart, long startNanos) {
+      this.inFlightAtStart = inFlightAtStart;
+      this.startNanos = startNanos;
+    }
+
+    // 多次调用只生效一次; dropped 表示请求失败或超时
+    public void release(boolean dropped) {
+      if (released.compareAndSet(false, true)) {
+        inFlight.decrementAndGet();
+        limit.onSample(System.nanoTime() - startNanos, inFlightAtStart, dropped);
+      }
+    }
+  }
+}
@@ -0,0 +1,60 @@
+package com.example.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 加性增、乘性减(AIMD)的并发上限: 请求失败或耗时超过阈值时上限乘以 backoffRatio,
+ * 否则在并发度达到上限的一半以上时加 1. 并发度较低时不增长, 避免空闲时上限无限膨胀.
+ * 上限通过 CAS 更新, 上限不变的采样只读取一次.
+ */
+public final class AimdLimit implements ConcurrencyLimit {
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final double backoffRatio;
+  private final long latencyThresholdNanos;
+  private final AtomicInteger limit;
+
+  public AimdLimit(
+      int initialLimit,
+      int minLimit,
+      int maxLimit,
+      double backoffRatio,
+      long latencyThresholdNanos) {
+    if (minLimit <= 0 || minLimit > maxLimit) {
+      throw new IllegalArgumentException("并发上限范围无效: " + minLimit + " ~ " + maxLimit);
+    }
+    if (backoffRatio <= 0 || backoffRatio >= 1) {
+      throw new IllegalArgumentException("backoff-ratio 必须在 0 和 1 之间: " + backoffRatio);
+    }
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.backoffRatio = backoffRatio;
+    this.latencyThresholdNanos = latencyThresholdNanos;
+    this.limit = new AtomicInteger(Math.max(minLimit, Math.min(maxLimit, initialLimit)));
+  }
+
+  @Override
+  public int limit() {
+    return limit.get();
+  }
+
+  @Override
+  public void onSample(long rttNanos, int inFlight, boolean dropped) {
+    boolean backoff = dropped || rttNanos > latencyThresholdNanos;
+    while (true) {
+      int current = limit.get();
+      int next;
+      if (backoff) {
+        next = Math.max(minLimit, (int) (current * backoffRatio));
+      } else if (inFlight * 2 >= current) {
+        next = Math.min(maxLimit, current + 1);
+      } else {
+        return;
+      }
+      if (next == current || limit.compareAndSet(current, next)) {
+        return;
+      }
+    }
+  }
+}
@@ -0,0 +1,19 @@
+package com.example.admission;
+
+/**
+ * 自适应的并发上限. {@link AdmissionController} 在每个请求完成时提交一次采样, 实现根据采样调整上限.
+ *
+ * <p>{@link #limit()} 会在每次准入判断时读取, 必须廉价且线程安全; {@link #onSample} 可能由多个线程同时调用,
+ * 它在每个请求的完成路径上执行, 不应使用锁.
+ */
+public interface ConcurrencyLimit {
+
+  int limit();
+
+  /**
+   * @param rttNanos 请求从准入到完成的耗时
+   * @param inFlight 请求准入时(包括它自己)正在处理的请求数量
+   * @param dropped 请求失败或超时, 视为过载信号
+   */
+  void onSample(long rttNanos, int inFlight, boolean dropped);
+}
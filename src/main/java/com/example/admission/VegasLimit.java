@@ -0,0 +1,95 @@
+package com.example.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * TCP Vegas 风格的并发上限, 由观察到的延迟驱动.
+ *
+ * <p>以最近一段时间内的最小耗时作为无排队时的耗时 rttNoLoad, 估算排队中的请求数
+ * queue = limit × (1 − rttNoLoad / rtt). 排队很少时较快增长, 排队在 alpha 与 beta 之间时保持,
+ * 超过 beta 或请求失败时减小. 各阈值随 log10(limit) 增长, 上限越大调整幅度越大.
+ * 每 probeInterval 次采样重新测量 rttNoLoad, 以适应后端本身变慢或变快.
+ *
+ * <p>状态保存在各自的原子变量中并通过 CAS 更新, 不使用锁; 上限不变的采样不写入共享状态.
+ */
+public final class VegasLimit implements ConcurrencyLimit {
+
+  private static final double ALPHA = 3;
+  private static final double BETA = 6;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final int probeInterval;
+  // 估算的上限(double 的位表示), limit() 取其整数部分
+  private final AtomicLong estimatedLimit;
+  // 0 表示需要重新测量
+  private final AtomicLong rttNoLoad = new AtomicLong();
+  private final AtomicInteger samples = new AtomicInteger();
+
+  public VegasLimit(int initialLimit, int minLimit, int maxLimit, int probeInterval) {
+    if (minLimit <= 0 || minLimit > maxLimit) {
+      throw new IllegalArgumentException("并发上限范围无效: " + minLimit + " ~ " + maxLimit);
+    }
+    if (probeInterval <= 0) {
+      throw new IllegalArgumentException("probe-interval 必须大于 0: " + probeInterval);
+    }
+    this.minLimit = minLimit;
+    this.maxLimit = maxLimit;
+    this.probeInterval = probeInterval;
+    double initial = Math.max(minLimit, Math.min(maxLimit, initialLimit));
+    this.estimatedLimit = new AtomicLong(Double.doubleToRawLongBits(initial));
+  }
+
+  @Override
+  public int limit() {
+    return (int) Double.longBitsToDouble(estimatedLimit.get());
+  }
+
+  @Override
+  public void onSample(long rttNanos, int inFlight, boolean dropped) {
+    long rtt = Math.max(1, rttNanos);
+    if (samples.incrementAndGet() % probeInterval == 0) {
+      rttNoLoad.set(0);
+    }
+    long noLoad = rttNoLoad.get();
+    if (noLoad == 0 || rtt < noLoad) {
+      // 并发的采样可能已经写入了更小的耗时, 只保留最小值
+      rttNoLoad.accumulateAndGet(rtt, (old, sample) -> old == 0 ? sample : Math.min(old, sample));
+      return;
+    }
+    while (true) {
+      long bits = estimatedLimit.get();
+      double current = Double.longBitsToDouble(bits);
+      double next = next(current, noLoad, rtt, inFlight, dropped);
+      if (next == current
+          || estimatedLimit.compareAndSet(bits, Double.doubleToRawLongBits(next))) {
+        return;
+      }
+    }
+  }
+
+  // 返回 current 表示保持不变
+  private double next(double current, long noLoad, long rtt, int inFlight, boolean dropped) {
+    double log = Math.max(1, Math.log10(current));
+    double next;
+    if (dropped) {
+      next = current - log;
+    } else if (inFlight * 2 < current) {
+      // 并发度远低于上限, 耗时不能说明上限是否合适
+      return current;
+    } else {
+      double queue = current * (1 - (double) noLoad / rtt);
+      if (queue <= log) {
+        next = current + BETA * log;
+      } else if (queue < ALPHA * log) {
+        next = current + log;
+      } else if (queue > BETA * log) {
+        next = current - log;
+      } else {
+        return current;
+      }
+    }
+    return Math.max(minLimit, Math.min(maxLimit, next));
+  }
+}
@@ -0,0 +1,261 @@
+package com.example.cache;
+
+import akka.util.ByteString;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 本地缓存快照的二进制文件格式.
+ *
+ * <p>文件头为魔数、版本号和条目数量(共 16 字节), 之后依次是每个条目: 键的长度(int)和 UTF-8 字节,
+ * Content-Type 的长度(unsigned short)和 UTF-8 字节, 过期时刻(long, 自 1970 年起的毫秒数, 0 表示永不过期),
+ * 值的长度(int)和原始字节. 过期时刻使用墙上时间, 因为 {@link System#nanoTime()} 在进程之间不可比较.
+ *
+ * <p>{@link Writer} 先写入同一目录下的临时文件, {@link Writer#commit()} 时再原子地替换目标文件,
+ * 写入中途失败不会留下不完整的快照. {@link Reader} 通过内存映射按窗口读取, 逐条解码,
+ * 文件内容由操作系统按需换入, 不会一次性读入堆中.
+ */
+public final class CacheSnapshot {
+
+  // "AHCS"
+  static final int MAGIC = 0x41484353;
+  static final int VERSION = 1;
+  static final int HEADER_SIZE = 16;
+
+  // 单个映射窗口的默认大小; 条目跨越窗口边界时从该条目处重新映射
+  static final long DEFAULT_WINDOW_SIZE = 1L << 30;
+
+  private static final int WRITE_BUFFER_SIZE = 1 << 20;
+
+  private CacheSnapshot() {}
+
+  // 快照中的一个条目, expireAtMillis 为 0 表示永不过期
+  public static final class Entry {
+    public final String key;
+    public final CacheValue value;
+    public final long expireAtMillis;
+
+    public Entry(String key, CacheValue value, long expireAtMillis) {
+      this.key = key;
+      this.value = value;
+      this.expireAtMillis = expireAtMillis;
+    }
+  }
+
+  /** 顺序写入快照, 必须调用 {@link #commit()} 才会生成目标文件; 未提交就关闭时删除临时文件. */
+  public static final class Writer implements Closeable {
+    private final Path target;
+    private final Path temp;
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocate(WRITE_BUFFER_SIZE);
+    private long count;
+    private boolean committed;
+
+    private Writer(Path target) throws IOException {
+      this.target = target.toAbsolutePath();
+      Files.createDirectories(this.target.getParent());
+      this.temp = Files.createTempFile(this.target.getParent(), target.getFileName() + ".", ".tmp");
+      this.channel = FileChannel.open(temp, StandardOpenOption.WRITE);
+      // 条目数量在提交时回填
+      buffer.putInt(MAGIC).putInt(VERSION).putLong(0);
+    }
+
+    public static Writer create(Path target) throws IOException {
+      return new Writer(target);
+    }
+
+    public void write(Entry entry) throws IOException {
+      write(entry.key, entry.value, entry.expireAtMillis);
+    }
+
+    public void write(String key, CacheValue value, long expireAtMillis) throws IOException {
+      byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+      byte[] contentType = value.contentType.getBytes(StandardCharsets.UTF_8);
+      if (contentType.length > 0xFFFF) {
+        throw new IllegalArgumentException("Content-Type 过长: " + contentType.length + " 字节");
+      }
+      int headerSize = 4 + keyBytes.length + 2 + contentType.length + 8 + 4;
+      ensure(headerSize);
+      buffer.putInt(keyBytes.length).put(keyBytes);
+      buffer.putShort((short) contentType.length).put(contentType);
+      buffer.putLong(expireAtMillis);
+      buffer.putInt(value.size());
+      if (value.size() <= buffer.remaining()) {
+        value.bytes.copyToBuffer(buffer);
+      } else {
+        // 放不进缓冲区的大值直接写入文件
+        flush();
+        ByteBuffer bytes = value.bytes.asByteBuffer();
+        while (bytes.hasRemaining()) {
+          channel.write(bytes);
+        }
+      }
+      count++;
+    }
+
+    public long count() {
+      return count;
+    }
+
+    // 回填条目数量并替换目标文件, 返回快照文件的字节数
+    public long commit() throws IOException {
+      flush();
+      ByteBuffer header = ByteBuffer.allocate(8).putLong(0, count);
+      channel.write(header, 8);
+      channel.force(true);
+      long size = channel.size();
+      channel.close();
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      committed = true;
+      return size;
+    }
+
+    @Override
+    public void close() throws IOException {
+      if (!committed) {
+        channel.close();
+        Files.deleteIfExists(temp);
+      }
+    }
+
+    private void ensure(int size) throws IOException {
+      if (buffer.remaining() < size) {
+        flush();
+        if (buffer.remaining() < size) {
+          throw new IllegalArgumentException("键过长: " + size + " 字节");
+        }
+      }
+    }
+
+    private void flush() throws IOException {
+      buffer.flip();
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+      buffer.clear();
+    }
+  }
+
+  /**
+   * 通过内存映射逐条读取快照. 每次只映射一个窗口, 剩余内容不足一个条目时从当前位置重新映射,
+   * 因此文件大小不受单个 {@link MappedByteBuffer} 2 GiB 的限制. 非线程安全.
+   */
+  public static final class Reader implements Iterator<Entry>, Closeable {
+    private final FileChannel channel;
+    private final long fileSize;
+    private final long windowSize;
+    private final long count;
+    private MappedByteBuffer window;
+    // 当前窗口在文件中的起始位置
+    private long windowStart;
+    private long read;
+
+    private Reader(Path path, long windowSize) throws IOException {
+      this.channel = FileChannel.open(path, StandardOpenOption.READ);
+      this.windowSize = windowSize;
+      try {
+        this.fileSize = channel.size();
+        if (fileSize < HEADER_SIZE) {
+          throw new IOException("快照文件不完整: " + path);
+        }
+        map(0, HEADER_SIZE);
+        if (window.getInt() != MAGIC || window.getInt() != VERSION) {
+          throw new IOException("不是可识别的快照文件: " + path);
+        }
+        this.count = window.getLong();
+      } catch (IOException | RuntimeException e) {
+        channel.close();
+        throw e;
+      }
+    }
+
+    public static Reader open(Path path) throws IOException {
+      return new Reader(path, DEFAULT_WINDOW_SIZE);
+    }
+
+    static Reader open(Path path, long windowSize) throws IOException {
+      return new Reader(path, windowSize);
+    }
+
+    public long count() {
+      return count;
+    }
+
+    public long fileSize() {
+      return fileSize;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return read < count;
+    }
+
+    /** 解码下一个条目; 文件被截断或内容损坏时抛出 {@link IllegalStateException}. */
+    @Override
+    public Entry next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      ensure(4);
+      byte[] key = new byte[window.getInt()];
+      ensure(key.length + 2);
+      window.get(key);
+      byte[] contentType = new byte[window.getShort() & 0xFFFF];
+      ensure(contentType.length + 8 + 4);
+      window.get(contentType);
+      long expireAtMillis = window.getLong();
+      int valueSize = window.getInt();
+      if (valueSize < 0) {
+        throw new IllegalStateException("快照文件已损坏: 值的长度为 " + valueSize);
+      }
+      ensure(valueSize);
+      byte[] value = new byte[valueSize];
+      window.get(value);
+      read++;
+      return new Entry(
+          new String(key, StandardCharsets.UTF_8),
+          new CacheValue(
+              ByteString.fromArrayUnsafe(value), new String(contentType, StandardCharsets.UTF_8)),
+          expireAtMillis);
+    }
+
+    @Override
+    public void close() throws IOException {
+      channel.close();
+    }
+
+    private void ensure(int size) {
+      if (size < 0) {
+        throw new IllegalStateException("快照文件已损坏: 长度为 " + size);
+      }
+      if (window.remaining() >= size) {
+        return;
+      }
+      long position = windowStart + window.position();
+      if (fileSize - position < size) {
+        throw new IllegalStateException("快照文件已截断: 位置 " + position + " 处需要 " + size + " 字节");
+      }
+      try {
+        map(position, Math.max(size, Math.min(windowSize, fileSize - position)));
+      } catch (IOException e) {
+        throw new IllegalStateException("映射快照文件失败", e);
+      }
+    }
+
+    private void map(long position, long size) throws IOException {
+      window = channel.map(FileChannel.MapMode.READ_ONLY, position, size);
+      windowStart = position;
+    }
+  }
+}
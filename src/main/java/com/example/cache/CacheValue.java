@@ -0,0 +1,62 @@
+package com.example.cache;
+
+import akka.util.ByteString;
+
+/**
+ * 缓存中保存的值: 原始字节及写入时的 Content-Type. 不可变, 可以在线程之间共享.
+ *
+ * <p>缓存层不解释字节内容, 读取时按写入时的 Content-Type 原样返回, 不做字符集转换.
+ */
+public final class CacheValue {
+
+  // 通过 URL 路径或 JSON 接口写入的文本值, 以及旧版本以字符串写入 Redis 的值使用的 Content-Type
+  public static final String TEXT_PLAIN_UTF8 = "text/plain; charset=UTF-8";
+
+  public final ByteString bytes;
+  public final String contentType;
+
+  public CacheValue(ByteString bytes, String contentType) {
+    if (bytes == null || contentType == null) {
+      throw new IllegalArgumentException("bytes 和 contentType 不能为 null");
+    }
+    this.bytes = bytes;
+    // 不同的 Content-Type 种类很少, 驻留后各条目共享同一个实例
+    this.contentType = contentType.intern();
+  }
+
+  // UTF-8 编码的文本值
+  public static CacheValue of(String text) {
+    return new CacheValue(ByteString.fromString(text), TEXT_PLAIN_UTF8);
+  }
+
+  public int size() {
+    return bytes.size();
+  }
+
+  // 按 UTF-8 解码, 只用于以文本表示值的接口(JSON 批量接口、日志等)
+  public String utf8String() {
+    return bytes.utf8String();
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof CacheValue)) {
+      return false;
+    }
+    CacheValue that = (CacheValue) other;
+    return bytes.equals(that.bytes) && contentType.equals(that.contentType);
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * bytes.hashCode() + contentType.hashCode();
+  }
+
+  @Override
+  public String toString() {
+    return "CacheValue(" + bytes.size() + " 字节, " + contentType + ")";
+  }
+}
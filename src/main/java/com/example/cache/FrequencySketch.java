@@ -0,0 +1,92 @@
+package com.example.cache;
+
+/**
+ * 用于 TinyLFU 准入策略的 Count-Min Sketch, 估算键最近的访问频率.
+ *
+ * <p>每个计数器占 4 位(最大 15), 每个 long 存放 16 个计数器. 访问次数累计到采样窗口大小后,
+ * 所有计数器减半, 使旧的热点逐渐老化. 非线程安全.
+ */
+public final class FrequencySketch {
+
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long ONE_MASK = 0x1111111111111111L;
+  private static final int[] SEEDS = {0x97cb3127, 0xc3a5c85c, 0x6e9d9f1b, 0xa0761d65};
+
+  private final long[] table;
+  private final int tableMask;
+  private final int sampleSize;
+  private int additions;
+
+  public FrequencySketch(long expectedEntries) {
+    int maximum = (int) Math.min(Math.max(expectedEntries, 16), 1 << 26);
+    this.table = new long[ceilingPowerOfTwo(maximum)];
+    this.tableMask = table.length - 1;
+    this.sampleSize = 10 * maximum;
+  }
+
+  // 估算键的访问频率, 取四个计数器中的最小值
+  public int frequency(Object key) {
+    int hash = spread(key.hashCode());
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < 4; i++) {
+      int index = indexOf(hash, i);
+      int offset = counterOffset(hash, i);
+      int count = (int) ((table[index] >>> offset) & 0xFL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  // 记录一次访问
+  public void increment(Object key) {
+    int hash = spread(key.hashCode());
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), counterOffset(hash, i));
+    }
+    if (added && ++additions >= sampleSize) {
+      reset();
+    }
+  }
+
+  private boolean incrementAt(int index, int offset) {
+    long mask = 0xFL << offset;
+    if ((table[index] & mask) != mask) {
+      table[index] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  // 所有计数器减半, 并修正奇数计数器截断带来的误差
+  private void reset() {
+    int odd = 0;
+    for (int i = 0; i < table.length; i++) {
+      odd += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    additions = (additions >>> 1) - (odd >>> 2);
+  }
+
+  private int indexOf(int hash, int i) {
+    long h = (hash + (long) SEEDS[i]) * SEEDS[i];
+    h += h >>> 32;
+    return ((int) h) & tableMask;
+  }
+
+  // 每个 long 中有 16 个计数器, 哈希的低两位选择一组, 四个哈希函数各用组内的一个, 返回其位偏移
+  private static int counterOffset(int hash, int i) {
+    int counter = ((hash & 3) << 2) + i;
+    return counter << 2;
+  }
+
+  private static int spread(int x) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+
+  private static int ceilingPowerOfTwo(int x) {
+    return 1 << -Integer.numberOfLeadingZeros(x - 1);
+  }
+}
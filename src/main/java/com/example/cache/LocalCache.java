@@ -0,0 +1,636 @@
+package com.example.cache;
+
+import java.lang.invoke.VarHandle;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * 有容量上限的本地缓存, 使用 W-TinyLFU 策略进行准入和淘汰.
+ *
+ * <p>新写入的条目先进入占总容量 1% 的 LRU 窗口区; 被挤出窗口的条目作为候选者进入主区的试用段,
+ * 超出容量时与试用段中最久未访问的条目(受害者)比较 {@link FrequencySketch} 估算的访问频率,
+ * 频率低的一方被淘汰. 试用段中再次被访问的条目晋升到受保护段(占主区的 80%).
+ * 总容量和各区的大小都同时按条目数量和估算的字节数限制.
+ *
+ * <p>写入时可以指定存活时间, 过期条目由 {@link TimerWheel} 在 {@link #expire()} 时回收,
+ * 读取时也会检查是否已过期. 通过 {@link #retainExpired} 可以让过期条目再保留一段时间,
+ * 期间不再被当作命中, 但可以在后端不可用时通过 {@link #peekStale} 读取.
+ *
+ * <p>指定 {@link SlabStore} 时值的字节保存在堆外的 slab 中, 条目只持有指向块的引用, 读取时复制为新的
+ * {@link CacheValue}; 超过 slab 大小或堆外内存已满时值仍保存在堆上. 此时值的字节数按块的大小估算.
+ *
+ * <p>除 {@link #getConcurrent} 外该类非线程安全, 只应由拥有它的 Actor 访问.
+ * {@link #getConcurrent} 可由任意线程调用: 它只读取并发哈希表中的条目, 把访问记录写入 {@link ReadBuffer},
+ * 由 Actor 在下一次写入、读取或 {@link #drainReads()} 时批量更新淘汰策略.
+ */
+public final class LocalCache {
+
+  // 估算的单个条目固定开销(哈希表节点、Node 对象、键的 String 和值的 CacheValue/ByteString 对象头等)
+  static final int ENTRY_OVERHEAD = 96;
+
+  private static final double WINDOW_PERCENT = 0.01;
+  private static final double PROTECTED_PERCENT = 0.80;
+
+  private static final byte WINDOW = 0;
+  private static final byte PROBATION = 1;
+  private static final byte PROTECTED = 2;
+
+  // 不过期的条目的 expireAt 取值
+  static final long NO_EXPIRY = Long.MAX_VALUE;
+
+  private final Map<String, Node> data = new ConcurrentHashMap<>();
+  private final FrequencySketch sketch;
+  private final AccessOrderDeque window = new AccessOrderDeque();
+  private final AccessOrderDeque probation = new AccessOrderDeque();
+  private final AccessOrderDeque protectedQueue = new AccessOrderDeque();
+  private final TimerWheel timerWheel;
+  private final LongSupplier ticker;
+  private final ReadBuffer readBuffer = new ReadBuffer();
+  private final LongAdder concurrentHitCount = new LongAdder();
+  private volatile Runnable onReadBufferFull = () -> {};
+  // 为 null 时值保存在堆上
+  private final SlabStore slabs;
+
+  private final long maxEntries;
+  private final long maxBytes;
+  private final long windowMaxEntries;
+  private final long windowMaxBytes;
+  private final long protectedMaxEntries;
+  private final long protectedMaxBytes;
+
+  private long weightedSize;
+  private long windowWeightedSize;
+  private long protectedWeightedSize;
+
+  private long hitCount;
+  private long missCount;
+  private long evictionCount;
+  private long evictionWeight;
+  private long expirationCount;
+  // 过期条目的额外保留时间, 0 表示过期即回收
+  private long graceNanos;
+
+  public LocalCache(long maxEntries, long maxBytes) {
+    this(maxEntries, maxBytes, System::nanoTime);
+  }
+
+  // ticker 返回纳秒时间, 测试中可以替换为手动推进的时钟
+  public LocalCache(long maxEntries, long maxBytes, LongSupplier ticker) {
+    this(maxEntries, maxBytes, ticker, null);
+  }
+
+  public LocalCache(long maxEntries, long maxBytes, SlabStore slabs) {
+    this(maxEntries, maxBytes, System::nanoTime, slabs);
+  }
+
+  public LocalCache(long maxEntries, long maxBytes, LongSupplier ticker, SlabStore slabs) {
+    if (maxEntries <= 0 || maxBytes <= 0) {
+      throw new IllegalArgumentException("本地缓存容量必须大于 0");
+    }
+    this.maxEntries = maxEntries;
+    this.maxBytes = maxBytes;
+    this.windowMaxEntries = Math.max(1, (long) (maxEntries * WINDOW_PERCENT));
+    this.windowMaxBytes = Math.max(1, (long) (maxBytes * WINDOW_PERCENT));
+    this.protectedMaxEntries = (long) ((maxEntries - windowMaxEntries) * PROTECTED_PERCENT);
+    this.protectedMaxBytes = (long) ((maxBytes - windowMaxBytes) * PROTECTED_PERCENT);
+    // 频率草图按可能容纳的最多条目数量分配
+    this.sketch = new FrequencySketch(Math.min(maxEntries, maxBytes / ENTRY_OVERHEAD));
+    this.ticker = ticker;
+    this.slabs = slabs;
+    this.timerWheel = new TimerWheel(ticker.getAsLong(), this::onExpired);
+  }
+
+  // 读取键对应的值, 未命中返回 null
+  public CacheValue get(String key) {
+    drainReads();
+    sketch.increment(key);
+    Node node = data.get(key);
+    if (node == null) {
+      missCount++;
+      return null;
+    }
+    long now = ticker.getAsLong();
+    if (node.expireAt != NO_EXPIRY && node.expireAt - now <= 0) {
+      // 已过期但时间轮尚未推进到对应的桶; 仍在保留期内的条目留给 peekStale
+      if (node.expireAt + graceNanos - now <= 0) {
+        onExpired(node);
+      }
+      missCount++;
+      return null;
+    }
+    hitCount++;
+    onAccess(node);
+    return valueOf(node.value);
+  }
+
+  // 读取但不记录访问: 不影响命中统计、访问频率和淘汰顺序
+  public CacheValue peek(String key) {
+    Node node = data.get(key);
+    if (node == null
+        || (node.expireAt != NO_EXPIRY && node.expireAt - ticker.getAsLong() <= 0)) {
+      return null;
+    }
+    return valueOf(node.value);
+  }
+
+  /**
+   * 读取条目而不检查是否已过期, 只返回 null 表示不存在或已超出保留期. 不记录访问,
+   * 用于后端不可用时返回过期的值(stale-if-error).
+   */
+  public CacheValue peekStale(String key) {
+    Node node = data.get(key);
+    if (node == null
+        || (node.expireAt != NO_EXPIRY
+            && node.expireAt + graceNanos - ticker.getAsLong() <= 0)) {
+      return null;
+    }
+    return valueOf(node.value);
+  }
+
+  /**
+   * 过期条目再保留 graceNanos 才回收. 保留期内的条目仍占用容量并参与淘汰, 但 {@link #get} 和
+   * {@link #getConcurrent} 都把它当作未命中. 只能在写入任何条目之前调用.
+   */
+  public void retainExpired(long graceNanos) {
+    if (graceNanos < 0) {
+      throw new IllegalArgumentException("保留时间不能为负数: " + graceNanos);
+    }
+    if (!data.isEmpty()) {
+      throw new IllegalStateException("只能在写入条目之前设置过期条目的保留时间");
+    }
+    this.graceNanos = graceNanos;
+    timerWheel.retainExpired(graceNanos);
+  }
+
+  public void put(String key, CacheValue value) {
+    put(key, value, 0);
+  }
+
+  /**
+   * 可由任意线程调用的读取: 命中时返回值并记录一次访问, 未命中或已过期返回 null 且不做任何记录,
+   * 由调用方转交给拥有者按常规路径处理.
+   */
+  public CacheValue getConcurrent(String key) {
+    Node node = data.get(key);
+    if (node == null) {
+      return null;
+    }
+    CacheValue value = readConcurrent(node, node.value);
+    if (value != null) {
+      recordConcurrentHit(key);
+    }
+    return value;
+  }
+
+  /**
+   * 与 {@link #getConcurrent(String)} 相同, 但返回由值派生的对象(例如预先构建的 HTTP 响应), 并把它保存在条目上,
+   * 同一个值的后续读取直接复用. 派生对象随值一起被替换、淘汰或过期, 不会比条目存活得更久;
+   * 与值共享字节时只增加固定的对象开销. derive 返回 null 时不保存. 值保存在堆外时每次读取的都是新的副本,
+   * 不保存派生对象.
+   */
+  public <T> T getConcurrent(String key, Class<T> type, Function<CacheValue, T> derive) {
+    Node node = data.get(key);
+    if (node == null) {
+      return null;
+    }
+    Object stored = node.value;
+    Derived derived = node.derived;
+    T result;
+    if (stored != null && derived != null && derived.stored == stored
+        && type.isInstance(derived.result)) {
+      if (isExpired(node)) {
+        return null;
+      }
+      result = type.cast(derived.result);
+    } else {
+      CacheValue value = readConcurrent(node, stored);
+      if (value == null) {
+        return null;
+      }
+      result = derive.apply(value);
+      if (result != null && !(stored instanceof SlabStore.Ref)) {
+        // 与拥有者替换值竞争时可能保存了旧值的派生对象, 读取时按值的对象标识校验, 不会被返回
+        node.derived = new Derived(stored, result);
+      }
+    }
+    recordConcurrentHit(key);
+    return result;
+  }
+
+  // 未命中或已过期时返回 null
+  private CacheValue readConcurrent(Node node, Object stored) {
+    if (stored == null || isExpired(node)) {
+      return null;
+    }
+    CacheValue value = valueOf(stored);
+    if (stored instanceof SlabStore.Ref) {
+      // 复制期间块可能被释放或重用: 拥有者总是先替换引用再写入块, 引用未变说明复制的内容有效
+      VarHandle.acquireFence();
+      if (node.value != stored) {
+        return null;
+      }
+    }
+    return value;
+  }
+
+  private boolean isExpired(Node node) {
+    long expireAt = node.expireAt;
+    return expireAt != NO_EXPIRY && expireAt - ticker.getAsLong() <= 0;
+  }
+
+  private void recordConcurrentHit(String key) {
+    concurrentHitCount.increment();
+    if (readBuffer.offer(key) == ReadBuffer.FULL) {
+      onReadBufferFull.run();
+    }
+  }
+
+  // 读缓冲区写满时的回调, 在读线程上执行, 通常只向拥有者发送一条消息
+  public void onReadBufferFull(Runnable callback) {
+    this.onReadBufferFull = callback;
+  }
+
+  // 把无锁读取记录的访问应用到频率草图和访问顺序上
+  public void drainReads() {
+    if (!readBuffer.isEmpty()) {
+      readBuffer.drainTo(this::onConcurrentRead);
+    }
+  }
+
+  // ttlNanos 为 0 表示永不过期
+  public void put(String key, CacheValue value, long ttlNanos) {
+    drainReads();
+    sketch.increment(key);
+    long expireAt = ttlNanos > 0 ? ticker.getAsLong() + ttlNanos : NO_EXPIRY;
+    Node node = data.get(key);
+    if (node != null) {
+      Object stored = store(node, value);
+      // 分配块时的压缩可能已经移动了旧值, 因此在分配之后再读取
+      Object previous = node.value;
+      node.value = stored;
+      node.derived = null;
+      release(previous);
+      int weight = weigh(key, stored);
+      int delta = weight - node.weight;
+      node.weight = weight;
+      weightedSize += delta;
+      if (node.queue == WINDOW) {
+        windowWeightedSize += delta;
+      } else if (node.queue == PROTECTED) {
+        protectedWeightedSize += delta;
+      }
+      onAccess(node);
+      node.expireAt = expireAt;
+      if (expireAt == NO_EXPIRY) {
+        timerWheel.deschedule(node);
+      } else {
+        timerWheel.reschedule(node);
+      }
+    } else {
+      node = new Node(key, null, 0);
+      Object stored = store(node, value);
+      int weight = weigh(key, stored);
+      node.value = stored;
+      node.weight = weight;
+      node.expireAt = expireAt;
+      data.put(key, node);
+      window.addLast(node);
+      weightedSize += weight;
+      windowWeightedSize += weight;
+      if (expireAt != NO_EXPIRY) {
+        timerWheel.schedule(node);
+      }
+    }
+    evictFromWindow();
+    evictFromMain();
+  }
+
+  public boolean remove(String key) {
+    Node node = data.remove(key);
+    if (node == null) {
+      return false;
+    }
+    unlink(node);
+    return true;
+  }
+
+  // 推进时间轮, 回收所有已经过期的条目
+  public void expire() {
+    drainReads();
+    timerWheel.advance(ticker.getAsLong());
+  }
+
+  /**
+   * 按从冷到热的顺序(试用段、受保护段、窗口区, 各自从最久未访问到最近访问)遍历未过期的条目, 不记录访问.
+   * 依次重新写入另一个缓存时, 最热的条目最后写入, 超出容量时先淘汰冷的条目.
+   */
+  public void forEach(EntryVisitor visitor) {
+    drainReads();
+    long now = ticker.getAsLong();
+    for (AccessOrderDeque queue : new AccessOrderDeque[] {probation, protectedQueue, window}) {
+      for (Node node = queue.peekFirst(); node != null; node = node.next) {
+        long ttlNanos = 0;
+        if (node.expireAt != NO_EXPIRY) {
+          ttlNanos = node.expireAt - now;
+          if (ttlNanos <= 0) {
+            continue;
+          }
+        }
+        visitor.accept(node.key, valueOf(node.value), ttlNanos);
+      }
+    }
+  }
+
+  // forEach 的回调, ttlNanos 为剩余的存活时间, 0 表示永不过期
+  @FunctionalInterface
+  public interface EntryVisitor {
+    void accept(String key, CacheValue value, long ttlNanos);
+  }
+
+  public boolean containsKey(String key) {
+    return data.containsKey(key);
+  }
+
+  public int size() {
+    return data.size();
+  }
+
+  public long weightedSize() {
+    return weightedSize;
+  }
+
+  public long hitCount() {
+    return hitCount + concurrentHitCount.sum();
+  }
+
+  public long missCount() {
+    return missCount;
+  }
+
+  public long evictionCount() {
+    return evictionCount;
+  }
+
+  public long evictionWeight() {
+    return evictionWeight;
+  }
+
+  public long expirationCount() {
+    return expirationCount;
+  }
+
+  public long maxEntries() {
+    return maxEntries;
+  }
+
+  public long maxBytes() {
+    return maxBytes;
+  }
+
+  // 估算条目占用的字节数: 键按每个字符 2 字节计算, 值按实际字节数计算
+  static int weigh(String key, CacheValue value) {
+    return ENTRY_OVERHEAD + 2 * key.length() + value.size();
+  }
+
+  private static int weigh(String key, Object stored) {
+    if (stored instanceof SlabStore.Ref) {
+      return ENTRY_OVERHEAD + 2 * key.length() + ((SlabStore.Ref) stored).chunkSize();
+    }
+    return weigh(key, (CacheValue) stored);
+  }
+
+  // 有 SlabStore 时尽量把值写入堆外, 写不下时保留在堆上
+  private Object store(Node node, CacheValue value) {
+    if (slabs != null) {
+      SlabStore.Ref ref = slabs.allocate(value.bytes, value.contentType, node);
+      if (ref != null) {
+        return ref;
+      }
+    }
+    return value;
+  }
+
+  private void release(Object stored) {
+    if (stored instanceof SlabStore.Ref) {
+      slabs.free((SlabStore.Ref) stored);
+    }
+  }
+
+  private CacheValue valueOf(Object stored) {
+    if (stored instanceof SlabStore.Ref) {
+      SlabStore.Ref ref = (SlabStore.Ref) stored;
+      return new CacheValue(slabs.read(ref), ref.contentType);
+    }
+    return (CacheValue) stored;
+  }
+
+  private void onConcurrentRead(String key) {
+    Node node = data.get(key);
+    if (node != null) {
+      sketch.increment(key);
+      onAccess(node);
+    }
+  }
+
+  private void onAccess(Node node) {
+    if (node.queue == WINDOW) {
+      window.moveToBack(node);
+    } else if (node.queue == PROBATION) {
+      // 试用段中再次被访问, 晋升到受保护段
+      probation.remove(node);
+      node.queue = PROTECTED;
+      protectedQueue.addLast(node);
+      protectedWeightedSize += node.weight;
+      demoteFromProtected();
+    } else {
+      protectedQueue.moveToBack(node);
+    }
+  }
+
+  // 受保护段超出上限时, 把最久未访问的条目降级回试用段
+  private void demoteFromProtected() {
+    while ((protectedWeightedSize > protectedMaxBytes
+            || protectedQueue.size() > protectedMaxEntries)
+        && protectedQueue.size() > 1) {
+      Node demoted = protectedQueue.pollFirst();
+      protectedWeightedSize -= demoted.weight;
+      demoted.queue = PROBATION;
+      probation.addLast(demoted);
+    }
+  }
+
+  // 窗口区超出上限时, 把最久未访问的条目移入试用段, 成为准入候选者
+  private void evictFromWindow() {
+    while ((windowWeightedSize > windowMaxBytes || window.size() > windowMaxEntries)
+        && window.size() > 1) {
+      Node candidate = window.pollFirst();
+      windowWeightedSize -= candidate.weight;
+      candidate.queue = PROBATION;
+      probation.addLast(candidate);
+    }
+  }
+
+  // 超出总容量时, 候选者(试用段尾部)与受害者(试用段头部)按访问频率二选一淘汰
+  private void evictFromMain() {
+    while (data.size() > maxEntries || weightedSize > maxBytes) {
+      Node victim = probation.peekFirst();
+      Node candidate = probation.peekLast();
+      if (victim == null) {
+        // 试用段为空时依次从受保护段和窗口区淘汰
+        Node first = protectedQueue.peekFirst();
+        evict(first != null ? first : window.peekFirst());
+        continue;
+      }
+      if (victim == candidate) {
+        evict(victim);
+        continue;
+      }
+      if (sketch.frequency(candidate.key) > sketch.frequency(victim.key)) {
+        evict(victim);
+      } else {
+        evict(candidate);
+      }
+    }
+  }
+
+  private void onExpired(Node node) {
+    data.remove(node.key);
+    unlink(node);
+    expirationCount++;
+  }
+
+  private void evict(Node node) {
+    data.remove(node.key);
+    unlink(node);
+    evictionCount++;
+    evictionWeight += node.weight;
+  }
+
+  private void unlink(Node node) {
+    if (node.value instanceof SlabStore.Ref) {
+      // 先清除引用再释放块, 正在无锁读取该条目的线程会发现引用已变化
+      Object stored = node.value;
+      node.value = null;
+      release(stored);
+    }
+    node.derived = null;
+    timerWheel.deschedule(node);
+    weightedSize -= node.weight;
+    if (node.queue == WINDOW) {
+      window.remove(node);
+      windowWeightedSize -= node.weight;
+    } else if (node.queue == PROBATION) {
+      probation.remove(node);
+    } else {
+      protectedQueue.remove(node);
+      protectedWeightedSize -= node.weight;
+    }
+  }
+
+  static final class Node implements SlabStore.Owner {
+    final String key;
+    // CacheValue 或指向堆外块的 SlabStore.Ref; value 和 expireAt 会被无锁读取, 只由拥有者写入
+    volatile Object value;
+    int weight;
+    byte queue = WINDOW;
+    Node prev;
+    Node next;
+    volatile long expireAt = NO_EXPIRY;
+    // 由无锁读取的线程写入, 为 null 或 stored 不是当前的值时无效
+    volatile Derived derived;
+    Node timerPrev;
+    Node timerNext;
+
+    Node(String key, CacheValue value, int weight) {
+      this.key = key;
+      this.value = value;
+      this.weight = weight;
+    }
+
+    @Override
+    public SlabStore.Ref ref() {
+      return (SlabStore.Ref) value;
+    }
+
+    @Override
+    public void relocated(SlabStore.Ref ref) {
+      value = ref;
+    }
+  }
+
+  // 由值派生的对象及派生时的值(按对象标识比较)
+  private static final class Derived {
+    final Object stored;
+    final Object result;
+
+    Derived(Object stored, Object result) {
+      this.stored = stored;
+      this.result = result;
+    }
+  }
+
+  // 侵入式双向链表, 头部为最久未访问的条目
+  static final class AccessOrderDeque {
+    private Node head;
+    private Node tail;
+    private int size;
+
+    int size() {
+      return size;
+    }
+
+    Node peekFirst() {
+      return head;
+    }
+
+    Node peekLast() {
+      return tail;
+    }
+
+    void addLast(Node node) {
+      node.prev = tail;
+      node.next = null;
+      if (tail == null) {
+        head = node;
+      } else {
+        tail.next = node;
+      }
+      tail = node;
+      size++;
+    }
+
+    Node pollFirst() {
+      Node first = head;
+      if (first != null) {
+        remove(first);
+      }
+      return first;
+    }
+
+    void moveToBack(Node node) {
+      if (node != tail) {
+        remove(node);
+        addLast(node);
+      }
+    }
+
+    void remove(Node node) {
+      if (node.prev == null) {
+        head = node.next;
+      } else {
+        node.prev.next = node.next;
+      }
+      if (node.next == null) {
+        tail = node.prev;
+      } else {
+        node.next.prev = node.prev;
+      }
+      node.prev = null;
+      node.next = null;
+      size--;
+    }
+  }
+}
@@ -0,0 +1,69 @@
+package com.example.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * 记录两级缓存中都不存在的键, 在较短的存活时间内直接判定为未命中而不再查询 Redis.
+ *
+ * <p>条目数量有上限, 超出时淘汰最早写入的条目; 过期的条目在读取时惰性删除.
+ * 非线程安全, 只应由拥有它的 Actor 访问.
+ */
+public final class NegativeCache {
+
+  private final long ttlNanos;
+  private final LongSupplier ticker;
+  private final LinkedHashMap<String, Long> expireAtByKey;
+
+  public NegativeCache(int maxEntries, long ttlNanos) {
+    this(maxEntries, ttlNanos, System::nanoTime);
+  }
+
+  public NegativeCache(int maxEntries, long ttlNanos, LongSupplier ticker) {
+    this.ttlNanos = ttlNanos;
+    this.ticker = ticker;
+    this.expireAtByKey =
+        new LinkedHashMap<String, Long>(16, 0.75f, false) {
+          @Override
+          protected boolean removeEldestEntry(Map.Entry<String, Long> eldest) {
+            return size() > maxEntries;
+          }
+        };
+  }
+
+  // 存活时间为 0 时不记录任何键
+  public boolean isEnabled() {
+    return ttlNanos > 0;
+  }
+
+  // 键是否被记录为不存在且尚未过期
+  public boolean contains(String key) {
+    Long expireAt = expireAtByKey.get(key);
+    if (expireAt == null) {
+      return false;
+    }
+    if (expireAt - ticker.getAsLong() <= 0) {
+      expireAtByKey.remove(key);
+      return false;
+    }
+    return true;
+  }
+
+  public void add(String key) {
+    if (!isEnabled()) {
+      return;
+    }
+    // 先删除再写入, 使重新记录的键回到队尾
+    expireAtByKey.remove(key);
+    expireAtByKey.put(key, ticker.getAsLong() + ttlNanos);
+  }
+
+  public void invalidate(String key) {
+    expireAtByKey.remove(key);
+  }
+
+  public int size() {
+    return expireAtByKey.size();
+  }
+}
@@ -0,0 +1,61 @@
+package com.example.cache;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * 记录无锁读取命中的有界环形缓冲区: 多个读线程写入, 拥有 {@link LocalCache} 的 Actor 单线程消费.
+ *
+ * <p>写入失败(缓冲区已满或与其他读线程竞争)时直接丢弃这次记录, 读线程从不阻塞或重试.
+ * 丢失少量访问记录只会让淘汰策略的频率估算略有偏差, 不影响读取结果.
+ */
+final class ReadBuffer {
+
+  static final int SUCCESS = 0;
+  static final int FAILED = 1;
+  static final int FULL = 2;
+
+  private static final int CAPACITY = 1024;
+  private static final int MASK = CAPACITY - 1;
+
+  private final AtomicReferenceArray<String> buffer = new AtomicReferenceArray<>(CAPACITY);
+  private final AtomicLong writeCounter = new AtomicLong();
+  private volatile long readCounter;
+
+  // 可由任意线程调用
+  int offer(String key) {
+    long head = readCounter;
+    long tail = writeCounter.get();
+    if (tail - head >= CAPACITY) {
+      return FULL;
+    }
+    if (!writeCounter.compareAndSet(tail, tail + 1)) {
+      return FAILED;
+    }
+    buffer.lazySet((int) (tail & MASK), key);
+    return SUCCESS;
+  }
+
+  // 只能由消费者线程调用
+  void drainTo(Consumer<String> consumer) {
+    long head = readCounter;
+    long tail = writeCounter.get();
+    while (head != tail) {
+      int index = (int) (head & MASK);
+      String key = buffer.get(index);
+      if (key == null) {
+        // 读线程已占位但尚未写入, 留到下次再处理
+        break;
+      }
+      buffer.lazySet(index, null);
+      consumer.accept(key);
+      head++;
+    }
+    readCounter = head;
+  }
+
+  boolean isEmpty() {
+    return readCounter == writeCounter.get();
+  }
+}
@@ -0,0 +1,37 @@
+package com.example.cache;
+
+import java.util.function.Function;
+
+/**
+ * 供 HTTP 路由等外部线程无锁读取某个分区本地缓存的句柄.
+ *
+ * <p>句柄由分区的创建者持有, 拥有 {@link LocalCache} 的 Actor 启动时挂载自己的缓存、停止时卸载,
+ * 因此 Actor 重启后读取会自动切换到新的缓存. 未挂载时所有读取都视为未命中.
+ */
+public final class ReadView {
+
+  private volatile LocalCache cache;
+
+  public void attach(LocalCache cache) {
+    this.cache = cache;
+  }
+
+  // 只卸载仍然挂载着的同一个缓存, 避免覆盖重启后新挂载的缓存
+  public void detach(LocalCache cache) {
+    if (this.cache == cache) {
+      this.cache = null;
+    }
+  }
+
+  // 可由任意线程调用, 未命中或已过期返回 null
+  public CacheValue get(String key) {
+    LocalCache current = cache;
+    return current == null ? null : current.getConcurrent(key);
+  }
+
+  // 返回保存在条目上的派生对象, 见 LocalCache#getConcurrent(String, Class, Function)
+  public <T> T get(String key, Class<T> type, Function<CacheValue, T> derive) {
+    LocalCache current = cache;
+    return current == null ? null : current.getConcurrent(key, type, derive);
+  }
+}
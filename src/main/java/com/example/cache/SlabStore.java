@@ -0,0 +1,361 @@
+package com.example.cache;
+
+import akka.util.ByteString;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * 堆外的值存储: 内存按固定大小的 slab (直接内存或内存映射文件) 分配, 每个 slab 划分给一个大小级别,
+ * 切分为该级别大小相同的块. 值写入能容纳它的最小级别的一个块, 堆上只保留一个很小的 {@link Ref}.
+ *
+ * <p>级别从 {@link #MIN_CHUNK_SIZE} 开始按 1.25 倍增长到 slab 大小, 块内的空余不会被其他值使用.
+ * 空闲的 slab 可以分配给任意级别; 没有空闲 slab 时 {@link #compact()} 把各级别中零散的块集中到尽量少的
+ * slab 中, 腾出的 slab 再交给其他级别使用. 被移动的块通过 {@link Owner#relocated} 通知其持有者.
+ *
+ * <p>除 {@link #read} 外该类非线程安全, 只应由拥有它的 Actor 访问. {@link #read} 可能读到正在被释放或重用的块,
+ * 调用方需要在读取后确认持有的 {@link Ref} 仍然有效.
+ */
+public final class SlabStore {
+
+  static final int MIN_CHUNK_SIZE = 64;
+  private static final double GROWTH_FACTOR = 1.25;
+
+  // 块的持有者, 块在压缩时被移动后更新自己持有的 Ref
+  interface Owner {
+    Ref ref();
+
+    void relocated(Ref ref);
+  }
+
+  /** 指向堆外块的不可变引用. 值被替换或块被移动时总是创建新的实例, 因此可以按引用比较是否仍然有效. */
+  public static final class Ref {
+    final Slab slab;
+    final int chunk;
+    // 创建时计算的偏移量: slab 之后可能被分给其他级别, 读取者不能再按块序号换算
+    final int offset;
+    final int chunkSize;
+    final int length;
+    final String contentType;
+
+    Ref(Slab slab, int chunk, int length, String contentType) {
+      this.slab = slab;
+      this.chunk = chunk;
+      this.offset = slab.offset(chunk);
+      this.chunkSize = slab.chunkSize;
+      this.length = length;
+      this.contentType = contentType;
+    }
+
+    public int length() {
+      return length;
+    }
+
+    // 块的实际大小, 用于估算占用的内存
+    public int chunkSize() {
+      return chunkSize;
+    }
+  }
+
+  static final class Slab {
+    final ByteBuffer buffer;
+    int sizeClass = -1;
+    // 在所属级别的 slabs 中的序号
+    int index;
+    int chunkSize;
+    int used;
+    Owner[] owners;
+
+    Slab(ByteBuffer buffer) {
+      this.buffer = buffer;
+    }
+
+    int offset(int chunk) {
+      return chunk * chunkSize;
+    }
+  }
+
+  private static final class SizeClass {
+    final int chunkSize;
+    final int chunksPerSlab;
+    final List<Slab> slabs = new ArrayList<>();
+    // 空闲块栈, 每个元素为 (slab 在 slabs 中的序号 << 32) | 块序号
+    long[] freeChunks = new long[16];
+    int freeCount;
+
+    SizeClass(int chunkSize, int slabSize) {
+      this.chunkSize = chunkSize;
+      this.chunksPerSlab = slabSize / chunkSize;
+    }
+
+    void pushFree(int slabIndex, int chunk) {
+      if (freeCount == freeChunks.length) {
+        freeChunks = Arrays.copyOf(freeChunks, freeCount * 2);
+      }
+      freeChunks[freeCount++] = ((long) slabIndex << 32) | chunk;
+    }
+
+    void rebuildFreeChunks() {
+      freeCount = 0;
+      for (int i = 0; i < slabs.size(); i++) {
+        slabs.get(i).index = i;
+        Owner[] owners = slabs.get(i).owners;
+        for (int chunk = owners.length - 1; chunk >= 0; chunk--) {
+          if (owners[chunk] == null) {
+            pushFree(i, chunk);
+          }
+        }
+      }
+    }
+  }
+
+  private final int slabSize;
+  private final int maxSlabs;
+  private final IntFunction<ByteBuffer> slabAllocator;
+  private final int[] chunkSizes;
+  private final SizeClass[] sizeClasses;
+  private final List<Slab> freeSlabs = new ArrayList<>();
+  private int slabCount;
+  private long usedBytes;
+  private long compactionCount;
+  private long relocationCount;
+
+  SlabStore(long capacityBytes, int slabSize, IntFunction<ByteBuffer> slabAllocator) {
+    if (slabSize < MIN_CHUNK_SIZE) {
+      throw new IllegalArgumentException("slab 大小不能小于 " + MIN_CHUNK_SIZE + " 字节: " + slabSize);
+    }
+    this.slabSize = slabSize;
+    // 多留一个 slab, 使写入在淘汰旧条目之前也能先分配到块
+    this.maxSlabs = (int) Math.min(Integer.MAX_VALUE - 1, (capacityBytes - 1) / slabSize + 1) + 1;
+    this.slabAllocator = slabAllocator;
+    List<Integer> sizes = new ArrayList<>();
+    for (double size = MIN_CHUNK_SIZE; size < slabSize; size *= GROWTH_FACTOR) {
+      // 按 8 字节对齐
+      int aligned = ((int) size + 7) & ~7;
+      if (sizes.isEmpty() || sizes.get(sizes.size() - 1) < aligned) {
+        sizes.add(Math.min(aligned, slabSize));
+      }
+    }
+    if (sizes.get(sizes.size() - 1) != slabSize) {
+      sizes.add(slabSize);
+    }
+    this.chunkSizes = sizes.stream().mapToInt(Integer::intValue).toArray();
+    this.sizeClasses = new SizeClass[chunkSizes.length];
+    for (int i = 0; i < chunkSizes.length; i++) {
+      sizeClasses[i] = new SizeClass(chunkSizes[i], slabSize);
+    }
+  }
+
+  // 使用直接内存的 slab, 总量不超过 capacityBytes 加一个 slab
+  public static SlabStore direct(long capacityBytes, int slabSize) {
+    return new SlabStore(capacityBytes, slabSize, ByteBuffer::allocateDirect);
+  }
+
+  /**
+   * 使用 directory 下内存映射文件的 slab. 文件在映射后立即删除, 内存随 slab 不可达而释放;
+   * 适合把缓存值交给操作系统的页缓存管理的场景.
+   */
+  public static SlabStore mapped(long capacityBytes, int slabSize, Path directory) {
+    return new SlabStore(capacityBytes, slabSize, size -> mapSlab(directory, size));
+  }
+
+  private static ByteBuffer mapSlab(Path directory, int size) {
+    try {
+      Files.createDirectories(directory);
+      Path file = Files.createTempFile(directory, "slab-", ".bin");
+      try (FileChannel channel =
+          FileChannel.open(
+              file,
+              StandardOpenOption.READ,
+              StandardOpenOption.WRITE,
+              StandardOpenOption.DELETE_ON_CLOSE)) {
+        return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+      }
+    } catch (IOException e) {
+      throw new UncheckedIOException("无法映射 slab 文件: " + directory, e);
+    }
+  }
+
+  /**
+   * 把值写入一个块并登记持有者. 值大于 slab 或内存已满(压缩后仍没有可用的块)时返回 null,
+   * 由调用方把值留在堆上.
+   */
+  Ref allocate(ByteString bytes, String contentType, Owner owner) {
+    int sizeClass = sizeClassFor(bytes.size());
+    if (sizeClass < 0) {
+      return null;
+    }
+    SizeClass cls = sizeClasses[sizeClass];
+    if (cls.freeCount == 0 && !addSlab(sizeClass)) {
+      compact();
+      if (cls.freeCount == 0 && !addSlab(sizeClass)) {
+        return null;
+      }
+    }
+    long free = cls.freeChunks[--cls.freeCount];
+    Slab slab = cls.slabs.get((int) (free >>> 32));
+    int chunk = (int) free;
+    write(slab, chunk, bytes);
+    slab.owners[chunk] = owner;
+    slab.used++;
+    usedBytes += cls.chunkSize;
+    return new Ref(slab, chunk, bytes.size(), contentType);
+  }
+
+  // 释放块. 调用方应先让持有者不再引用 ref, 再释放, 使并发的读取能发现块已失效
+  void free(Ref ref) {
+    Slab slab = ref.slab;
+    if (slab.owners[ref.chunk] == null) {
+      throw new IllegalStateException("重复释放 slab 块");
+    }
+    slab.owners[ref.chunk] = null;
+    slab.used--;
+    usedBytes -= slab.chunkSize;
+    SizeClass cls = sizeClasses[slab.sizeClass];
+    cls.pushFree(slab.index, ref.chunk);
+  }
+
+  /**
+   * 把块中的字节直接复制到新的 ByteString 中. 可由任意线程调用; 块可能同时被释放或重用,
+   * 调用方读取后需要确认 ref 仍然有效, 否则丢弃结果.
+   */
+  public ByteString read(Ref ref) {
+    byte[] bytes = new byte[ref.length];
+    ByteBuffer source = ref.slab.buffer.duplicate();
+    source.position(ref.offset);
+    source.get(bytes);
+    return ByteString.fromArrayUnsafe(bytes);
+  }
+
+  /**
+   * 把每个级别的块集中到尽量少的 slab 中, 完全空出的 slab 回到空闲列表, 可被任意级别使用.
+   * 返回腾出的 slab 数量.
+   */
+  public int compact() {
+    int released = 0;
+    for (SizeClass cls : sizeClasses) {
+      int used = 0;
+      for (Slab slab : cls.slabs) {
+        used += slab.used;
+      }
+      int needed = (used + cls.chunksPerSlab - 1) / cls.chunksPerSlab;
+      if (cls.slabs.size() <= needed) {
+        continue;
+      }
+      // 使用最多的 slab 保留下来, 其余 slab 中的块移动到保留的 slab 的空闲块中
+      cls.slabs.sort(Comparator.comparingInt((Slab slab) -> slab.used).reversed());
+      List<Slab> sources = new ArrayList<>(cls.slabs.subList(needed, cls.slabs.size()));
+      cls.slabs.subList(needed, cls.slabs.size()).clear();
+      cls.rebuildFreeChunks();
+      for (Slab source : sources) {
+        for (int chunk = 0; chunk < source.owners.length; chunk++) {
+          Owner owner = source.owners[chunk];
+          if (owner != null) {
+            relocate(cls, owner);
+          }
+        }
+        source.sizeClass = -1;
+        source.owners = null;
+        source.used = 0;
+        freeSlabs.add(source);
+        released++;
+      }
+    }
+    if (released > 0) {
+      compactionCount++;
+    }
+    return released;
+  }
+
+  private void relocate(SizeClass cls, Owner owner) {
+    long free = cls.freeChunks[--cls.freeCount];
+    Slab target = cls.slabs.get((int) (free >>> 32));
+    int targetChunk = (int) free;
+    Ref current = owner.ref();
+    ByteBuffer from = current.slab.buffer.duplicate();
+    from.position(current.offset).limit(current.offset + current.length);
+    ByteBuffer to = target.buffer.duplicate();
+    to.position(target.offset(targetChunk));
+    VarHandle.releaseFence();
+    to.put(from);
+    target.owners[targetChunk] = owner;
+    target.used++;
+    // 原块之后才会被重用, 持有者更新后旧 Ref 的读取者会在校验时发现引用已变化
+    owner.relocated(new Ref(target, targetChunk, current.length, current.contentType));
+    relocationCount++;
+  }
+
+  private boolean addSlab(int sizeClass) {
+    Slab slab;
+    if (!freeSlabs.isEmpty()) {
+      slab = freeSlabs.remove(freeSlabs.size() - 1);
+    } else if (slabCount < maxSlabs) {
+      slab = new Slab(slabAllocator.apply(slabSize));
+      slabCount++;
+    } else {
+      return false;
+    }
+    SizeClass cls = sizeClasses[sizeClass];
+    slab.sizeClass = sizeClass;
+    slab.chunkSize = cls.chunkSize;
+    slab.owners = new Owner[cls.chunksPerSlab];
+    slab.used = 0;
+    slab.index = cls.slabs.size();
+    cls.slabs.add(slab);
+    for (int chunk = cls.chunksPerSlab - 1; chunk >= 0; chunk--) {
+      cls.pushFree(slab.index, chunk);
+    }
+    return true;
+  }
+
+  private void write(Slab slab, int chunk, ByteString bytes) {
+    ByteBuffer target = slab.buffer.duplicate();
+    target.position(slab.offset(chunk));
+    // 持有者对旧块的引用变更必须先于对重用块的写入对读取者可见
+    VarHandle.releaseFence();
+    bytes.copyToBuffer(target);
+  }
+
+  // 能容纳 size 字节的最小级别, 超出 slab 大小时返回 -1
+  int sizeClassFor(int size) {
+    int index = Arrays.binarySearch(chunkSizes, Math.max(size, 1));
+    if (index >= 0) {
+      return index;
+    }
+    index = -index - 1;
+    return index < chunkSizes.length ? index : -1;
+  }
+
+  public int slabSize() {
+    return slabSize;
+  }
+
+  // 已经分配的 slab 数量(包括空闲的 slab)
+  public int slabCount() {
+    return slabCount;
+  }
+
+  // 已分配给值的块的总大小
+  public long usedBytes() {
+    return usedBytes;
+  }
+
+  public long compactionCount() {
+    return compactionCount;
+  }
+
+  public long relocationCount() {
+    return relocationCount;
+  }
+}
@@ -0,0 +1,142 @@
+package com.example.cache;
+
+import java.util.function.Consumer;
+
+/**
+ * 分层时间轮, 用于本地缓存条目的过期回收.
+ *
+ * <p>各层的桶跨度分别约为 1 秒、1 分钟、1 小时、1 天和 13 天. 条目按剩余存活时间放入对应层的桶中,
+ * 时间推进时只处理已经走过的桶: 已过期的条目交给回调淘汰, 尚未过期的条目重新放入更精细的层.
+ * 调度、取消和推进的开销与缓存中的条目总数无关, 不需要扫描整个缓存.
+ * 非线程安全, 只应由拥有它的 {@link LocalCache} 访问.
+ */
+final class TimerWheel {
+
+  private static final int[] BUCKETS = {64, 64, 32, 4, 1};
+  private static final long[] SPANS = {
+    1L << 30, // 1.07 秒
+    1L << 36, // 1.14 分钟
+    1L << 42, // 1.22 小时
+    1L << 46, // 0.81 天
+    1L << 50, // 13 天
+    1L << 50
+  };
+  private static final int[] SHIFT = {
+    Long.numberOfTrailingZeros(SPANS[0]),
+    Long.numberOfTrailingZeros(SPANS[1]),
+    Long.numberOfTrailingZeros(SPANS[2]),
+    Long.numberOfTrailingZeros(SPANS[3]),
+    Long.numberOfTrailingZeros(SPANS[4])
+  };
+
+  private final LocalCache.Node[][] wheel;
+  private final Consumer<LocalCache.Node> onExpired;
+  private long nanos;
+  // 条目过期后再保留多久才交给回调, 见 LocalCache.retainExpired
+  private long graceNanos;
+
+  TimerWheel(long now, Consumer<LocalCache.Node> onExpired) {
+    this.nanos = now;
+    this.onExpired = onExpired;
+    this.wheel = new LocalCache.Node[BUCKETS.length][];
+    for (int i = 0; i < wheel.length; i++) {
+      wheel[i] = new LocalCache.Node[BUCKETS[i]];
+      for (int j = 0; j < wheel[i].length; j++) {
+        LocalCache.Node sentinel = new LocalCache.Node(null, null, 0);
+        sentinel.timerPrev = sentinel;
+        sentinel.timerNext = sentinel;
+        wheel[i][j] = sentinel;
+      }
+    }
+  }
+
+  void retainExpired(long graceNanos) {
+    this.graceNanos = graceNanos;
+  }
+
+  // 推进时间轮到 currentTime, 处理期间走过的所有桶
+  void advance(long currentTime) {
+    long previousTime = nanos;
+    nanos = currentTime;
+    for (int i = 0; i < SHIFT.length; i++) {
+      long previousTicks = previousTime >>> SHIFT[i];
+      long currentTicks = currentTime >>> SHIFT[i];
+      if (currentTicks - previousTicks <= 0L) {
+        break;
+      }
+      expire(i, previousTicks, currentTicks);
+    }
+  }
+
+  void schedule(LocalCache.Node node) {
+    LocalCache.Node sentinel = findBucket(node.expireAt + graceNanos);
+    link(sentinel, node);
+  }
+
+  void reschedule(LocalCache.Node node) {
+    if (node.timerNext != null) {
+      unlink(node);
+    }
+    schedule(node);
+  }
+
+  void deschedule(LocalCache.Node node) {
+    if (node.timerNext != null) {
+      unlink(node);
+    }
+  }
+
+  private void expire(int index, long previousTicks, long currentTicks) {
+    LocalCache.Node[] timerWheel = wheel[index];
+    int mask = timerWheel.length - 1;
+    // 走过的桶数超过一圈时整层都需要处理
+    int steps = (int) Math.min(1 + Math.abs(currentTicks - previousTicks), timerWheel.length);
+    int start = (int) (previousTicks & mask);
+    int end = start + steps;
+    for (int i = start; i < end; i++) {
+      LocalCache.Node sentinel = timerWheel[i & mask];
+      LocalCache.Node node = sentinel.timerNext;
+      // 先把整个桶摘下来, 回调和重新调度都不会再碰到这个链表
+      sentinel.timerPrev = sentinel;
+      sentinel.timerNext = sentinel;
+      while (node != sentinel) {
+        LocalCache.Node next = node.timerNext;
+        node.timerPrev = null;
+        node.timerNext = null;
+        if (node.expireAt + graceNanos - nanos > 0) {
+          schedule(node);
+        } else {
+          onExpired.accept(node);
+        }
+        node = next;
+      }
+    }
+  }
+
+  private LocalCache.Node findBucket(long time) {
+    long duration = time - nanos;
+    int length = wheel.length - 1;
+    for (int i = 0; i < length; i++) {
+      if (duration < SPANS[i + 1]) {
+        long ticks = time >>> SHIFT[i];
+        int index = (int) (ticks & (wheel[i].length - 1));
+        return wheel[i][index];
+      }
+    }
+    return wheel[length][0];
+  }
+
+  private static void link(LocalCache.Node sentinel, LocalCache.Node node) {
+    node.timerPrev = sentinel.timerPrev;
+    node.timerNext = sentinel;
+    sentinel.timerPrev.timerNext = node;
+    sentinel.timerPrev = node;
+  }
+
+  private static void unlink(LocalCache.Node node) {
+    node.timerPrev.timerNext = node.timerNext;
+    node.timerNext.timerPrev = node.timerPrev;
+    node.timerPrev = null;
+    node.timerNext = null;
+  }
+}
@@ -0,0 +1,43 @@
+package com.example.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// 只增不减的计数器, 基于分段的 LongAdder, 高并发下自增不会争用同一个缓存行
+public final class Counter {
+
+  private final String name;
+  private final String help;
+  // Prometheus 格式的标签, 如 route="cache",method="GET"; 没有标签时为空字符串
+  private final String labels;
+  private final LongAdder value = new LongAdder();
+
+  Counter(String name, String help, String labels) {
+    this.name = name;
+    this.help = help;
+    this.labels = labels;
+  }
+
+  public String name() {
+    return name;
+  }
+
+  public String help() {
+    return help;
+  }
+
+  public String labels() {
+    return labels;
+  }
+
+  public void increment() {
+    value.increment();
+  }
+
+  public void add(long delta) {
+    value.add(delta);
+  }
+
+  public long value() {
+    return value.sum();
+  }
+}
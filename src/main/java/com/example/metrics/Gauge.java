@@ -0,0 +1,56 @@
+package com.example.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+// 可增可减的当前值(如队列长度), 多个来源共用同一个 Gauge 时输出它们的总和;
+// 也可以在输出时从回调读取(如当前的并发上限), 此时 increment 等方法不起作用
+public final class Gauge {
+
+  private final String name;
+  private final String help;
+  // Prometheus 格式的标签, 没有标签时为空字符串
+  private final String labels;
+  private final LongAdder value = new LongAdder();
+  // 为 null 时输出 value 的总和
+  private final LongSupplier supplier;
+
+  Gauge(String name, String help, String labels) {
+    this(name, help, labels, null);
+  }
+
+  Gauge(String name, String help, String labels, LongSupplier supplier) {
+    this.name = name;
+    this.help = help;
+    this.labels = labels;
+    this.supplier = supplier;
+  }
+
+  public String name() {
+    return name;
+  }
+
+  public String help() {
+    return help;
+  }
+
+  public String labels() {
+    return labels;
+  }
+
+  public void increment() {
+    value.increment();
+  }
+
+  public void decrement() {
+    value.decrement();
+  }
+
+  public void add(long delta) {
+    value.add(delta);
+  }
+
+  public long value() {
+    return supplier != null ? supplier.getAsLong() : value.sum();
+  }
+}
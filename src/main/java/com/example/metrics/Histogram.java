@@ -0,0 +1,135 @@
+package com.example.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 对数线性分桶的直方图, 记录非负的 long 值(如纳秒耗时、批量大小).
+ *
+ * <p>与 HdrHistogram 类似, 每个 2 的幂区间再等分为 16 个子桶, 相对误差不超过 1/16. 桶数固定,
+ * 每个桶是一个 {@link LongAdder}: 多个线程同时记录到同一个桶时分散到各自的 cell, 不会争用同一个缓存行.
+ * 记录时不分配对象(cell 只在首次出现竞争时创建), 可以从任意线程调用.
+ *
+ * <p>{@link Metrics#timer} 创建的直方图记录纳秒, 输出时换算为秒.
+ */
+public final class Histogram {
+
+  private static final int SUB_BUCKET_BITS = 4;
+  static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  static final int BUCKET_COUNT = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+  private final String name;
+  private final String help;
+  // Prometheus 格式的标签, 如 route="cache",method="GET"; 没有标签时为空字符串
+  private final String labels;
+  // 记录的值为纳秒
+  private final boolean nanoseconds;
+  private final LongAdder[] counts = new LongAdder[BUCKET_COUNT];
+  private final LongAdder sum = new LongAdder();
+
+  Histogram(String name, String help, String labels) {
+    this(name, help, labels, false);
+  }
+
+  Histogram(String name, String help, String labels, boolean nanoseconds) {
+    this.name = name;
+    this.help = help;
+    this.labels = labels;
+    this.nanoseconds = nanoseconds;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] = new LongAdder();
+    }
+  }
+
+  public String name() {
+    return name;
+  }
+
+  public String help() {
+    return help;
+  }
+
+  public String labels() {
+    return labels;
+  }
+
+  public boolean nanoseconds() {
+    return nanoseconds;
+  }
+
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    counts[bucketIndex(value)].increment();
+    sum.add(value);
+  }
+
+  public long count() {
+    long total = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      total += counts[i].sum();
+    }
+    return total;
+  }
+
+  public long sum() {
+    return sum.sum();
+  }
+
+  // 返回给定百分位(0~100)所在桶的上界, 没有数据时返回 0
+  public long percentile(double percentile) {
+    long[] snapshot = snapshot();
+    long total = 0;
+    for (long count : snapshot) {
+      total += count;
+    }
+    if (total == 0) {
+      return 0;
+    }
+    long rank = (long) Math.ceil(total * percentile / 100.0);
+    long seen = 0;
+    for (int i = 0; i < snapshot.length; i++) {
+      seen += snapshot[i];
+      if (seen >= Math.max(rank, 1)) {
+        return upperBound(i);
+      }
+    }
+    return upperBound(snapshot.length - 1);
+  }
+
+  // 各个桶当前计数的副本
+  public long[] snapshot() {
+    long[] snapshot = new long[BUCKET_COUNT];
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      snapshot[i] = counts[i].sum();
+    }
+    return snapshot;
+  }
+
+  static int bucketIndex(long value) {
+    if (value < SUB_BUCKETS) {
+      return (int) value;
+    }
+    int exponent = 63 - Long.numberOfLeadingZeros(value);
+    int subBucket = (int) (value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+  }
+
+  // 桶内最小值
+  static long lowerBound(int index) {
+    if (index < SUB_BUCKETS) {
+      return index;
+    }
+    int exponent = index / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    long subBucket = index % SUB_BUCKETS;
+    return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+  }
+
+  // 桶内最大值
+  static long upperBound(int index) {
+    if (index == BUCKET_COUNT - 1) {
+      return Long.MAX_VALUE;
+    }
+    return lowerBound(index + 1) - 1;
+  }
+}
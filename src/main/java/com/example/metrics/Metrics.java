@@ -0,0 +1,110 @@
+package com.example.metrics;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Extension;
+import akka.actor.typed.ExtensionId;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+/**
+ * 每个 ActorSystem 一份的指标注册表, Actor 和路由通过 {@code Metrics.get(system)}
+ * 获取同一组计数器和直方图.
+ *
+ * <p>同名且标签相同的指标只会创建一次, 调用方应在构造时取得引用并保存, 避免在热路径上查表.
+ * 标签以名称、取值交替的形式传入, 如 {@code histogram(name, help, "command", "get")}.
+ */
+public class Metrics implements Extension {
+
+  public static final ExtensionId<Metrics> ID =
+      new ExtensionId<Metrics>() {
+        @Override
+        public Metrics createExtension(ActorSystem<?> system) {
+          return new Metrics();
+        }
+      };
+
+  private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+  private final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+  private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+
+  public static Metrics get(ActorSystem<?> system) {
+    return ID.apply(system);
+  }
+
+  public Counter counter(String name, String help, String... labels) {
+    String rendered = renderLabels(labels);
+    return counters.computeIfAbsent(
+        key(name, rendered), k -> new Counter(name, help, rendered));
+  }
+
+  public Histogram histogram(String name, String help, String... labels) {
+    String rendered = renderLabels(labels);
+    return histograms.computeIfAbsent(
+        key(name, rendered), k -> new Histogram(name, help, rendered));
+  }
+
+  // 记录纳秒耗时的直方图, 以秒为单位输出, 名称应以 _seconds 结尾
+  public Histogram timer(String name, String help, String... labels) {
+    String rendered = renderLabels(labels);
+    return histograms.computeIfAbsent(
+        key(name, rendered), k -> new Histogram(name, help, rendered, true));
+  }
+
+  public Gauge gauge(String name, String help, String... labels) {
+    String rendered = renderLabels(labels);
+    return gauges.computeIfAbsent(key(name, rendered), k -> new Gauge(name, help, rendered));
+  }
+
+  // 输出时调用 supplier 取值的 Gauge; 同名且标签相同的 Gauge 已存在时沿用已有的回调
+  public Gauge gauge(String name, String help, LongSupplier supplier, String... labels) {
+    String rendered = renderLabels(labels);
+    return gauges.computeIfAbsent(
+        key(name, rendered), k -> new Gauge(name, help, rendered, supplier));
+  }
+
+  public Collection<Counter> counters() {
+    return Collections.unmodifiableCollection(counters.values());
+  }
+
+  public Collection<Histogram> histograms() {
+    return Collections.unmodifiableCollection(histograms.values());
+  }
+
+  public Collection<Gauge> gauges() {
+    return Collections.unmodifiableCollection(gauges.values());
+  }
+
+  private static String key(String name, String labels) {
+    return labels.isEmpty() ? name : name + "{" + labels + "}";
+  }
+
+  static String renderLabels(String... labels) {
+    if (labels.length % 2 != 0) {
+      throw new IllegalArgumentException("标签必须按名称、取值成对传入");
+    }
+    StringBuilder builder = new StringBuilder();
+    for (int i = 0; i < labels.length; i += 2) {
+      if (i > 0) {
+        builder.append(',');
+      }
+      builder.append(labels[i]).append("=\"");
+      String value = labels[i + 1];
+      for (int j = 0; j < value.length(); j++) {
+        char c = value.charAt(j);
+        if (c == '\\' || c == '"') {
+          builder.append('\\').append(c);
+        } else if (c == '\n') {
+          builder.append("\\n");
+        } else {
+          builder.append(c);
+        }
+      }
+      builder.append('"');
+    }
+    return builder.toString();
+  }
+}
@@ -0,0 +1,134 @@
+package com.example.metrics;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 把 {@link Metrics} 中的指标输出为 Prometheus 文本格式(0.0.4).
+ *
+ * <p>直方图按 2 的幂合并内部的子桶输出累计的 {@code _bucket}, 上界为各区间内的最大整数值.
+ * 每个直方图总是输出同一组固定的上界, 不随数据变化, 之后是 {@code le="+Inf"}、{@code _sum} 和
+ * {@code _count}: 普通直方图为 15 到 2^20-1, 耗时直方图为约 1 微秒到约 68.7 秒.
+ * 范围之外的值仍计入更大的桶和 {@code +Inf}. 耗时直方图的上界和 {@code _sum} 以秒输出.
+ */
+public final class PrometheusFormat {
+
+  public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=UTF-8";
+
+  // 固定输出的 2 的幂区间, 区间 g 的上界为 2^(g+4)-1
+  private static final int LAST_GROUP = 16;
+  private static final int FIRST_TIMER_GROUP = 6;
+  private static final int LAST_TIMER_GROUP = 32;
+
+  private PrometheusFormat() {}
+
+  public static String render(Metrics metrics) {
+    StringBuilder builder = new StringBuilder(4096);
+    List<Counter> counters = new ArrayList<>(metrics.counters());
+    counters.sort(Comparator.comparing(Counter::name).thenComparing(Counter::labels));
+    String previous = null;
+    for (Counter counter : counters) {
+      if (!counter.name().equals(previous)) {
+        header(builder, counter.name(), counter.help(), "counter");
+        previous = counter.name();
+      }
+      sample(builder, counter.name(), counter.labels(), null, counter.value());
+    }
+    List<Gauge> gauges = new ArrayList<>(metrics.gauges());
+    gauges.sort(Comparator.comparing(Gauge::name).thenComparing(Gauge::labels));
+    previous = null;
+    for (Gauge gauge : gauges) {
+      if (!gauge.name().equals(previous)) {
+        header(builder, gauge.name(), gauge.help(), "gauge");
+        previous = gauge.name();
+      }
+      sample(builder, gauge.name(), gauge.labels(), null, gauge.value());
+    }
+    List<Histogram> histograms = new ArrayList<>(metrics.histograms());
+    histograms.sort(Comparator.comparing(Histogram::name).thenComparing(Histogram::labels));
+    previous = null;
+    for (Histogram histogram : histograms) {
+      if (!histogram.name().equals(previous)) {
+        header(builder, histogram.name(), histogram.help(), "histogram");
+        previous = histogram.name();
+      }
+      histogram(builder, histogram);
+    }
+    return builder.toString();
+  }
+
+  private static void histogram(StringBuilder builder, Histogram histogram) {
+    long[] snapshot = histogram.snapshot();
+    boolean seconds = histogram.nanoseconds();
+    int firstGroup = seconds ? FIRST_TIMER_GROUP : 0;
+    int lastGroup = seconds ? LAST_TIMER_GROUP : LAST_GROUP;
+    String bucketName = histogram.name() + "_bucket";
+    long cumulative = 0;
+    for (int group = 0; group <= lastGroup; group++) {
+      for (int i = group * Histogram.SUB_BUCKETS; i < (group + 1) * Histogram.SUB_BUCKETS; i++) {
+        cumulative += snapshot[i];
+      }
+      if (group >= firstGroup) {
+        long upper = Histogram.upperBound((group + 1) * Histogram.SUB_BUCKETS - 1);
+        String le = seconds ? seconds(upper) : Long.toString(upper);
+        sample(builder, bucketName, histogram.labels(), le, cumulative);
+      }
+    }
+    for (int i = (lastGroup + 1) * Histogram.SUB_BUCKETS; i < snapshot.length; i++) {
+      cumulative += snapshot[i];
+    }
+    sample(builder, bucketName, histogram.labels(), "+Inf", cumulative);
+    String sum = seconds ? seconds(histogram.sum()) : Long.toString(histogram.sum());
+    sample(builder, histogram.name() + "_sum", histogram.labels(), null, sum);
+    sample(builder, histogram.name() + "_count", histogram.labels(), null, cumulative);
+  }
+
+  // 纳秒换算为秒, 不丢失精度, 如 1023 输出为 0.000001023
+  private static String seconds(long nanos) {
+    return BigDecimal.valueOf(nanos, 9).stripTrailingZeros().toPlainString();
+  }
+
+  private static void header(StringBuilder builder, String name, String help, String type) {
+    builder.append("# HELP ").append(name).append(' ');
+    for (int i = 0; i < help.length(); i++) {
+      char c = help.charAt(i);
+      if (c == '\\') {
+        builder.append("\\\\");
+      } else if (c == '\n') {
+        builder.append("\\n");
+      } else {
+        builder.append(c);
+      }
+    }
+    builder.append('\n');
+    builder.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+  }
+
+  private static void sample(
+      StringBuilder builder, String name, String labels, String le, long value) {
+    name(builder, name, labels, le).append(value).append('\n');
+  }
+
+  private static void sample(
+      StringBuilder builder, String name, String labels, String le, String value) {
+    name(builder, name, labels, le).append(value).append('\n');
+  }
+
+  // 输出样本的名称和标签, 之后紧接取值
+  private static StringBuilder name(StringBuilder builder, String name, String labels, String le) {
+    builder.append(name);
+    if (!labels.isEmpty() || le != null) {
+      builder.append('{').append(labels);
+      if (le != null) {
+        if (!labels.isEmpty()) {
+          builder.append(',');
+        }
+        builder.append("le=\"").append(le).append('"');
+      }
+      builder.append('}');
+    }
+    return builder.append(' ');
+  }
+}
@@ -0,0 +1,18 @@
+package com.example.model;
+
+// 批量导入的结果: 确认写入的记录数, 以及因格式或校验错误、或未能确认写入 Redis 而被拒绝的记录数
+public class BulkLoadResponse {
+  public long accepted;
+  public long rejected;
+
+  public BulkLoadResponse() {}
+
+  public BulkLoadResponse(long accepted, long rejected) {
+    this.accepted = accepted;
+    this.rejected = rejected;
+  }
+
+  public BulkLoadResponse plus(BulkLoadResponse other) {
+    return new BulkLoadResponse(accepted + other.accepted, rejected + other.rejected);
+  }
+}
@@ -0,0 +1,31 @@
+package com.example.model;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+// 批量接口中的键值对: _mput 的请求元素和 _mget 的响应元素, value 为 null 表示键不存在
+public class CacheEntry {
+  public static final String BASE64 = "base64";
+
+  public String key;
+  public String value;
+
+  // 值的 Content-Type, _mget 中总是给出; 写入时可选, 为 null 表示 text/plain; charset=UTF-8
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public String contentType;
+
+  // 为 base64 时 value 是原始字节的 Base64 编码, _mget 中不是有效 UTF-8 的值使用这种编码;
+  // 为 null 表示 value 是 UTF-8 文本
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public String encoding;
+
+  // 存活时间(秒), 只用于 _mput, 为 null 表示永不过期
+  @JsonInclude(JsonInclude.Include.NON_NULL)
+  public Long ttl;
+
+  public CacheEntry() {}
+
+  public CacheEntry(String key, String value) {
+    this.key = key;
+    this.value = value;
+  }
+}
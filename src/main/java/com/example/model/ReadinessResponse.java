@@ -0,0 +1,21 @@
+package com.example.model;
+
+// GET /ready 的响应: 是否就绪以及启动预热的进度
+public class ReadinessResponse {
+  public boolean ready;
+  // disabled、running、done 或 failed
+  public String prewarm;
+  public long scanned;
+  public long loaded;
+  public long target;
+
+  public ReadinessResponse() {}
+
+  public ReadinessResponse(boolean ready, String prewarm, long scanned, long loaded, long target) {
+    this.ready = ready;
+    this.prewarm = prewarm;
+    this.scanned = scanned;
+    this.loaded = loaded;
+    this.target = target;
+  }
+}
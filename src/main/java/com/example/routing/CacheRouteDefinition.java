@@ -1,29 +1,158 @@
 package com.example.routing;
 
+import akka.NotUsed;
 import akka.actor.typed.ActorRef;
 import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.Adapter;
 import akka.actor.typed.javadsl.AskPattern;
+import akka.http.javadsl.common.EntityStreamingSupport;
+import akka.http.javadsl.common.JsonEntityStreamingSupport;
+import akka.http.javadsl.marshallers.jackson.Jackson;
+import akka.http.javadsl.model.ContentType;
 import akka.http.javadsl.model.ContentTypes;
+import akka.http.javadsl.model.HttpHeader;
+import akka.http.javadsl.model.HttpEntities;
 import akka.http.javadsl.model.HttpResponse;
+import akka.http.javadsl.model.MediaTypes;
+import akka.http.javadsl.model.StatusCodes;
+import akka.http.javadsl.model.headers.RawHeader;
+import akka.http.javadsl.model.headers.RetryAfter;
 import akka.http.javadsl.server.AllDirectives;
+import akka.http.javadsl.server.Complete;
 import akka.http.javadsl.server.PathMatchers;
 import akka.http.javadsl.server.Route;
+import akka.http.javadsl.server.RouteResult;
+import akka.http.javadsl.unmarshalling.StringUnmarshallers;
+import akka.http.javadsl.unmarshalling.Unmarshaller;
+import akka.stream.OverflowStrategy;
+import akka.stream.javadsl.Framing;
+import akka.stream.javadsl.FramingTruncation;
+import akka.stream.javadsl.Source;
+import akka.stream.scaladsl.Framing.FramingException;
+import akka.util.ByteString;
+import com.example.AdmissionSettings;
+import com.example.BulkLoadSettings;
 import com.example.CacheActor;
+import com.example.CachePartitions;
+import com.example.CircuitBreakerSettings;
+import com.example.RedisCircuitBreaker;
 import com.example.SupervisorActor;
+import com.example.admission.AdmissionController;
+import com.example.cache.CacheValue;
+import com.example.metrics.Counter;
+import com.example.metrics.Metrics;
+import com.example.model.BulkLoadResponse;
+import com.example.model.CacheEntry;
+import com.fasterxml.jackson.databind.ObjectMapper;
 
+import java.io.IOException;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 public class CacheRouteDefinition extends AllDirectives implements RouteDefinition {
 
+  private static final int MAX_CACHED_CONTENT_TYPES = 256;
+  // RFC 7234 定义的过期响应警告, 标记 Redis 不可用时返回的过期本地值
+  private static final HttpHeader STALE_WARNING =
+      RawHeader.create("Warning", "110 - \"Response is Stale\"");
+
+  // 未命中的响应不包含键, 所有请求共享同一个实例
+  private static final HttpResponse NOT_FOUND =
+      HttpResponse.create()
+          .withStatus(StatusCodes.NOT_FOUND)
+          .withEntity(ContentTypes.TEXT_PLAIN_UTF8, "未找到键");
+
   private final ActorRef<SupervisorActor.Command> supervisor;
   private final ActorSystem<?> system;
   private final Duration timeout;
+  private volatile CompletionStage<CachePartitions> partitionsFuture;
+  // partitionsFuture 成功完成后的结果, 本地命中据此在路由线程上同步返回
+  private volatile CachePartitions partitions;
+  private final JsonEntityStreamingSupport jsonStreaming = EntityStreamingSupport.json();
+  private final ObjectMapper objectMapper = new ObjectMapper();
+  private final Map<String, ContentType> contentTypes = new ConcurrentHashMap<>();
+  private final BulkLoadSettings bulkLoadSettings;
+  private final Counter localHits;
+  private final Counter askTimeouts;
+  // 为 null 时不限制并发
+  private final AdmissionController admission;
+  private final HttpResponse serviceUnavailable;
+  private final Counter admissionRejected;
+  private final RedisCircuitBreaker breaker;
+  private final boolean refuseWritesWhenOpen;
+  private final HttpResponse redisUnavailable;
 
   public CacheRouteDefinition(ActorSystem<?> system, ActorRef<SupervisorActor.Command> supervisor) {
+    this(system, supervisor, AdmissionSettings.create(system.settings().config()));
+  }
+
+  private CacheRouteDefinition(
+      ActorSystem<?> system,
+      ActorRef<SupervisorActor.Command> supervisor,
+      AdmissionSettings admissionSettings) {
+    this(
+        system,
+        supervisor,
+        admissionSettings.enabled
+            ? new AdmissionController(admissionSettings.createLimit())
+            : null,
+        admissionSettings.retryAfterSeconds);
+  }
+
+  CacheRouteDefinition(
+      ActorSystem<?> system,
+      ActorRef<SupervisorActor.Command> supervisor,
+      AdmissionController admission,
+      long retryAfterSeconds) {
     this.system = system;
     this.supervisor = supervisor;
     this.timeout = Duration.ofSeconds(5);
+    this.bulkLoadSettings = BulkLoadSettings.create(system.settings().config());
+    // 与 CacheActor 共用命中计数器, 无锁读取的命中也计入
+    Metrics metrics = Metrics.get(system);
+    this.localHits = metrics.counter("cache_local_hits_total", "本地缓存命中次数(包括路由的无锁读取)");
+    this.askTimeouts =
+        metrics.counter("ask_timeouts_total", "ask 等待回复超时的次数", "target", "cache_actor");
+    this.admission = admission;
+    // 拒绝时返回同一个不可变的响应, 不做任何分配
+    this.serviceUnavailable =
+        HttpResponse.create()
+            .withStatus(StatusCodes.SERVICE_UNAVAILABLE)
+            .addHeader(RetryAfter.create(retryAfterSeconds))
+            .withEntity(ContentTypes.TEXT_PLAIN_UTF8, "服务繁忙, 请稍后重试");
+    this.breaker = RedisCircuitBreaker.get(system);
+    this.refuseWritesWhenOpen =
+        breaker.settings.enabled
+            && breaker.settings.writePolicy == CircuitBreakerSettings.WritePolicy.REFUSE;
+    this.redisUnavailable =
+        HttpResponse.create()
+            .withStatus(StatusCodes.SERVICE_UNAVAILABLE)
+            .addHeader(RetryAfter.create(retryAfterSeconds))
+            .withEntity(ContentTypes.TEXT_PLAIN_UTF8, "Redis 不可用, 请稍后重试");
+    this.admissionRejected =
+        metrics.counter("admission_rejected_total", "超出并发上限而返回 503 的请求数量");
+    if (admission != null) {
+      metrics.gauge("admission_limit", "当前的自适应并发上限", admission::limit);
+      metrics.gauge("admission_in_flight", "已准入且正在处理的请求数量", admission::inFlight);
+    }
   }
 
   @Override
@@ -34,81 +163,585 @@ public class CacheRouteDefinition extends AllDirectives implements RouteDefiniti
             concat(
                 get(
                     () ->
-                        path(
-                            PathMatchers.segment(),
-                            key ->
-                                onSuccess(
-                                    askCacheActorForValue(key),
-                                    value -> {
-                                      if (value == null || value.isEmpty()) {
-                                        return complete(
-                                            HttpResponse.create()
-                                                .withStatus(404)
-                                                .withEntity(
-                                                    ContentTypes.TEXT_PLAIN_UTF8, "未找到键: " + key));
-                                      } else {
-                                        return complete(
-                                            HttpResponse.create()
-                                                .withStatus(200)
-                                                .withEntity(ContentTypes.TEXT_PLAIN_UTF8, value));
-                                      }
-                                    }))),
+                        path(PathMatchers.segment(), this::getValue)),
                 put(
                     () ->
                         pathPrefix(
                             PathMatchers.segment(),
                             key ->
-                                path(
-                                    PathMatchers.remaining(),
-                                    value -> {
-                                      supervisor.tell(
-                                          new SupervisorActor.ForwardToCache(
-                                              new CacheActor.Put(key, value)));
-                                      return complete(
-                                          HttpResponse.create()
-                                              .withStatus(200)
-                                              .withEntity(
-                                                  ContentTypes.TEXT_PLAIN_UTF8,
-                                                  "缓存已设置: " + key + " = " + value));
-                                    }))),
+                                parameterOptional(
+                                    StringUnmarshallers.LONG,
+                                    "ttl",
+                                    ttlSeconds ->
+                                        concat(
+                                            pathEnd(() -> putEntity(key, ttlSeconds)),
+                                            // 兼容旧接口: 值在 URL 路径中, 按 UTF-8 文本保存
+                                            path(
+                                                PathMatchers.remaining(),
+                                                value ->
+                                                    putValue(
+                                                        key,
+                                                        CacheValue.of(value),
+                                                        ttlSeconds,
+                                                        key + " = " + value)))))),
                 post(
                     () ->
-                        path(
-                            "failure",
-                            () -> {
-                              supervisor.tell(
-                                  new SupervisorActor.ForwardToCache(
-                                      new CacheActor.SimulateFailure()));
-                              return complete(
-                                  HttpResponse.create()
-                                      .withStatus(200)
-                                      .withEntity(ContentTypes.TEXT_PLAIN_UTF8, "已发送故障模拟命令"));
-                            }))));
-  }
-
-  private CompletionStage<String> askCacheActorForValue(String key) {
-    CompletionStage<ActorRef<CacheActor.Command>> cacheActorFuture =
-        AskPattern.ask(
-            supervisor,
-            replyTo -> new SupervisorActor.GetCacheActorRef(replyTo),
-            timeout,
-            system.scheduler());
-
-    return cacheActorFuture
-        .thenCompose(
-            cacheActor ->
-                AskPattern.<CacheActor.Command, CacheActor.Value>ask(
-                    cacheActor,
-                    replyTo -> new CacheActor.Get(key, replyTo),
-                    timeout,
-                    system.scheduler()))
+                        concat(
+                            path(
+                                "failure",
+                                () -> {
+                                  supervisor.tell(
+                                      new SupervisorActor.ForwardToCache(
+                                          new CacheActor.SimulateFailure()));
+                                  return complete(
+                                      HttpResponse.create()
+                                          .withStatus(200)
+                                          .withEntity(
+                                              ContentTypes.TEXT_PLAIN_UTF8, "已发送故障模拟命令"));
+                                }),
+                            path(
+                                "_mget",
+                                () ->
+                                    entity(
+                                        Jackson.unmarshaller(String[].class),
+                                        keys ->
+                                            admittedSource(
+                                                () -> multiGet(keys),
+                                                source ->
+                                                    completeOKWithSource(
+                                                        source,
+                                                        Jackson.marshaller(),
+                                                        jsonStreaming)))),
+                            path(
+                                "_mput",
+                                () ->
+                                    entity(
+                                        Jackson.unmarshaller(CacheEntry[].class),
+                                        entries -> admitted(() -> multiPut(entries)))),
+                            path("_load", this::bulkLoad)))));
+  }
+
+  /**
+   * 本地命中在路由线程上同步返回该值缓存的响应, 不经过准入控制: 无锁读取不占用许可也不会造成过载,
+   * 响应已缓存时除了路由本身之外没有任何分配. 未命中或分区列表尚未获取时经过准入控制向 CacheActor 查询.
+   */
+  private Route getValue(String key) {
+    CachePartitions current = partitions;
+    if (current != null) {
+      Route hit = current.readLocal(key, Route.class, this::hitRoute);
+      if (hit != null) {
+        localHits.increment();
+        return hit;
+      }
+    }
+    return admitted(() -> lookup(key));
+  }
+
+  private Route lookup(String key) {
+    return onSuccess(
+        askCacheActorForValue(key),
+        reply -> {
+          if (reply.unavailable) {
+            return complete(redisUnavailable);
+          }
+          CacheValue value = reply.value;
+          if (value == null || value.bytes.isEmpty()) {
+            return complete(NOT_FOUND);
+          }
+          if (reply.stale) {
+            return complete(okResponse(value).addHeader(STALE_WARNING));
+          }
+          return complete(okResponse(value));
+        });
+  }
+
+  // 本地命中的响应, 保存在本地缓存的条目上, 同一个值的后续命中直接复用; 空值交给 CacheActor 处理
+  private Route hitRoute(CacheValue value) {
+    return value.bytes.isEmpty() ? null : complete(okResponse(value));
+  }
+
+  // 按写入时的 Content-Type 原样返回字节
+  private HttpResponse okResponse(CacheValue value) {
+    return HttpResponse.create()
+        .withStatus(StatusCodes.OK)
+        .withEntity(HttpEntities.create(contentType(value.contentType), value.bytes));
+  }
+
+  // write-policy = refuse 且熔断器打开时拒绝写入
+  private boolean refuseWrites() {
+    return refuseWritesWhenOpen && breaker.isOpen();
+  }
+
+  /**
+   * 准入控制: 未超出并发上限时执行 inner, 并在响应完成(或失败)后归还许可, 5xx 和异常作为过载信号;
+   * 超出时立即返回 503 和 Retry-After, inner 不会执行. 必须在每个请求各自执行的 lambda 中调用.
+   */
+  private Route admitted(Supplier<Route> inner) {
+    if (admission == null) {
+      return inner.get();
+    }
+    AdmissionController.Permit permit = admission.tryAcquire();
+    if (permit == null) {
+      admissionRejected.increment();
+      return complete(serviceUnavailable);
+    }
+    try {
+      return mapRouteResultFuture(
+          result ->
+              result.whenComplete(
+                  (routeResult, failure) ->
+                      permit.release(failure != null || isServerError(routeResult))),
+          inner);
+    } catch (RuntimeException e) {
+      permit.release(true);
+      throw e;
+    }
+  }
+
+  /**
+   * 流式响应的准入控制: 路由完成时响应体还没有输出, 许可在 source 结束(完成、失败或被取消)时才归还.
+   * 路由没有得到成功的响应时与 admitted 一样在路由完成时归还.
+   */
+  private <T> Route admittedSource(
+      Supplier<Source<T, ?>> source, Function<Source<T, ?>, Route> complete) {
+    if (admission == null) {
+      return complete.apply(source.get());
+    }
+    AdmissionController.Permit permit = admission.tryAcquire();
+    if (permit == null) {
+      admissionRejected.increment();
+      return complete(serviceUnavailable);
+    }
+    try {
+      Source<T, ?> watched =
+          source
+              .get()
+              .watchTermination(
+                  (materialized, done) -> {
+                    done.whenComplete((ignored, failure) -> permit.release(failure != null));
+                    return materialized;
+                  });
+      return mapRouteResultFuture(
+          result ->
+              result.whenComplete(
+                  (routeResult, failure) -> {
+                    if (failure != null
+                        || !(routeResult instanceof Complete)
+                        || isServerError(routeResult)) {
+                      permit.release(true);
+                    }
+                  }),
+          () -> complete.apply(watched));
+    } catch (RuntimeException e) {
+      permit.release(true);
+      throw e;
+    }
+  }
+
+  private static boolean isServerError(RouteResult result) {
+    return result instanceof Complete
+        && ((Complete) result).getResponse().status().intValue() >= 500;
+  }
+
+  // 值为请求体, 按原始字节和请求的 Content-Type 保存
+  private Route putEntity(String key, Optional<Long> ttlSeconds) {
+    return extractRequestEntity(
+        requestEntity ->
+            entity(
+                Unmarshaller.entityToByteString(),
+                bytes ->
+                    putValue(
+                        key,
+                        new CacheValue(bytes, requestEntity.getContentType().toString()),
+                        ttlSeconds,
+                        key + " (" + bytes.size() + " 字节)")));
+  }
+
+  // ttl 查询参数以秒为单位, 同时作用于本地缓存和 Redis; 写入确认后才返回 200
+  private Route putValue(
+      String key, CacheValue value, Optional<Long> ttlSeconds, String description) {
+    if (value.bytes.isEmpty()) {
+      return complete(
+          HttpResponse.create()
+              .withStatus(400)
+              .withEntity(ContentTypes.TEXT_PLAIN_UTF8, "值不能为空"));
+    }
+    if (ttlSeconds.isPresent() && !validTtl(ttlSeconds.get())) {
+      return complete(
+          HttpResponse.create()
+              .withStatus(400)
+              .withEntity(ContentTypes.TEXT_PLAIN_UTF8, invalidTtl(ttlSeconds.get())));
+    }
+    return admitted(
+        () -> {
+          if (refuseWrites()) {
+            return complete(redisUnavailable);
+          }
+          Duration ttl = ttlSeconds.map(Duration::ofSeconds).orElse(null);
+          String message = "缓存已设置: " + description;
+          if (ttl != null) {
+            message += ", 过期时间: " + ttlSeconds.get() + " 秒";
+          }
+          return acknowledged(
+              Collections.singletonList(new CacheActor.Put(key, value, ttl)),
+              HttpResponse.create()
+                  .withStatus(200)
+                  .withEntity(ContentTypes.TEXT_PLAIN_UTF8, message));
+        });
+  }
+
+  /**
+   * 写入并等待确认: 全部写入 Redis(或进入 write-behind 队列)后返回 written; 有未确认的键(写入失败、
+   * 超时或邮箱已满而被丢弃)时返回 503, 客户端应当重试, 这些键可能已经更新了本地缓存.
+   */
+  private Route acknowledged(List<CacheActor.Put> puts, HttpResponse written) {
+    CompletionStage<Integer> failed =
+        cachePartitions()
+            .thenCompose(partitions -> writeAcknowledged(partitions, puts, timeout))
+            .handle(
+                (result, failure) -> {
+                  if (failure != null) {
+                    // 分区引用可能因 SupervisorActor 重启而失效, 失败后下次请求重新获取
+                    partitionsFuture = null;
+                    partitions = null;
+                    return puts.size();
+                  }
+                  return result;
+                });
+    return onSuccess(failed, count -> complete(count == 0 ? written : redisUnavailable));
+  }
+
+  /**
+   * 批量获取, 响应为按完成顺序流式输出的 JSON 数组. 本地命中的键最先输出, 其余的键按分区合并为一条
+   * MultiGet, 各自从 Redis 返回后立即输出; 超过 timeout 仍未返回的键不会出现在响应中.
+   */
+  private Source<CacheEntry, ?> multiGet(String[] requestedKeys) {
+    Set<String> keys = new LinkedHashSet<>(Arrays.asList(requestedKeys));
+    keys.remove(null);
+    if (keys.isEmpty()) {
+      return Source.empty();
+    }
+    return Source.completionStageSource(
+        cachePartitions()
+            .whenComplete(
+                (partitions, failure) -> {
+                  if (failure != null) {
+                    partitionsFuture = null;
+                    this.partitions = null;
+                  }
+                })
+            .thenApply(partitions -> multiGet(partitions, keys)));
+  }
+
+  private Source<CacheEntry, NotUsed> multiGet(CachePartitions partitions, Set<String> keys) {
+    List<CacheEntry> hits = new ArrayList<>();
+    List<String> misses = new ArrayList<>();
+    for (String key : keys) {
+      CacheValue local = partitions.readLocal(key);
+      if (local != null) {
+        localHits.increment();
+        hits.add(toEntry(key, local));
+      } else {
+        misses.add(key);
+      }
+    }
+    Source<CacheEntry, NotUsed> local = Source.from(hits);
+    if (misses.isEmpty()) {
+      return local;
+    }
+    Map<ActorRef<CacheActor.Command>, List<String>> groups =
+        partitions.groupByPartition(misses, key -> key);
+    // 每个分区最多回复 1 + 该分区的键数量条消息, 缓冲区足以容纳全部回复
+    Source<CacheEntry, NotUsed> remote =
+        Source.<CacheActor.Entries>actorRef(
+                message -> Optional.empty(),
+                message -> Optional.empty(),
+                misses.size() + groups.size(),
+                OverflowStrategy.fail())
+            .mapMaterializedValue(
+                ref -> {
+                  ActorRef<CacheActor.Entries> replyTo = Adapter.toTyped(ref);
+                  groups.forEach(
+                      (partition, partitionKeys) ->
+                          partition.tell(new CacheActor.MultiGet(partitionKeys, replyTo)));
+                  return NotUsed.getInstance();
+                })
+            .mapConcat(reply -> reply.entries)
+            .take(misses.size())
+            .takeWithin(timeout)
+            // Redis 不可用而无法确定的键与超时的键一样不出现在响应中
+            .filter(entry -> !entry.unavailable)
+            .map(entry -> toEntry(entry.key, entry.value));
+    return local.concat(remote);
+  }
+
+  // 批量设置: 校验全部条目后按分区合并为 MultiPut, 与单个 PUT 一样在写入确认后才返回
+  private Route multiPut(CacheEntry[] entries) {
+    List<CacheActor.Put> puts = new ArrayList<>(entries.length);
+    for (CacheEntry entry : entries) {
+      String error = validate(entry);
+      if (error != null) {
+        return complete(
+            HttpResponse.create()
+                .withStatus(400)
+                .withEntity(ContentTypes.TEXT_PLAIN_UTF8, error));
+      }
+      puts.add(toPut(entry));
+    }
+    if (refuseWrites()) {
+      return complete(redisUnavailable);
+    }
+    return acknowledged(
+        puts,
+        HttpResponse.create()
+            .withStatus(200)
+            .withEntity(ContentTypes.TEXT_PLAIN_UTF8, "缓存已设置: " + puts.size() + " 个键"));
+  }
+
+  /**
+   * 流式批量导入: 请求体按行分帧后逐条解析, 每 batch-size 条记录按分区合并为 MultiPut,
+   * 等待本地缓存和 Redis 确认后才继续读取请求体, 因此内存占用与上传大小无关.
+   * Content-Type 为 text/csv 时每行为 key,value[,ttl](不支持引号转义), 否则每行为一个 JSON 对象.
+   */
+  private Route bulkLoad() {
+    return withoutSizeLimit(
+        () ->
+            extractRequestEntity(
+                entity -> {
+                  boolean csv = entity.getContentType().mediaType().equals(MediaTypes.TEXT_CSV);
+                  CompletionStage<BulkLoadResponse> result =
+                      cachePartitions()
+                          .thenCompose(
+                              partitions ->
+                                  entity
+                                      .getDataBytes()
+                                      .via(
+                                          Framing.delimiter(
+                                              ByteString.fromString("\n"),
+                                              bulkLoadSettings.maxLineLength,
+                                              FramingTruncation.ALLOW))
+                                      .map(line -> line.utf8String().trim())
+                                      .filter(line -> !line.isEmpty())
+                                      .map(line -> parseRecord(line, csv))
+                                      .grouped(bulkLoadSettings.batchSize)
+                                      .mapAsync(
+                                          bulkLoadSettings.parallelism,
+                                          batch -> writeBatch(partitions, batch))
+                                      .runFold(
+                                          new BulkLoadResponse(0, 0),
+                                          BulkLoadResponse::plus,
+                                          system));
+                  return onComplete(
+                      result,
+                      outcome -> {
+                        if (outcome.isSuccess()) {
+                          return completeOK(outcome.get(), Jackson.marshaller());
+                        }
+                        Throwable failure = outcome.failed().get();
+                        if (failure instanceof FramingException) {
+                          return complete(
+                              HttpResponse.create()
+                                  .withStatus(400)
+                                  .withEntity(
+                                      ContentTypes.TEXT_PLAIN_UTF8,
+                                      "单行长度超过 " + bulkLoadSettings.maxLineLength + " 字节"));
+                        }
+                        return failWith(failure);
+                      });
+                }));
+  }
+
+  // 解析失败或校验不通过的记录返回 empty, 计入被拒绝的数量
+  private Optional<CacheActor.Put> parseRecord(String line, boolean csv) {
+    CacheEntry entry;
+    if (csv) {
+      String[] fields = line.split(",", -1);
+      if (fields.length < 2 || fields.length > 3) {
+        return Optional.empty();
+      }
+      entry = new CacheEntry(fields[0], fields[1]);
+      if (fields.length == 3) {
+        try {
+          entry.ttl = Long.parseLong(fields[2].trim());
+        } catch (NumberFormatException e) {
+          return Optional.empty();
+        }
+      }
+    } else {
+      try {
+        entry = objectMapper.readValue(line, CacheEntry.class);
+      } catch (IOException e) {
+        return Optional.empty();
+      }
+    }
+    return validate(entry) == null ? Optional.of(toPut(entry)) : Optional.empty();
+  }
+
+  /**
+   * 写入一批记录, 结果中未能确认写入 Redis 的记录(包括超过 ack-timeout 未确认的分区)计入 rejected.
+   */
+  private CompletionStage<BulkLoadResponse> writeBatch(
+      CachePartitions partitions, List<Optional<CacheActor.Put>> batch) {
+    List<CacheActor.Put> puts = new ArrayList<>(batch.size());
+    for (Optional<CacheActor.Put> record : batch) {
+      record.ifPresent(puts::add);
+    }
+    int invalid = batch.size() - puts.size();
+    return writeAcknowledged(partitions, puts, bulkLoadSettings.ackTimeout)
+        .thenApply(failed -> new BulkLoadResponse(puts.size() - failed, invalid + failed));
+  }
+
+  /**
+   * 按分区合并为 MultiPut 并等待确认, 结果为未能确认写入 Redis 的键数量. 某个分区超过 ackTimeout
+   * 未确认时只把该分区的键计为失败, 不影响其他分区.
+   */
+  private CompletionStage<Integer> writeAcknowledged(
+      CachePartitions partitions, List<CacheActor.Put> puts, Duration ackTimeout) {
+    List<CompletableFuture<Integer>> acks =
+        partitions.groupByPartition(puts, put -> put.key).entrySet().stream()
+            .map(
+                group ->
+                    AskPattern.<CacheActor.Command, CacheActor.MultiPutResult>ask(
+                            group.getKey(),
+                            replyTo -> new CacheActor.MultiPut(group.getValue(), replyTo),
+                            ackTimeout,
+                            system.scheduler())
+                        .handle(
+                            (result, failure) -> {
+                              if (failure != null) {
+                                countTimeout(failure);
+                                return group.getValue().size();
+                              }
+                              return result.failures;
+                            })
+                        .toCompletableFuture())
+            .collect(Collectors.toList());
+    return CompletableFuture.allOf(acks.toArray(new CompletableFuture<?>[0]))
         .thenApply(
-            cacheValue -> {
-              // 处理可能为 null 的值
-              if (cacheValue == null || cacheValue.value == null) {
-                return null;
+            done -> {
+              int failed = 0;
+              for (CompletableFuture<Integer> ack : acks) {
+                failed += ack.join();
+              }
+              return failed;
+            });
+  }
+
+  private void countTimeout(Throwable failure) {
+    Throwable cause = failure instanceof CompletionException ? failure.getCause() : failure;
+    if (cause instanceof TimeoutException) {
+      askTimeouts.increment();
+    }
+  }
+
+  // 返回错误信息, 条目有效时返回 null
+  private static String validate(CacheEntry entry) {
+    if (entry == null || entry.key == null || entry.value == null) {
+      return "每个条目都必须包含 key 和 value";
+    }
+    if (entry.key.isEmpty()) {
+      return "key 不能为空";
+    }
+    if (entry.ttl != null && !validTtl(entry.ttl)) {
+      return entry.key + ": " + invalidTtl(entry.ttl);
+    }
+    if (entry.encoding != null) {
+      if (!entry.encoding.equals(CacheEntry.BASE64)) {
+        return "不支持的 encoding: " + entry.key + " = " + entry.encoding;
+      }
+      try {
+        Base64.getDecoder().decode(entry.value);
+      } catch (IllegalArgumentException e) {
+        return "value 不是有效的 Base64: " + entry.key;
+      }
+    }
+    return null;
+  }
+
+  private static boolean validTtl(long ttlSeconds) {
+    return ttlSeconds > 0 && ttlSeconds <= CacheActor.Put.MAX_TTL.getSeconds();
+  }
+
+  private static String invalidTtl(long ttlSeconds) {
+    return "ttl 必须是 1 到 " + CacheActor.Put.MAX_TTL.getSeconds() + " 之间的整数(秒): " + ttlSeconds;
+  }
+
+  private static CacheActor.Put toPut(CacheEntry entry) {
+    Duration ttl = entry.ttl == null ? null : Duration.ofSeconds(entry.ttl);
+    ByteString bytes =
+        CacheEntry.BASE64.equals(entry.encoding)
+            ? ByteString.fromArray(Base64.getDecoder().decode(entry.value))
+            : ByteString.fromString(entry.value);
+    String contentType = entry.contentType == null ? CacheValue.TEXT_PLAIN_UTF8 : entry.contentType;
+    return new CacheActor.Put(entry.key, new CacheValue(bytes, contentType), ttl);
+  }
+
+  // 有效的 UTF-8 按文本输出, 否则输出 Base64, 两种方式都能还原原始字节
+  private static CacheEntry toEntry(String key, CacheValue value) {
+    CacheEntry entry = new CacheEntry(key, null);
+    if (value == null) {
+      return entry;
+    }
+    entry.contentType = value.contentType;
+    try {
+      entry.value =
+          StandardCharsets.UTF_8.newDecoder().decode(value.bytes.asByteBuffer()).toString();
+    } catch (CharacterCodingException e) {
+      entry.value = Base64.getEncoder().encodeToString(value.bytes.toArray());
+      entry.encoding = CacheEntry.BASE64;
+    }
+    return entry;
+  }
+
+  // 解析过的 Content-Type, 避免每个 GET 都重新解析
+  private ContentType contentType(String value) {
+    ContentType parsed = contentTypes.get(value);
+    if (parsed == null) {
+      parsed = ContentTypes.parse(value);
+      if (contentTypes.size() < MAX_CACHED_CONTENT_TYPES) {
+        contentTypes.put(value, parsed);
+      }
+    }
+    return parsed;
+  }
+
+  private CompletionStage<CacheActor.Value> askCacheActorForValue(String key) {
+    return cachePartitions()
+        .thenCompose(
+            partitions -> {
+              // 本地命中直接在路由线程上返回, 不创建临时 Actor 也不经过邮箱
+              CacheValue local = partitions.readLocal(key);
+              if (local != null) {
+                localHits.increment();
+                return CompletableFuture.completedFuture(new CacheActor.Value(local));
+              }
+              return AskPattern.<CacheActor.Command, CacheActor.Value>ask(
+                  partitions.forKey(key),
+                  replyTo -> new CacheActor.Get(key, replyTo),
+                  timeout,
+                  system.scheduler());
+            })
+        .whenComplete(
+            (cacheValue, failure) -> {
+              // 分区引用可能因 SupervisorActor 重启而失效, 失败后下次请求重新获取
+              if (failure != null) {
+                partitionsFuture = null;
+                partitions = null;
+                countTimeout(failure);
               }
-              return cacheValue.value;
             });
   }
+
+  // 分区列表只向 SupervisorActor 请求一次, 之后在路由中直接按键的一致性哈希选择 CacheActor
+  private CompletionStage<CachePartitions> cachePartitions() {
+    CompletionStage<CachePartitions> current = partitionsFuture;
+    if (current == null) {
+      current =
+          AskPattern.ask(
+              supervisor, SupervisorActor.GetCachePartitions::new, timeout, system.scheduler());
+      partitionsFuture = current;
+      current.thenAccept(resolved -> partitions = resolved);
+    }
+    return current;
+  }
 }
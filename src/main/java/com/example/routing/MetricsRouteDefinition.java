@@ -0,0 +1,83 @@
+package com.example.routing;
+
+import akka.actor.typed.ActorSystem;
+import akka.http.javadsl.model.ContentType;
+import akka.http.javadsl.model.ContentTypes;
+import akka.http.javadsl.model.HttpEntities;
+import akka.http.javadsl.model.HttpResponse;
+import akka.http.javadsl.server.AllDirectives;
+import akka.http.javadsl.server.Route;
+import akka.util.ByteString;
+import com.example.metrics.Histogram;
+import com.example.metrics.Metrics;
+import com.example.metrics.PrometheusFormat;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * GET /metrics 以 Prometheus 文本格式输出 {@link Metrics} 中的全部指标, 并提供按路由记录请求耗时的
+ * {@link #timed} 包装.
+ */
+public class MetricsRouteDefinition extends AllDirectives implements RouteDefinition {
+
+  private static final ContentType PROMETHEUS_CONTENT_TYPE =
+      ContentTypes.parse(PrometheusFormat.CONTENT_TYPE);
+
+  private final Metrics metrics;
+
+  public MetricsRouteDefinition(ActorSystem<?> system) {
+    this.metrics = Metrics.get(system);
+  }
+
+  @Override
+  public Route createRoute() {
+    return path(
+        "metrics",
+        () ->
+            get(
+                () ->
+                    complete(
+                        HttpResponse.create()
+                            .withStatus(200)
+                            .withEntity(
+                                HttpEntities.create(
+                                    PROMETHEUS_CONTENT_TYPE,
+                                    ByteString.fromString(PrometheusFormat.render(metrics)))))));
+  }
+
+  /**
+   * 记录 route 处理每个请求的耗时(从收到请求到产生响应头, 不包括流式响应体的传输),
+   * 按路由名称和 HTTP 方法分别统计. 被拒绝(交给其他路由处理)的请求不计入.
+   */
+  public Route timed(String routeName, Route route) {
+    // 每个方法的直方图只在第一次出现时创建, 之后的请求只做一次查表
+    Map<String, Histogram> byMethod = new ConcurrentHashMap<>();
+    return extractRequest(
+        request -> {
+          long start = System.nanoTime();
+          String method = request.method().name();
+          Histogram histogram = byMethod.get(method);
+          if (histogram == null) {
+            histogram =
+                byMethod.computeIfAbsent(
+                    method,
+                    m ->
+                        metrics.timer(
+                            "http_request_duration_seconds",
+                            "按路由和方法统计的请求处理耗时",
+                            "route",
+                            routeName,
+                            "method",
+                            m));
+          }
+          Histogram recorder = histogram;
+          return mapResponse(
+              response -> {
+                recorder.record(System.nanoTime() - start);
+                return response;
+              },
+              () -> route);
+        });
+  }
+}
@@ -0,0 +1,63 @@
+package com.example.routing;
+
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.AskPattern;
+import akka.http.javadsl.marshallers.jackson.Jackson;
+import akka.http.javadsl.model.StatusCodes;
+import akka.http.javadsl.server.AllDirectives;
+import akka.http.javadsl.server.Route;
+import com.example.CachePrewarmer;
+import com.example.SupervisorActor;
+import com.example.model.ReadinessResponse;
+
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * GET /ready 供负载均衡器判断是否转发流量: 启动预热达到 ready-fill-ratio 或已结束(以及未开启预热)时返回 200,
+ * 否则返回 503. 响应体包含预热的进度.
+ */
+public class ReadinessRouteDefinition extends AllDirectives implements RouteDefinition {
+
+  private final ActorSystem<?> system;
+  private final ActorRef<SupervisorActor.Command> supervisor;
+  private final Duration timeout = Duration.ofSeconds(3);
+
+  public ReadinessRouteDefinition(
+      ActorSystem<?> system, ActorRef<SupervisorActor.Command> supervisor) {
+    this.system = system;
+    this.supervisor = supervisor;
+  }
+
+  @Override
+  public Route createRoute() {
+    return path(
+        "ready",
+        () ->
+            get(
+                () -> {
+                  CompletionStage<CachePrewarmer.Status> status =
+                      AskPattern.ask(
+                          supervisor,
+                          SupervisorActor.GetPrewarmStatus::new,
+                          timeout,
+                          system.scheduler());
+                  return onSuccess(
+                      status,
+                      current ->
+                          complete(
+                              current.ready
+                                  ? StatusCodes.OK
+                                  : StatusCodes.SERVICE_UNAVAILABLE,
+                              new ReadinessResponse(
+                                  current.ready,
+                                  current.state.name().toLowerCase(Locale.ROOT),
+                                  current.scanned,
+                                  current.loaded,
+                                  current.target),
+                              Jackson.marshaller()));
+                }));
+  }
+}
@@ -0,0 +1,77 @@
+package com.example.store;
+
+import com.example.cache.CacheValue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 本地缓存之后的第二级存储. RedisActor 工作者把合并后的读取和写入交给它, 多个工作者会同时调用,
+ * 实现必须是线程安全的. 方法都是阻塞的, 只在工作者所在的阻塞调度器上调用.
+ *
+ * <p>存储不可用(连接失败、错误回复、I/O 错误)时抛出 {@link BackingStoreException}. 工作者对读取的任何异常都立即回复
+ * {@code Value.UNAVAILABLE} 并重启, 让 CacheActor 的熔断器记录失败; write-behind 的批量写入失败时按退避重试.
+ */
+public interface BackingStore extends AutoCloseable {
+
+  // 一次写入, ttl 为 null 表示永不过期
+  final class Write {
+    public final String key;
+    public final CacheValue value;
+    public final Duration ttl;
+
+    public Write(String key, CacheValue value, Duration ttl) {
+      this.key = key;
+      this.value = value;
+      this.ttl = ttl;
+    }
+  }
+
+  // 一次读取的结果: value 为 null 表示不存在或已过期; ttl 为剩余的存活时间, null 表示永不过期
+  final class Read {
+    public static final Read MISSING = new Read(null, null);
+
+    public final CacheValue value;
+    public final Duration ttl;
+
+    public Read(CacheValue value, Duration ttl) {
+      this.value = value;
+      this.ttl = ttl;
+    }
+  }
+
+  /**
+   * 返回与 keys 一一对应的值及其剩余存活时间. 读穿写回本地缓存时使用该时间, 本地副本不会比存储中的键活得更久.
+   */
+  List<Read> getEntries(List<String> keys);
+
+  /** 返回与 keys 一一对应的值, 不存在或已过期的键为 null. */
+  default List<CacheValue> getAll(List<String> keys) {
+    List<Read> entries = getEntries(keys);
+    List<CacheValue> values = new ArrayList<>(entries.size());
+    for (Read entry : entries) {
+      values.add(entry.value);
+    }
+    return values;
+  }
+
+  void put(String key, CacheValue value, Duration ttl);
+
+  /** 批量写入, 实现可以合并为一次往返; 同一批中的键互不相同. */
+  default void putAll(List<Write> writes) {
+    for (Write write : writes) {
+      put(write.key, write.value, write.ttl);
+    }
+  }
+
+  // 单个键的读取
+  default CacheValue get(String key) {
+    List<String> keys = new ArrayList<>(1);
+    keys.add(key);
+    return getAll(keys).get(0);
+  }
+
+  @Override
+  void close();
+}
@@ -0,0 +1,11 @@
+package com.example.store;
+
+// 第二级存储不可用: 连接失败或 I/O 错误
+public class BackingStoreException extends RuntimeException {
+
+  private static final long serialVersionUID = 1L;
+
+  public BackingStoreException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
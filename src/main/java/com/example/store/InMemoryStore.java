@@ -0,0 +1,104 @@
+package com.example.store;
+
+import com.example.cache.CacheValue;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 进程内的第二级存储, 用于没有 Redis 的边缘节点: 一个并发哈希表, 不持久化, 也不在节点之间共享.
+ * 过期的条目在读取时回收; 条目数量超过 maxEntries 时淘汰任意一个条目(优先淘汰已过期的).
+ */
+public final class InMemoryStore implements BackingStore {
+
+  // 淘汰时最多检查的条目数量, 在其中寻找已过期的条目
+  private static final int EVICTION_SAMPLES = 16;
+
+  private static final class Entry {
+    final CacheValue value;
+    // 过期时间(System.nanoTime()), 0 表示永不过期
+    final long expireAtNanos;
+
+    Entry(CacheValue value, long expireAtNanos) {
+      this.value = value;
+      this.expireAtNanos = expireAtNanos;
+    }
+
+    boolean expired(long nowNanos) {
+      return expireAtNanos != 0 && expireAtNanos - nowNanos <= 0;
+    }
+  }
+
+  private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+  private final int maxEntries;
+
+  public InMemoryStore(int maxEntries) {
+    if (maxEntries <= 0) {
+      throw new IllegalArgumentException("maxEntries 必须大于 0: " + maxEntries);
+    }
+    this.maxEntries = maxEntries;
+  }
+
+  @Override
+  public List<Read> getEntries(List<String> keys) {
+    long now = System.nanoTime();
+    List<Read> values = new ArrayList<>(keys.size());
+    for (String key : keys) {
+      Entry entry = entries.get(key);
+      if (entry == null) {
+        values.add(Read.MISSING);
+      } else if (entry.expired(now)) {
+        entries.remove(key, entry);
+        values.add(Read.MISSING);
+      } else {
+        Duration ttl =
+            entry.expireAtNanos == 0 ? null : Duration.ofNanos(entry.expireAtNanos - now);
+        values.add(new Read(entry.value, ttl));
+      }
+    }
+    return values;
+  }
+
+  @Override
+  public void put(String key, CacheValue value, Duration ttl) {
+    long expireAtNanos = ttl == null ? 0 : Math.max(1, System.nanoTime() + ttl.toNanos());
+    if (entries.put(key, new Entry(value, expireAtNanos)) == null
+        && entries.size() > maxEntries) {
+      evict(key);
+    }
+  }
+
+  public int size() {
+    return entries.size();
+  }
+
+  private void evict(String justWritten) {
+    long now = System.nanoTime();
+    String victim = null;
+    Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+    for (int i = 0; i < EVICTION_SAMPLES && iterator.hasNext(); i++) {
+      Map.Entry<String, Entry> candidate = iterator.next();
+      if (candidate.getKey().equals(justWritten)) {
+        continue;
+      }
+      if (victim == null || candidate.getValue().expired(now)) {
+        victim = candidate.getKey();
+        if (candidate.getValue().expired(now)) {
+          break;
+        }
+      }
+    }
+    if (victim != null) {
+      entries.remove(victim);
+    }
+  }
+
+  @Override
+  public void close() {
+    entries.clear();
+  }
+}
@@ -0,0 +1,429 @@
+package com.example.store;
+
+import akka.util.ByteString;
+import com.example.cache.CacheValue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * 嵌入式的日志结构文件存储(类似 Bitcask), 用于没有 Redis 但需要在重启后保留数据的节点.
+ *
+ * <p>写入只追加到活跃段的末尾. 段是预先分配、整体内存映射的文件 segment-&lt;id&gt;.log, 写满后切换到新段.
+ * 堆上的索引保存每个键最新记录的位置, 读取直接从映射的内存复制值, 不经过系统调用. 打开时按段号依次扫描
+ * 所有段重建索引, 遇到长度不合理或校验和不符的记录(崩溃时没有写完)即停止扫描该段.
+ *
+ * <p>记录格式: int 记录体长度, int 记录体的 CRC32, 记录体为 long 过期时间(毫秒时间戳, 0 表示永不过期),
+ * int 键长度 + 键(UTF-8), 1 字节 Content-Type 长度 + Content-Type(ASCII), 其余是值的字节.
+ * 长度最后写入, 没有写完的记录在恢复时长度为 0 或校验和不符.
+ *
+ * <p>被覆盖或已过期的记录计为所在段的无效数据. 切换活跃段时, 若所有已封闭段合计的无效数据比例达到
+ * compactionThreshold, 从最旧的段开始依次压缩: 其中仍然有效的记录复制到活跃段并 force 到磁盘后,
+ * 删除该段的文件(映射在被回收之前仍然可读, 正在进行的读取不受影响). 只压缩最旧的段, 被丢弃的记录之前
+ * 不存在同一个键更早的记录, 因此不需要墓碑: 已过期的值被丢弃后, 恢复时不会有更旧的值复活.
+ *
+ * <p>写入和压缩由对象锁串行化, 读取不加锁.
+ */
+public final class LogStructuredStore implements BackingStore {
+
+  private static final String PREFIX = "segment-";
+  private static final String SUFFIX = ".log";
+  // 记录体长度和 CRC32
+  private static final int HEADER = 8;
+
+  private static final class Segment {
+    final long id;
+    final Path path;
+    final MappedByteBuffer buffer;
+    // 下一条记录的位置, 只由持有锁的线程修改
+    int writePosition;
+    // 被覆盖或已过期的记录字节数
+    final AtomicLong deadBytes = new AtomicLong();
+
+    Segment(long id, Path path, MappedByteBuffer buffer) {
+      this.id = id;
+      this.path = path;
+      this.buffer = buffer;
+    }
+  }
+
+  // 键最新记录的位置, 以引用相等比较
+  private static final class Location {
+    final Segment segment;
+    final int offset;
+    // 包括头部的记录长度
+    final int length;
+    final long expireAtMillis;
+
+    Location(Segment segment, int offset, int length, long expireAtMillis) {
+      this.segment = segment;
+      this.offset = offset;
+      this.length = length;
+      this.expireAtMillis = expireAtMillis;
+    }
+
+    boolean expired(long nowMillis) {
+      return expireAtMillis != 0 && expireAtMillis <= nowMillis;
+    }
+  }
+
+  private final Path directory;
+  private final int segmentSize;
+  private final double compactionThreshold;
+  private final boolean forceWrites;
+  private final Map<String, Location> index = new ConcurrentHashMap<>();
+  // 按段号排列, 最后一个是活跃段; 只在持有锁时访问
+  private final List<Segment> segments = new ArrayList<>();
+  private Segment active;
+  private long nextId;
+  private boolean compacting;
+
+  private LogStructuredStore(
+      Path directory, int segmentSize, double compactionThreshold, boolean forceWrites) {
+    if (segmentSize <= HEADER) {
+      throw new IllegalArgumentException("segmentSize 过小: " + segmentSize);
+    }
+    if (compactionThreshold <= 0 || compactionThreshold > 1) {
+      throw new IllegalArgumentException(
+          "compactionThreshold 必须在 0 到 1 之间: " + compactionThreshold);
+    }
+    this.directory = directory;
+    this.segmentSize = segmentSize;
+    this.compactionThreshold = compactionThreshold;
+    this.forceWrites = forceWrites;
+  }
+
+  /**
+   * 打开(不存在时创建) directory 中的存储, 扫描已有的段重建索引.
+   *
+   * @param forceWrites 每次写入后把活跃段 force 到磁盘; 否则只在切换段和关闭时 force,
+   *     进程崩溃时已写入页缓存的数据不会丢失, 掉电时可能丢失最近的写入
+   */
+  public static LogStructuredStore open(
+      Path directory, int segmentSize, double compactionThreshold, boolean forceWrites)
+      throws IOException {
+    Files.createDirectories(directory);
+    LogStructuredStore store =
+        new LogStructuredStore(directory, segmentSize, compactionThreshold, forceWrites);
+    synchronized (store) {
+      store.recover();
+    }
+    return store;
+  }
+
+  @Override
+  public List<Read> getEntries(List<String> keys) {
+    long nowMillis = System.currentTimeMillis();
+    List<Read> values = new ArrayList<>(keys.size());
+    for (String key : keys) {
+      values.add(read(key, nowMillis));
+    }
+    return values;
+  }
+
+  @Override
+  public synchronized void put(String key, CacheValue value, Duration ttl) {
+    append(key, value, expireAtMillis(ttl));
+    if (forceWrites) {
+      active.buffer.force();
+    }
+  }
+
+  @Override
+  public synchronized void putAll(List<Write> writes) {
+    for (Write write : writes) {
+      append(write.key, write.value, expireAtMillis(write.ttl));
+    }
+    if (forceWrites) {
+      active.buffer.force();
+    }
+  }
+
+  // 有效的键数量
+  public int size() {
+    return index.size();
+  }
+
+  synchronized int segmentCount() {
+    return segments.size();
+  }
+
+  @Override
+  public synchronized void close() {
+    if (active != null) {
+      active.buffer.force();
+    }
+    index.clear();
+  }
+
+  private Read read(String key, long nowMillis) {
+    Location location = index.get(key);
+    if (location == null) {
+      return Read.MISSING;
+    }
+    if (location.expired(nowMillis)) {
+      if (index.remove(key, location)) {
+        location.segment.deadBytes.addAndGet(location.length);
+      }
+      return Read.MISSING;
+    }
+    ByteBuffer buffer = location.segment.buffer.duplicate();
+    int position = location.offset + HEADER + Long.BYTES;
+    position += Integer.BYTES + buffer.getInt(position);
+    int contentTypeLength = buffer.get(position) & 0xFF;
+    buffer.position(position + 1);
+    byte[] contentType = new byte[contentTypeLength];
+    buffer.get(contentType);
+    byte[] value = new byte[location.offset + location.length - buffer.position()];
+    buffer.get(value);
+    CacheValue decoded =
+        new CacheValue(
+            ByteString.fromArrayUnsafe(value), new String(contentType, StandardCharsets.US_ASCII));
+    Duration ttl =
+        location.expireAtMillis == 0
+            ? null
+            : Duration.ofMillis(location.expireAtMillis - nowMillis);
+    return new Read(decoded, ttl);
+  }
+
+  private void append(String key, CacheValue value, long expireAtMillis) {
+    byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    byte[] contentType = value.contentType.getBytes(StandardCharsets.US_ASCII);
+    if (contentType.length > 255) {
+      throw new IllegalArgumentException("Content-Type 过长: " + value.contentType);
+    }
+    int bodyLength =
+        Long.BYTES + Integer.BYTES + keyBytes.length + 1 + contentType.length + value.size();
+    ensureCapacity(HEADER + bodyLength);
+    Segment segment = active;
+    int offset = segment.writePosition;
+    ByteBuffer buffer = segment.buffer.duplicate();
+    buffer.position(offset + HEADER);
+    buffer
+        .putLong(expireAtMillis)
+        .putInt(keyBytes.length)
+        .put(keyBytes)
+        .put((byte) contentType.length)
+        .put(contentType);
+    value.bytes.copyToBuffer(buffer);
+    buffer.position(offset + HEADER).limit(offset + HEADER + bodyLength);
+    CRC32 crc = new CRC32();
+    crc.update(buffer);
+    segment.buffer.putInt(offset + Integer.BYTES, (int) crc.getValue());
+    // 长度最后写入
+    segment.buffer.putInt(offset, bodyLength);
+    segment.writePosition = offset + HEADER + bodyLength;
+    Location previous =
+        index.put(key, new Location(segment, offset, HEADER + bodyLength, expireAtMillis));
+    if (previous != null) {
+      previous.segment.deadBytes.addAndGet(previous.length);
+    }
+  }
+
+  private void ensureCapacity(int recordLength) {
+    if (active.writePosition + recordLength > active.buffer.capacity()) {
+      roll(recordLength);
+    }
+  }
+
+  // 封闭活跃段并创建新段, 之后压缩无效数据过多的已封闭段
+  private void roll(int minimumSize) {
+    if (active != null) {
+      active.buffer.force();
+    }
+    try {
+      active = create(nextId++, Math.max(segmentSize, minimumSize));
+    } catch (IOException e) {
+      throw new BackingStoreException("创建存储段失败: " + directory, e);
+    }
+    segments.add(active);
+    if (!compacting) {
+      compact();
+    }
+  }
+
+  private void compact() {
+    compacting = true;
+    try {
+      // 复制的记录没有无效数据, 比例随着压缩下降, 循环总会结束
+      while (segments.get(0) != active && sealedDeadRatio() >= compactionThreshold) {
+        Segment oldest = segments.get(0);
+        copyLiveRecords(oldest);
+        // 复制的记录落盘之后才能删除原来的段
+        active.buffer.force();
+        segments.remove(0);
+        Files.deleteIfExists(oldest.path);
+      }
+    } catch (IOException e) {
+      throw new BackingStoreException("压缩存储段失败: " + directory, e);
+    } finally {
+      compacting = false;
+    }
+  }
+
+  private double sealedDeadRatio() {
+    long dead = 0;
+    long written = 0;
+    for (Segment segment : segments) {
+      if (segment != active) {
+        dead += segment.deadBytes.get();
+        written += segment.writePosition;
+      }
+    }
+    return written == 0 ? 0 : (double) dead / written;
+  }
+
+  // 只用于最旧的段: 已被覆盖和已过期的记录直接丢弃
+  private void copyLiveRecords(Segment segment) {
+    long nowMillis = System.currentTimeMillis();
+    ByteBuffer source = segment.buffer.duplicate();
+    int position = 0;
+    while (position < segment.writePosition) {
+      int length = HEADER + source.getInt(position);
+      String key = readKey(source, position);
+      Location location = index.get(key);
+      if (location != null && location.segment == segment && location.offset == position) {
+        if (location.expired(nowMillis)) {
+          index.remove(key, location);
+        } else {
+          ensureCapacity(length);
+          Segment target = active;
+          int offset = target.writePosition;
+          ByteBuffer record = segment.buffer.duplicate();
+          record.position(position).limit(position + length);
+          ByteBuffer destination = target.buffer.duplicate();
+          destination.position(offset);
+          destination.put(record);
+          target.writePosition = offset + length;
+          Location copied = new Location(target, offset, length, location.expireAtMillis);
+          // 读取时可能刚好因过期删除了该键, 此时复制的记录同样无效
+          if (!index.replace(key, location, copied)) {
+            target.deadBytes.addAndGet(length);
+          }
+        }
+      }
+      position += length;
+    }
+  }
+
+  private void recover() throws IOException {
+    List<Path> files;
+    try (Stream<Path> list = Files.list(directory)) {
+      files =
+          list.filter(LogStructuredStore::isSegment)
+              .sorted(Comparator.comparingLong(LogStructuredStore::segmentId))
+              .collect(Collectors.toList());
+    }
+    long nowMillis = System.currentTimeMillis();
+    for (Path path : files) {
+      long size = Files.size(path);
+      if (size > Integer.MAX_VALUE) {
+        throw new IOException("存储段过大: " + path);
+      }
+      Segment segment = new Segment(segmentId(path), path, map(path, (int) size));
+      segments.add(segment);
+      scan(segment, nowMillis);
+      nextId = segment.id + 1;
+    }
+    if (segments.isEmpty()) {
+      roll(0);
+    } else {
+      active = segments.get(segments.size() - 1);
+    }
+  }
+
+  // 读取段中完整的记录写入索引, 最后一条完整记录之后的位置成为写入位置
+  private void scan(Segment segment, long nowMillis) {
+    ByteBuffer buffer = segment.buffer.duplicate();
+    CRC32 crc = new CRC32();
+    int position = 0;
+    while (position + HEADER <= buffer.capacity()) {
+      int bodyLength = buffer.getInt(position);
+      if (bodyLength <= 0 || bodyLength > buffer.capacity() - position - HEADER) {
+        break;
+      }
+      ByteBuffer body = buffer.duplicate();
+      body.position(position + HEADER).limit(position + HEADER + bodyLength);
+      crc.reset();
+      crc.update(body);
+      if ((int) crc.getValue() != buffer.getInt(position + Integer.BYTES)) {
+        break;
+      }
+      String key = readKey(buffer, position);
+      Location location =
+          new Location(
+              segment, position, HEADER + bodyLength, buffer.getLong(position + HEADER));
+      Location previous = index.put(key, location);
+      if (previous != null) {
+        previous.segment.deadBytes.addAndGet(previous.length);
+      }
+      if (location.expired(nowMillis)) {
+        index.remove(key);
+        segment.deadBytes.addAndGet(location.length);
+      }
+      position += HEADER + bodyLength;
+    }
+    segment.writePosition = position;
+  }
+
+  private Segment create(long id, int size) throws IOException {
+    Path path = directory.resolve(String.format("%s%016d%s", PREFIX, id, SUFFIX));
+    try (FileChannel channel =
+        FileChannel.open(
+            path,
+            StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ,
+            StandardOpenOption.WRITE)) {
+      // 映射超出文件大小的范围时文件被扩展, 新的内容全部为 0
+      return new Segment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+    }
+  }
+
+  private static MappedByteBuffer map(Path path, int size) throws IOException {
+    // 关闭通道后映射仍然有效
+    try (FileChannel channel =
+        FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+      return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+  }
+
+  private static String readKey(ByteBuffer buffer, int recordOffset) {
+    int position = recordOffset + HEADER + Long.BYTES;
+    int keyLength = buffer.getInt(position);
+    byte[] key = new byte[keyLength];
+    ByteBuffer view = buffer.duplicate();
+    view.position(position + Integer.BYTES);
+    view.get(key);
+    return new String(key, StandardCharsets.UTF_8);
+  }
+
+  private static long expireAtMillis(Duration ttl) {
+    return ttl == null ? 0 : Math.max(1, System.currentTimeMillis() + ttl.toMillis());
+  }
+
+  private static boolean isSegment(Path path) {
+    String name = path.getFileName().toString();
+    return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+  }
+
+  private static long segmentId(Path path) {
+    String name = path.getFileName().toString();
+    return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+  }
+}
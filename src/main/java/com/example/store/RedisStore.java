@@ -0,0 +1,125 @@
+package com.example.store;
+
+import com.example.cache.CacheValue;
+import redis.clients.jedis.Jedis;
+import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.JedisPoolConfig;
+import redis.clients.jedis.Pipeline;
+import redis.clients.jedis.Response;
+import redis.clients.jedis.exceptions.JedisException;
+import redis.clients.jedis.params.SetParams;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 以 Redis 作为第二级存储. 值按 {@link RedisValueCodec} 编码, 读取合并为一条 MGET 并在同一个流水线中读取
+ * 各键的 PTTL; 批量写入中不带 TTL 的键合并为一条 MSET, 带 TTL 的键各自 SET ... PX, 全部通过一次流水线发送.
+ *
+ * <p>连接失败和错误回复(OOM、WRONGTYPE 等)都作为 {@link BackingStoreException} 抛出.
+ */
+public final class RedisStore implements BackingStore {
+
+  private final JedisPool pool;
+
+  // maxConnections 通常等于工作者数量, 每个工作者每次操作借用一条连接
+  public RedisStore(String host, int port, int maxConnections) {
+    JedisPoolConfig poolConfig = new JedisPoolConfig();
+    poolConfig.setMaxTotal(maxConnections);
+    poolConfig.setMaxIdle(maxConnections);
+    poolConfig.setJmxEnabled(false);
+    this.pool = new JedisPool(poolConfig, host, port);
+  }
+
+  // 值和每个键的 PTTL 通过一次流水线读取, 与 CachePrewarmer 相同
+  @Override
+  public List<Read> getEntries(List<String> keys) {
+    byte[][] encodedKeys = new byte[keys.size()][];
+    for (int i = 0; i < encodedKeys.length; i++) {
+      encodedKeys[i] = RedisValueCodec.encodeKey(keys.get(i));
+    }
+    try (Jedis jedis = pool.getResource();
+        Pipeline pipeline = jedis.pipelined()) {
+      Response<byte[]> single = null;
+      Response<List<byte[]>> multiple = null;
+      if (encodedKeys.length == 1) {
+        single = pipeline.get(encodedKeys[0]);
+      } else {
+        multiple = pipeline.mget(encodedKeys);
+      }
+      List<Response<Long>> ttls = new ArrayList<>(encodedKeys.length);
+      for (byte[] key : encodedKeys) {
+        ttls.add(pipeline.pttl(key));
+      }
+      pipeline.sync();
+      List<byte[]> values =
+          single != null ? Collections.singletonList(single.get()) : multiple.get();
+      List<Read> decoded = new ArrayList<>(values.size());
+      for (int i = 0; i < values.size(); i++) {
+        CacheValue value = RedisValueCodec.decode(values.get(i));
+        long ttlMillis = ttls.get(i).get();
+        // PTTL 为 -2 或 0: 读取值之后键已被删除或过期; -1 表示永不过期
+        if (value == null || ttlMillis == -2 || ttlMillis == 0) {
+          decoded.add(Read.MISSING);
+        } else {
+          decoded.add(new Read(value, ttlMillis > 0 ? Duration.ofMillis(ttlMillis) : null));
+        }
+      }
+      return decoded;
+    } catch (JedisException e) {
+      throw new BackingStoreException("Redis get 操作失败", e);
+    }
+  }
+
+  @Override
+  public void put(String key, CacheValue value, Duration ttl) {
+    try (Jedis jedis = pool.getResource()) {
+      byte[] encodedKey = RedisValueCodec.encodeKey(key);
+      byte[] encodedValue = RedisValueCodec.encode(value);
+      if (ttl == null) {
+        jedis.set(encodedKey, encodedValue);
+      } else {
+        // 带 TTL 的写入使用 SET ... PX, 与本地缓存的过期时间保持一致
+        jedis.set(encodedKey, encodedValue, SetParams.setParams().px(ttl.toMillis()));
+      }
+    } catch (JedisException e) {
+      throw new BackingStoreException("Redis set 操作失败", e);
+    }
+  }
+
+  @Override
+  public void putAll(List<Write> writes) {
+    List<byte[]> keysAndValues = new ArrayList<>(writes.size() * 2);
+    List<Response<String>> replies = new ArrayList<>();
+    try (Jedis jedis = pool.getResource();
+        Pipeline pipeline = jedis.pipelined()) {
+      for (Write write : writes) {
+        byte[] key = RedisValueCodec.encodeKey(write.key);
+        byte[] value = RedisValueCodec.encode(write.value);
+        if (write.ttl == null) {
+          keysAndValues.add(key);
+          keysAndValues.add(value);
+        } else {
+          replies.add(pipeline.set(key, value, SetParams.setParams().px(write.ttl.toMillis())));
+        }
+      }
+      if (!keysAndValues.isEmpty()) {
+        replies.add(pipeline.mset(keysAndValues.toArray(new byte[0][])));
+      }
+      pipeline.sync();
+      // sync 不检查各命令的回复, 错误回复(如 OOM)在 get 时才抛出 JedisDataException
+      for (Response<String> reply : replies) {
+        reply.get();
+      }
+    } catch (JedisException e) {
+      throw new BackingStoreException("Redis 批量写入失败", e);
+    }
+  }
+
+  @Override
+  public void close() {
+    pool.close();
+  }
+}
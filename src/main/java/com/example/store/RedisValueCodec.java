@@ -0,0 +1,78 @@
+package com.example.store;
+
+import akka.util.ByteString;
+import com.example.cache.CacheValue;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * {@link CacheValue} 与 Redis 中二进制值之间的转换.
+ *
+ * <p>Content-Type 为 {@link CacheValue#TEXT_PLAIN_UTF8} 的值按原始字节保存, 与旧版本以字符串写入的值以及其他客户端兼容.
+ * 其他 Content-Type 的值保存为: 3 字节魔数 + 1 字节 Content-Type 长度 + Content-Type(ASCII) + 原始字节.
+ * 原始字节恰好以魔数开头的文本值同样加上头部, 保证读取时没有歧义.
+ */
+public final class RedisValueCodec {
+
+  private static final byte[] MAGIC = {0x00, (byte) 0xCA, (byte) 0xC7};
+  private static final int HEADER_LENGTH = MAGIC.length + 1;
+
+  private RedisValueCodec() {}
+
+  public static byte[] encodeKey(String key) {
+    return key.getBytes(StandardCharsets.UTF_8);
+  }
+
+  public static byte[] encode(CacheValue value) {
+    if (value.contentType.equals(CacheValue.TEXT_PLAIN_UTF8) && !startsWithMagic(value.bytes)) {
+      return value.bytes.toArray();
+    }
+    byte[] contentType = value.contentType.getBytes(StandardCharsets.US_ASCII);
+    if (contentType.length > 255) {
+      throw new IllegalArgumentException("Content-Type 过长: " + value.contentType);
+    }
+    byte[] encoded = new byte[HEADER_LENGTH + contentType.length + value.bytes.size()];
+    System.arraycopy(MAGIC, 0, encoded, 0, MAGIC.length);
+    encoded[MAGIC.length] = (byte) contentType.length;
+    System.arraycopy(contentType, 0, encoded, HEADER_LENGTH, contentType.length);
+    value.bytes.copyToArray(encoded, HEADER_LENGTH + contentType.length, value.bytes.size());
+    return encoded;
+  }
+
+  // Redis 中不存在时返回 null
+  public static CacheValue decode(byte[] encoded) {
+    if (encoded == null) {
+      return null;
+    }
+    if (encoded.length < HEADER_LENGTH || !startsWithMagic(encoded)) {
+      return new CacheValue(ByteString.fromArrayUnsafe(encoded), CacheValue.TEXT_PLAIN_UTF8);
+    }
+    int contentTypeLength = encoded[MAGIC.length] & 0xFF;
+    int offset = HEADER_LENGTH + contentTypeLength;
+    String contentType =
+        new String(encoded, HEADER_LENGTH, contentTypeLength, StandardCharsets.US_ASCII);
+    return new CacheValue(
+        ByteString.fromArrayUnsafe(encoded, offset, encoded.length - offset), contentType);
+  }
+
+  private static boolean startsWithMagic(ByteString bytes) {
+    if (bytes.size() < MAGIC.length) {
+      return false;
+    }
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (bytes.apply(i) != MAGIC[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static boolean startsWithMagic(byte[] bytes) {
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (bytes[i] != MAGIC[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
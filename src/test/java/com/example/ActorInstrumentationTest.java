@@ -0,0 +1,53 @@
+package com.example;
+
+import akka.actor.testkit.typed.javadsl.ActorTestKit;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.actor.typed.ActorRef;
+import com.example.cache.CacheValue;
+import com.example.metrics.Metrics;
+import com.example.metrics.PrometheusFormat;
+import com.typesafe.config.ConfigFactory;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ActorInstrumentationTest {
+
+  private static final ActorTestKit testKit =
+      ActorTestKit.create(
+          ConfigFactory.parseString(
+                  "akka-http-example.instrumentation.actors = on\n"
+                      + "akka-http-example.cache.partitions = 2")
+              .withFallback(ConfigFactory.load()));
+
+  @AfterClass
+  public static void teardown() {
+    testKit.shutdownTestKit();
+  }
+
+  @Test
+  public void testMailboxAndProcessingTimeAreRecorded() {
+    ActorRef<SupervisorActor.Command> supervisor = testKit.spawn(SupervisorActor.create());
+    supervisor.tell(
+        new SupervisorActor.ForwardToCache(new CacheActor.Put("instrumented", "value")));
+    TestProbe<CacheActor.Value> probe = testKit.createTestProbe();
+    supervisor.tell(
+        new SupervisorActor.ForwardToCache(new CacheActor.Get("instrumented", probe.getRef())));
+    assertEquals(CacheValue.of("value"), probe.receiveMessage().value);
+
+    String text = PrometheusFormat.render(Metrics.get(testKit.system()));
+    assertTrue(text, text.contains("actor_mailbox_depth{actor=\"cache_actor\"} 0\n"));
+    assertTrue(text, text.contains("actor_mailbox_depth{actor=\"redis_actor\"}"));
+    assertTrue(
+        text,
+        text.contains(
+            "actor_mailbox_wait_seconds_count{actor=\"cache_actor\",message=\"Get\"} 1\n"));
+    assertTrue(
+        text,
+        text.contains(
+            "actor_message_processing_seconds_count{actor=\"cache_actor\",message=\"Put\"}"
+                + " 1\n"));
+  }
+}
@@ -0,0 +1,60 @@
+package com.example;
+
+import akka.actor.ActorRef;
+import akka.actor.testkit.typed.javadsl.ActorTestKit;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.actor.typed.javadsl.Adapter;
+import akka.dispatch.Envelope;
+import com.example.cache.CacheValue;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+public class BoundedRequestMailboxTest {
+
+  private static final ActorTestKit testKit = ActorTestKit.create();
+
+  @AfterClass
+  public static void teardown() {
+    testKit.shutdownTestKit();
+  }
+
+  @Test
+  public void testOnlyRequestsAwaitingReplyAreDroppedWhenFull() {
+    akka.actor.ActorSystem system = Adapter.toClassic(testKit.system());
+    BoundedRequestMailbox.BoundedRequestQueue queue =
+        new BoundedRequestMailbox.BoundedRequestQueue(1, system.deadLetters());
+    ActorRef receiver = system.deadLetters();
+    TestProbe<CacheActor.Value> probe = testKit.createTestProbe();
+    CacheActor.Get get = new CacheActor.Get("key", probe.getRef());
+    CacheActor.Put put = new CacheActor.Put("key", CacheValue.of("value"));
+    CacheActor.MultiPut multiPut = new CacheActor.MultiPut(Collections.singletonList(put));
+
+    queue.enqueue(receiver, envelope(get, system));
+    // 已满: 请求被丢弃, 不等待回复的写入和内部消息仍然入队
+    CacheActor.Get dropped = new CacheActor.Get("dropped", probe.getRef());
+    queue.enqueue(receiver, envelope(dropped, system));
+    queue.enqueue(receiver, envelope(put, system));
+    queue.enqueue(receiver, envelope(multiPut, system));
+    queue.enqueue(receiver, envelope(new CacheActor.SimulateFailure(), system));
+    assertEquals(4, queue.numberOfMessages());
+
+    assertSame(get, queue.dequeue().message());
+    assertSame(put, queue.dequeue().message());
+    assertSame(multiPut, queue.dequeue().message());
+    queue.dequeue();
+    assertNull(queue.dequeue());
+
+    queue.enqueue(receiver, envelope(get, system));
+    assertSame(get, queue.dequeue().message());
+  }
+
+  private static Envelope envelope(Object message, akka.actor.ActorSystem system) {
+    return Envelope.apply(message, ActorRef.noSender(), system);
+  }
+}
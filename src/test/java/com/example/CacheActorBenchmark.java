@@ -0,0 +1,190 @@
+package com.example;
+
+import akka.Done;
+import akka.actor.typed.ActorRef;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.Props;
+import akka.actor.typed.javadsl.AskPattern;
+import akka.actor.typed.javadsl.Behaviors;
+import com.example.cache.CacheValue;
+import com.example.store.BackingStore;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * 不经过 HTTP, 直接以 ask 测量单个 CacheActor 分区和 RedisActor 工作者池的命中、未命中和写入路径,
+ * 第二级存储依次使用 engine 指定的 redis、memory 和 file 引擎. redis 引擎的后端是进程内的
+ * {@link RedisStandIn}, 每次往返注入 redisLatencyMicros 的延迟(其他引擎忽略该参数), 不需要安装 Redis,
+ * 在任何 Linux 机器上结果都可以复现; file 引擎的段文件在临时目录中.
+ *
+ * <ul>
+ *   <li>testCacheHit: 本地命中, 只经过 CacheActor 的邮箱
+ *   <li>testCacheMiss: 两级都不存在的键(关闭负缓存), 每次都经过 RedisActor 访问存储
+ *   <li>testCachePut: 带确认的 MultiPut, 写入本地缓存并等待存储确认
+ *   <li>testStoreGet / testStorePut: 直接发给 RedisActor 工作者池的读取(合并为批量读取)和写入
+ * </ul>
+ *
+ * <p>main 依次以 1、4、16 个线程运行, 并开启 GC 分析器(gc.alloc.rate.norm 为每次操作分配的字节数).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class CacheActorBenchmark {
+
+  private static final int KEY_COUNT = 4096;
+  private static final int[] THREAD_COUNTS = {1, 4, 16};
+
+  @Param({"redis", "memory", "file"})
+  public String engine;
+
+  // 模拟的 Redis 往返延迟; 0 只剩本机回环和协议开销
+  @Param({"0", "250"})
+  public int redisLatencyMicros;
+
+  private RedisStandIn redis;
+  private Path directory;
+  private ActorSystem<Void> system;
+  private BackingStore store;
+  private ActorRef<CacheActor.Command> redisActor;
+  private ActorRef<CacheActor.Command> cacheActor;
+  private String[] hitKeys;
+  private String[] storeKeys;
+  private final CacheValue value = CacheValue.of("benchmark-value");
+  private final Duration timeout = Duration.ofSeconds(5);
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    redis = new RedisStandIn().start().latency(Duration.ofNanos(redisLatencyMicros * 1000L));
+    directory = Files.createTempDirectory("cache-actor-benchmark");
+    Config config =
+        ConfigFactory.parseString(
+                "akka-http-example.redis.port = "
+                    + redis.port()
+                    + "\nakka-http-example.cache.negative.ttl = 0"
+                    + "\nakka-http-example.store.engine = "
+                    + engine)
+            .withFallback(ConfigFactory.load());
+    system = ActorSystem.create(Behaviors.empty(), "CacheActorBenchmark", config);
+    RedisSettings redisSettings = RedisSettings.create(config);
+    store = StoreSettings.create(config).withFileDirectory(directory).createStore(redisSettings);
+    redisActor =
+        system.systemActorOf(RedisActor.createPool(store, redisSettings), "redis", Props.empty());
+    cacheActor =
+        system.systemActorOf(
+            CacheActor.create(redisActor, CacheSettings.create(config)), "cache", Props.empty());
+
+    hitKeys = new String[KEY_COUNT];
+    storeKeys = new String[KEY_COUNT];
+    for (int i = 0; i < KEY_COUNT; i++) {
+      hitKeys[i] = "hit-" + i;
+      cacheActor.tell(new CacheActor.Put(hitKeys[i], "value-" + i));
+      storeKeys[i] = "store-" + i;
+      store.put(storeKeys[i], CacheValue.of("value-" + i), null);
+    }
+    for (String key : hitKeys) {
+      askGet(cacheActor, key);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    if (system != null) {
+      system.terminate();
+      system.getWhenTerminated().toCompletableFuture().join();
+    }
+    if (store != null) {
+      store.close();
+    }
+    if (redis != null) {
+      redis.close();
+    }
+    if (directory != null) {
+      try (Stream<Path> files = Files.walk(directory)) {
+        for (Path file : (Iterable<Path>) files.sorted(Comparator.reverseOrder())::iterator) {
+          Files.delete(file);
+        }
+      }
+    }
+  }
+
+  @Benchmark
+  public CacheValue testCacheHit() {
+    return askGet(cacheActor, hitKeys[ThreadLocalRandom.current().nextInt(KEY_COUNT)]);
+  }
+
+  @Benchmark
+  public CacheValue testCacheMiss() {
+    return askGet(cacheActor, "missing-" + ThreadLocalRandom.current().nextInt(KEY_COUNT));
+  }
+
+  @Benchmark
+  public CacheActor.MultiPutResult testCachePut() {
+    CacheActor.Put put =
+        new CacheActor.Put("put-" + ThreadLocalRandom.current().nextInt(KEY_COUNT), value);
+    return AskPattern.<CacheActor.Command, CacheActor.MultiPutResult>ask(
+            cacheActor,
+            replyTo -> new CacheActor.MultiPut(Collections.singletonList(put), replyTo),
+            timeout,
+            system.scheduler())
+        .toCompletableFuture()
+        .join();
+  }
+
+  @Benchmark
+  public CacheValue testStoreGet() {
+    return askGet(redisActor, storeKeys[ThreadLocalRandom.current().nextInt(KEY_COUNT)]);
+  }
+
+  @Benchmark
+  public Done testStorePut() {
+    String key = "store-put-" + ThreadLocalRandom.current().nextInt(KEY_COUNT);
+    return AskPattern.<CacheActor.Command, Done>askWithStatus(
+            redisActor,
+            replyTo -> new CacheActor.Put(key, value, null, replyTo),
+            timeout,
+            system.scheduler())
+        .toCompletableFuture()
+        .join();
+  }
+
+  private CacheValue askGet(ActorRef<CacheActor.Command> target, String key) {
+    CacheActor.Value reply =
+        AskPattern.<CacheActor.Command, CacheActor.Value>ask(
+                target, replyTo -> new CacheActor.Get(key, replyTo), timeout, system.scheduler())
+            .toCompletableFuture()
+            .join();
+    return reply.value;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    for (int threads : THREAD_COUNTS) {
+      Options opt =
+          new OptionsBuilder()
+              .include(CacheActorBenchmark.class.getSimpleName())
+              .threads(threads)
+              .addProfiler(GCProfiler.class)
+              .build();
+
+      new Runner(opt).run();
+    }
+  }
+}
@@ -3,11 +3,20 @@ package com.example;
 import akka.actor.testkit.typed.javadsl.ActorTestKit;
 import akka.actor.testkit.typed.javadsl.TestProbe;
 import akka.actor.typed.ActorRef;
+import com.example.cache.CacheValue;
+import com.example.cache.ReadView;
+import com.example.store.InMemoryStore;
+import com.typesafe.config.ConfigFactory;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 
 public class CacheActorTest {
@@ -42,7 +51,7 @@ public class CacheActorTest {
     // 测试 Get 操作（应该直接从本地缓存获取）
     cacheActor.tell(new CacheActor.Get("key1", replyProbe.getRef()));
     CacheActor.Value response = replyProbe.receiveMessage();
-    assertEquals("value1", response.value);
+    assertEquals(CacheValue.of("value1"), response.value);
 
     // 验证没有额外向 RedisActor 发送消息
     redisActorProbe.expectNoMessage();
@@ -95,18 +104,299 @@ public class CacheActorTest {
     assertEquals("redisKey", redisGetMsg.key);
 
     // 模拟 RedisActor 返回一个值
-    redisGetMsg.replyTo.tell(new CacheActor.Value("redisValue"));
+    redisGetMsg.replyTo.tell(new CacheActor.Value(CacheValue.of("redisValue")));
 
     // 验证 CacheActor 返回了正确的响应
     CacheActor.Value response = replyProbe.receiveMessage();
-    assertEquals("redisValue", response.value);
+    assertEquals(CacheValue.of("redisValue"), response.value);
 
     // 再次请求相同的键，这次应该从本地缓存获取
     cacheActor.tell(new CacheActor.Get("redisKey", replyProbe.getRef()));
     CacheActor.Value cachedResponse = replyProbe.receiveMessage();
-    assertEquals("redisValue", cachedResponse.value);
+    assertEquals(CacheValue.of("redisValue"), cachedResponse.value);
 
     // 验证没有再次向 RedisActor 发送消息
     redisActorProbe.expectNoMessage();
   }
+
+  @Test
+  public void testEvictedKeyReadThroughRedis() {
+    TestProbe<CacheActor.Command> redisActorProbe = testKit.createTestProbe();
+
+    // 创建容量为 10 个条目的 CacheActor
+    ActorRef<CacheActor.Command> cacheActor =
+        testKit.spawn(
+            CacheActor.create(
+                redisActorProbe.getRef(),
+                CacheSettings.create(testKit.system().settings().config())
+                    .withPartitions(1)
+                    .withMaxEntries(10)
+                    .withMaxBytes(Long.MAX_VALUE)));
+    TestProbe<CacheActor.Value> replyProbe = testKit.createTestProbe();
+
+    for (int i = 0; i < 20; i++) {
+      cacheActor.tell(new CacheActor.Put("key" + i, "value" + i));
+      redisActorProbe.expectMessageClass(CacheActor.Put.class);
+    }
+
+    // 统计信息中应该记录了淘汰次数
+    TestProbe<CacheActor.Stats> statsProbe = testKit.createTestProbe();
+    cacheActor.tell(new CacheActor.GetStats(statsProbe.getRef()));
+    CacheActor.Stats stats = statsProbe.receiveMessage();
+    assertEquals(10, stats.size);
+    assertEquals(10, stats.evictionCount);
+
+    // 被淘汰的 10 个键读取时应该回源到 RedisActor, 其余键本地命中
+    for (int i = 0; i < 20; i++) {
+      cacheActor.tell(new CacheActor.Get("key" + i, replyProbe.getRef()));
+    }
+    for (CacheActor.Command message : redisActorProbe.receiveSeveralMessages(10)) {
+      CacheActor.Get redisGet = (CacheActor.Get) message;
+      CacheValue fromRedis = CacheValue.of(redisGet.key.replace("key", "value"));
+      redisGet.replyTo.tell(new CacheActor.Value(fromRedis));
+    }
+    for (CacheActor.Value value : replyProbe.receiveSeveralMessages(20)) {
+      assertNotNull(value.value);
+    }
+    redisActorProbe.expectNoMessage();
+  }
+
+  @Test
+  public void testReadThroughKeepsStoreTtl() throws InterruptedException {
+    InMemoryStore store = new InMemoryStore(100);
+    ActorRef<CacheActor.Command> redisActor =
+        testKit.spawn(
+            RedisActor.create(store, RedisSettings.create(testKit.system().settings().config())));
+    ActorRef<CacheActor.Command> cacheActor =
+        testKit.spawn(
+            CacheActor.create(
+                redisActor,
+                CacheSettings.create(testKit.system().settings().config()).withPartitions(1)));
+    TestProbe<CacheActor.Value> replyProbe = testKit.createTestProbe();
+
+    // 本地副本已被淘汰, 键只存在于存储中, 剩余存活时间 300 毫秒
+    store.put("ttl-key", CacheValue.of("ttl-value"), Duration.ofMillis(300));
+    cacheActor.tell(new CacheActor.Get("ttl-key", replyProbe.getRef()));
+    CacheActor.Value fromStore = replyProbe.receiveMessage();
+    assertEquals(CacheValue.of("ttl-value"), fromStore.value);
+    assertNotNull(fromStore.ttl);
+
+    // 读穿写回的本地副本与存储中的键同时过期, 不会一直返回旧值
+    Thread.sleep(500);
+    cacheActor.tell(new CacheActor.Get("ttl-key", replyProbe.getRef()));
+    assertNull(replyProbe.receiveMessage().value);
+  }
+
+  @Test
+  public void testConcurrentMissesCoalesced() {
+    TestProbe<CacheActor.Command> redisActorProbe = testKit.createTestProbe();
+    ActorRef<CacheActor.Command> cacheActor =
+        testKit.spawn(CacheActor.create(redisActorProbe.getRef()));
+
+    // 同一个键的 5 个并发未命中
+    List<TestProbe<CacheActor.Value>> replyProbes = new ArrayList<>();
+    for (int i = 0; i < 5; i++) {
+      TestProbe<CacheActor.Value> replyProbe = testKit.createTestProbe();
+      replyProbes.add(replyProbe);
+      cacheActor.tell(new CacheActor.Get("hotKey", replyProbe.getRef()));
+    }
+
+    // 只应向 RedisActor 发送一次查询
+    CacheActor.Get redisGetMsg = redisActorProbe.expectMessageClass(CacheActor.Get.class);
+    redisActorProbe.expectNoMessage();
+    redisGetMsg.replyTo.tell(new CacheActor.Value(CacheValue.of("hotValue")));
+
+    // 所有等待者都收到同一个结果
+    for (TestProbe<CacheActor.Value> replyProbe : replyProbes) {
+      assertEquals(CacheValue.of("hotValue"), replyProbe.receiveMessage().value);
+    }
+
+    TestProbe<CacheActor.Stats> statsProbe = testKit.createTestProbe();
+    cacheActor.tell(new CacheActor.GetStats(statsProbe.getRef()));
+    CacheActor.Stats stats = statsProbe.receiveMessage();
+    assertEquals(1, stats.redisLookupCount);
+    assertEquals(4, stats.coalescedCount);
+  }
+
+  @Test
+  public void testPutDuringLookupWins() {
+    TestProbe<CacheActor.Command> redisActorProbe = testKit.createTestProbe();
+    ActorRef<CacheActor.Command> cacheActor =
+        testKit.spawn(CacheActor.create(redisActorProbe.getRef()));
+    TestProbe<CacheActor.Value> replyProbe = testKit.createTestProbe();
+
+    cacheActor.tell(new CacheActor.Get("racyKey", replyProbe.getRef()));
+    CacheActor.Get redisGetMsg = redisActorProbe.expectMessageClass(CacheActor.Get.class);
+
+    // 查询进行中写入新值, Redis 随后返回旧值
+    cacheActor.tell(new CacheActor.Put("racyKey", "newValue"));
+    redisActorProbe.expectMessageClass(CacheActor.Put.class);
+    redisGetMsg.replyTo.tell(new CacheActor.Value(CacheValue.of("oldValue")));
+
+    assertEquals(CacheValue.of("newValue"), replyProbe.receiveMessage().value);
+    cacheActor.tell(new CacheActor.Get("racyKey", replyProbe.getRef()));
+    assertEquals(CacheValue.of("newValue"), replyProbe.receiveMessage().value);
+  }
+
+  @Test
+  public void testRedisMissIsNegativelyCached() {
+    TestProbe<CacheActor.Command> redisActorProbe = testKit.createTestProbe();
+    ActorRef<CacheActor.Command> cacheActor =
+        testKit.spawn(CacheActor.create(redisActorProbe.getRef()));
+    TestProbe<CacheActor.Value> replyProbe = testKit.createTestProbe();
+
+    cacheActor.tell(new CacheActor.Get("missingKey", replyProbe.getRef()));
+    CacheActor.Get redisGetMsg = redisActorProbe.expectMessageClass(CacheActor.Get.class);
+    redisGetMsg.replyTo.tell(new CacheActor.Value(null));
+    assertNull(replyProbe.receiveMessage().value);
+
+    // 负缓存有效期内的重复查询不再访问 Redis
+    cacheActor.tell(new CacheActor.Get("missingKey", replyProbe.getRef()));
+    assertNull(replyProbe.receiveMessage().value);
+    redisActorProbe.expectNoMessage();
+
+    // Put 立即使负缓存失效
+    cacheActor.tell(new CacheActor.Put("missingKey", "nowPresent"));
+    redisActorProbe.expectMessageClass(CacheActor.Put.class);
+    cacheActor.tell(new CacheActor.Get("missingKey", replyProbe.getRef()));
+    assertEquals(CacheValue.of("nowPresent"), replyProbe.receiveMessage().value);
+
+    TestProbe<CacheActor.Stats> statsProbe = testKit.createTestProbe();
+    cacheActor.tell(new CacheActor.GetStats(statsProbe.getRef()));
+    assertEquals(1, statsProbe.receiveMessage().negativeHitCount);
+  }
+
+  @Test
+  public void testReadViewServesLocalHits() {
+    TestProbe<CacheActor.Command> redisActorProbe = testKit.createTestProbe();
+    ReadView readView = new ReadView();
+    CacheSettings settings =
+        CacheSettings.create(testKit.system().settings().config()).withPartitions(1);
+    ActorRef<CacheActor.Command> cacheActor =
+        testKit.spawn(CacheActor.create(redisActorProbe.getRef(), settings, readView));
+    TestProbe<CacheActor.Value> replyProbe = testKit.createTestProbe();
+
+    cacheActor.tell(new CacheActor.Put("viewKey", "viewValue"));
+    redisActorProbe.expectMessageClass(CacheActor.Put.class);
+    // 经过邮箱的 Get 返回后 Put 一定已经生效
+    cacheActor.tell(new CacheActor.Get("viewKey", replyProbe.getRef()));
+    assertEquals(CacheValue.of("viewValue"), replyProbe.receiveMessage().value);
+
+    // 无锁读取不经过 CacheActor, 未命中时返回 null 交给常规路径处理
+    assertEquals(CacheValue.of("viewValue"), readView.get("viewKey"));
+    assertNull(readView.get("otherKey"));
+    redisActorProbe.expectNoMessage();
+
+    TestProbe<CacheActor.Stats> statsProbe = testKit.createTestProbe();
+    cacheActor.tell(new CacheActor.GetStats(statsProbe.getRef()));
+    assertEquals(2, statsProbe.receiveMessage().hitCount);
+
+    // CacheActor 停止后不再提供读取
+    testKit.stop(cacheActor);
+    assertNull(readView.get("viewKey"));
+  }
+
+  @Test
+  public void testMultiGetAnswersHitsTogether() {
+    TestProbe<CacheActor.Command> redisActorProbe = testKit.createTestProbe();
+    ActorRef<CacheActor.Command> cacheActor =
+        testKit.spawn(CacheActor.create(redisActorProbe.getRef()));
+    TestProbe<CacheActor.Entries> replyProbe = testKit.createTestProbe();
+
+    List<CacheActor.Put> puts = new ArrayList<>();
+    puts.add(new CacheActor.Put("multi-1", "a"));
+    puts.add(new CacheActor.Put("multi-2", "b"));
+    cacheActor.tell(new CacheActor.MultiPut(puts));
+    redisActorProbe.expectMessageClass(CacheActor.PutAll.class);
+
+    List<String> keys = new ArrayList<>();
+    keys.add("multi-1");
+    keys.add("multi-3");
+    keys.add("multi-2");
+    cacheActor.tell(new CacheActor.MultiGet(keys, replyProbe.getRef()));
+
+    // 两个本地命中合并为一条回复
+    CacheActor.Entries hits = replyProbe.receiveMessage();
+    assertEquals(2, hits.entries.size());
+    assertEquals("multi-1", hits.entries.get(0).key);
+    assertEquals(CacheValue.of("a"), hits.entries.get(0).value);
+    assertEquals("multi-2", hits.entries.get(1).key);
+
+    // 未命中的键从 Redis 返回后单独回复
+    CacheActor.Get redisGetMsg = redisActorProbe.expectMessageClass(CacheActor.Get.class);
+    assertEquals("multi-3", redisGetMsg.key);
+    redisGetMsg.replyTo.tell(new CacheActor.Value(CacheValue.of("c")));
+    CacheActor.Entries fromRedis = replyProbe.receiveMessage();
+    assertEquals(1, fromRedis.entries.size());
+    assertEquals("multi-3", fromRedis.entries.get(0).key);
+    assertEquals(CacheValue.of("c"), fromRedis.entries.get(0).value);
+  }
+
+  @Test
+  public void testMultiPutAcksAfterRedisWrites() {
+    TestProbe<CacheActor.Command> redisActorProbe = testKit.createTestProbe();
+    ActorRef<CacheActor.Command> cacheActor =
+        testKit.spawn(CacheActor.create(redisActorProbe.getRef()));
+    TestProbe<CacheActor.MultiPutResult> ackProbe = testKit.createTestProbe();
+
+    List<CacheActor.Put> puts = new ArrayList<>();
+    puts.add(new CacheActor.Put("ack-1", "a"));
+    puts.add(new CacheActor.Put("ack-2", "b"));
+    cacheActor.tell(new CacheActor.MultiPut(puts, ackProbe.getRef()));
+
+    // 整批作为一条 PutAll 发给 RedisActor
+    CacheActor.PutAll putAll = redisActorProbe.expectMessageClass(CacheActor.PutAll.class);
+    assertEquals(2, putAll.puts.size());
+    redisActorProbe.expectNoMessage();
+    // 未确认前不应回复
+    ackProbe.expectNoMessage();
+    putAll.replyTo.tell(CacheActor.MultiPutResult.ALL_WRITTEN);
+    assertEquals(0, ackProbe.receiveMessage().failures);
+  }
+
+  @Test
+  public void testMultiPutWithoutReplyIsOnePutAll() {
+    TestProbe<CacheActor.Command> redisActorProbe = testKit.createTestProbe();
+    ActorRef<CacheActor.Command> cacheActor =
+        testKit.spawn(CacheActor.create(redisActorProbe.getRef()));
+
+    List<CacheActor.Put> puts = new ArrayList<>();
+    for (int i = 0; i < 10; i++) {
+      puts.add(new CacheActor.Put("mput-" + i, "v" + i));
+    }
+    cacheActor.tell(new CacheActor.MultiPut(puts));
+
+    CacheActor.PutAll putAll = redisActorProbe.expectMessageClass(CacheActor.PutAll.class);
+    assertEquals(10, putAll.puts.size());
+    assertNull(putAll.replyTo);
+    redisActorProbe.expectNoMessage();
+  }
+
+  @Test
+  public void testMultiPutReportsUnconfirmedWrites() {
+    TestProbe<CacheActor.Command> redisActorProbe = testKit.createTestProbe();
+    CacheSettings settings =
+        CacheSettings.create(
+            ConfigFactory.parseString("akka-http-example.cache.redis-lookup-timeout = 200ms")
+                .withFallback(testKit.system().settings().config()));
+    ActorRef<CacheActor.Command> cacheActor =
+        testKit.spawn(CacheActor.create(redisActorProbe.getRef(), settings));
+    TestProbe<CacheActor.MultiPutResult> ackProbe = testKit.createTestProbe();
+
+    List<CacheActor.Put> puts = new ArrayList<>();
+    puts.add(new CacheActor.Put("unconfirmed-1", "a"));
+    puts.add(new CacheActor.Put("unconfirmed-2", "b"));
+    cacheActor.tell(new CacheActor.MultiPut(puts, ackProbe.getRef()));
+    // RedisActor 拒绝了其中一个键
+    redisActorProbe
+        .expectMessageClass(CacheActor.PutAll.class)
+        .replyTo
+        .tell(new CacheActor.MultiPutResult(1));
+    assertEquals(1, ackProbe.receiveMessage().failures);
+
+    // 整批等待 Redis 超时
+    cacheActor.tell(new CacheActor.MultiPut(puts, ackProbe.getRef()));
+    redisActorProbe.expectMessageClass(CacheActor.PutAll.class);
+    assertEquals(2, ackProbe.receiveMessage(Duration.ofSeconds(3)).failures);
+  }
 }
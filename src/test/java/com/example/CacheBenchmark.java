@@ -8,6 +8,8 @@ import akka.http.javadsl.model.HttpResponse;
 import akka.http.javadsl.model.StatusCodes;
 import akka.http.javadsl.server.Route;
 import akka.http.javadsl.unmarshalling.Unmarshaller;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
 import org.openjdk.jmh.annotations.*;
 import org.openjdk.jmh.runner.Runner;
 import org.openjdk.jmh.runner.RunnerException;
@@ -26,6 +28,10 @@ import java.util.concurrent.TimeUnit;
 @Threads(4)
 public class CacheBenchmark {
 
+  // 对比 GET /cache 本地命中时经过 CacheActor 邮箱(false)与无锁读取(true)的吞吐量
+  @Param({"false", "true"})
+  public boolean lockFreeReads;
+
   private ActorSystem<SupervisorActor.Command> system;
   private Http http;
   private ServerBinding binding;
@@ -34,7 +40,10 @@ public class CacheBenchmark {
   @Setup(Level.Trial)
   public void setup() throws InterruptedException {
     // 创建 Actor 系统
-    system = ActorSystem.create(SupervisorActor.create(), "CacheBenchmark");
+    Config config =
+        ConfigFactory.parseString("akka-http-example.cache.lock-free-reads = " + lockFreeReads)
+            .withFallback(ConfigFactory.load());
+    system = ActorSystem.create(SupervisorActor.create(), "CacheBenchmark", config);
     http = Http.get(system);
 
     // 创建路由
@@ -50,6 +59,11 @@ public class CacheBenchmark {
 
     // 确保服务器已启动
     Thread.sleep(1000);
+
+    // 预先写入本地命中测试使用的键
+    http.singleRequest(HttpRequest.PUT(baseUrl + "/cache/hit-key/hit-value"))
+        .toCompletableFuture()
+        .join();
   }
 
   @TearDown(Level.Trial)
@@ -104,6 +118,17 @@ public class CacheBenchmark {
         .join();
   }
 
+  @Benchmark
+  public String testCacheGetHitEndpoint() {
+    HttpRequest request = HttpRequest.GET(baseUrl + "/cache/hit-key");
+    HttpResponse httpResponse = http.singleRequest(request).toCompletableFuture().join();
+    assert httpResponse.status() == StatusCodes.OK;
+    return Unmarshaller.entityToString()
+        .unmarshal(httpResponse.entity(), system)
+        .toCompletableFuture()
+        .join();
+  }
+
   public static void main(String[] args) throws RunnerException {
     Options opt =
         new OptionsBuilder().include(CacheBenchmark.class.getSimpleName()).forks(1).build();
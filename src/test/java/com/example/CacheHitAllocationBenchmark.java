@@ -0,0 +1,163 @@
+package com.example;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.AskPattern;
+import akka.http.javadsl.model.HttpRequest;
+import akka.http.javadsl.model.HttpResponse;
+import akka.http.javadsl.server.Route;
+import akka.japi.function.Function;
+import com.example.routing.CacheRouteDefinition;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 测量 GET /cache/{key} 本地命中时每个请求分配的字节数. 请求直接交给 {@link CacheRouteDefinition}
+ * 的路由处理函数, 不经过网络和 HTTP 解析, 第二级存储使用 memory 引擎, 不需要安装 Redis.
+ *
+ * <ul>
+ *   <li>testLocalHit: 整个路由处理一次本地命中, 包括路径匹配、准入控制和响应
+ *   <li>testReadLocal: 只有按键选择分区并无锁读取本地缓存
+ * </ul>
+ *
+ * <p>main 开启 GC 分析器运行, 并将 gc.alloc.rate.norm(每次操作分配的字节数)与下面的目标比较,
+ * 超出时以非 0 状态退出.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class CacheHitAllocationBenchmark {
+
+  // 每次操作分配字节数的目标. 本地命中改为同步返回缓存的响应之前整个路由约 8000 字节,
+  // 之后约 3300 字节, 全部是 Akka HTTP 路由本身(路径匹配、RequestContext、seal 的 Future 等)
+  static final double LOCAL_HIT_TARGET_BYTES = 4096;
+  // 无锁读取不分配, 留出分析器的测量误差
+  static final double READ_LOCAL_TARGET_BYTES = 16;
+
+  private static final int KEY_COUNT = 4096;
+
+  private ActorSystem<SupervisorActor.Command> system;
+  private CachePartitions partitions;
+  private Function<HttpRequest, CompletionStage<HttpResponse>> handler;
+  private HttpRequest[] requests;
+  private String[] keys;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    Config config =
+        ConfigFactory.parseString("akka-http-example.store.engine = memory")
+            .withFallback(ConfigFactory.load());
+    system = ActorSystem.create(SupervisorActor.create(), "CacheHitAllocationBenchmark", config);
+    Duration timeout = Duration.ofSeconds(5);
+    partitions =
+        AskPattern.<SupervisorActor.Command, CachePartitions>ask(
+                system, SupervisorActor.GetCachePartitions::new, timeout, system.scheduler())
+            .toCompletableFuture()
+            .join();
+
+    keys = new String[KEY_COUNT];
+    requests = new HttpRequest[KEY_COUNT];
+    List<CacheActor.Put> puts = new ArrayList<>(KEY_COUNT);
+    for (int i = 0; i < KEY_COUNT; i++) {
+      keys[i] = "key-" + i;
+      requests[i] = HttpRequest.GET("/cache/" + keys[i]);
+      puts.add(new CacheActor.Put(keys[i], "value-" + i));
+    }
+    partitions
+        .groupByPartition(puts, put -> put.key)
+        .forEach(
+            (partition, partitionPuts) ->
+                AskPattern.<CacheActor.Command, CacheActor.MultiPutResult>ask(
+                        partition,
+                        replyTo -> new CacheActor.MultiPut(partitionPuts, replyTo),
+                        timeout,
+                        system.scheduler())
+                    .toCompletableFuture()
+                    .join());
+
+    Route route = new CacheRouteDefinition(system, system).createRoute();
+    handler = route.seal().handler(system);
+    // 第一个请求获取分区列表
+    for (HttpRequest request : requests) {
+      status(request);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (system != null) {
+      system.terminate();
+      system.getWhenTerminated().toCompletableFuture().join();
+    }
+  }
+
+  @Benchmark
+  public int testLocalHit() throws Exception {
+    return status(requests[ThreadLocalRandom.current().nextInt(KEY_COUNT)]);
+  }
+
+  @Benchmark
+  public Object testReadLocal() {
+    return partitions.readLocal(keys[ThreadLocalRandom.current().nextInt(KEY_COUNT)]);
+  }
+
+  private int status(HttpRequest request) throws Exception {
+    HttpResponse response = handler.apply(request).toCompletableFuture().join();
+    int status = response.status().intValue();
+    if (status != 200) {
+      throw new IllegalStateException("本地命中返回了 " + status);
+    }
+    return status;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt =
+        new OptionsBuilder()
+            .include(CacheHitAllocationBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+
+    Collection<RunResult> results = new Runner(opt).run();
+    boolean passed = true;
+    for (RunResult result : results) {
+      String benchmark = result.getParams().getBenchmark();
+      double target =
+          benchmark.endsWith("testLocalHit") ? LOCAL_HIT_TARGET_BYTES : READ_LOCAL_TARGET_BYTES;
+      double allocated = Double.NaN;
+      // JMH 以原始类型 Map<String, Result> 返回次要结果, 按 Result<?> 读取
+      Map<String, ?> secondaries = result.getAggregatedResult().getSecondaryResults();
+      for (Map.Entry<String, ?> secondary : secondaries.entrySet()) {
+        if (secondary.getKey().endsWith("gc.alloc.rate.norm")) {
+          allocated = ((Result<?>) secondary.getValue()).getScore();
+        }
+      }
+      boolean ok = allocated <= target;
+      passed &= ok;
+      System.out.printf(
+          "%s: %.1f 字节/操作, 目标 %.1f 字节/操作 %s%n",
+          benchmark, allocated, target, ok ? "通过" : "未通过");
+    }
+    if (!passed) {
+      System.exit(1);
+    }
+  }
+}
@@ -0,0 +1,89 @@
+package com.example;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.AskPattern;
+import com.example.cache.CacheValue;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// 本地缓存命中路径的吞吐量随 CacheActor 分区数量的变化
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(16)
+public class CachePartitionBenchmark {
+
+  private static final int KEY_COUNT = 4096;
+
+  @Param({"1", "2", "4", "8", "16"})
+  public int partitions;
+
+  private ActorSystem<SupervisorActor.Command> system;
+  private CachePartitions cachePartitions;
+  private String[] keys;
+  private final Duration timeout = Duration.ofSeconds(5);
+
+  @Setup(Level.Trial)
+  public void setup() {
+    system = ActorSystem.create(SupervisorActor.create(partitions), "CachePartitionBenchmark");
+    cachePartitions =
+        AskPattern.<SupervisorActor.Command, CachePartitions>ask(
+                system, SupervisorActor.GetCachePartitions::new, timeout, system.scheduler())
+            .toCompletableFuture()
+            .join();
+
+    // 预先写入所有键, 使测量只覆盖本地命中路径
+    keys = new String[KEY_COUNT];
+    for (int i = 0; i < KEY_COUNT; i++) {
+      keys[i] = "benchmark-key-" + i;
+      system.tell(new SupervisorActor.ForwardToCache(new CacheActor.Put(keys[i], "value-" + i)));
+    }
+    for (String key : keys) {
+      askGet(key);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (system != null) {
+      system.terminate();
+      system.getWhenTerminated().toCompletableFuture().join();
+    }
+  }
+
+  @Benchmark
+  public CacheValue testLocalHit() {
+    return askGet(keys[ThreadLocalRandom.current().nextInt(KEY_COUNT)]);
+  }
+
+  private CacheValue askGet(String key) {
+    CacheActor.Value value =
+        AskPattern.<CacheActor.Command, CacheActor.Value>ask(
+                cachePartitions.forKey(key),
+                replyTo -> new CacheActor.Get(key, replyTo),
+                timeout,
+                system.scheduler())
+            .toCompletableFuture()
+            .join();
+    return value.value;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt =
+        new OptionsBuilder()
+            .include(CachePartitionBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+    new Runner(opt).run();
+  }
+}
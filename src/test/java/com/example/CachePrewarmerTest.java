@@ -0,0 +1,96 @@
+package com.example;
+
+import akka.actor.testkit.typed.javadsl.ActorTestKit;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.actor.typed.ActorRef;
+import com.example.cache.CacheValue;
+import com.typesafe.config.ConfigFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+// 使用 Redis 替身验证启动预热只加载匹配的键、保留 TTL, 并在完成后报告就绪
+public class CachePrewarmerTest {
+
+  private static RedisStandIn redis;
+  private static ActorTestKit testKit;
+
+  @BeforeClass
+  public static void setup() throws Exception {
+    redis = new RedisStandIn().start();
+    for (int i = 0; i < 300; i++) {
+      redis.set("warm:" + i, ("value-" + i).getBytes(StandardCharsets.UTF_8));
+    }
+    for (int i = 0; i < 50; i++) {
+      redis.set("other:" + i, "ignored".getBytes(StandardCharsets.UTF_8));
+    }
+    redis.set("warm:ttl", "short".getBytes(StandardCharsets.UTF_8), 60_000);
+    testKit =
+        ActorTestKit.create(
+            ConfigFactory.parseString(
+                    "akka-http-example {\n"
+                        + "  cache.partitions = 2\n"
+                        + "  cache.prewarm.enabled = on\n"
+                        + "  cache.prewarm.match = [\"warm:*\"]\n"
+                        + "  cache.prewarm.scan-count = 40\n"
+                        + "  cache.prewarm.mget-size = 16\n"
+                        + "  redis.port = "
+                        + redis.port()
+                        + "\n"
+                        + "}")
+                .withFallback(ConfigFactory.load()));
+  }
+
+  @AfterClass
+  public static void teardown() {
+    testKit.shutdownTestKit();
+    redis.close();
+  }
+
+  @Test
+  public void testPrewarmLoadsMatchingKeysAndBecomesReady() {
+    ActorRef<SupervisorActor.Command> supervisor = testKit.spawn(SupervisorActor.create());
+    TestProbe<CachePrewarmer.Status> statusProbe = testKit.createTestProbe();
+    CachePrewarmer.Status status =
+        statusProbe.awaitAssert(
+            Duration.ofSeconds(10),
+            () -> {
+              supervisor.tell(new SupervisorActor.GetPrewarmStatus(statusProbe.getRef()));
+              CachePrewarmer.Status current = statusProbe.receiveMessage();
+              assertEquals(CachePrewarmer.State.DONE, current.state);
+              return current;
+            });
+    assertTrue(status.ready);
+    assertEquals(301, status.scanned);
+    assertEquals(301, status.loaded);
+    // DBSIZE 包含不匹配的键
+    assertEquals(351, status.target);
+
+    TestProbe<CachePartitions> partitionsProbe = testKit.createTestProbe();
+    supervisor.tell(new SupervisorActor.GetCachePartitions(partitionsProbe.getRef()));
+    CachePartitions partitions = partitionsProbe.receiveMessage();
+    for (int i = 0; i < 300; i++) {
+      assertEquals(CacheValue.of("value-" + i), partitions.readLocal("warm:" + i));
+    }
+    assertNull(partitions.readLocal("other:0"));
+
+    // Redis 中的剩余存活时间被保留
+    TestProbe<CacheActor.ExportedEntries> exportProbe = testKit.createTestProbe();
+    partitions.forKey("warm:ttl").tell(new CacheActor.ExportEntries(exportProbe.getRef()));
+    long expireAtMillis =
+        exportProbe.receiveMessage().entries.stream()
+            .filter(entry -> entry.key.equals("warm:ttl"))
+            .findFirst()
+            .get()
+            .expireAtMillis;
+    assertTrue(expireAtMillis > System.currentTimeMillis());
+    assertTrue(expireAtMillis <= System.currentTimeMillis() + 60_000);
+  }
+}
@@ -0,0 +1,121 @@
+package com.example;
+
+import akka.util.ByteString;
+import com.example.cache.CacheSnapshot;
+import com.example.cache.CacheValue;
+import com.example.cache.LocalCache;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地缓存快照的写入和恢复耗时: 每次调用完整地写入或读取一个 entries 个条目(值约 100 字节)的快照.
+ * testLoad 为热启动时单个分区的恢复耗时(解码并写入新的本地缓存), testDecode 只计解码.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 1)
+@Measurement(iterations = 5)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class CacheSnapshotBenchmark {
+
+  private static final int VALUE_SIZE = 100;
+
+  @Param({"1000000", "10000000"})
+  public int entries;
+
+  private LocalCache source;
+  private Path directory;
+  private Path snapshot;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    source = new LocalCache(entries, Long.MAX_VALUE);
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    for (int i = 0; i < entries; i++) {
+      byte[] bytes = new byte[VALUE_SIZE];
+      random.nextBytes(bytes);
+      CacheValue value =
+          new CacheValue(ByteString.fromArrayUnsafe(bytes), CacheValue.TEXT_PLAIN_UTF8);
+      // 一半的条目带 TTL
+      source.put("snapshot-key-" + i, value, i % 2 == 0 ? 0 : TimeUnit.HOURS.toNanos(1));
+    }
+    directory = Files.createTempDirectory("cache-snapshot-benchmark");
+    snapshot = directory.resolve("cache.snapshot");
+    write();
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(snapshot);
+    Files.deleteIfExists(directory);
+  }
+
+  @Benchmark
+  public long testWrite() throws IOException {
+    return write();
+  }
+
+  @Benchmark
+  public long testDecode() throws IOException {
+    long size = 0;
+    try (CacheSnapshot.Reader reader = CacheSnapshot.Reader.open(snapshot)) {
+      while (reader.hasNext()) {
+        size += reader.next().value.size();
+      }
+    }
+    return size;
+  }
+
+  @Benchmark
+  public int testLoad() throws IOException {
+    LocalCache cache = new LocalCache(entries, Long.MAX_VALUE);
+    long nowMillis = System.currentTimeMillis();
+    try (CacheSnapshot.Reader reader = CacheSnapshot.Reader.open(snapshot)) {
+      while (reader.hasNext()) {
+        CacheSnapshot.Entry entry = reader.next();
+        long ttlNanos =
+            entry.expireAtMillis == 0
+                ? 0
+                : TimeUnit.MILLISECONDS.toNanos(entry.expireAtMillis - nowMillis);
+        cache.put(entry.key, entry.value, ttlNanos);
+      }
+    }
+    return cache.size();
+  }
+
+  private long write() throws IOException {
+    long nowMillis = System.currentTimeMillis();
+    try (CacheSnapshot.Writer writer = CacheSnapshot.Writer.create(snapshot)) {
+      source.forEach(
+          (key, value, ttlNanos) -> {
+            long expireAtMillis =
+                ttlNanos == 0 ? 0 : nowMillis + TimeUnit.NANOSECONDS.toMillis(ttlNanos);
+            try {
+              writer.write(key, value, expireAtMillis);
+            } catch (IOException e) {
+              throw new RuntimeException(e);
+            }
+          });
+      return writer.commit();
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt =
+        new OptionsBuilder().include(CacheSnapshotBenchmark.class.getSimpleName()).build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,107 @@
+package com.example;
+
+import akka.actor.testkit.typed.javadsl.ActorTestKit;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.actor.typed.ActorRef;
+import com.example.cache.CacheSnapshot;
+import com.example.cache.CacheValue;
+import org.junit.AfterClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class CacheSnapshotterTest {
+
+  private static final ActorTestKit testKit = ActorTestKit.create();
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @AfterClass
+  public static void teardown() {
+    testKit.shutdownTestKit();
+  }
+
+  @Test
+  public void testRestoresSnapshotIntoDifferentNumberOfPartitions() throws Exception {
+    Path path = folder.getRoot().toPath().resolve("cache.snapshot");
+    SnapshotSettings settings =
+        SnapshotSettings.create(testKit.system().settings().config()).withPath(path);
+
+    CachePartitions before = partitionsOf(testKit.spawn(SupervisorActor.create(2)));
+    int keys = 500;
+    for (int i = 0; i < keys; i++) {
+      before.forKey("key-" + i).tell(new CacheActor.Put("key-" + i, "value-" + i));
+    }
+    before
+        .forKey("ttl")
+        .tell(new CacheActor.Put("ttl", CacheValue.of("value"), Duration.ofMinutes(10)));
+    long written =
+        new CacheSnapshotter(testKit.system(), before, settings)
+            .write()
+            .toCompletableFuture()
+            .get();
+    assertEquals(keys + 1, written);
+
+    // 重新部署: 新的分区数量, 空的本地缓存
+    CachePartitions after = partitionsOf(testKit.spawn(SupervisorActor.create(3)));
+    long loaded =
+        new CacheSnapshotter(testKit.system(), after, settings)
+            .load()
+            .toCompletableFuture()
+            .get();
+    assertEquals(keys + 1, loaded);
+
+    TestProbe<CacheActor.Value> probe = testKit.createTestProbe();
+    for (int i = 0; i < keys; i++) {
+      after.forKey("key-" + i).tell(new CacheActor.Get("key-" + i, probe.getRef()));
+      assertEquals(CacheValue.of("value-" + i), probe.receiveMessage().value);
+    }
+    after.forKey("ttl").tell(new CacheActor.Get("ttl", probe.getRef()));
+    assertEquals(CacheValue.of("value"), probe.receiveMessage().value);
+
+    // 所有读取都命中本地缓存, 没有查询 Redis
+    TestProbe<CacheActor.Stats> statsProbe = testKit.createTestProbe();
+    for (ActorRef<CacheActor.Command> partition : after.all()) {
+      partition.tell(new CacheActor.GetStats(statsProbe.getRef()));
+      assertEquals(0, statsProbe.receiveMessage().redisLookupCount);
+    }
+  }
+
+  @Test
+  public void testSkipsExpiredEntriesAndMissingSnapshot() throws Exception {
+    Path path = folder.getRoot().toPath().resolve("cache.snapshot");
+    SnapshotSettings settings =
+        SnapshotSettings.create(testKit.system().settings().config()).withPath(path);
+    CachePartitions partitions = partitionsOf(testKit.spawn(SupervisorActor.create(1)));
+    CacheSnapshotter snapshotter = new CacheSnapshotter(testKit.system(), partitions, settings);
+    assertEquals(0L, (long) snapshotter.load().toCompletableFuture().get());
+
+    try (CacheSnapshot.Writer writer = CacheSnapshot.Writer.create(path)) {
+      writer.write("expired", CacheValue.of("old"), System.currentTimeMillis() - 1000);
+      writer.write("live", CacheValue.of("new"), System.currentTimeMillis() + 60_000);
+      writer.commit();
+    }
+    assertEquals(1L, (long) snapshotter.load().toCompletableFuture().get());
+
+    TestProbe<CacheActor.Stats> statsProbe = testKit.createTestProbe();
+    partitions.all().get(0).tell(new CacheActor.GetStats(statsProbe.getRef()));
+    assertEquals(1, statsProbe.receiveMessage().size);
+    TestProbe<CacheActor.ExportedEntries> exportProbe = testKit.createTestProbe();
+    partitions.all().get(0).tell(new CacheActor.ExportEntries(exportProbe.getRef()));
+    CacheSnapshot.Entry live = exportProbe.receiveMessage().entries.get(0);
+    assertEquals("live", live.key);
+    assertTrue(live.expireAtMillis > System.currentTimeMillis());
+  }
+
+  private static CachePartitions partitionsOf(ActorRef<SupervisorActor.Command> supervisor) {
+    TestProbe<CachePartitions> probe = testKit.createTestProbe();
+    supervisor.tell(new SupervisorActor.GetCachePartitions(probe.getRef()));
+    return probe.receiveMessage();
+  }
+}
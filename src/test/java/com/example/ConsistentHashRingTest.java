@@ -0,0 +1,56 @@
+package com.example;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ConsistentHashRingTest {
+
+  @Test
+  public void testSinglePartition() {
+    ConsistentHashRing ring = new ConsistentHashRing(1);
+    assertEquals(0, ring.partitionFor("any-key"));
+  }
+
+  @Test
+  public void testSameKeyAlwaysSamePartition() {
+    ConsistentHashRing ring = new ConsistentHashRing(8);
+    for (int i = 0; i < 1000; i++) {
+      String key = "key-" + i;
+      assertEquals(ring.partitionFor(key), new ConsistentHashRing(8).partitionFor(key));
+    }
+  }
+
+  @Test
+  public void testKeysSpreadAcrossPartitions() {
+    int partitions = 8;
+    int keys = 80_000;
+    ConsistentHashRing ring = new ConsistentHashRing(partitions);
+    int[] counts = new int[partitions];
+    for (int i = 0; i < keys; i++) {
+      counts[ring.partitionFor("key-" + i)]++;
+    }
+    // 每个分区分到的键应该在平均值的 ±30% 以内
+    int expected = keys / partitions;
+    for (int count : counts) {
+      assertTrue("分区键数量偏差过大: " + count, Math.abs(count - expected) < expected * 0.3);
+    }
+  }
+
+  @Test
+  public void testAddingPartitionMovesFewKeys() {
+    ConsistentHashRing before = new ConsistentHashRing(4);
+    ConsistentHashRing after = new ConsistentHashRing(5);
+    int keys = 10_000;
+    int moved = 0;
+    for (int i = 0; i < keys; i++) {
+      String key = "key-" + i;
+      if (before.partitionFor(key) != after.partitionFor(key)) {
+        moved++;
+      }
+    }
+    // 理想情况下只有约 1/5 的键需要迁移
+    assertTrue("迁移的键过多: " + moved, moved < keys * 0.3);
+  }
+}
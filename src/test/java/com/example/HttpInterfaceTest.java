@@ -84,12 +84,12 @@ public class HttpInterfaceTest {
     CompletionStage<HttpResponse> putResponse = http.singleRequest(putRequest);
     HttpResponse putHttpResponse = putResponse.toCompletableFuture().join();
 
-    // 注意：由于 Redis 可能不可用，这里可能会返回 500 错误
+    // 注意：写入在 Redis 确认后才返回 200，Redis 不可用时返回 503
     // 我们只测试 HTTP 接口是否能正常响应
     assertTrue(
-        "响应状态码应该是 200 或 500",
+        "响应状态码应该是 200 或 503",
         putHttpResponse.status() == StatusCodes.OK
-            || putHttpResponse.status() == StatusCodes.INTERNAL_SERVER_ERROR);
+            || putHttpResponse.status() == StatusCodes.SERVICE_UNAVAILABLE);
   }
 
   @Test
@@ -0,0 +1,212 @@
+package com.example;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.AskPattern;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.http.javadsl.Http;
+import akka.http.javadsl.ServerBinding;
+import akka.http.javadsl.model.HttpRequest;
+import akka.http.javadsl.model.HttpResponse;
+import akka.http.javadsl.model.ResponseFuture;
+import akka.stream.BoundedSourceQueue;
+import akka.stream.QueueOfferResult;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 在高并发下比较 HTTP/1.1 和 HTTP/2 (h2c prior knowledge) 访问 GET /cache/{key} 本地命中的吞吐量.
+ * 服务器与 {@link HttpServer} 相同(完整路由, 按 akka-http-example.server 配置绑定到随机端口),
+ * 第二级存储使用 memory 引擎; 客户端使用单独的 ActorSystem, 同一个 JVM 中经过本机回环.
+ *
+ * <ul>
+ *   <li>http1: 连接池中最多 connections 个连接, 每个连接同时只有一个请求(客户端不使用流水线)
+ *   <li>http2: connections 个持久的 HTTP/2 连接, 请求轮流分配, 每个连接上多路复用
+ * </ul>
+ *
+ * <p>main 依次以 64 和 256 个线程运行, 每个线程同步等待自己的响应, 线程数即并发请求数.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(1)
+public class HttpProtocolBenchmark {
+
+  private static final int KEY_COUNT = 4096;
+  private static final int[] THREAD_COUNTS = {64, 256};
+  private static final int QUEUE_SIZE = 4096;
+  private static final Duration TIMEOUT = Duration.ofSeconds(10);
+
+  @Param({"http1", "http2"})
+  public String protocol;
+
+  @Param({"4", "64"})
+  public int connections;
+
+  private ActorSystem<SupervisorActor.Command> server;
+  private ServerBinding binding;
+  private ActorSystem<Void> client;
+  private Http http;
+  private HttpRequest[] requests;
+  private final List<BoundedSourceQueue<HttpRequest>> http2Connections = new ArrayList<>();
+
+  @Setup(Level.Trial)
+  public void setup() {
+    Config config =
+        ConfigFactory.parseString("akka-http-example.store.engine = memory")
+            .withFallback(ConfigFactory.load());
+    server = ActorSystem.create(SupervisorActor.create(), "HttpProtocolBenchmark", config);
+    preload();
+    HttpServerSettings settings =
+        HttpServerSettings.create(config).withHost("127.0.0.1").withPort(0).withHttp2(true);
+    binding =
+        HttpServer.bind(server, settings, new SimpleHttpRoutes(server, server).createRoute())
+            .toCompletableFuture()
+            .join();
+    int port = binding.localAddress().getPort();
+
+    // 等待中的请求全部进入连接池的队列, 不因 max-open-requests 溢出而失败
+    Config clientConfig =
+        ConfigFactory.parseString(
+                "akka.http.host-connection-pool { max-connections = "
+                    + connections
+                    + ", max-open-requests = "
+                    + QUEUE_SIZE
+                    + " }")
+            .withFallback(ConfigFactory.load());
+    client = ActorSystem.create(Behaviors.empty(), "HttpProtocolBenchmarkClient", clientConfig);
+    http = Http.get(client);
+
+    requests = new HttpRequest[KEY_COUNT];
+    for (int i = 0; i < KEY_COUNT; i++) {
+      String path = "/cache/key-" + i;
+      requests[i] =
+          protocol.equals("http2")
+              ? HttpRequest.GET(path)
+              : HttpRequest.GET("http://127.0.0.1:" + port + path);
+    }
+    if (protocol.equals("http2")) {
+      for (int i = 0; i < connections; i++) {
+        http2Connections.add(
+            Source.<HttpRequest>queue(QUEUE_SIZE)
+                .via(
+                    http.connectionTo("127.0.0.1")
+                        .toPort(port)
+                        .managedPersistentHttp2WithPriorKnowledge())
+                .to(
+                    Sink.foreach(
+                        response ->
+                            response
+                                .getAttribute(ResponseFuture.KEY())
+                                .get()
+                                .future()
+                                .complete(response)))
+                .run(client));
+      }
+    }
+  }
+
+  // 通过分区直接写入本地缓存, 所有请求都是本地命中
+  private void preload() {
+    CachePartitions partitions =
+        AskPattern.<SupervisorActor.Command, CachePartitions>ask(
+                server, SupervisorActor.GetCachePartitions::new, TIMEOUT, server.scheduler())
+            .toCompletableFuture()
+            .join();
+    List<CacheActor.Put> puts = new ArrayList<>(KEY_COUNT);
+    for (int i = 0; i < KEY_COUNT; i++) {
+      puts.add(new CacheActor.Put("key-" + i, "value-" + i));
+    }
+    partitions
+        .groupByPartition(puts, put -> put.key)
+        .forEach(
+            (partition, partitionPuts) ->
+                AskPattern.<CacheActor.Command, CacheActor.MultiPutResult>ask(
+                        partition,
+                        replyTo -> new CacheActor.MultiPut(partitionPuts, replyTo),
+                        TIMEOUT,
+                        server.scheduler())
+                    .toCompletableFuture()
+                    .join());
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    for (BoundedSourceQueue<HttpRequest> connection : http2Connections) {
+      connection.complete();
+    }
+    http2Connections.clear();
+    if (client != null) {
+      http.shutdownAllConnectionPools().toCompletableFuture().join();
+      client.terminate();
+      client.getWhenTerminated().toCompletableFuture().join();
+    }
+    if (binding != null) {
+      binding.unbind().toCompletableFuture().join();
+    }
+    if (server != null) {
+      server.terminate();
+      server.getWhenTerminated().toCompletableFuture().join();
+    }
+  }
+
+  @Benchmark
+  public int testGet() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    HttpRequest request = requests[random.nextInt(KEY_COUNT)];
+    CompletionStage<HttpResponse> response =
+        protocol.equals("http2")
+            ? sendHttp2(request, http2Connections.get(random.nextInt(connections)))
+            : http.singleRequest(request);
+    HttpResponse strict =
+        response
+            .thenCompose(r -> r.toStrict(TIMEOUT.toMillis(), client))
+            .toCompletableFuture()
+            .join();
+    int status = strict.status().intValue();
+    if (status != 200) {
+      throw new IllegalStateException("本地命中返回了 " + status);
+    }
+    return status;
+  }
+
+  // 响应可能乱序返回, 通过请求上的 ResponseFuture 属性对应到各自的请求
+  private static CompletionStage<HttpResponse> sendHttp2(
+      HttpRequest request, BoundedSourceQueue<HttpRequest> connection) {
+    CompletableFuture<HttpResponse> future = new CompletableFuture<>();
+    QueueOfferResult result =
+        connection.offer(request.addAttribute(ResponseFuture.KEY(), ResponseFuture.apply(future)));
+    if (result != QueueOfferResult.enqueued()) {
+      future.completeExceptionally(new IllegalStateException("HTTP/2 请求队列已满: " + result));
+    }
+    return future;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    for (int threads : THREAD_COUNTS) {
+      Options opt =
+          new OptionsBuilder()
+              .include(HttpProtocolBenchmark.class.getSimpleName())
+              .threads(threads)
+              .build();
+
+      new Runner(opt).run();
+    }
+  }
+}
@@ -0,0 +1,124 @@
+package com.example;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.http.javadsl.Http;
+import akka.http.javadsl.ServerBinding;
+import akka.http.javadsl.model.HttpEntity;
+import akka.http.javadsl.model.HttpProtocols;
+import akka.http.javadsl.model.HttpRequest;
+import akka.http.javadsl.model.HttpResponse;
+import akka.stream.javadsl.Sink;
+import akka.stream.javadsl.Source;
+import com.example.routing.HelloRouteDefinition;
+import com.typesafe.config.ConfigFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertThrows;
+
+public class HttpServerTest {
+
+  private static ActorSystem<Void> system;
+  private static ServerBinding binding;
+  private static int port;
+
+  @BeforeClass
+  public static void setup() {
+    system = ActorSystem.create(Behaviors.empty(), "HttpServerTest");
+    HttpServerSettings settings =
+        HttpServerSettings.create(system.settings().config()).withHost("127.0.0.1").withPort(0);
+    binding =
+        HttpServer.bind(system, settings, new HelloRouteDefinition().createRoute())
+            .toCompletableFuture()
+            .join();
+    port = binding.localAddress().getPort();
+  }
+
+  @AfterClass
+  public static void teardown() {
+    if (binding != null) {
+      binding.unbind().toCompletableFuture().join();
+    }
+    if (system != null) {
+      system.terminate();
+      system.getWhenTerminated().toCompletableFuture().join();
+    }
+  }
+
+  @Test
+  public void testServesHttp11AndPriorKnowledgeHttp2OnSamePort() {
+    Http http = Http.get(system);
+    HttpResponse http11 =
+        http.singleRequest(HttpRequest.GET("http://127.0.0.1:" + port + "/hello"))
+            .toCompletableFuture()
+            .join();
+    assertEquals(200, http11.status().intValue());
+    assertEquals(HttpProtocols.HTTP_1_1, http11.protocol());
+    http11.discardEntityBytes(system);
+
+    // 请求源完成后连接随之关闭, 保持打开直到读完响应体
+    HttpResponse http2 =
+        Source.single(HttpRequest.GET("/hello"))
+            .concat(Source.maybe())
+            .via(http.connectionTo("127.0.0.1").toPort(port).http2WithPriorKnowledge())
+            .mapAsync(1, response -> response.toStrict(5000, system))
+            .runWith(Sink.head(), system)
+            .toCompletableFuture()
+            .join();
+    assertEquals(200, http2.status().intValue());
+    assertEquals("HTTP/2.0", http2.protocol().value());
+    assertEquals(
+        "Hello World from Akka HTTP!",
+        ((HttpEntity.Strict) http2.entity()).getData().utf8String());
+  }
+
+  @Test
+  public void testUpgradesToH2c() throws IOException {
+    try (Socket socket = new Socket("127.0.0.1", port)) {
+      socket.setSoTimeout(5000);
+      // HTTP2-Settings 为空的 SETTINGS 帧负载
+      String upgrade =
+          "GET /hello HTTP/1.1\r\nHost: 127.0.0.1\r\nConnection: Upgrade, HTTP2-Settings\r\n"
+              + "Upgrade: h2c\r\nHTTP2-Settings: \r\n\r\n";
+      socket.getOutputStream().write(upgrade.getBytes(StandardCharsets.US_ASCII));
+      BufferedReader reader =
+          new BufferedReader(
+              new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+      assertEquals("HTTP/1.1 101 Switching Protocols", reader.readLine());
+    }
+  }
+
+  @Test
+  public void testSettingsFromConfig() {
+    HttpServerSettings settings =
+        HttpServerSettings.create(
+            ConfigFactory.parseString(
+                    "akka-http-example.server { host = \"0.0.0.0\", port = 9090,"
+                        + " http2.enabled = off, pipelining-limit = 8, idle-timeout = 0 }")
+                .withFallback(ConfigFactory.load()));
+    assertEquals("0.0.0.0", settings.host);
+    assertEquals(9090, settings.port);
+    assertEquals(false, settings.http2);
+    assertEquals(8, settings.pipeliningLimit);
+    assertEquals(Duration.ZERO, settings.idleTimeout);
+
+    akka.http.javadsl.settings.ServerSettings applied =
+        settings.applyTo(akka.http.javadsl.settings.ServerSettings.create(ConfigFactory.load()));
+    assertEquals(false, applied.getPreviewServerSettings().enableHttp2());
+    assertEquals(8, applied.getPipeliningLimit());
+    assertEquals(settings.maxConnections, applied.getMaxConnections());
+    assertEquals(false, applied.getTimeouts().idleTimeout().isFinite());
+
+    assertThrows(IllegalArgumentException.class, () -> settings.withPort(70000));
+  }
+}
@@ -0,0 +1,80 @@
+package com.example;
+
+import akka.util.ByteString;
+import com.example.cache.CacheValue;
+import com.example.cache.LocalCache;
+import com.example.cache.SlabStore;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地缓存的值保存在堆上和堆外 slab 中的对比. 缓存预先填满 1 KiB 左右的值, 测量 90% 读取、10% 替换的混合负载;
+ * 配合 -prof gc 比较两种方式的 GC 次数和时间(gc.count / gc.time)以及分配速率.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Fork(
+    value = 1,
+    jvmArgsAppend = {"-Xms1g", "-Xmx1g", "-XX:MaxDirectMemorySize=1g"})
+public class OffHeapCacheBenchmark {
+
+  private static final int ENTRIES = 400_000;
+  private static final int VALUE_SIZE = 1024;
+
+  @Param({"false", "true"})
+  public boolean offHeap;
+
+  private LocalCache cache;
+  private String[] keys;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    long maxBytes = 2L * ENTRIES * (VALUE_SIZE + 256);
+    SlabStore slabs = offHeap ? SlabStore.direct(maxBytes, 1024 * 1024) : null;
+    cache = new LocalCache(ENTRIES, maxBytes, slabs);
+    keys = new String[ENTRIES];
+    for (int i = 0; i < ENTRIES; i++) {
+      keys[i] = "benchmark-key-" + i;
+      cache.put(keys[i], randomValue());
+    }
+  }
+
+  @Benchmark
+  public CacheValue testMixedReadWrite() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    String key = keys[random.nextInt(ENTRIES)];
+    if (random.nextInt(10) == 0) {
+      cache.put(key, randomValue());
+      return null;
+    }
+    return cache.get(key);
+  }
+
+  // 值的大小在 VALUE_SIZE 上下浮动, 使替换时块会在不同大小级别之间移动
+  private static CacheValue randomValue() {
+    ThreadLocalRandom random = ThreadLocalRandom.current();
+    byte[] bytes = new byte[VALUE_SIZE / 2 + random.nextInt(VALUE_SIZE)];
+    random.nextBytes(bytes);
+    return new CacheValue(ByteString.fromArrayUnsafe(bytes), "application/octet-stream");
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt =
+        new OptionsBuilder()
+            .include(OffHeapCacheBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,373 @@
+package com.example;
+
+import akka.Done;
+import akka.actor.testkit.typed.javadsl.ActorTestKit;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.actor.typed.ActorRef;
+import akka.pattern.StatusReply;
+import com.example.cache.CacheValue;
+import com.example.store.BackingStore;
+import com.example.store.BackingStoreException;
+import com.example.store.InMemoryStore;
+import com.typesafe.config.ConfigFactory;
+import org.junit.AfterClass;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class RedisActorTest {
+
+  private static final ActorTestKit testKit =
+      ActorTestKit.create(
+          ConfigFactory.parseString(
+                  "akka-http-example.redis { write-mode = write-behind, write-behind {"
+                      + " max-batch = 4, min-backoff = 50ms, max-backoff = 200ms } }")
+              .withFallback(ConfigFactory.load()));
+
+  @AfterClass
+  public static void teardown() {
+    testKit.shutdownTestKit();
+  }
+
+  // 写入在 failing 为 true 时失败, 模拟暂时不可用的存储; error 不为 null 时读写都抛出它
+  private static final class FlakyStore implements BackingStore {
+    final InMemoryStore delegate = new InMemoryStore(100);
+    // 调用 putAll 的次数
+    final AtomicInteger batches = new AtomicInteger();
+    // 每次 getEntries 读取的键数量
+    final List<Integer> getBatches = new CopyOnWriteArrayList<>();
+    // 按调用顺序记录成功写入的值
+    final List<Write> writes = new CopyOnWriteArrayList<>();
+    // 写入 blockedKey 的调用在 released 之前阻塞, entered 表示已经进入阻塞
+    volatile String blockedKey;
+    final CountDownLatch entered = new CountDownLatch(1);
+    final CountDownLatch released = new CountDownLatch(1);
+    volatile boolean failing;
+    volatile RuntimeException error;
+
+    @Override
+    public List<Read> getEntries(List<String> keys) {
+      getBatches.add(keys.size());
+      if (error != null) {
+        throw error;
+      }
+      return delegate.getEntries(keys);
+    }
+
+    @Override
+    public void put(String key, CacheValue value, Duration ttl) {
+      putAll(List.of(new Write(key, value, ttl)));
+    }
+
+    @Override
+    public void putAll(List<Write> writes) {
+      batches.incrementAndGet();
+      for (Write write : writes) {
+        if (write.key.equals(blockedKey)) {
+          entered.countDown();
+          await(released);
+        }
+      }
+      if (failing) {
+        throw new BackingStoreException("存储不可用", null);
+      }
+      if (error != null) {
+        throw error;
+      }
+      delegate.putAll(writes);
+      this.writes.addAll(writes);
+    }
+
+    @Override
+    public void close() {
+      delegate.close();
+    }
+  }
+
+  private static void await(CountDownLatch latch) {
+    try {
+      assertTrue(latch.await(10, TimeUnit.SECONDS));
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException(e);
+    }
+  }
+
+  @Test
+  public void testWriteBehindRetriesAcrossFailuresAndRestarts() {
+    FlakyStore store = new FlakyStore();
+    store.failing = true;
+    ActorRef<CacheActor.Command> redisActor =
+        testKit.spawn(
+            RedisActor.create(store, RedisSettings.create(testKit.system().settings().config())));
+    TestProbe<StatusReply<Done>> ackProbe = testKit.createTestProbe();
+
+    // write-behind 进入队列即确认, 此时存储仍不可用
+    for (int i = 0; i < 3; i++) {
+      redisActor.tell(
+          new CacheActor.Put("wb-" + i, CacheValue.of("v" + i), null, ackProbe.getRef()));
+      ackProbe.expectMessage(StatusReply.ack());
+    }
+    // 多次重试失败, 期间工作者重启, 已确认的写入不能丢失
+    ackProbe.expectNoMessage(Duration.ofMillis(300));
+    redisActor.tell(new CacheActor.SimulateFailure());
+    ackProbe.expectNoMessage(Duration.ofMillis(100));
+    assertEquals(0, store.delegate.size());
+
+    store.failing = false;
+    ackProbe.awaitAssert(
+        Duration.ofSeconds(3),
+        () -> {
+          assertEquals(3, store.delegate.size());
+          for (int i = 0; i < 3; i++) {
+            assertEquals(CacheValue.of("v" + i), store.get("wb-" + i));
+          }
+          return null;
+        });
+  }
+
+  @Test
+  public void testUnexpectedStoreErrorsUseBackoffAndUnavailableReplies() {
+    FlakyStore store = new FlakyStore();
+    store.error = new IllegalStateException("WRONGTYPE");
+    ActorRef<CacheActor.Command> redisActor =
+        testKit.spawn(
+            RedisActor.create(store, RedisSettings.create(testKit.system().settings().config())));
+    TestProbe<StatusReply<Done>> ackProbe = testKit.createTestProbe();
+    TestProbe<CacheActor.Value> valueProbe = testKit.createTestProbe();
+
+    redisActor.tell(new CacheActor.Put("error-key", CacheValue.of("v"), null, ackProbe.getRef()));
+    ackProbe.expectMessage(StatusReply.ack());
+    // 读取不是 BackingStoreException 的异常时也立即回复不可用
+    redisActor.tell(new CacheActor.Get("other-key", valueProbe.getRef()));
+    assertSame(CacheActor.Value.UNAVAILABLE, valueProbe.receiveMessage());
+
+    // 写入按退避重试, 存储恢复后写入
+    ackProbe.expectNoMessage(Duration.ofMillis(300));
+    store.error = null;
+    ackProbe.awaitAssert(
+        Duration.ofSeconds(3),
+        () -> {
+          assertEquals(CacheValue.of("v"), store.get("error-key"));
+          return null;
+        });
+    redisActor.tell(new CacheActor.Get("error-key", valueProbe.getRef()));
+    assertEquals(CacheValue.of("v"), valueProbe.receiveMessage().value);
+  }
+
+  @Test
+  public void testWriteBehindRejectsNewKeysWhileStoreIsFailing() {
+    FlakyStore store = new FlakyStore();
+    store.failing = true;
+    ActorRef<CacheActor.Command> redisActor =
+        testKit.spawn(
+            RedisActor.create(store, RedisSettings.create(testKit.system().settings().config())));
+    TestProbe<StatusReply<Done>> ackProbe = testKit.createTestProbe();
+
+    // 达到 max-batch 时同步写入失败, 进入退避; 之后待写入的数据不再增长
+    int accepted = 0;
+    for (int i = 0; i < 10; i++) {
+      redisActor.tell(
+          new CacheActor.Put("bounded-" + i, CacheValue.of("v" + i), null, ackProbe.getRef()));
+      if (ackProbe.receiveMessage().isSuccess()) {
+        accepted++;
+      }
+    }
+    assertEquals(4, accepted);
+    // 已经待写入的键仍然可以更新
+    redisActor.tell(
+        new CacheActor.Put("bounded-0", CacheValue.of("updated"), null, ackProbe.getRef()));
+    ackProbe.expectMessage(StatusReply.ack());
+
+    store.failing = false;
+    ackProbe.awaitAssert(
+        Duration.ofSeconds(3),
+        () -> {
+          assertEquals(4, store.delegate.size());
+          assertEquals(CacheValue.of("updated"), store.get("bounded-0"));
+          return null;
+        });
+  }
+
+  @Test
+  public void testPutAllIsOneStoreWritePerWorker() {
+    FlakyStore store = new FlakyStore();
+    RedisSettings settings =
+        RedisSettings.create(
+            ConfigFactory.parseString(
+                    "akka-http-example.redis { write-mode = write-through, workers = 2 }")
+                .withFallback(testKit.system().settings().config()));
+    ActorRef<CacheActor.Command> pool = testKit.spawn(RedisActor.createPool(store, settings));
+    TestProbe<CacheActor.MultiPutResult> ackProbe = testKit.createTestProbe();
+
+    List<CacheActor.Put> puts = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      puts.add(new CacheActor.Put("all-" + i, CacheValue.of("v" + i)));
+    }
+    // 同一批中重复的键只写入最后一次
+    puts.add(new CacheActor.Put("all-0", CacheValue.of("latest")));
+    pool.tell(new CacheActor.PutAll(puts, ackProbe.getRef()));
+
+    assertEquals(0, ackProbe.receiveMessage().failures);
+    // 20 个键按一致性哈希分给 2 个工作者, 每个工作者一次批量写入
+    assertEquals(2, store.batches.get());
+    assertEquals(20, store.delegate.size());
+    assertEquals(CacheValue.of("latest"), store.get("all-0"));
+
+    store.failing = true;
+    pool.tell(new CacheActor.PutAll(puts, ackProbe.getRef()));
+    assertEquals(puts.size(), ackProbe.receiveMessage().failures);
+  }
+
+  @Test
+  public void testGetsWithinLingerAreOneMget() {
+    FlakyStore store = new FlakyStore();
+    ActorRef<CacheActor.Command> redisActor =
+        testKit.spawn(RedisActor.create(store, batchSettings(8, Duration.ofMillis(500))));
+    store.delegate.put("mget-a", CacheValue.of("a"), null);
+    store.delegate.put("mget-b", CacheValue.of("b"), null);
+    TestProbe<CacheActor.Value> first = testKit.createTestProbe();
+    TestProbe<CacheActor.Value> second = testKit.createTestProbe();
+    TestProbe<CacheActor.Value> third = testKit.createTestProbe();
+    TestProbe<CacheActor.Value> missing = testKit.createTestProbe();
+
+    redisActor.tell(new CacheActor.Get("mget-a", first.getRef()));
+    redisActor.tell(new CacheActor.Get("mget-b", second.getRef()));
+    // 同一个键的两个 Get 各自得到回复
+    redisActor.tell(new CacheActor.Get("mget-a", third.getRef()));
+    redisActor.tell(new CacheActor.Get("mget-missing", missing.getRef()));
+    // linger 到期之前不读取存储
+    first.expectNoMessage(Duration.ofMillis(200));
+    assertEquals(List.of(), store.getBatches);
+
+    assertEquals(CacheValue.of("a"), first.receiveMessage(Duration.ofSeconds(3)).value);
+    assertEquals(CacheValue.of("b"), second.receiveMessage().value);
+    assertEquals(CacheValue.of("a"), third.receiveMessage().value);
+    assertNull(missing.receiveMessage().value);
+    assertEquals(List.of(4), store.getBatches);
+  }
+
+  @Test
+  public void testBatchMaxSizeFlushesWithoutWaitingForLinger() {
+    FlakyStore store = new FlakyStore();
+    ActorRef<CacheActor.Command> redisActor =
+        testKit.spawn(RedisActor.create(store, batchSettings(3, Duration.ofSeconds(2))));
+    List<TestProbe<CacheActor.Value>> probes = new ArrayList<>();
+    for (int i = 0; i < 4; i++) {
+      store.delegate.put("max-" + i, CacheValue.of("v" + i), null);
+      TestProbe<CacheActor.Value> probe = testKit.createTestProbe();
+      probes.add(probe);
+      redisActor.tell(new CacheActor.Get("max-" + i, probe.getRef()));
+    }
+
+    // 前 3 个 Get 达到 max-size 立即读取, 远早于 2 秒的 linger
+    for (int i = 0; i < 3; i++) {
+      assertEquals(
+          CacheValue.of("v" + i), probes.get(i).receiveMessage(Duration.ofMillis(1000)).value);
+    }
+    assertEquals(List.of(3), store.getBatches);
+    // 第 4 个 Get 开始新的批次, 等待 linger
+    probes.get(3).expectNoMessage(Duration.ofMillis(300));
+    assertEquals(CacheValue.of("v3"), probes.get(3).receiveMessage(Duration.ofSeconds(5)).value);
+    assertEquals(List.of(3, 1), store.getBatches);
+  }
+
+  @Test
+  public void testPoolRoutesEachKeyToOneWorker() {
+    FlakyStore store = new FlakyStore();
+    ActorRef<CacheActor.Command> pool =
+        testKit.spawn(RedisActor.createPool(store, poolSettings(4)));
+    ConsistentHashRing ring = new ConsistentHashRing(4);
+    TestProbe<StatusReply<Done>> ackProbe = testKit.createTestProbe();
+
+    // 阻塞负责 blocker 的工作者: 路由到它的 Get 在阻塞期间得不到回复, 其余工作者照常回复
+    store.blockedKey = "blocker";
+    int blocked = ring.partitionFor("blocker");
+    pool.tell(new CacheActor.Put("blocker", CacheValue.of("v"), null, ackProbe.getRef()));
+    await(store.entered);
+    List<TestProbe<CacheActor.Value>> waiting = new ArrayList<>();
+    for (int i = 0; i < 20; i++) {
+      String key = "route-" + i;
+      TestProbe<CacheActor.Value> probe = testKit.createTestProbe();
+      pool.tell(new CacheActor.Get(key, probe.getRef()));
+      if (ring.partitionFor(key) == blocked) {
+        waiting.add(probe);
+      } else {
+        assertNull(probe.receiveMessage(Duration.ofSeconds(3)).value);
+      }
+    }
+    assertTrue(waiting.size() > 0 && waiting.size() < 20);
+    for (TestProbe<CacheActor.Value> probe : waiting) {
+      probe.expectNoMessage(Duration.ofMillis(50));
+    }
+
+    store.released.countDown();
+    ackProbe.expectMessage(StatusReply.ack());
+    for (TestProbe<CacheActor.Value> probe : waiting) {
+      assertNull(probe.receiveMessage().value);
+    }
+  }
+
+  @Test
+  public void testPoolKeepsPerKeyWriteOrder() {
+    FlakyStore store = new FlakyStore();
+    ActorRef<CacheActor.Command> pool =
+        testKit.spawn(RedisActor.createPool(store, poolSettings(4)));
+    TestProbe<StatusReply<Done>> ackProbe = testKit.createTestProbe();
+    int keys = 8;
+    int writesPerKey = 50;
+
+    // 不同键的写入在各工作者上并发执行, 同一个键的写入必须按发送顺序到达存储
+    for (int i = 0; i < writesPerKey; i++) {
+      for (int k = 0; k < keys; k++) {
+        pool.tell(
+            new CacheActor.Put("order-" + k, CacheValue.of("v" + i), null, ackProbe.getRef()));
+      }
+    }
+    for (int i = 0; i < keys * writesPerKey; i++) {
+      ackProbe.expectMessage(StatusReply.ack());
+    }
+
+    for (int k = 0; k < keys; k++) {
+      List<CacheValue> written = new ArrayList<>();
+      for (BackingStore.Write write : store.writes) {
+        if (write.key.equals("order-" + k)) {
+          written.add(write.value);
+        }
+      }
+      assertEquals(writesPerKey, written.size());
+      for (int i = 0; i < writesPerKey; i++) {
+        assertEquals(CacheValue.of("v" + i), written.get(i));
+      }
+    }
+  }
+
+  private static RedisSettings poolSettings(int workers) {
+    return RedisSettings.create(
+            ConfigFactory.parseString("akka-http-example.redis.write-mode = write-through")
+                .withFallback(testKit.system().settings().config()))
+        .withWorkers(workers);
+  }
+
+  private static RedisSettings batchSettings(int maxSize, Duration linger) {
+    return RedisSettings.create(
+        ConfigFactory.parseString(
+                "akka-http-example.redis.batch { max-size = "
+                    + maxSize
+                    + ", linger = "
+                    + linger.toMillis()
+                    + "ms }")
+            .withFallback(testKit.system().settings().config()));
+  }
+}
@@ -0,0 +1,130 @@
+package com.example;
+
+import akka.actor.testkit.typed.javadsl.ActorTestKit;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.actor.typed.ActorRef;
+import com.example.cache.CacheValue;
+import com.example.store.RedisValueCodec;
+import com.typesafe.config.ConfigFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+// 使用可以停止的 Redis 替身, 验证熔断后的快速失败、过期值返回和恢复
+public class RedisCircuitBreakerTest {
+
+  private static final Duration LOOKUP_TIMEOUT = Duration.ofSeconds(3);
+
+  private static RedisStandIn redis;
+  private static ActorTestKit testKit;
+
+  @BeforeClass
+  public static void setup() throws Exception {
+    redis = new RedisStandIn().start();
+    testKit =
+        ActorTestKit.create(
+            ConfigFactory.parseString(
+                    "akka-http-example {\n"
+                        + "  cache.partitions = 1\n"
+                        + "  cache.expiry-tick-interval = 50ms\n"
+                        + "  cache.redis-lookup-timeout = "
+                        + LOOKUP_TIMEOUT.toMillis()
+                        + "ms\n"
+                        + "  redis.port = "
+                        + redis.port()
+                        + "\n"
+                        + "  redis.workers = 1\n"
+                        + "  redis.circuit-breaker.max-failures = 1\n"
+                        + "  redis.circuit-breaker.reset-timeout = 300ms\n"
+                        + "  redis.circuit-breaker.max-reset-timeout = 300ms\n"
+                        + "  redis.circuit-breaker.stale-if-error = 10m\n"
+                        + "}")
+                .withFallback(ConfigFactory.load()));
+  }
+
+  @AfterClass
+  public static void teardown() {
+    testKit.shutdownTestKit();
+    redis.close();
+  }
+
+  @Test
+  public void testFailoverServesStaleAndRecovers() throws Exception {
+    ActorRef<SupervisorActor.Command> supervisor = testKit.spawn(SupervisorActor.create());
+    TestProbe<CacheActor.Value> probe = testKit.createTestProbe();
+
+    cache(
+        supervisor,
+        new CacheActor.Put("stale-key", CacheValue.of("old"), Duration.ofMillis(200)));
+    awaitCondition(() -> redis.get("stale-key") != null, Duration.ofSeconds(3));
+    Thread.sleep(300);
+    redis.stop();
+
+    // 本地条目已过期, Redis 查询失败后立即返回过期的值, 而不是等到查询超时
+    long start = System.nanoTime();
+    cache(supervisor, new CacheActor.Get("stale-key", probe.getRef()));
+    CacheActor.Value stale = probe.receiveMessage(LOOKUP_TIMEOUT);
+    long failover = System.nanoTime() - start;
+    assertTrue(stale.stale);
+    assertEquals(CacheValue.of("old"), stale.value);
+    assertTrue("故障切换耗时 " + failover / 1_000_000 + " ms", failover < LOOKUP_TIMEOUT.toNanos() / 3);
+
+    // 熔断器已打开, 本地没有值的键立即返回不可用
+    start = System.nanoTime();
+    cache(supervisor, new CacheActor.Get("missing-key", probe.getRef()));
+    assertTrue(probe.receiveMessage(LOOKUP_TIMEOUT).unavailable);
+    long fastFail = System.nanoTime() - start;
+    assertTrue("熔断后的失败耗时 " + fastFail / 1_000_000 + " ms", fastFail < 500_000_000L);
+
+    // 熔断期间的写入先暂存
+    cache(supervisor, new CacheActor.Put("queued-key", "queued"));
+
+    byte[] fresh = RedisValueCodec.encode(CacheValue.of("fresh"));
+    redis.set("fresh-key", fresh);
+    redis.start();
+    start = System.nanoTime();
+    CacheActor.Value recovered = null;
+    while (System.nanoTime() - start < Duration.ofSeconds(5).toNanos()) {
+      cache(supervisor, new CacheActor.Get("fresh-key", probe.getRef()));
+      CacheActor.Value reply = probe.receiveMessage(LOOKUP_TIMEOUT);
+      if (reply.value != null) {
+        recovered = reply;
+        break;
+      }
+      Thread.sleep(50);
+    }
+    long recovery = System.nanoTime() - start;
+    assertNotNull("Redis 恢复后熔断器应关闭", recovered);
+    assertEquals(CacheValue.of("fresh"), recovered.value);
+    assertTrue("恢复耗时 " + recovery / 1_000_000 + " ms", recovery < Duration.ofSeconds(3).toNanos());
+
+    // 暂存的写入在恢复后写入 Redis
+    awaitCondition(() -> redis.get("queued-key") != null, Duration.ofSeconds(3));
+    assertArrayEquals(
+        RedisValueCodec.encode(CacheValue.of("queued")), redis.get("queued-key"));
+  }
+
+  private static void cache(
+      ActorRef<SupervisorActor.Command> supervisor, CacheActor.Command command) {
+    supervisor.tell(new SupervisorActor.ForwardToCache(command));
+  }
+
+  private static void awaitCondition(BooleanSupplier condition, Duration max)
+      throws InterruptedException {
+    long deadline = System.nanoTime() + max.toNanos();
+    while (!condition.getAsBoolean()) {
+      if (System.nanoTime() - deadline > 0) {
+        throw new AssertionError("等待超时");
+      }
+      Thread.sleep(20);
+    }
+  }
+}
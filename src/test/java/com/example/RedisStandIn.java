@@ -0,0 +1,359 @@
+package com.example;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Pattern;
+
+/**
+ * 测试用的进程内 Redis 替身: 在本地端口上以 RESP2 协议响应 GET、MGET、SET(支持 PX/EX)、MSET、DEL、
+ * SCAN(支持 MATCH/COUNT)、DBSIZE、PTTL 和 PING,
+ * 足以运行 RedisActor 的读写路径. 可以随时 {@link #stop()} 模拟 Redis 宕机(同时断开所有连接),
+ * 再在同一端口上 {@link #start()} 模拟恢复, 数据在重启之间保留.
+ *
+ * <p>{@link #latency(Duration)} 在每次往返(读完客户端一批流水线命令、写回响应之前)注入固定的延迟,
+ * 模拟网络和服务端耗时, 使基准测试的结果不依赖于是否有真实的 Redis.
+ */
+public class RedisStandIn implements AutoCloseable {
+
+  private final Map<String, Stored> data = new ConcurrentHashMap<>();
+  private final Set<Socket> connections = ConcurrentHashMap.newKeySet();
+  private volatile ServerSocket server;
+  private int port;
+  private volatile long latencyNanos;
+
+  private static final class Stored {
+    final byte[] value;
+    // 0 表示不过期
+    final long expireAtMillis;
+
+    Stored(byte[] value, long expireAtMillis) {
+      this.value = value;
+      this.expireAtMillis = expireAtMillis;
+    }
+  }
+
+  // 第一次启动时使用随机端口, 之后的重启沿用同一个端口
+  public synchronized RedisStandIn start() throws IOException {
+    if (server != null) {
+      return this;
+    }
+    ServerSocket socket = new ServerSocket();
+    socket.setReuseAddress(true);
+    socket.bind(new InetSocketAddress("127.0.0.1", port));
+    port = socket.getLocalPort();
+    server = socket;
+    Thread acceptor = new Thread(() -> acceptLoop(socket), "redis-stand-in-" + port);
+    acceptor.setDaemon(true);
+    acceptor.start();
+    return this;
+  }
+
+  public synchronized void stop() {
+    ServerSocket socket = server;
+    server = null;
+    if (socket == null) {
+      return;
+    }
+    closeQuietly(socket);
+    for (Socket connection : connections) {
+      closeQuietly(connection);
+    }
+    connections.clear();
+  }
+
+  @Override
+  public void close() {
+    stop();
+  }
+
+  // 每次往返注入的延迟, 0 表示不注入
+  public RedisStandIn latency(Duration latency) {
+    this.latencyNanos = latency.toNanos();
+    return this;
+  }
+
+  public int port() {
+    return port;
+  }
+
+  public byte[] get(String key) {
+    return read(key(key.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  public void set(String key, byte[] value) {
+    set(key, value, 0);
+  }
+
+  // ttlMillis 为 0 表示永不过期
+  public void set(String key, byte[] value, long ttlMillis) {
+    long expireAtMillis = ttlMillis == 0 ? 0 : System.currentTimeMillis() + ttlMillis;
+    data.put(key(key.getBytes(StandardCharsets.UTF_8)), new Stored(value, expireAtMillis));
+  }
+
+  private void acceptLoop(ServerSocket socket) {
+    while (!socket.isClosed()) {
+      try {
+        Socket connection = socket.accept();
+        connection.setTcpNoDelay(true);
+        connections.add(connection);
+        Thread handler = new Thread(() -> serve(connection), "redis-stand-in-connection");
+        handler.setDaemon(true);
+        handler.start();
+      } catch (IOException e) {
+        // 已停止
+      }
+    }
+  }
+
+  private void serve(Socket connection) {
+    try (Socket socket = connection) {
+      InputStream in = new BufferedInputStream(socket.getInputStream());
+      OutputStream out = new BufferedOutputStream(socket.getOutputStream());
+      List<byte[]> command;
+      while ((command = readCommand(in)) != null) {
+        execute(command, out);
+        // 流水线中的命令全部读完后再刷新
+        if (in.available() == 0) {
+          long latency = latencyNanos;
+          if (latency > 0) {
+            LockSupport.parkNanos(latency);
+          }
+          out.flush();
+        }
+      }
+    } catch (IOException e) {
+      // 连接已断开或替身已停止
+    } finally {
+      connections.remove(connection);
+    }
+  }
+
+  private void execute(List<byte[]> command, OutputStream out) throws IOException {
+    String name = new String(command.get(0), StandardCharsets.US_ASCII).toUpperCase(Locale.ROOT);
+    switch (name) {
+      case "PING":
+        writeSimple(out, "PONG");
+        break;
+      case "GET":
+        writeBulk(out, read(key(command.get(1))));
+        break;
+      case "MGET":
+        writeArrayHeader(out, command.size() - 1);
+        for (int i = 1; i < command.size(); i++) {
+          writeBulk(out, read(key(command.get(i))));
+        }
+        break;
+      case "SET":
+        data.put(key(command.get(1)), new Stored(command.get(2), expireAt(command)));
+        writeSimple(out, "OK");
+        break;
+      case "MSET":
+        for (int i = 1; i + 1 < command.size(); i += 2) {
+          data.put(key(command.get(i)), new Stored(command.get(i + 1), 0));
+        }
+        writeSimple(out, "OK");
+        break;
+      case "DEL":
+        int removed = 0;
+        for (int i = 1; i < command.size(); i++) {
+          if (data.remove(key(command.get(i))) != null) {
+            removed++;
+          }
+        }
+        writeInteger(out, removed);
+        break;
+      case "SCAN":
+        scan(command, out);
+        break;
+      case "DBSIZE":
+        writeInteger(out, data.size());
+        break;
+      case "PTTL":
+        writeInteger(out, pttl(key(command.get(1))));
+        break;
+      case "CLIENT":
+      case "SELECT":
+      case "AUTH":
+        writeSimple(out, "OK");
+        break;
+      default:
+        out.write(("-ERR unknown command '" + name + "'\r\n").getBytes(StandardCharsets.UTF_8));
+    }
+  }
+
+  private byte[] read(String key) {
+    Stored stored = data.get(key);
+    if (stored == null) {
+      return null;
+    }
+    if (stored.expireAtMillis != 0 && stored.expireAtMillis <= System.currentTimeMillis()) {
+      data.remove(key, stored);
+      return null;
+    }
+    return stored.value;
+  }
+
+  // -2 表示不存在, -1 表示永不过期
+  private long pttl(String key) {
+    Stored stored = data.get(key);
+    if (read(key) == null) {
+      return -2;
+    }
+    return stored.expireAtMillis == 0
+        ? -1
+        : Math.max(0, stored.expireAtMillis - System.currentTimeMillis());
+  }
+
+  // SCAN cursor [MATCH pattern] [COUNT n]: 游标为按键排序后的下标, 扫描期间新增的键可能被跳过
+  private void scan(List<byte[]> command, OutputStream out) throws IOException {
+    int cursor = Integer.parseInt(new String(command.get(1), StandardCharsets.US_ASCII));
+    Pattern match = null;
+    int count = 10;
+    for (int i = 2; i + 1 < command.size(); i += 2) {
+      String option =
+          new String(command.get(i), StandardCharsets.US_ASCII).toUpperCase(Locale.ROOT);
+      if (option.equals("MATCH")) {
+        match = glob(key(command.get(i + 1)));
+      } else if (option.equals("COUNT")) {
+        count = Integer.parseInt(new String(command.get(i + 1), StandardCharsets.US_ASCII));
+      }
+    }
+    List<String> keys = new ArrayList<>(new TreeSet<>(data.keySet()));
+    int end = Math.min(keys.size(), cursor + count);
+    List<String> page = new ArrayList<>();
+    for (int i = cursor; i < end; i++) {
+      if ((match == null || match.matcher(keys.get(i)).matches()) && read(keys.get(i)) != null) {
+        page.add(keys.get(i));
+      }
+    }
+    writeArrayHeader(out, 2);
+    String next = String.valueOf(end >= keys.size() ? 0 : end);
+    writeBulk(out, next.getBytes(StandardCharsets.US_ASCII));
+    writeArrayHeader(out, page.size());
+    for (String key : page) {
+      writeBulk(out, key.getBytes(StandardCharsets.ISO_8859_1));
+    }
+  }
+
+  // 只支持 * 和 ? 通配符
+  private static Pattern glob(String pattern) {
+    StringBuilder regex = new StringBuilder();
+    for (char c : pattern.toCharArray()) {
+      if (c == '*') {
+        regex.append(".*");
+      } else if (c == '?') {
+        regex.append('.');
+      } else {
+        regex.append(Pattern.quote(String.valueOf(c)));
+      }
+    }
+    return Pattern.compile(regex.toString(), Pattern.DOTALL);
+  }
+
+  // SET key value [PX 毫秒 | EX 秒]
+  private static long expireAt(List<byte[]> command) {
+    for (int i = 3; i + 1 < command.size(); i++) {
+      String option =
+          new String(command.get(i), StandardCharsets.US_ASCII).toUpperCase(Locale.ROOT);
+      long amount = Long.parseLong(new String(command.get(i + 1), StandardCharsets.US_ASCII));
+      if (option.equals("PX")) {
+        return System.currentTimeMillis() + amount;
+      } else if (option.equals("EX")) {
+        return System.currentTimeMillis() + amount * 1000;
+      }
+    }
+    return 0;
+  }
+
+  // 键按字节保存, 以 ISO-8859-1 一一映射为字符串作为哈希表的键
+  private static String key(byte[] bytes) {
+    return new String(bytes, StandardCharsets.ISO_8859_1);
+  }
+
+  // 读取一条 *N\r\n$len\r\n...\r\n 格式的命令, 连接关闭时返回 null
+  private static List<byte[]> readCommand(InputStream in) throws IOException {
+    int first = in.read();
+    if (first == -1) {
+      return null;
+    }
+    if (first != '*') {
+      throw new IOException("不支持的 RESP 请求: " + (char) first);
+    }
+    int count = (int) readNumber(in);
+    List<byte[]> arguments = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      if (in.read() != '$') {
+        throw new IOException("RESP 参数必须是 bulk string");
+      }
+      int length = (int) readNumber(in);
+      byte[] argument = in.readNBytes(length);
+      in.readNBytes(2);
+      arguments.add(argument);
+    }
+    return arguments;
+  }
+
+  private static long readNumber(InputStream in) throws IOException {
+    long value = 0;
+    boolean negative = false;
+    int c;
+    while ((c = in.read()) != '\r') {
+      if (c == -1) {
+        throw new IOException("连接已关闭");
+      }
+      if (c == '-') {
+        negative = true;
+      } else {
+        value = value * 10 + (c - '0');
+      }
+    }
+    in.read();
+    return negative ? -value : value;
+  }
+
+  private static void writeSimple(OutputStream out, String value) throws IOException {
+    out.write(('+' + value + "\r\n").getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private static void writeInteger(OutputStream out, long value) throws IOException {
+    out.write((":" + value + "\r\n").getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private static void writeArrayHeader(OutputStream out, int size) throws IOException {
+    out.write(("*" + size + "\r\n").getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private static void writeBulk(OutputStream out, byte[] value) throws IOException {
+    if (value == null) {
+      out.write("$-1\r\n".getBytes(StandardCharsets.US_ASCII));
+      return;
+    }
+    out.write(("$" + value.length + "\r\n").getBytes(StandardCharsets.US_ASCII));
+    out.write(value);
+    out.write("\r\n".getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private static void closeQuietly(AutoCloseable closeable) {
+    try {
+      closeable.close();
+    } catch (Exception e) {
+      // 忽略
+    }
+  }
+}
@@ -0,0 +1,90 @@
+package com.example;
+
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.AskPattern;
+import com.example.cache.CacheValue;
+import com.example.store.BackingStore;
+import com.example.store.RedisStore;
+import com.typesafe.config.ConfigFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Redis 读取路径的吞吐量随 RedisActor 工作者数量的变化, 需要本地运行的 Redis (127.0.0.1:6379)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(16)
+public class RedisWorkerBenchmark {
+
+  private static final int KEY_COUNT = 4096;
+
+  @Param({"1", "4", "16"})
+  public int workers;
+
+  private ActorSystem<CacheActor.Command> system;
+  private BackingStore store;
+  private String[] keys;
+  private final Duration timeout = Duration.ofSeconds(5);
+
+  @Setup(Level.Trial)
+  public void setup() {
+    RedisSettings settings =
+        RedisSettings.create(ConfigFactory.load()).withWorkers(workers);
+    store = new RedisStore(settings.host, settings.port, settings.workers);
+    // 直接以工作者池作为根 Actor, 绕过本地缓存, 每个 Get 都会访问 Redis
+    system = ActorSystem.create(RedisActor.createPool(store, settings), "RedisWorkerBenchmark");
+
+    keys = new String[KEY_COUNT];
+    for (int i = 0; i < KEY_COUNT; i++) {
+      keys[i] = "redis-benchmark-key-" + i;
+      system.tell(new CacheActor.Put(keys[i], "value-" + i));
+    }
+    for (String key : keys) {
+      askGet(key);
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (system != null) {
+      system.terminate();
+      system.getWhenTerminated().toCompletableFuture().join();
+    }
+    if (store != null) {
+      store.close();
+    }
+  }
+
+  @Benchmark
+  public CacheValue testRedisGet() {
+    return askGet(keys[ThreadLocalRandom.current().nextInt(KEY_COUNT)]);
+  }
+
+  private CacheValue askGet(String key) {
+    CacheActor.Value value =
+        AskPattern.<CacheActor.Command, CacheActor.Value>ask(
+                system, replyTo -> new CacheActor.Get(key, replyTo), timeout, system.scheduler())
+            .toCompletableFuture()
+            .join();
+    return value.value;
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt =
+        new OptionsBuilder()
+            .include(RedisWorkerBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+    new Runner(opt).run();
+  }
+}
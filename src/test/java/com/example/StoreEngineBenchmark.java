@@ -0,0 +1,117 @@
+package com.example;
+
+import com.example.cache.CacheValue;
+import com.example.store.BackingStore;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// 三种第二级存储引擎在同一组批量读写下的吞吐量, redis 引擎需要本地运行的 Redis (127.0.0.1:6379)
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 3, time = 10)
+@Threads(4)
+public class StoreEngineBenchmark {
+
+  private static final int KEY_COUNT = 4096;
+  // 与 RedisActor 合并 MGET 和批量写入时的批次大小相当
+  private static final int BATCH_SIZE = 16;
+  private static final Duration TTL = Duration.ofMinutes(10);
+
+  @Param({"memory", "file", "redis"})
+  public String engine;
+
+  private BackingStore store;
+  private Path directory;
+  private String[] keys;
+  private CacheValue[] values;
+
+  @Setup(Level.Trial)
+  public void setup() throws IOException {
+    Config config = ConfigFactory.load();
+    directory = Files.createTempDirectory("store-engine-benchmark");
+    StoreSettings settings =
+        StoreSettings.create(config)
+            .withEngine(StoreSettings.Engine.valueOf(engine.toUpperCase()))
+            .withFileDirectory(directory);
+    // 所有引擎都通过 StoreSettings.createStore 创建, 与服务启动时相同
+    store = settings.createStore(RedisSettings.create(config));
+
+    keys = new String[KEY_COUNT];
+    values = new CacheValue[KEY_COUNT];
+    List<BackingStore.Write> writes = new ArrayList<>(KEY_COUNT);
+    for (int i = 0; i < KEY_COUNT; i++) {
+      keys[i] = "store-benchmark-key-" + i;
+      values[i] = CacheValue.of("value-" + i);
+      writes.add(new BackingStore.Write(keys[i], values[i], TTL));
+    }
+    store.putAll(writes);
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws IOException {
+    if (store != null) {
+      store.close();
+    }
+    try (Stream<Path> paths = Files.walk(directory)) {
+      paths.sorted(Comparator.reverseOrder()).forEach(StoreEngineBenchmark::delete);
+    }
+  }
+
+  @Benchmark
+  public List<BackingStore.Read> testGetBatch() {
+    List<String> batch = new ArrayList<>(BATCH_SIZE);
+    int start = ThreadLocalRandom.current().nextInt(KEY_COUNT);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      batch.add(keys[(start + i) % KEY_COUNT]);
+    }
+    return store.getEntries(batch);
+  }
+
+  @Benchmark
+  public void testPutBatch() {
+    List<BackingStore.Write> batch = new ArrayList<>(BATCH_SIZE);
+    int start = ThreadLocalRandom.current().nextInt(KEY_COUNT);
+    for (int i = 0; i < BATCH_SIZE; i++) {
+      int index = (start + i) % KEY_COUNT;
+      batch.add(new BackingStore.Write(keys[index], values[index], TTL));
+    }
+    store.putAll(batch);
+  }
+
+  private static void delete(Path path) {
+    try {
+      Files.delete(path);
+    } catch (IOException e) {
+      throw new UncheckedIOException(e);
+    }
+  }
+
+  public static void main(String[] args) throws RunnerException {
+    Options opt =
+        new OptionsBuilder()
+            .include(StoreEngineBenchmark.class.getSimpleName())
+            .forks(1)
+            .build();
+
+    new Runner(opt).run();
+  }
+}
@@ -0,0 +1,80 @@
+package com.example;
+
+import akka.Done;
+import akka.actor.testkit.typed.javadsl.ActorTestKit;
+import akka.actor.testkit.typed.javadsl.TestProbe;
+import akka.actor.typed.ActorRef;
+import akka.pattern.StatusReply;
+import com.example.cache.CacheValue;
+import com.typesafe.config.ConfigFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.ClassRule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+// 使用 file 存储引擎时, 写入在 SupervisorActor(及其本地缓存)重建之后仍能从段文件读到
+public class StoreEngineTest {
+
+  @ClassRule public static TemporaryFolder folder = new TemporaryFolder();
+
+  private static ActorTestKit testKit;
+
+  @BeforeClass
+  public static void setup() {
+    testKit =
+        ActorTestKit.create(
+            ConfigFactory.parseString(
+                    "akka-http-example {\n"
+                        + "  cache.partitions = 2\n"
+                        + "  store.engine = file\n"
+                        + "  store.file.directory = \""
+                        + folder.getRoot().getAbsolutePath()
+                        + "\"\n"
+                        + "}")
+                .withFallback(ConfigFactory.load()));
+  }
+
+  @AfterClass
+  public static void teardown() {
+    testKit.shutdownTestKit();
+  }
+
+  @Test
+  public void testFileEngineKeepsValuesAcrossRestart() {
+    ActorRef<SupervisorActor.Command> supervisor = testKit.spawn(SupervisorActor.create());
+    CachePartitions partitions = partitions(supervisor);
+    TestProbe<StatusReply<Done>> ackProbe = testKit.createTestProbe();
+    for (int i = 0; i < 20; i++) {
+      String key = "file-" + i;
+      partitions
+          .forKey(key)
+          .tell(new CacheActor.Put(key, CacheValue.of("value-" + i), null, ackProbe.getRef()));
+      ackProbe.expectMessage(StatusReply.ack());
+    }
+    TestProbe<Void> stopProbe = testKit.createTestProbe();
+    testKit.stop(supervisor);
+    stopProbe.expectTerminated(supervisor);
+
+    // 新的 SupervisorActor 的本地缓存为空, 读取经过 RedisActor 从重新打开的段文件取得
+    ActorRef<SupervisorActor.Command> restarted = testKit.spawn(SupervisorActor.create());
+    CachePartitions restartedPartitions = partitions(restarted);
+    TestProbe<CacheActor.Value> valueProbe = testKit.createTestProbe();
+    for (int i = 0; i < 20; i++) {
+      String key = "file-" + i;
+      restartedPartitions.forKey(key).tell(new CacheActor.Get(key, valueProbe.getRef()));
+      assertEquals(CacheValue.of("value-" + i), valueProbe.receiveMessage().value);
+    }
+    restartedPartitions.forKey("missing").tell(new CacheActor.Get("missing", valueProbe.getRef()));
+    assertNull(valueProbe.receiveMessage().value);
+  }
+
+  private static CachePartitions partitions(ActorRef<SupervisorActor.Command> supervisor) {
+    TestProbe<CachePartitions> probe = testKit.createTestProbe();
+    supervisor.tell(new SupervisorActor.GetCachePartitions(probe.getRef()));
+    return probe.receiveMessage();
+  }
+}
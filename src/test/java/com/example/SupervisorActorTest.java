@@ -3,9 +3,12 @@ package com.example;
 import akka.actor.testkit.typed.javadsl.ActorTestKit;
 import akka.actor.testkit.typed.javadsl.TestProbe;
 import akka.actor.typed.ActorRef;
+import com.example.cache.CacheValue;
 import org.junit.AfterClass;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
+
 public class SupervisorActorTest {
 
   private static final ActorTestKit testKit = ActorTestKit.create();
@@ -55,4 +58,93 @@ public class SupervisorActorTest {
     // 这个测试验证消息可以被正常接收，不会抛出异常
     assert true; // 如果没有异常，则测试通过
   }
+
+  @Test
+  public void testGetCachePartitions() {
+    // 创建指定分区数量的 SupervisorActor
+    ActorRef<SupervisorActor.Command> supervisorActor = testKit.spawn(SupervisorActor.create(4));
+
+    TestProbe<CachePartitions> probe = testKit.createTestProbe();
+    supervisorActor.tell(new SupervisorActor.GetCachePartitions(probe.getRef()));
+
+    CachePartitions partitions = probe.receiveMessage();
+    assertEquals(4, partitions.size());
+  }
+
+  @Test
+  public void testGetCacheActorRefRoutesByKey() {
+    ActorRef<SupervisorActor.Command> supervisorActor = testKit.spawn(SupervisorActor.create(4));
+
+    TestProbe<CachePartitions> partitionsProbe = testKit.createTestProbe();
+    supervisorActor.tell(new SupervisorActor.GetCachePartitions(partitionsProbe.getRef()));
+    CachePartitions partitions = partitionsProbe.receiveMessage();
+
+    // 同一个键通过 SupervisorActor 和本地一致性哈希得到的分区应该一致
+    TestProbe<ActorRef<CacheActor.Command>> probe = testKit.createTestProbe();
+    for (int i = 0; i < 20; i++) {
+      String key = "key-" + i;
+      supervisorActor.tell(new SupervisorActor.GetCacheActorRef(key, probe.getRef()));
+      assertEquals(partitions.forKey(key), probe.receiveMessage());
+    }
+  }
+
+  @Test
+  public void testForwardToCacheRoutesToOwningPartition() {
+    ActorRef<SupervisorActor.Command> supervisorActor = testKit.spawn(SupervisorActor.create(4));
+
+    TestProbe<CachePartitions> partitionsProbe = testKit.createTestProbe();
+    supervisorActor.tell(new SupervisorActor.GetCachePartitions(partitionsProbe.getRef()));
+    CachePartitions partitions = partitionsProbe.receiveMessage();
+
+    // 通过 SupervisorActor 写入并读取, 同一路径上的消息保证先后顺序
+    supervisorActor.tell(
+        new SupervisorActor.ForwardToCache(new CacheActor.Put("routed-key", "routed-value")));
+    TestProbe<CacheActor.Value> replyProbe = testKit.createTestProbe();
+    supervisorActor.tell(
+        new SupervisorActor.ForwardToCache(
+            new CacheActor.Get("routed-key", replyProbe.getRef())));
+    assertEquals(CacheValue.of("routed-value"), replyProbe.receiveMessage().value);
+
+    // 直接向按一致性哈希选出的分区读取, 应该本地命中
+    partitions.forKey("routed-key").tell(new CacheActor.Get("routed-key", replyProbe.getRef()));
+    assertEquals(CacheValue.of("routed-value"), replyProbe.receiveMessage().value);
+  }
+
+  @Test
+  public void testHitRatioImmediatelyAfterForcedFailure() {
+    ActorRef<SupervisorActor.Command> supervisorActor = testKit.spawn(SupervisorActor.create(4));
+    int keys = 1000;
+    for (int i = 0; i < keys; i++) {
+      supervisorActor.tell(
+          new SupervisorActor.ForwardToCache(new CacheActor.Put("warm-" + i, "value-" + i)));
+    }
+
+    // 所有分区都抛出异常并重启, 之后的读取排在同一个邮箱中, 重启后立即处理
+    supervisorActor.tell(new SupervisorActor.ForwardToCache(new CacheActor.SimulateFailure()));
+    TestProbe<CacheActor.Value> probe = testKit.createTestProbe();
+    for (int i = 0; i < keys; i++) {
+      supervisorActor.tell(
+          new SupervisorActor.ForwardToCache(new CacheActor.Get("warm-" + i, probe.getRef())));
+    }
+    int hits = 0;
+    for (CacheActor.Value reply : probe.receiveSeveralMessages(keys)) {
+      if (reply.value != null) {
+        hits++;
+      }
+    }
+    // 本地缓存在重启后保留, 没有任何读取落到 Redis 上
+    assertEquals(1.0, (double) hits / keys, 0.0);
+
+    TestProbe<CachePartitions> partitionsProbe = testKit.createTestProbe();
+    supervisorActor.tell(new SupervisorActor.GetCachePartitions(partitionsProbe.getRef()));
+    TestProbe<CacheActor.Stats> statsProbe = testKit.createTestProbe();
+    long size = 0;
+    for (ActorRef<CacheActor.Command> partition : partitionsProbe.receiveMessage().all()) {
+      partition.tell(new CacheActor.GetStats(statsProbe.getRef()));
+      CacheActor.Stats stats = statsProbe.receiveMessage();
+      assertEquals(0, stats.redisLookupCount);
+      size += stats.size;
+    }
+    assertEquals(keys, size);
+  }
 }
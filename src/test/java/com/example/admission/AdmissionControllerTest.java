@@ -0,0 +1,106 @@
+package com.example.admission;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AdmissionControllerTest {
+
+  private static final long MILLIS = TimeUnit.MILLISECONDS.toNanos(1);
+
+  @Test
+  public void testRejectsBeyondLimitAndReleasesOnce() {
+    AdmissionController controller =
+        new AdmissionController(new AimdLimit(2, 2, 2, 0.5, 100 * MILLIS));
+    AdmissionController.Permit first = controller.tryAcquire();
+    AdmissionController.Permit second = controller.tryAcquire();
+    assertNotNull(first);
+    assertNotNull(second);
+    assertNull(controller.tryAcquire());
+    assertEquals(2, controller.inFlight());
+
+    first.release(false);
+    first.release(false);
+    assertEquals(1, controller.inFlight());
+    assertNotNull(controller.tryAcquire());
+    assertNull(controller.tryAcquire());
+  }
+
+  @Test
+  public void testAimdBacksOffOnDropsAndSlowResponses() {
+    AimdLimit limit = new AimdLimit(100, 10, 200, 0.5, 100 * MILLIS);
+    limit.onSample(MILLIS, 100, false);
+    assertEquals(101, limit.limit());
+    // 并发度远低于上限时不增长
+    limit.onSample(MILLIS, 10, false);
+    assertEquals(101, limit.limit());
+    limit.onSample(MILLIS, 100, true);
+    assertEquals(50, limit.limit());
+    limit.onSample(200 * MILLIS, 50, false);
+    assertEquals(25, limit.limit());
+    for (int i = 0; i < 10; i++) {
+      limit.onSample(MILLIS, 25, true);
+    }
+    assertEquals(10, limit.limit());
+  }
+
+  @Test
+  public void testVegasGrowsWithoutQueueingAndShrinksWhenLatencyRises() {
+    VegasLimit limit = new VegasLimit(50, 10, 1000, 10_000);
+    // 第一次采样只记录无排队时的耗时
+    limit.onSample(MILLIS, 50, false);
+    for (int i = 0; i < 20; i++) {
+      limit.onSample(MILLIS, limit.limit(), false);
+    }
+    int grown = limit.limit();
+    assertTrue("耗时稳定时上限应增长: " + grown, grown > 50);
+
+    // 耗时变为无排队时的 4 倍, 估算的排队长度远超 beta
+    for (int i = 0; i < 500; i++) {
+      limit.onSample(4 * MILLIS, limit.limit(), false);
+    }
+    assertEquals(10, limit.limit());
+  }
+
+  @Test
+  public void testVegasResetsNoLoadLatencyAfterProbeInterval() {
+    VegasLimit limit = new VegasLimit(50, 10, 1000, 5);
+    limit.onSample(MILLIS, 50, false);
+    // 后端整体变慢后, 重新测量的无排队耗时使上限不再持续减小
+    for (int i = 0; i < 100; i++) {
+      limit.onSample(4 * MILLIS, limit.limit(), false);
+    }
+    assertTrue("上限不应一直减小到下限: " + limit.limit(), limit.limit() > 10);
+  }
+
+  @Test
+  public void testConcurrentSamplesKeepTheLimitWithinBounds() throws Exception {
+    AimdLimit aimd = new AimdLimit(100, 10, 200, 0.5, 100 * MILLIS);
+    VegasLimit vegas = new VegasLimit(100, 10, 200, 50);
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      int seed = t;
+      threads[t] =
+          new Thread(
+              () -> {
+                for (int i = 0; i < 20_000; i++) {
+                  boolean dropped = (i + seed) % 97 == 0;
+                  long rtt = (1 + (i + seed) % 3) * MILLIS;
+                  aimd.onSample(rtt, aimd.limit(), dropped);
+                  vegas.onSample(rtt, vegas.limit(), dropped);
+                }
+              });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertTrue("AIMD 上限越界: " + aimd.limit(), aimd.limit() >= 10 && aimd.limit() <= 200);
+    assertTrue("Vegas 上限越界: " + vegas.limit(), vegas.limit() >= 10 && vegas.limit() <= 200);
+  }
+}
@@ -0,0 +1,139 @@
+package com.example.cache;
+
+import akka.util.ByteString;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CacheSnapshotTest {
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("cache.snapshot");
+    CacheValue binary =
+        new CacheValue(ByteString.fromArray(new byte[] {0, -1, 2}), "application/octet-stream");
+    try (CacheSnapshot.Writer writer = CacheSnapshot.Writer.create(path)) {
+      writer.write("键", CacheValue.of("值"), 0);
+      writer.write("binary", binary, 1234567890123L);
+      writer.write("empty", CacheValue.of(""), 0);
+      // 提交之前目标文件不存在
+      assertFalse(Files.exists(path));
+      writer.commit();
+    }
+
+    try (CacheSnapshot.Reader reader = CacheSnapshot.Reader.open(path)) {
+      assertEquals(3, reader.count());
+      assertEquals(Files.size(path), reader.fileSize());
+      List<CacheSnapshot.Entry> entries = readAll(reader);
+      assertEquals("键", entries.get(0).key);
+      assertEquals(CacheValue.of("值"), entries.get(0).value);
+      assertEquals(0, entries.get(0).expireAtMillis);
+      assertEquals(binary, entries.get(1).value);
+      assertEquals(1234567890123L, entries.get(1).expireAtMillis);
+      assertEquals(CacheValue.of(""), entries.get(2).value);
+    }
+  }
+
+  @Test
+  public void testEntriesSpanningMappedWindowsAreRemapped() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("cache.snapshot");
+    // 大于写缓冲区和映射窗口的值
+    byte[] large = new byte[3 * 1024 * 1024];
+    large[large.length - 1] = 42;
+    try (CacheSnapshot.Writer writer = CacheSnapshot.Writer.create(path)) {
+      for (int i = 0; i < 1000; i++) {
+        writer.write("key-" + i, CacheValue.of("value-" + i), 0);
+      }
+      writer.write("large", new CacheValue(ByteString.fromArray(large), "image/png"), 0);
+      writer.write("after-large", CacheValue.of("tail"), 0);
+      writer.commit();
+    }
+
+    try (CacheSnapshot.Reader reader = CacheSnapshot.Reader.open(path, 64)) {
+      List<CacheSnapshot.Entry> entries = readAll(reader);
+      assertEquals(1002, entries.size());
+      for (int i = 0; i < 1000; i++) {
+        assertEquals("key-" + i, entries.get(i).key);
+        assertEquals(CacheValue.of("value-" + i), entries.get(i).value);
+      }
+      assertEquals(ByteString.fromArray(large), entries.get(1000).value.bytes);
+      assertEquals("image/png", entries.get(1000).value.contentType);
+      assertEquals(CacheValue.of("tail"), entries.get(1001).value);
+    }
+  }
+
+  @Test
+  public void testTruncatedSnapshotIsRejected() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("cache.snapshot");
+    try (CacheSnapshot.Writer writer = CacheSnapshot.Writer.create(path)) {
+      writer.write("first", CacheValue.of("value"), 0);
+      writer.write("second", CacheValue.of("value"), 0);
+      writer.commit();
+    }
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+      channel.truncate(channel.size() - 3);
+    }
+
+    try (CacheSnapshot.Reader reader = CacheSnapshot.Reader.open(path)) {
+      assertEquals("first", reader.next().key);
+      reader.next();
+      fail("截断的条目应该被拒绝");
+    } catch (IllegalStateException expected) {
+      // 预期
+    }
+
+    Files.write(path, "not a snapshot".getBytes(StandardCharsets.UTF_8));
+    try {
+      CacheSnapshot.Reader.open(path).close();
+      fail("无法识别的文件应该被拒绝");
+    } catch (IOException expected) {
+      // 预期
+    }
+  }
+
+  @Test
+  public void testUncommittedWriteLeavesPreviousSnapshot() throws IOException {
+    Path path = folder.getRoot().toPath().resolve("cache.snapshot");
+    try (CacheSnapshot.Writer writer = CacheSnapshot.Writer.create(path)) {
+      writer.write("old", CacheValue.of("value"), 0);
+      writer.commit();
+    }
+    try (CacheSnapshot.Writer writer = CacheSnapshot.Writer.create(path)) {
+      writer.write("new", CacheValue.of("value"), 0);
+    }
+
+    try (CacheSnapshot.Reader reader = CacheSnapshot.Reader.open(path)) {
+      assertEquals("old", reader.next().key);
+      assertFalse(reader.hasNext());
+    }
+    // 临时文件已被删除
+    try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+      assertTrue(files.allMatch(path::equals));
+    }
+  }
+
+  private static List<CacheSnapshot.Entry> readAll(CacheSnapshot.Reader reader) {
+    List<CacheSnapshot.Entry> entries = new ArrayList<>();
+    while (reader.hasNext()) {
+      entries.add(reader.next());
+    }
+    return entries;
+  }
+}
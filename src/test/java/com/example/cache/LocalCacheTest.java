@@ -0,0 +1,363 @@
+package com.example.cache;
+
+import akka.util.ByteString;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LocalCacheTest {
+
+  @Test
+  public void testPutAndGet() {
+    LocalCache cache = new LocalCache(100, 1024 * 1024);
+    cache.put("key1", CacheValue.of("value1"));
+    assertEquals(CacheValue.of("value1"), cache.get("key1"));
+    assertNull(cache.get("missing"));
+    assertEquals(1, cache.hitCount());
+    assertEquals(1, cache.missCount());
+  }
+
+  @Test
+  public void testReplaceUpdatesWeight() {
+    LocalCache cache = new LocalCache(100, 1024 * 1024);
+    cache.put("key", CacheValue.of("a"));
+    long before = cache.weightedSize();
+    cache.put("key", CacheValue.of("abcdef"));
+    assertEquals(before + 5, cache.weightedSize());
+    assertEquals(CacheValue.of("abcdef"), cache.get("key"));
+    assertEquals(1, cache.size());
+  }
+
+  @Test
+  public void testEntryBudget() {
+    LocalCache cache = new LocalCache(100, Long.MAX_VALUE);
+    for (int i = 0; i < 1000; i++) {
+      cache.put("key-" + i, CacheValue.of("value-" + i));
+    }
+    assertEquals(100, cache.size());
+    assertEquals(900, cache.evictionCount());
+  }
+
+  @Test
+  public void testByteBudget() {
+    long maxBytes = 10 * 1024;
+    LocalCache cache = new LocalCache(Long.MAX_VALUE, maxBytes);
+    for (int i = 0; i < 1000; i++) {
+      cache.put("key-" + i, CacheValue.of("value-" + i));
+    }
+    assertTrue(cache.weightedSize() <= maxBytes);
+    assertTrue(cache.evictionCount() > 0);
+    assertEquals(cache.evictionCount(), 1000 - cache.size());
+  }
+
+  @Test
+  public void testFrequentKeysSurviveScan() {
+    LocalCache cache = new LocalCache(100, Long.MAX_VALUE);
+    // 热点键被反复访问
+    for (int round = 0; round < 10; round++) {
+      for (int i = 0; i < 50; i++) {
+        String key = "hot-" + i;
+        if (cache.get(key) == null) {
+          cache.put(key, CacheValue.of("value"));
+        }
+      }
+    }
+    // 一次性扫描大量冷键, 不应把热点键挤出缓存
+    for (int i = 0; i < 10_000; i++) {
+      cache.put("cold-" + i, CacheValue.of("value"));
+    }
+    int hotRemaining = 0;
+    for (int i = 0; i < 50; i++) {
+      if (cache.containsKey("hot-" + i)) {
+        hotRemaining++;
+      }
+    }
+    assertTrue("热点键被扫描淘汰: " + hotRemaining, hotRemaining >= 45);
+  }
+
+  @Test
+  public void testRemove() {
+    LocalCache cache = new LocalCache(100, 1024 * 1024);
+    cache.put("key", CacheValue.of("value"));
+    assertTrue(cache.remove("key"));
+    assertNull(cache.get("key"));
+    assertEquals(0, cache.weightedSize());
+  }
+
+  @Test
+  public void testExpiredEntryIsMissOnRead() {
+    AtomicLong clock = new AtomicLong();
+    LocalCache cache = new LocalCache(100, 1024 * 1024, clock::get);
+    cache.put("key", CacheValue.of("value"), TimeUnit.SECONDS.toNanos(5));
+    assertEquals(CacheValue.of("value"), cache.get("key"));
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+    assertNull(cache.get("key"));
+    assertEquals(0, cache.size());
+    assertEquals(1, cache.expirationCount());
+  }
+
+  @Test
+  public void testRetainedExpiredEntryIsOnlyVisibleToPeekStale() {
+    AtomicLong clock = new AtomicLong();
+    LocalCache cache = new LocalCache(100, 1024 * 1024, clock::get);
+    cache.retainExpired(TimeUnit.SECONDS.toNanos(60));
+    cache.put("key", CacheValue.of("value"), TimeUnit.SECONDS.toNanos(5));
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+    cache.expire();
+    assertNull(cache.get("key"));
+    assertNull(cache.getConcurrent("key"));
+    assertNull(cache.peek("key"));
+    assertEquals(CacheValue.of("value"), cache.peekStale("key"));
+    assertEquals(0, cache.expirationCount());
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(60));
+    cache.expire();
+    assertNull(cache.peekStale("key"));
+    assertEquals(0, cache.size());
+    assertEquals(1, cache.expirationCount());
+  }
+
+  @Test
+  public void testDerivedObjectIsReusedUntilTheValueChanges() {
+    AtomicLong clock = new AtomicLong();
+    LocalCache cache = new LocalCache(100, 1024 * 1024, clock::get);
+    AtomicLong derivations = new AtomicLong();
+    Function<CacheValue, String> derive = value -> {
+      derivations.incrementAndGet();
+      return "derived:" + value.bytes.utf8String();
+    };
+    cache.put("key", CacheValue.of("v1"), TimeUnit.SECONDS.toNanos(5));
+
+    String first = cache.getConcurrent("key", String.class, derive);
+    assertEquals("derived:v1", first);
+    assertTrue(first == cache.getConcurrent("key", String.class, derive));
+    assertEquals(1, derivations.get());
+
+    cache.put("key", CacheValue.of("v2"), TimeUnit.SECONDS.toNanos(5));
+    assertEquals("derived:v2", cache.getConcurrent("key", String.class, derive));
+    assertEquals(2, derivations.get());
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+    assertNull(cache.getConcurrent("key", String.class, derive));
+
+    cache.put("key", CacheValue.of("v3"));
+    assertEquals("derived:v3", cache.getConcurrent("key", String.class, derive));
+    cache.remove("key");
+    assertNull(cache.getConcurrent("key", String.class, derive));
+    assertEquals(3, derivations.get());
+  }
+
+  @Test
+  public void testForEachVisitsLiveEntriesColdestFirst() {
+    AtomicLong clock = new AtomicLong();
+    LocalCache cache = new LocalCache(100, 1024 * 1024, clock::get);
+    cache.put("a", CacheValue.of("1"));
+    cache.put("b", CacheValue.of("2"), TimeUnit.SECONDS.toNanos(30));
+    cache.put("expiring", CacheValue.of("3"), TimeUnit.SECONDS.toNanos(5));
+    cache.get("a");
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+
+    StringBuilder visited = new StringBuilder();
+    cache.forEach(
+        (key, value, ttlNanos) -> visited.append(key).append('=').append(ttlNanos).append(' '));
+    assertEquals("b=" + TimeUnit.SECONDS.toNanos(20) + " a=0 ", visited.toString());
+    // 遍历不记录访问
+    assertEquals(1, cache.hitCount());
+  }
+
+  @Test
+  public void testTimerWheelReclaimsExpiredEntries() {
+    AtomicLong clock = new AtomicLong();
+    LocalCache cache = new LocalCache(100_000, Long.MAX_VALUE, clock::get);
+    // 1 秒到 1000 秒各不相同的 TTL, 以及一部分永不过期的条目
+    for (int i = 1; i <= 1000; i++) {
+      cache.put("ttl-" + i, CacheValue.of("value"), TimeUnit.SECONDS.toNanos(i));
+      cache.put("forever-" + i, CacheValue.of("value"));
+    }
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(100) + 1);
+    cache.expire();
+    assertEquals(100, cache.expirationCount());
+    assertEquals(1900, cache.size());
+
+    // 跨越多层时间轮
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(2000));
+    cache.expire();
+    assertEquals(1000, cache.expirationCount());
+    assertEquals(1000, cache.size());
+  }
+
+  @Test
+  public void testLongTtlCascadesThroughWheel() {
+    AtomicLong clock = new AtomicLong();
+    LocalCache cache = new LocalCache(100, Long.MAX_VALUE, clock::get);
+    cache.put("key", CacheValue.of("value"), TimeUnit.HOURS.toNanos(3));
+
+    // 按分钟推进, 条目应在到期之后的下一个时间轮桶内被回收
+    for (int minute = 1; minute < 180; minute++) {
+      clock.set(TimeUnit.MINUTES.toNanos(minute));
+      cache.expire();
+      assertEquals("第 " + minute + " 分钟", 1, cache.size());
+    }
+    clock.set(TimeUnit.MINUTES.toNanos(181));
+    cache.expire();
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testPutWithoutTtlClearsExpiry() {
+    AtomicLong clock = new AtomicLong();
+    LocalCache cache = new LocalCache(100, 1024 * 1024, clock::get);
+    cache.put("key", CacheValue.of("value"), TimeUnit.SECONDS.toNanos(1));
+    cache.put("key", CacheValue.of("value2"));
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(10));
+    cache.expire();
+    assertEquals(CacheValue.of("value2"), cache.get("key"));
+    assertEquals(0, cache.expirationCount());
+  }
+
+  @Test
+  public void testConcurrentReadsFeedEvictionPolicy() throws InterruptedException {
+    LocalCache cache = new LocalCache(100, Long.MAX_VALUE);
+    for (int i = 0; i < 50; i++) {
+      cache.put("hot-" + i, CacheValue.of("value"));
+    }
+    // 多个线程无锁读取热点键, 当前线程作为拥有者同时批量应用访问记录
+    AtomicLong failures = new AtomicLong();
+    Thread[] readers = new Thread[4];
+    for (int t = 0; t < readers.length; t++) {
+      readers[t] =
+          new Thread(
+              () -> {
+                for (int round = 0; round < 100; round++) {
+                  for (int i = 0; i < 50; i++) {
+                    if (!CacheValue.of("value").equals(cache.getConcurrent("hot-" + i))) {
+                      failures.incrementAndGet();
+                    }
+                  }
+                }
+              });
+    }
+    for (Thread reader : readers) {
+      reader.start();
+    }
+    for (Thread reader : readers) {
+      while (reader.isAlive()) {
+        cache.drainReads();
+      }
+      reader.join();
+    }
+    cache.drainReads();
+    assertEquals(0, failures.get());
+    assertNull(cache.getConcurrent("missing"));
+    assertEquals(4 * 100 * 50, cache.hitCount());
+    assertEquals(0, cache.missCount());
+
+    // 热点键的访问频率已被记录, 扫描冷键时不会被挤出
+    for (int i = 0; i < 10_000; i++) {
+      cache.put("cold-" + i, CacheValue.of("value"));
+    }
+    int hotRemaining = 0;
+    for (int i = 0; i < 50; i++) {
+      if (cache.containsKey("hot-" + i)) {
+        hotRemaining++;
+      }
+    }
+    assertTrue("热点键被扫描淘汰: " + hotRemaining, hotRemaining >= 45);
+  }
+
+  @Test
+  public void testOffHeapValues() {
+    SlabStore slabs = new SlabStore(1024 * 1024, 64 * 1024, ByteBuffer::allocate);
+    LocalCache cache = new LocalCache(100, 1024 * 1024, slabs);
+    CacheValue binary = new CacheValue(ByteString.fromArray(new byte[] {0, 1, 2}), "bin");
+    cache.put("binary", binary);
+    cache.put("text", CacheValue.of("value"));
+    assertEquals(binary, cache.get("binary"));
+    assertEquals(CacheValue.of("value"), cache.getConcurrent("text"));
+    assertEquals(CacheValue.of("value"), cache.peek("text"));
+
+    // 替换和删除都会释放旧的块
+    cache.put("text", CacheValue.of("replaced"));
+    assertEquals(CacheValue.of("replaced"), cache.get("text"));
+    assertEquals(2 * SlabStore.MIN_CHUNK_SIZE, slabs.usedBytes());
+    cache.remove("text");
+    assertEquals(SlabStore.MIN_CHUNK_SIZE, slabs.usedBytes());
+
+    // 超过 slab 大小的值保留在堆上
+    CacheValue large = new CacheValue(ByteString.fromArray(new byte[128 * 1024]), "bin");
+    cache.put("large", large);
+    assertEquals(large, cache.get("large"));
+    assertEquals(SlabStore.MIN_CHUNK_SIZE, slabs.usedBytes());
+  }
+
+  @Test
+  public void testOffHeapEvictionFreesChunks() {
+    SlabStore slabs = new SlabStore(16 * 1024, 4096, ByteBuffer::allocate);
+    LocalCache cache = new LocalCache(Long.MAX_VALUE, 16 * 1024, slabs);
+    for (int i = 0; i < 1000; i++) {
+      cache.put("key-" + i, new CacheValue(ByteString.fromArray(new byte[100 + i % 300]), "bin"));
+    }
+    assertTrue(cache.weightedSize() <= 16 * 1024);
+    assertTrue(slabs.usedBytes() <= 16 * 1024);
+    // 不同大小级别之间通过压缩共享 slab, 总量不超过容量加一个 slab
+    assertTrue(slabs.slabCount() <= 5);
+    for (int i = 0; i < 1000; i++) {
+      CacheValue value = cache.peek("key-" + i);
+      if (value != null) {
+        assertEquals(100 + i % 300, value.size());
+      }
+    }
+  }
+
+  @Test
+  public void testConcurrentOffHeapReadsNeverSeeReusedChunks() throws InterruptedException {
+    SlabStore slabs = new SlabStore(8 * 1024, 4096, ByteBuffer::allocate);
+    LocalCache cache = new LocalCache(Long.MAX_VALUE, 8 * 1024, slabs);
+    AtomicLong torn = new AtomicLong();
+    AtomicLong done = new AtomicLong();
+    Thread reader =
+        new Thread(
+            () -> {
+              while (done.get() == 0) {
+                for (int i = 0; i < 20; i++) {
+                  CacheValue value = cache.getConcurrent("key-" + i);
+                  // 每个值的所有字节都相同, 读到混合的字节说明复制了已被重用的块
+                  if (value != null && !isUniform(value.bytes)) {
+                    torn.incrementAndGet();
+                  }
+                }
+              }
+            });
+    reader.start();
+    for (int round = 0; round < 20_000; round++) {
+      byte[] bytes = new byte[64 + round % 200];
+      Arrays.fill(bytes, (byte) round);
+      cache.put("key-" + round % 20, new CacheValue(ByteString.fromArray(bytes), "bin"));
+      cache.drainReads();
+    }
+    done.set(1);
+    reader.join();
+    assertEquals(0, torn.get());
+  }
+
+  private static boolean isUniform(ByteString bytes) {
+    for (int i = 1; i < bytes.size(); i++) {
+      if (bytes.apply(i) != bytes.apply(0)) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,51 @@
+package com.example.cache;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class NegativeCacheTest {
+
+  @Test
+  public void testEntryExpires() {
+    AtomicLong clock = new AtomicLong();
+    NegativeCache cache = new NegativeCache(100, TimeUnit.SECONDS.toNanos(5), clock::get);
+    cache.add("key");
+    assertTrue(cache.contains("key"));
+
+    clock.addAndGet(TimeUnit.SECONDS.toNanos(5));
+    assertFalse(cache.contains("key"));
+    assertEquals(0, cache.size());
+  }
+
+  @Test
+  public void testBoundedSize() {
+    NegativeCache cache = new NegativeCache(10, TimeUnit.SECONDS.toNanos(5));
+    for (int i = 0; i < 100; i++) {
+      cache.add("key-" + i);
+    }
+    assertEquals(10, cache.size());
+    assertFalse(cache.contains("key-0"));
+    assertTrue(cache.contains("key-99"));
+  }
+
+  @Test
+  public void testInvalidate() {
+    NegativeCache cache = new NegativeCache(10, TimeUnit.SECONDS.toNanos(5));
+    cache.add("key");
+    cache.invalidate("key");
+    assertFalse(cache.contains("key"));
+  }
+
+  @Test
+  public void testDisabledWithZeroTtl() {
+    NegativeCache cache = new NegativeCache(10, 0);
+    cache.add("key");
+    assertFalse(cache.contains("key"));
+  }
+}
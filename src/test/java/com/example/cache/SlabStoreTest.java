@@ -0,0 +1,109 @@
+package com.example.cache;
+
+import akka.util.ByteString;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SlabStoreTest {
+
+  private static final class TestOwner implements SlabStore.Owner {
+    SlabStore.Ref ref;
+
+    @Override
+    public SlabStore.Ref ref() {
+      return ref;
+    }
+
+    @Override
+    public void relocated(SlabStore.Ref ref) {
+      this.ref = ref;
+    }
+  }
+
+  private static TestOwner allocate(SlabStore store, String value) {
+    TestOwner owner = new TestOwner();
+    owner.ref = store.allocate(ByteString.fromString(value), CacheValue.TEXT_PLAIN_UTF8, owner);
+    return owner;
+  }
+
+  @Test
+  public void testAllocateReadAndFree() {
+    SlabStore store = new SlabStore(64 * 1024, 4096, ByteBuffer::allocate);
+    TestOwner owner = allocate(store, "hello");
+    assertEquals(ByteString.fromString("hello"), store.read(owner.ref));
+    assertEquals(SlabStore.MIN_CHUNK_SIZE, owner.ref.chunkSize());
+    assertEquals(SlabStore.MIN_CHUNK_SIZE, store.usedBytes());
+
+    store.free(owner.ref);
+    assertEquals(0, store.usedBytes());
+    // 释放的块被同一级别重用, 不再分配新的 slab
+    allocate(store, "world");
+    assertEquals(1, store.slabCount());
+  }
+
+  @Test
+  public void testSizeClasses() {
+    SlabStore store = new SlabStore(64 * 1024, 4096, ByteBuffer::allocate);
+    assertEquals(0, store.sizeClassFor(0));
+    assertEquals(0, store.sizeClassFor(64));
+    assertEquals(1, store.sizeClassFor(65));
+    assertTrue(store.sizeClassFor(4096) >= 0);
+    assertEquals(-1, store.sizeClassFor(4097));
+
+    TestOwner owner = new TestOwner();
+    assertNull(store.allocate(ByteString.fromArray(new byte[4097]), "bin", owner));
+  }
+
+  @Test
+  public void testCapacityIsBounded() {
+    // 容量 2 个 slab, 另外预留 1 个
+    SlabStore store = new SlabStore(8192, 4096, ByteBuffer::allocate);
+    int allocated = 0;
+    while (allocate(store, "value").ref != null) {
+      allocated++;
+    }
+    assertEquals(3 * 4096 / SlabStore.MIN_CHUNK_SIZE, allocated);
+    assertEquals(3, store.slabCount());
+  }
+
+  @Test
+  public void testCompactionReleasesSlabsToOtherSizeClasses() {
+    SlabStore store = new SlabStore(8192, 4096, ByteBuffer::allocate);
+    List<TestOwner> small = new ArrayList<>();
+    TestOwner owner;
+    while ((owner = allocate(store, "small-" + small.size())).ref != null) {
+      small.add(owner);
+    }
+    // 每个 slab 只保留少量块, 各 slab 都不是空的
+    List<TestOwner> kept = new ArrayList<>();
+    for (int i = 0; i < small.size(); i++) {
+      if (i % 16 == 0) {
+        kept.add(small.get(i));
+      } else {
+        store.free(small.get(i).ref);
+      }
+    }
+
+    // 大值需要一个空闲的 slab, 分配时触发压缩
+    TestOwner large = new TestOwner();
+    large.ref = store.allocate(ByteString.fromArray(new byte[2048]), "bin", large);
+    assertNotNull(large.ref);
+    assertEquals(1, store.compactionCount());
+    assertTrue(store.relocationCount() > 0);
+    assertEquals(3, store.slabCount());
+
+    // 被移动的块内容不变
+    for (TestOwner survivor : kept) {
+      int index = small.indexOf(survivor);
+      assertEquals(ByteString.fromString("small-" + index), store.read(survivor.ref));
+    }
+  }
+}
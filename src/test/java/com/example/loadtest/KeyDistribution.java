@@ -0,0 +1,90 @@
+package com.example.loadtest;
+
+import java.util.SplittableRandom;
+
+/** 负载测试中选择键的分布, 返回 0 到 size - 1 之间的键编号. 实现是线程安全的. */
+public interface KeyDistribution {
+
+  int next(SplittableRandom random);
+
+  static KeyDistribution uniform(int size) {
+    return random -> random.nextInt(size);
+  }
+
+  /**
+   * Zipf 分布: 编号为 k 的键被选中的概率与 1 / (k + 1)^exponent 成正比, 编号越小越热.
+   * 使用 Hörmann 和 Derflinger 的拒绝-反演采样, 准备和采样都是 O(1), 不需要预先计算 zeta.
+   */
+  static KeyDistribution zipfian(int size, double exponent) {
+    return new Zipfian(size, exponent);
+  }
+
+  final class Zipfian implements KeyDistribution {
+    private final int size;
+    private final double exponent;
+    private final double hIntegralX1;
+    private final double hIntegralSize;
+    private final double s;
+
+    Zipfian(int size, double exponent) {
+      if (size <= 0 || exponent <= 0) {
+        throw new IllegalArgumentException("size 和 exponent 必须大于 0");
+      }
+      this.size = size;
+      this.exponent = exponent;
+      this.hIntegralX1 = hIntegral(1.5) - 1;
+      this.hIntegralSize = hIntegral(size + 0.5);
+      this.s = 2 - hIntegralInverse(hIntegral(2.5) - h(2));
+    }
+
+    @Override
+    public int next(SplittableRandom random) {
+      while (true) {
+        double u = hIntegralSize + random.nextDouble() * (hIntegralX1 - hIntegralSize);
+        double x = hIntegralInverse(u);
+        int k = (int) (x + 0.5);
+        if (k < 1) {
+          k = 1;
+        } else if (k > size) {
+          k = size;
+        }
+        if (k - x <= s || u >= hIntegral(k + 0.5) - h(k)) {
+          return k - 1;
+        }
+      }
+    }
+
+    private double h(double x) {
+      return Math.exp(-exponent * Math.log(x));
+    }
+
+    private double hIntegral(double x) {
+      double logX = Math.log(x);
+      return helper2((1 - exponent) * logX) * logX;
+    }
+
+    private double hIntegralInverse(double x) {
+      double t = x * (1 - exponent);
+      if (t < -1) {
+        t = -1;
+      }
+      return Math.exp(helper1(t) * x);
+    }
+
+    // log(1 + x) / x, x 接近 0 时用泰勒展开避免精度损失
+    private static double helper1(double x) {
+      if (Math.abs(x) > 1e-8) {
+        return Math.log1p(x) / x;
+      }
+      return 1 - x * (0.5 - x * (1.0 / 3 - 0.25 * x));
+    }
+
+    // (exp(x) - 1) / x
+    private static double helper2(double x) {
+      if (Math.abs(x) > 1e-8) {
+        return Math.expm1(x) / x;
+      }
+      return 1 + x * 0.5 * (1 + x / 3 * (1 + 0.25 * x));
+    }
+  }
+}
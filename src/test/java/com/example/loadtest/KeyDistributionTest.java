@@ -0,0 +1,48 @@
+package com.example.loadtest;
+
+import org.junit.Test;
+
+import java.util.SplittableRandom;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class KeyDistributionTest {
+
+  private static final int SAMPLES = 200_000;
+
+  @Test
+  public void testZipfianFrequenciesFollowRank() {
+    int size = 100;
+    int[] counts = sample(KeyDistribution.zipfian(size, 1.0), size);
+    // exponent 为 1 时编号 k 的概率为 1 / ((k + 1) * H(size))
+    double harmonic = 0;
+    for (int k = 1; k <= size; k++) {
+      harmonic += 1.0 / k;
+    }
+    assertEquals(1 / harmonic, counts[0] / (double) SAMPLES, 0.01);
+    assertEquals(0.5 / harmonic, counts[1] / (double) SAMPLES, 0.01);
+    assertEquals(0.1 / harmonic, counts[9] / (double) SAMPLES, 0.005);
+    assertTrue(counts[size - 1] > 0);
+  }
+
+  @Test
+  public void testUniformCoversAllKeys() {
+    int size = 10;
+    int[] counts = sample(KeyDistribution.uniform(size), size);
+    for (int count : counts) {
+      assertEquals(0.1, count / (double) SAMPLES, 0.01);
+    }
+  }
+
+  private static int[] sample(KeyDistribution distribution, int size) {
+    SplittableRandom random = new SplittableRandom(42);
+    int[] counts = new int[size];
+    for (int i = 0; i < SAMPLES; i++) {
+      int key = distribution.next(random);
+      assertTrue(key >= 0 && key < size);
+      counts[key]++;
+    }
+    return counts;
+  }
+}
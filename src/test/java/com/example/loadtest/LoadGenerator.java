@@ -0,0 +1,341 @@
+package com.example.loadtest;
+
+import akka.Done;
+import akka.actor.typed.ActorSystem;
+import akka.actor.typed.javadsl.Behaviors;
+import akka.http.javadsl.Http;
+import akka.http.javadsl.model.ContentTypes;
+import akka.http.javadsl.model.HttpRequest;
+import akka.http.javadsl.model.HttpResponse;
+import akka.stream.javadsl.Source;
+import com.example.loadtest.LoadTestSettings.Operation;
+import com.example.metrics.Counter;
+import com.example.metrics.Histogram;
+import com.example.metrics.Metrics;
+import com.typesafe.config.Config;
+import com.typesafe.config.ConfigFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 开放模型的 HTTP 负载生成器: 按固定的到达速率发送请求, 第 i 个请求的计划发送时间为 start + i / rate,
+ * 发送不等待之前的响应. 延迟从计划发送时间开始计算, 服务端变慢或发送线程落后时排队的时间也计入延迟,
+ * 不会像闭环压测那样因为等待响应而少发请求(coordinated omission).
+ *
+ * <p>请求按 loadtest.mix 的比例访问 GET /cache/&lt;key&gt;, PUT /cache/&lt;key&gt; 和 POST
+ * /post/&lt;key&gt;, 键按 uniform 或 zipfian 分布选择. 每个速率输出各操作的请求数、错误数和延迟百分位;
+ * 速率从低到高逐级运行, 完成速率跟不上到达速率或错误超过 1% 时视为饱和.
+ *
+ * <p>延迟记录在 {@link Histogram} 中, 百分位为所在桶的上界, 相对误差不超过 1/16.
+ */
+public final class LoadGenerator {
+
+  private static final String LATENCY = "loadtest_latency_seconds";
+  private static final String ERRORS = "loadtest_errors_total";
+
+  private final ActorSystem<?> system;
+  private final LoadTestSettings settings;
+  private final Http http;
+  private final KeyDistribution distribution;
+  private final String[] keys;
+  private final String value;
+
+  public LoadGenerator(ActorSystem<?> system, LoadTestSettings settings) {
+    this.system = system;
+    this.settings = settings;
+    this.http = Http.get(system);
+    this.distribution = settings.keyDistribution();
+    this.keys = new String[settings.keys];
+    for (int i = 0; i < keys.length; i++) {
+      keys[i] = "loadtest-" + i;
+    }
+    char[] chars = new char[settings.valueSize];
+    Arrays.fill(chars, 'v');
+    this.value = new String(chars);
+  }
+
+  // 每个速率一次运行的结果
+  public static final class Result {
+    public final int rate;
+    public final Duration duration;
+    // 发送完所有请求实际用的时间, 明显超过 duration 说明发送线程跟不上
+    public final Duration sendDuration;
+    private final Metrics metrics;
+
+    Result(int rate, Duration duration, Duration sendDuration, Metrics metrics) {
+      this.rate = rate;
+      this.duration = duration;
+      this.sendDuration = sendDuration;
+      this.metrics = metrics;
+    }
+
+    public Histogram latency(Operation operation) {
+      return metrics.timer(LATENCY, "", "operation", operation.name());
+    }
+
+    public long errors(Operation operation) {
+      return metrics.counter(ERRORS, "", "operation", operation.name()).value();
+    }
+
+    public long count() {
+      long count = 0;
+      for (Operation operation : Operation.values()) {
+        count += latency(operation).count();
+      }
+      return count;
+    }
+
+    public long errors() {
+      long errors = 0;
+      for (Operation operation : Operation.values()) {
+        errors += errors(operation);
+      }
+      return errors;
+    }
+
+    // 完成的请求数除以计划的运行时间
+    public double completedRate() {
+      return (count() - errors()) * 1e9 / duration.toNanos();
+    }
+
+    public boolean saturated() {
+      long count = count();
+      return completedRate() < rate * 0.95 || (count > 0 && errors() * 100 > count);
+    }
+
+    public String format() {
+      StringBuilder out = new StringBuilder();
+      out.append(
+          String.format(
+              "到达速率 %d/s, %d 秒: 发送 %d 个请求, 用时 %.1f 秒, 完成速率 %.1f/s%s%n",
+              rate,
+              duration.getSeconds(),
+              count(),
+              sendDuration.toMillis() / 1000.0,
+              completedRate(),
+              saturated() ? " (饱和)" : ""));
+      out.append(
+          String.format(
+              "%-6s %10s %8s %10s %10s %10s %10s %10s %10s%n",
+              "操作", "请求数", "错误", "p50(ms)", "p90", "p99", "p99.9", "p99.99", "max"));
+      for (Operation operation : Operation.values()) {
+        Histogram latency = latency(operation);
+        if (latency.count() == 0) {
+          continue;
+        }
+        out.append(
+            String.format(
+                "%-6s %10d %8d %10.3f %10.3f %10.3f %10.3f %10.3f %10.3f%n",
+                operation,
+                latency.count(),
+                errors(operation),
+                millis(latency.percentile(50)),
+                millis(latency.percentile(90)),
+                millis(latency.percentile(99)),
+                millis(latency.percentile(99.9)),
+                millis(latency.percentile(99.99)),
+                millis(latency.percentile(100))));
+      }
+      return out.toString();
+    }
+
+    private static double millis(long nanos) {
+      return nanos / 1e6;
+    }
+  }
+
+  /** 以 PUT 写入所有键, 使之后的 GET 命中. */
+  public CompletionStage<Done> preload() {
+    return Source.range(0, keys.length - 1)
+        .mapAsyncUnordered(
+            settings.preloadParallelism,
+            i ->
+                http.singleRequest(request(Operation.PUT, keys[i]))
+                    .thenApply(
+                        response -> {
+                          response.discardEntityBytes(system);
+                          if (response.status().intValue() >= 300) {
+                            throw new IllegalStateException(
+                                "预加载 " + keys[i] + " 失败: " + response.status());
+                          }
+                          return Done.getInstance();
+                        }))
+        .run(system)
+        .thenApply(done -> Done.getInstance());
+  }
+
+  /**
+   * 以 rate 的到达速率运行 duration, 在调用线程上发送, 所有请求完成或超时后返回. 响应状态码为 5xx、
+   * 连接失败或超过 request-timeout 的请求记为错误, 它们的延迟同样计入直方图.
+   */
+  public Result run(int rate, Duration duration) {
+    Metrics metrics = new Metrics();
+    Operation[] operations = Operation.values();
+    Histogram[] latencies = new Histogram[operations.length];
+    Counter[] errors = new Counter[operations.length];
+    for (Operation operation : operations) {
+      latencies[operation.ordinal()] =
+          metrics.timer(
+              LATENCY, "从计划发送时间到收到响应的延迟", "operation", operation.name());
+      errors[operation.ordinal()] =
+          metrics.counter(ERRORS, "失败或超时的请求数量", "operation", operation.name());
+    }
+    int totalWeight = Arrays.stream(settings.mix).sum();
+    SplittableRandom random = new SplittableRandom();
+    AtomicLong inFlight = new AtomicLong();
+    long timeoutMillis = settings.requestTimeout.toMillis();
+
+    long start = System.nanoTime();
+    long requests = duration.toNanos() * rate / TimeUnit.SECONDS.toNanos(1);
+    for (long i = 0; i < requests; i++) {
+      // 按序号计算计划发送时间, 不累积 parkNanos 的误差
+      long intended = start + i * TimeUnit.SECONDS.toNanos(1) / rate;
+      long wait = intended - System.nanoTime();
+      if (wait > 0) {
+        LockSupport.parkNanos(wait);
+      }
+      Operation operation = pick(operations, random.nextInt(totalWeight));
+      String key = keys[distribution.next(random)];
+      Histogram latency = latencies[operation.ordinal()];
+      Counter error = errors[operation.ordinal()];
+      inFlight.incrementAndGet();
+      CompletableFuture<HttpResponse> response;
+      try {
+        response = http.singleRequest(request(operation, key)).toCompletableFuture();
+      } catch (RuntimeException e) {
+        response = CompletableFuture.failedFuture(e);
+      }
+      // 超时后仍要丢弃迟到响应的实体, 否则连接无法复用
+      response.thenAccept(late -> late.discardEntityBytes(system));
+      response
+          .copy()
+          .orTimeout(timeoutMillis, TimeUnit.MILLISECONDS)
+          .whenComplete(
+              (reply, failure) -> {
+                latency.record(System.nanoTime() - intended);
+                if (failure != null || reply.status().intValue() >= 500) {
+                  error.increment();
+                }
+                inFlight.decrementAndGet();
+              });
+    }
+    Duration sendDuration = Duration.ofNanos(System.nanoTime() - start);
+
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis + 1000);
+    while (inFlight.get() > 0 && System.nanoTime() < deadline) {
+      LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+    }
+    return new Result(rate, duration, sendDuration, metrics);
+  }
+
+  private Operation pick(Operation[] operations, int weight) {
+    for (Operation operation : operations) {
+      weight -= settings.mix[operation.ordinal()];
+      if (weight < 0) {
+        return operation;
+      }
+    }
+    throw new IllegalStateException("不会到达这里");
+  }
+
+  private HttpRequest request(Operation operation, String key) {
+    switch (operation) {
+      case GET:
+        return HttpRequest.GET(settings.baseUrl + "/cache/" + key);
+      case PUT:
+        return HttpRequest.PUT(settings.baseUrl + "/cache/" + key)
+            .withEntity(ContentTypes.TEXT_PLAIN_UTF8, value);
+      default:
+        return HttpRequest.POST(settings.baseUrl + "/post/" + key)
+            .withEntity(
+                ContentTypes.APPLICATION_JSON, "{\"field1\":\"" + value + "\",\"field2\":1}");
+    }
+  }
+
+  public static void main(String[] args) {
+    Config config =
+        ConfigFactory.systemProperties()
+            .withFallback(ConfigFactory.parseResources("loadtest.conf"))
+            .resolve();
+    LoadTestSettings settings = LoadTestSettings.create(config);
+    ActorSystem<Void> system =
+        ActorSystem.create(
+            Behaviors.empty(),
+            "LoadGenerator",
+            clientConfig(settings).withFallback(ConfigFactory.load()));
+    try {
+      LoadGenerator generator = new LoadGenerator(system, settings);
+      System.out.println("负载测试: " + settings.describe());
+      if (settings.preload) {
+        System.out.println("预加载 " + settings.keys + " 个键...");
+        generator.preload().toCompletableFuture().join();
+      }
+      List<Result> results = new ArrayList<>();
+      for (int rate : settings.rates) {
+        if (!settings.warmup.isZero()) {
+          generator.run(rate, settings.warmup);
+        }
+        Result result = generator.run(rate, settings.duration);
+        System.out.println(result.format());
+        results.add(result);
+      }
+      System.out.println(summary(results));
+    } finally {
+      system.terminate();
+      system.getWhenTerminated().toCompletableFuture().join();
+    }
+  }
+
+  // 客户端连接池的配置: 开放模型下慢响应会使请求在池中排队, 默认的 32 个排队位置很快就会溢出
+  static Config clientConfig(LoadTestSettings settings) {
+    return ConfigFactory.parseString(
+        "akka.http.host-connection-pool.max-connections = "
+            + settings.maxConnections
+            + "\nakka.http.host-connection-pool.max-open-requests = "
+            + settings.maxOpenRequests);
+  }
+
+  // 所有速率的完成速率和 p99 汇总, 以及第一次饱和之前的最高到达速率
+  static String summary(List<Result> results) {
+    StringBuilder out =
+        new StringBuilder(
+            String.format("%10s %12s %10s %8s%n", "到达速率", "完成速率", "p99(ms)", "错误"));
+    int sustained = 0;
+    boolean saturated = false;
+    for (Result result : results) {
+      long p99 = 0;
+      for (Operation operation : Operation.values()) {
+        p99 = Math.max(p99, result.latency(operation).percentile(99));
+      }
+      out.append(
+          String.format(
+              "%10d %12.1f %10.3f %8d%s%n",
+              result.rate,
+              result.completedRate(),
+              p99 / 1e6,
+              result.errors(),
+              result.saturated() ? " (饱和)" : ""));
+      saturated |= result.saturated();
+      if (!saturated) {
+        sustained = result.rate;
+      }
+    }
+    if (!saturated) {
+      out.append("所有到达速率都未饱和, 可以继续提高 loadtest.rates");
+    } else if (sustained == 0) {
+      out.append("最低的到达速率已经饱和");
+    } else {
+      out.append("饱和点在 ").append(sustained).append("/s 之上");
+    }
+    return out.toString();
+  }
+}
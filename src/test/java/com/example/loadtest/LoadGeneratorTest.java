@@ -0,0 +1,88 @@
+package com.example.loadtest;
+
+import akka.actor.testkit.typed.javadsl.ActorTestKit;
+import akka.http.javadsl.Http;
+import akka.http.javadsl.ServerBinding;
+import akka.http.javadsl.model.StatusCodes;
+import akka.http.javadsl.server.Route;
+import com.example.loadtest.LoadTestSettings.Operation;
+import com.typesafe.config.ConfigFactory;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.time.Duration;
+
+import static akka.http.javadsl.server.Directives.complete;
+import static akka.http.javadsl.server.Directives.concat;
+import static akka.http.javadsl.server.Directives.get;
+import static akka.http.javadsl.server.Directives.pathPrefix;
+import static akka.http.javadsl.server.Directives.put;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+// 对一个 GET 返回 200、PUT 返回 503 的替身服务运行一秒, 验证请求数量、错误统计和延迟记录
+public class LoadGeneratorTest {
+
+  private static ActorTestKit testKit;
+  private static ServerBinding binding;
+
+  @BeforeClass
+  public static void setup() {
+    LoadTestSettings defaults =
+        LoadTestSettings.create(ConfigFactory.parseResources("loadtest.conf"));
+    testKit =
+        ActorTestKit.create(
+            LoadGenerator.clientConfig(defaults).withFallback(ConfigFactory.load()));
+    Route route =
+        pathPrefix(
+            "cache",
+            () ->
+                concat(
+                    get(() -> complete("v")),
+                    put(() -> complete(StatusCodes.SERVICE_UNAVAILABLE))));
+    binding =
+        Http.get(testKit.system())
+            .newServerAt("127.0.0.1", 0)
+            .bind(route)
+            .toCompletableFuture()
+            .join();
+  }
+
+  @AfterClass
+  public static void teardown() {
+    binding.unbind().toCompletableFuture().join();
+    testKit.shutdownTestKit();
+  }
+
+  @Test
+  public void testRunSendsAtArrivalRateAndCountsErrors() {
+    LoadTestSettings settings =
+        LoadTestSettings.create(
+            ConfigFactory.parseString(
+                    "loadtest {\n"
+                        + "  base-url = \"http://127.0.0.1:"
+                        + binding.localAddress().getPort()
+                        + "\"\n"
+                        + "  keys = 1000\n"
+                        + "  mix { get = 1, put = 1, post = 0 }\n"
+                        + "}")
+                .withFallback(ConfigFactory.parseResources("loadtest.conf")));
+    LoadGenerator generator = new LoadGenerator(testKit.system(), settings);
+
+    LoadGenerator.Result result = generator.run(200, Duration.ofSeconds(1));
+
+    assertEquals(200, result.count());
+    long gets = result.latency(Operation.GET).count();
+    long puts = result.latency(Operation.PUT).count();
+    assertEquals(200, gets + puts);
+    assertTrue("gets = " + gets, gets > 50 && puts > 50);
+    assertEquals(0, result.errors(Operation.GET));
+    assertEquals(puts, result.errors(Operation.PUT));
+    assertEquals(0, result.latency(Operation.POST).count());
+    assertTrue(result.latency(Operation.GET).percentile(50) > 0);
+    // PUT 全部失败, 完成速率约为到达速率的一半
+    assertTrue(result.saturated());
+    assertTrue(result.format().contains("GET"));
+  }
+}
@@ -0,0 +1,119 @@
+package com.example.loadtest;
+
+import com.typesafe.config.Config;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+// 负载生成器的配置, 对应 loadtest.conf 中的 loadtest 配置块
+public class LoadTestSettings {
+
+  public enum Operation {
+    GET,
+    PUT,
+    POST
+  }
+
+  public final String baseUrl;
+  public final List<Integer> rates;
+  public final Duration warmup;
+  public final Duration duration;
+  public final int keys;
+  // uniform 或 zipfian
+  public final String distribution;
+  public final double zipfExponent;
+  // 按 Operation 顺序的请求比例
+  public final int[] mix;
+  public final int valueSize;
+  public final boolean preload;
+  public final int preloadParallelism;
+  public final Duration requestTimeout;
+  public final int maxConnections;
+  public final int maxOpenRequests;
+
+  public LoadTestSettings(
+      String baseUrl,
+      List<Integer> rates,
+      Duration warmup,
+      Duration duration,
+      int keys,
+      String distribution,
+      double zipfExponent,
+      int[] mix,
+      int valueSize,
+      boolean preload,
+      int preloadParallelism,
+      Duration requestTimeout,
+      int maxConnections,
+      int maxOpenRequests) {
+    if (rates.isEmpty() || rates.stream().anyMatch(rate -> rate <= 0)) {
+      throw new IllegalArgumentException("loadtest.rates 不能为空且必须大于 0: " + rates);
+    }
+    if (keys <= 0) {
+      throw new IllegalArgumentException("loadtest.keys 必须大于 0: " + keys);
+    }
+    if (!distribution.equals("uniform") && !distribution.equals("zipfian")) {
+      throw new IllegalArgumentException(
+          "loadtest.distribution 必须是 uniform 或 zipfian: " + distribution);
+    }
+    if (mix.length != Operation.values().length
+        || Arrays.stream(mix).anyMatch(weight -> weight < 0)
+        || Arrays.stream(mix).sum() == 0) {
+      throw new IllegalArgumentException("loadtest.mix 的比例不能为负数且不能全为 0");
+    }
+    this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+    this.rates = List.copyOf(rates);
+    this.warmup = warmup;
+    this.duration = duration;
+    this.keys = keys;
+    this.distribution = distribution;
+    this.zipfExponent = zipfExponent;
+    this.mix = mix.clone();
+    this.valueSize = valueSize;
+    this.preload = preload;
+    this.preloadParallelism = preloadParallelism;
+    this.requestTimeout = requestTimeout;
+    this.maxConnections = maxConnections;
+    this.maxOpenRequests = maxOpenRequests;
+  }
+
+  public static LoadTestSettings create(Config config) {
+    Config loadtest = config.getConfig("loadtest");
+    Config mix = loadtest.getConfig("mix");
+    return new LoadTestSettings(
+        loadtest.getString("base-url"),
+        loadtest.getIntList("rates"),
+        loadtest.getDuration("warmup"),
+        loadtest.getDuration("duration"),
+        loadtest.getInt("keys"),
+        loadtest.getString("distribution"),
+        loadtest.getDouble("zipf-exponent"),
+        new int[] {mix.getInt("get"), mix.getInt("put"), mix.getInt("post")},
+        loadtest.getInt("value-size"),
+        loadtest.getBoolean("preload"),
+        loadtest.getInt("preload-parallelism"),
+        loadtest.getDuration("request-timeout"),
+        loadtest.getInt("max-connections"),
+        loadtest.getInt("max-open-requests"));
+  }
+
+  public KeyDistribution keyDistribution() {
+    return distribution.equals("zipfian")
+        ? KeyDistribution.zipfian(keys, zipfExponent)
+        : KeyDistribution.uniform(keys);
+  }
+
+  public String describe() {
+    return String.format(
+        "%s, %d 个键 (%s), GET/PUT/POST = %d/%d/%d, 速率 %s",
+        baseUrl,
+        keys,
+        distribution.equals("zipfian") ? "zipfian s=" + zipfExponent : distribution,
+        mix[0],
+        mix[1],
+        mix[2],
+        rates.stream().map(String::valueOf).collect(Collectors.joining(", ")));
+  }
+}
@@ -0,0 +1,71 @@
+package com.example.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class HistogramTest {
+
+  @Test
+  public void testBucketBoundsCoverValue() {
+    long[] values = {0, 1, 15, 16, 17, 31, 32, 100, 1_000, 123_456_789L, Long.MAX_VALUE / 3};
+    for (long value : values) {
+      int index = Histogram.bucketIndex(value);
+      assertTrue(Histogram.lowerBound(index) <= value);
+      assertTrue(Histogram.upperBound(index) >= value);
+    }
+  }
+
+  @Test
+  public void testRelativeErrorBounded() {
+    for (long value = 16; value < 1_000_000; value = value * 3 + 7) {
+      int index = Histogram.bucketIndex(value);
+      long width = Histogram.upperBound(index) - Histogram.lowerBound(index) + 1;
+      assertTrue(width <= Math.max(1, value / 16 + 1));
+    }
+  }
+
+  @Test
+  public void testCountSumAndPercentile() {
+    Histogram histogram = new Histogram("test", "test", "");
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i);
+    }
+    assertEquals(100, histogram.count());
+    assertEquals(5050, histogram.sum());
+    long p50 = histogram.percentile(50);
+    assertTrue("p50 = " + p50, p50 >= 50 && p50 <= 53);
+    long p99 = histogram.percentile(99);
+    assertTrue("p99 = " + p99, p99 >= 99 && p99 <= 103);
+  }
+
+  @Test
+  public void testConcurrentRecordsAreAllCounted() throws InterruptedException {
+    Histogram histogram = new Histogram("test", "test", "");
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      threads[t] =
+          new Thread(
+              () -> {
+                for (int i = 0; i < 10_240; i++) {
+                  histogram.record(i % 32);
+                }
+              });
+      threads[t].start();
+    }
+    for (Thread thread : threads) {
+      thread.join();
+    }
+    assertEquals(4 * 10_240, histogram.count());
+    assertEquals(4 * 10_240 / 32 * (31 * 32 / 2), histogram.sum());
+  }
+
+  @Test
+  public void testRegistryReturnsSameInstance() {
+    Metrics metrics = new Metrics();
+    assertTrue(metrics.histogram("a", "help") == metrics.histogram("a", "help"));
+    metrics.counter("c", "help").increment();
+    assertEquals(1, metrics.counter("c", "help").value());
+  }
+}
@@ -0,0 +1,78 @@
+package com.example.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PrometheusFormatTest {
+
+  @Test
+  public void testCountersWithLabels() {
+    Metrics metrics = new Metrics();
+    metrics.counter("requests_total", "请求数", "route", "a").add(3);
+    metrics.counter("requests_total", "请求数", "route", "b\"").increment();
+    metrics.counter("plain_total", "无标签").increment();
+    String text = PrometheusFormat.render(metrics);
+    assertEquals(
+        "# HELP plain_total 无标签\n"
+            + "# TYPE plain_total counter\n"
+            + "plain_total 1\n"
+            + "# HELP requests_total 请求数\n"
+            + "# TYPE requests_total counter\n"
+            + "requests_total{route=\"a\"} 3\n"
+            + "requests_total{route=\"b\\\"\"} 1\n",
+        text);
+  }
+
+  @Test
+  public void testHistogramBucketsAreCumulative() {
+    Metrics metrics = new Metrics();
+    Histogram histogram = metrics.histogram("latency", "耗时", "command", "get");
+    histogram.record(3);
+    histogram.record(20);
+    histogram.record(40);
+    String text = PrometheusFormat.render(metrics);
+    assertTrue(text, text.contains("# TYPE latency histogram\n"));
+    assertTrue(text, text.contains("latency_bucket{command=\"get\",le=\"15\"} 1\n"));
+    assertTrue(text, text.contains("latency_bucket{command=\"get\",le=\"31\"} 2\n"));
+    assertTrue(text, text.contains("latency_bucket{command=\"get\",le=\"63\"} 3\n"));
+    assertTrue(text, text.contains("latency_bucket{command=\"get\",le=\"+Inf\"} 3\n"));
+    assertTrue(text, text.contains("latency_sum{command=\"get\"} 63\n"));
+    assertTrue(text, text.contains("latency_count{command=\"get\"} 3\n"));
+    // 没有数据的区间同样输出, 上界固定到 2^20-1
+    assertTrue(text, text.contains("latency_bucket{command=\"get\",le=\"127\"} 3\n"));
+    assertTrue(text, text.contains("latency_bucket{command=\"get\",le=\"1048575\"} 3\n"));
+    assertEquals(18, buckets(text, "latency_bucket{"));
+  }
+
+  @Test
+  public void testTimersUseSecondsAndFixedBuckets() {
+    Metrics metrics = new Metrics();
+    Histogram timer = metrics.timer("duration_seconds", "耗时");
+    timer.record(500);
+    timer.record(2_000);
+    // 超出最大上界的值只计入 +Inf
+    timer.record(100_000_000_000L);
+    String text = PrometheusFormat.render(metrics);
+    assertTrue(text, text.contains("duration_seconds_bucket{le=\"0.000001023\"} 1\n"));
+    assertTrue(text, text.contains("duration_seconds_bucket{le=\"0.000002047\"} 2\n"));
+    assertTrue(text, text.contains("duration_seconds_bucket{le=\"68.719476735\"} 2\n"));
+    assertTrue(text, text.contains("duration_seconds_bucket{le=\"+Inf\"} 3\n"));
+    assertTrue(text, text.contains("duration_seconds_sum 100.0000025\n"));
+    assertTrue(text, text.contains("duration_seconds_count 3\n"));
+    assertEquals(28, buckets(text, "duration_seconds_bucket{"));
+
+    // 没有数据时输出同一组上界
+    Metrics empty = new Metrics();
+    empty.timer("duration_seconds", "耗时");
+    String emptyText = PrometheusFormat.render(empty);
+    assertEquals(28, buckets(emptyText, "duration_seconds_bucket{"));
+    assertTrue(emptyText, emptyText.contains("duration_seconds_bucket{le=\"68.719476735\"} 0\n"));
+    assertTrue(emptyText, emptyText.contains("duration_seconds_sum 0\n"));
+  }
+
+  private static long buckets(String text, String prefix) {
+    return text.lines().filter(line -> line.startsWith(prefix)).count();
+  }
+}
@@ -0,0 +1,321 @@
+package com.example.routing;
+
+import akka.actor.testkit.typed.javadsl.ActorTestKit;
+import akka.actor.typed.ActorRef;
+import akka.http.javadsl.model.ContentTypes;
+import akka.http.javadsl.model.HttpEntities;
+import akka.http.javadsl.model.HttpRequest;
+import akka.http.javadsl.model.HttpResponse;
+import akka.http.javadsl.model.StatusCodes;
+import akka.http.javadsl.model.headers.RetryAfter;
+import akka.http.javadsl.testkit.JUnitRouteTest;
+import akka.http.javadsl.testkit.TestRoute;
+import akka.japi.function.Function;
+import akka.util.ByteString;
+import com.example.SupervisorActor;
+import com.example.admission.AdmissionController;
+import com.example.admission.AimdLimit;
+import com.example.model.CacheEntry;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.typesafe.config.ConfigFactory;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionStage;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CacheRouteDefinitionTest extends JUnitRouteTest {
+
+  // 测试环境没有 Redis, 第二级存储使用 memory 引擎, 批量导入的记录才能确认写入
+  private static final ActorTestKit testKit =
+      ActorTestKit.create(
+          ConfigFactory.parseString(
+                  "akka-http-example { cache.redis-lookup-timeout = 200ms,"
+                      + " store.engine = memory }")
+              .withFallback(ConfigFactory.load()));
+  private TestRoute appRoute;
+
+  @Before
+  public void setup() {
+    ActorRef<SupervisorActor.Command> supervisor = testKit.spawn(SupervisorActor.create());
+    CacheRouteDefinition routeDefinition = new CacheRouteDefinition(testKit.system(), supervisor);
+    appRoute = testRoute(routeDefinition.createRoute());
+  }
+
+  @AfterClass
+  public static void teardown() {
+    testKit.shutdownTestKit();
+  }
+
+  @Test
+  public void testPutAndGet() {
+    appRoute.run(HttpRequest.PUT("/cache/route-key/route-value")).assertStatusCode(StatusCodes.OK);
+    appRoute
+        .run(HttpRequest.GET("/cache/route-key"))
+        .assertStatusCode(StatusCodes.OK)
+        .assertEntity("route-value");
+  }
+
+  @Test
+  public void testPutWithTtl() {
+    appRoute
+        .run(HttpRequest.PUT("/cache/ttl-key/ttl-value?ttl=30"))
+        .assertStatusCode(StatusCodes.OK)
+        .assertEntity("缓存已设置: ttl-key = ttl-value, 过期时间: 30 秒");
+  }
+
+  @Test
+  public void testPutWithInvalidTtl() {
+    appRoute
+        .run(HttpRequest.PUT("/cache/ttl-key/ttl-value?ttl=0"))
+        .assertStatusCode(StatusCodes.BAD_REQUEST);
+    appRoute
+        .run(HttpRequest.PUT("/cache/ttl-key/ttl-value?ttl=abc"))
+        .assertStatusCode(StatusCodes.BAD_REQUEST);
+    // 换算为纳秒会溢出的 ttl
+    appRoute
+        .run(HttpRequest.PUT("/cache/ttl-key/ttl-value?ttl=10000000000"))
+        .assertStatusCode(StatusCodes.BAD_REQUEST);
+  }
+
+  @Test
+  public void testMultiPutAndMultiGet() throws Exception {
+    appRoute
+        .run(
+            HttpRequest.POST("/cache/_mput")
+                .withEntity(
+                    ContentTypes.APPLICATION_JSON,
+                    "[{\"key\":\"bulk-1\",\"value\":\"a\"},"
+                        + "{\"key\":\"bulk-2\",\"value\":\"b\",\"ttl\":30},"
+                        + "{\"key\":\"bulk-3\",\"value\":\"c\"}]"))
+        .assertStatusCode(StatusCodes.OK)
+        .assertEntity("缓存已设置: 3 个键");
+
+    String body =
+        appRoute
+            .run(
+                HttpRequest.POST("/cache/_mget")
+                    .withEntity(
+                        ContentTypes.APPLICATION_JSON,
+                        "[\"bulk-1\",\"bulk-2\",\"bulk-3\",\"bulk-1\"]"))
+            .assertStatusCode(StatusCodes.OK)
+            .entityString();
+    // 响应按完成顺序输出, 重复的键只返回一次
+    Map<String, String> values = new HashMap<>();
+    for (CacheEntry entry : new ObjectMapper().readValue(body, CacheEntry[].class)) {
+      assertNull(values.put(entry.key, entry.value));
+    }
+    Map<String, String> expected = new HashMap<>();
+    expected.put("bulk-1", "a");
+    expected.put("bulk-2", "b");
+    expected.put("bulk-3", "c");
+    assertEquals(expected, values);
+  }
+
+  @Test
+  public void testMultiPutRejectsInvalidEntries() {
+    appRoute
+        .run(
+            HttpRequest.POST("/cache/_mput")
+                .withEntity(
+                    ContentTypes.APPLICATION_JSON,
+                    "[{\"key\":\"bulk-4\",\"value\":\"d\",\"ttl\":0}]"))
+        .assertStatusCode(StatusCodes.BAD_REQUEST);
+    appRoute
+        .run(
+            HttpRequest.POST("/cache/_mput")
+                .withEntity(ContentTypes.APPLICATION_JSON, "[{\"key\":\"bulk-5\"}]"))
+        .assertStatusCode(StatusCodes.BAD_REQUEST);
+  }
+
+  @Test
+  public void testBulkLoadNdjson() {
+    String body =
+        "{\"key\":\"load-1\",\"value\":\"a\"}\n"
+            + "{\"key\":\"load-2\",\"value\":\"b\",\"ttl\":60}\n"
+            + "\n"
+            + "not json\n"
+            + "{\"key\":\"load-3\",\"value\":\"c\",\"ttl\":-1}\n"
+            + "{\"key\":\"load-4\",\"value\":\"d\"}";
+    appRoute
+        .run(HttpRequest.POST("/cache/_load").withEntity(ContentTypes.APPLICATION_JSON, body))
+        .assertStatusCode(StatusCodes.OK)
+        .assertEntity("{\"accepted\":3,\"rejected\":2}");
+    appRoute
+        .run(HttpRequest.GET("/cache/load-4"))
+        .assertStatusCode(StatusCodes.OK)
+        .assertEntity("d");
+  }
+
+  @Test
+  public void testBulkLoadCsv() {
+    String body = "csv-1,a\ncsv-2,b,60\ncsv-3\ncsv-4,d,never\n";
+    appRoute
+        .run(HttpRequest.POST("/cache/_load").withEntity(ContentTypes.TEXT_CSV_UTF8, body))
+        .assertStatusCode(StatusCodes.OK)
+        .assertEntity("{\"accepted\":2,\"rejected\":2}");
+    appRoute
+        .run(HttpRequest.GET("/cache/csv-2"))
+        .assertStatusCode(StatusCodes.OK)
+        .assertEntity("b");
+  }
+
+  @Test
+  public void testPutBodyPreservesBytesAndContentType() {
+    byte[] bytes = {0, 1, 2, (byte) 0xFE, (byte) 0xFF};
+    appRoute
+        .run(
+            HttpRequest.PUT("/cache/binary-key")
+                .withEntity(
+                    HttpEntities.create(ContentTypes.APPLICATION_OCTET_STREAM, bytes)))
+        .assertStatusCode(StatusCodes.OK)
+        .assertEntity("缓存已设置: binary-key (5 字节)");
+    appRoute
+        .run(HttpRequest.GET("/cache/binary-key"))
+        .assertStatusCode(StatusCodes.OK)
+        .assertContentType(ContentTypes.APPLICATION_OCTET_STREAM)
+        .assertEntityBytes(ByteString.fromArray(bytes));
+
+    appRoute
+        .run(
+            HttpRequest.PUT("/cache/json-key")
+                .withEntity(ContentTypes.APPLICATION_JSON, "{\"a\":1}"))
+        .assertStatusCode(StatusCodes.OK);
+    appRoute
+        .run(HttpRequest.GET("/cache/json-key"))
+        .assertContentType(ContentTypes.APPLICATION_JSON)
+        .assertEntity("{\"a\":1}");
+
+    appRoute
+        .run(HttpRequest.PUT("/cache/empty-key").withEntity(ContentTypes.TEXT_PLAIN_UTF8, ""))
+        .assertStatusCode(StatusCodes.BAD_REQUEST);
+  }
+
+  @Test
+  public void testMultiGetPreservesBinaryValues() throws Exception {
+    byte[] bytes = {0, 1, 2, (byte) 0xFE, (byte) 0xFF};
+    appRoute
+        .run(
+            HttpRequest.PUT("/cache/mget-binary")
+                .withEntity(
+                    HttpEntities.create(ContentTypes.APPLICATION_OCTET_STREAM, bytes)))
+        .assertStatusCode(StatusCodes.OK);
+    appRoute
+        .run(
+            HttpRequest.PUT("/cache/mget-text").withEntity(ContentTypes.TEXT_PLAIN_UTF8, "文本"))
+        .assertStatusCode(StatusCodes.OK);
+
+    String body =
+        appRoute
+            .run(
+                HttpRequest.POST("/cache/_mget")
+                    .withEntity(
+                        ContentTypes.APPLICATION_JSON, "[\"mget-binary\",\"mget-text\"]"))
+            .assertStatusCode(StatusCodes.OK)
+            .entityString();
+    Map<String, CacheEntry> entries = new HashMap<>();
+    for (CacheEntry entry : new ObjectMapper().readValue(body, CacheEntry[].class)) {
+      entries.put(entry.key, entry);
+    }
+    CacheEntry binary = entries.get("mget-binary");
+    assertEquals(CacheEntry.BASE64, binary.encoding);
+    assertEquals("application/octet-stream", binary.contentType);
+    assertArrayEquals(bytes, Base64.getDecoder().decode(binary.value));
+    CacheEntry text = entries.get("mget-text");
+    assertNull(text.encoding);
+    assertEquals("文本", text.value);
+
+    // _mget 的输出可以原样写回
+    appRoute
+        .run(
+            HttpRequest.POST("/cache/_mput")
+                .withEntity(
+                    ContentTypes.APPLICATION_JSON,
+                    "[{\"key\":\"mget-copy\",\"value\":\"" + binary.value + "\","
+                        + "\"contentType\":\"application/octet-stream\","
+                        + "\"encoding\":\"base64\"}]"))
+        .assertStatusCode(StatusCodes.OK);
+    appRoute
+        .run(HttpRequest.GET("/cache/mget-copy"))
+        .assertStatusCode(StatusCodes.OK)
+        .assertContentType(ContentTypes.APPLICATION_OCTET_STREAM)
+        .assertEntityBytes(ByteString.fromArray(bytes));
+  }
+
+  @Test
+  public void testMultiGetHoldsPermitUntilStreamCompletes() throws Exception {
+    AdmissionController admission =
+        new AdmissionController(new AimdLimit(1, 1, 1, 0.5, Long.MAX_VALUE));
+    ActorRef<SupervisorActor.Command> supervisor = testKit.spawn(SupervisorActor.create());
+    CacheRouteDefinition routeDefinition =
+        new CacheRouteDefinition(testKit.system(), supervisor, admission, 2);
+    Function<HttpRequest, CompletionStage<HttpResponse>> handler =
+        routeDefinition.createRoute().seal().handler(testKit.system());
+
+    HttpResponse response =
+        handler
+            .apply(
+                HttpRequest.POST("/cache/_mget")
+                    .withEntity(ContentTypes.APPLICATION_JSON, "[\"streamed\"]"))
+            .toCompletableFuture()
+            .join();
+    assertEquals(200, response.status().intValue());
+    // 路由已经完成, 但响应体还没有输出
+    assertEquals(1, admission.inFlight());
+
+    response.entity().toStrict(5000, testKit.system()).toCompletableFuture().join();
+    // 流结束的信号异步到达
+    for (int i = 0; i < 100 && admission.inFlight() > 0; i++) {
+      Thread.sleep(10);
+    }
+    assertEquals(0, admission.inFlight());
+  }
+
+  @Test
+  public void testRejectsWithRetryAfterWhenOverLimit() {
+    AdmissionController admission =
+        new AdmissionController(new AimdLimit(1, 1, 1, 0.5, Long.MAX_VALUE));
+    ActorRef<SupervisorActor.Command> supervisor = testKit.spawn(SupervisorActor.create());
+    CacheRouteDefinition routeDefinition =
+        new CacheRouteDefinition(testKit.system(), supervisor, admission, 2);
+    TestRoute limited = testRoute(routeDefinition.createRoute());
+
+    limited.run(HttpRequest.PUT("/cache/admitted/value")).assertStatusCode(StatusCodes.OK);
+    assertEquals(0, admission.inFlight());
+
+    // 占用唯一的许可, 后续请求立即被拒绝(本地命中不经过准入控制, 因此查询未写入的键)
+    AdmissionController.Permit held = admission.tryAcquire();
+    limited
+        .run(HttpRequest.GET("/cache/missing"))
+        .assertStatusCode(StatusCodes.SERVICE_UNAVAILABLE)
+        .assertHeaderExists(RetryAfter.create(2L));
+    limited
+        .run(HttpRequest.PUT("/cache/rejected/value"))
+        .assertStatusCode(StatusCodes.SERVICE_UNAVAILABLE);
+
+    held.release(false);
+    limited
+        .run(HttpRequest.GET("/cache/admitted"))
+        .assertStatusCode(StatusCodes.OK)
+        .assertEntity("value");
+    assertEquals(0, admission.inFlight());
+
+    // 获取分区列表之后, 本地命中同步返回, 不需要许可
+    held = admission.tryAcquire();
+    limited
+        .run(HttpRequest.GET("/cache/admitted"))
+        .assertStatusCode(StatusCodes.OK)
+        .assertEntity("value");
+    limited
+        .run(HttpRequest.GET("/cache/missing"))
+        .assertStatusCode(StatusCodes.SERVICE_UNAVAILABLE);
+    held.release(false);
+  }
+}
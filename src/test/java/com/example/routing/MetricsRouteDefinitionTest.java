@@ -0,0 +1,49 @@
+package com.example.routing;
+
+import akka.actor.testkit.typed.javadsl.ActorTestKit;
+import akka.http.javadsl.model.HttpRequest;
+import akka.http.javadsl.model.StatusCodes;
+import akka.http.javadsl.server.Route;
+import akka.http.javadsl.testkit.JUnitRouteTest;
+import akka.http.javadsl.testkit.TestRoute;
+import com.example.metrics.PrometheusFormat;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertTrue;
+
+public class MetricsRouteDefinitionTest extends JUnitRouteTest {
+
+  private static final ActorTestKit testKit = ActorTestKit.create();
+  private TestRoute appRoute;
+
+  @Before
+  public void setup() {
+    MetricsRouteDefinition metrics = new MetricsRouteDefinition(testKit.system());
+    Route hello = metrics.timed("hello", new HelloRouteDefinition().createRoute());
+    appRoute = testRoute(concat(hello, metrics.createRoute()));
+  }
+
+  @AfterClass
+  public static void teardown() {
+    testKit.shutdownTestKit();
+  }
+
+  @Test
+  public void testRequestLatencyIsExported() {
+    appRoute.run(HttpRequest.GET("/hello")).assertStatusCode(StatusCodes.OK);
+    String text =
+        appRoute
+            .run(HttpRequest.GET("/metrics"))
+            .assertStatusCode(StatusCodes.OK)
+            .assertContentType(PrometheusFormat.CONTENT_TYPE)
+            .entityString();
+    assertTrue(text, text.contains("# TYPE http_request_duration_seconds histogram\n"));
+    assertTrue(
+        text,
+        text.contains("http_request_duration_seconds_count{route=\"hello\",method=\"GET\"} "));
+    // 被拒绝的请求不计入
+    assertTrue(text, !text.contains("route=\"hello\",method=\"PUT\""));
+  }
+}
@@ -0,0 +1,38 @@
+package com.example.routing;
+
+import akka.actor.testkit.typed.javadsl.ActorTestKit;
+import akka.actor.typed.ActorRef;
+import akka.http.javadsl.model.HttpRequest;
+import akka.http.javadsl.model.StatusCodes;
+import akka.http.javadsl.testkit.JUnitRouteTest;
+import akka.http.javadsl.testkit.TestRoute;
+import com.example.SupervisorActor;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ReadinessRouteDefinitionTest extends JUnitRouteTest {
+
+  private static final ActorTestKit testKit = ActorTestKit.create();
+  private TestRoute appRoute;
+
+  @Before
+  public void setup() {
+    ActorRef<SupervisorActor.Command> supervisor = testKit.spawn(SupervisorActor.create(1));
+    appRoute = testRoute(new ReadinessRouteDefinition(testKit.system(), supervisor).createRoute());
+  }
+
+  @AfterClass
+  public static void teardown() {
+    testKit.shutdownTestKit();
+  }
+
+  @Test
+  public void testReadyWhenPrewarmIsDisabled() {
+    appRoute
+        .run(HttpRequest.GET("/ready"))
+        .assertStatusCode(StatusCodes.OK)
+        .assertEntity(
+            "{\"loaded\":0,\"prewarm\":\"disabled\",\"ready\":true,\"scanned\":0,\"target\":0}");
+  }
+}
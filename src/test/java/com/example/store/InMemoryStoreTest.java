@@ -0,0 +1,50 @@
+package com.example.store;
+
+import com.example.cache.CacheValue;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class InMemoryStoreTest {
+
+  @Test
+  public void testGetAllReturnsValuesInKeyOrder() {
+    InMemoryStore store = new InMemoryStore(100);
+    store.put("a", CacheValue.of("1"), null);
+    store.putAll(
+        Arrays.asList(
+            new BackingStore.Write("b", CacheValue.of("2"), null),
+            new BackingStore.Write("a", CacheValue.of("3"), Duration.ofMinutes(1))));
+
+    List<CacheValue> values = store.getAll(Arrays.asList("b", "missing", "a"));
+
+    assertEquals(Arrays.asList(CacheValue.of("2"), null, CacheValue.of("3")), values);
+  }
+
+  @Test
+  public void testExpiredEntriesAreNotReturned() throws InterruptedException {
+    InMemoryStore store = new InMemoryStore(100);
+    store.put("short", CacheValue.of("v"), Duration.ofMillis(20));
+    Thread.sleep(50);
+
+    assertNull(store.get("short"));
+    assertEquals(0, store.size());
+  }
+
+  @Test
+  public void testSizeIsBoundedByMaxEntries() {
+    InMemoryStore store = new InMemoryStore(10);
+    for (int i = 0; i < 100; i++) {
+      store.put("key-" + i, CacheValue.of("v"), null);
+    }
+
+    assertEquals(10, store.size());
+    // 刚写入的键不会被淘汰
+    assertEquals(CacheValue.of("v"), store.get("key-99"));
+  }
+}
@@ -0,0 +1,159 @@
+package com.example.store;
+
+import akka.util.ByteString;
+import com.example.cache.CacheValue;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class LogStructuredStoreTest {
+
+  private static final int SEGMENT_SIZE = 4096;
+
+  @Rule public TemporaryFolder folder = new TemporaryFolder();
+
+  private LogStructuredStore open() throws IOException {
+    return LogStructuredStore.open(folder.getRoot().toPath(), SEGMENT_SIZE, 0.5, false);
+  }
+
+  @Test
+  public void testValuesSurviveReopen() throws IOException {
+    CacheValue binary =
+        new CacheValue(ByteString.fromArray(new byte[] {0, -1, 2}), "application/octet-stream");
+    try (LogStructuredStore store = open()) {
+      store.put("键", CacheValue.of("旧值"), null);
+      store.putAll(
+          Arrays.asList(
+              new BackingStore.Write("键", CacheValue.of("值"), null),
+              new BackingStore.Write("binary", binary, Duration.ofHours(1)),
+              new BackingStore.Write("empty", CacheValue.of(""), null)));
+      assertEquals(CacheValue.of("值"), store.get("键"));
+    }
+
+    try (LogStructuredStore store = open()) {
+      List<CacheValue> values = store.getAll(Arrays.asList("键", "binary", "empty", "missing"));
+      assertEquals(Arrays.asList(CacheValue.of("值"), binary, CacheValue.of(""), null), values);
+      assertEquals(3, store.size());
+    }
+  }
+
+  @Test
+  public void testExpiredRecordsAreSkipped() throws Exception {
+    try (LogStructuredStore store = open()) {
+      store.put("short", CacheValue.of("v"), Duration.ofMillis(20));
+      store.put("long", CacheValue.of("v"), Duration.ofHours(1));
+      Thread.sleep(50);
+      assertNull(store.get("short"));
+    }
+    try (LogStructuredStore store = open()) {
+      assertNull(store.get("short"));
+      assertEquals(CacheValue.of("v"), store.get("long"));
+      assertEquals(1, store.size());
+    }
+  }
+
+  @Test
+  public void testTornRecordIsIgnoredAndOverwritten() throws IOException {
+    try (LogStructuredStore store = open()) {
+      store.put("a", CacheValue.of("1"), null);
+      store.put("b", CacheValue.of("2"), null);
+    }
+    // 模拟崩溃时 b 的记录体只写了一半: 破坏最后一个字节, 校验和不再匹配
+    Path segment = segments().get(0);
+    int recordB = 8 + 8 + 4 + 1 + 1 + CacheValue.TEXT_PLAIN_UTF8.length() + 1;
+    try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+      channel.write(ByteBuffer.wrap(new byte[] {'x'}), recordB * 2 - 1);
+    }
+
+    try (LogStructuredStore store = open()) {
+      assertEquals(CacheValue.of("1"), store.get("a"));
+      assertNull(store.get("b"));
+      store.put("c", CacheValue.of("3"), null);
+    }
+    try (LogStructuredStore store = open()) {
+      assertEquals(CacheValue.of("3"), store.get("c"));
+      assertEquals(2, store.size());
+    }
+  }
+
+  @Test
+  public void testOverwrittenSegmentsAreCompacted() throws IOException {
+    CacheValue large = new CacheValue(ByteString.fromArray(new byte[1000]), "application/x");
+    try (LogStructuredStore store = open()) {
+      store.put("keep", CacheValue.of("kept"), null);
+      // 反复覆盖同一个键, 旧段几乎全是无效数据
+      for (int i = 0; i < 50; i++) {
+        store.put("hot", large, null);
+      }
+      assertTrue("segments = " + store.segmentCount(), store.segmentCount() <= 3);
+      assertEquals(store.segmentCount(), segments().size());
+      assertEquals(CacheValue.of("kept"), store.get("keep"));
+    }
+    try (LogStructuredStore store = open()) {
+      assertEquals(CacheValue.of("kept"), store.get("keep"));
+      assertEquals(large, store.get("hot"));
+      assertEquals(2, store.size());
+    }
+  }
+
+  @Test
+  public void testExpiredValueIsNotResurrectedByCompaction() throws Exception {
+    CacheValue large = new CacheValue(ByteString.fromArray(new byte[1000]), "application/x");
+    try (LogStructuredStore store = open()) {
+      // 第一个段中的旧值, 以及让该段保持大部分有效的冷数据
+      store.put("key", CacheValue.of("old"), null);
+      for (int i = 0; i < 4; i++) {
+        store.put("cold-" + i, large, null);
+      }
+      // 新值在之后的段中过期; 再反复覆盖同一个键, 让之后的段几乎全是无效数据并触发压缩
+      store.put("key", CacheValue.of("new"), Duration.ofMillis(20));
+      Thread.sleep(50);
+      for (int i = 0; i < 20; i++) {
+        store.put("hot", large, null);
+      }
+      assertNull(store.get("key"));
+    }
+    try (LogStructuredStore store = open()) {
+      assertNull(store.get("key"));
+      for (int i = 0; i < 4; i++) {
+        assertEquals(large, store.get("cold-" + i));
+      }
+      assertEquals(large, store.get("hot"));
+    }
+  }
+
+  @Test
+  public void testRecordLargerThanSegmentGetsItsOwnSegment() throws IOException {
+    CacheValue huge = new CacheValue(ByteString.fromArray(new byte[SEGMENT_SIZE * 3]), "a/b");
+    try (LogStructuredStore store = open()) {
+      store.put("huge", huge, null);
+      store.put("small", CacheValue.of("s"), null);
+    }
+    try (LogStructuredStore store = open()) {
+      assertEquals(huge, store.get("huge"));
+      assertEquals(CacheValue.of("s"), store.get("small"));
+    }
+  }
+
+  private List<Path> segments() throws IOException {
+    try (Stream<Path> files = Files.list(folder.getRoot().toPath())) {
+      return files.sorted().collect(Collectors.toList());
+    }
+  }
+}
@@ -0,0 +1,37 @@
+package com.example.store;
+
+import akka.util.ByteString;
+import com.example.cache.CacheValue;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class RedisValueCodecTest {
+
+  @Test
+  public void testTextValueIsStoredAsRawBytes() {
+    byte[] encoded = RedisValueCodec.encode(CacheValue.of("值"));
+    assertArrayEquals("值".getBytes(StandardCharsets.UTF_8), encoded);
+    // 旧版本以字符串写入 Redis 的值按 UTF-8 文本读取
+    assertEquals(CacheValue.of("legacy"), RedisValueCodec.decode("legacy".getBytes()));
+    assertNull(RedisValueCodec.decode(null));
+  }
+
+  @Test
+  public void testBinaryValueKeepsContentType() {
+    byte[] bytes = {0, 1, 2, (byte) 0xFF};
+    CacheValue value = new CacheValue(ByteString.fromArray(bytes), "application/octet-stream");
+    assertEquals(value, RedisValueCodec.decode(RedisValueCodec.encode(value)));
+  }
+
+  @Test
+  public void testTextValueStartingWithMagicRoundTrips() {
+    byte[] bytes = {0x00, (byte) 0xCA, (byte) 0xC7, 5, 'a'};
+    CacheValue value = new CacheValue(ByteString.fromArray(bytes), CacheValue.TEXT_PLAIN_UTF8);
+    assertEquals(value, RedisValueCodec.decode(RedisValueCodec.encode(value)));
+  }
+}